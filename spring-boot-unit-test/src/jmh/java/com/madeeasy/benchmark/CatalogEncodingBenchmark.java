@@ -0,0 +1,135 @@
+package com.madeeasy.benchmark;
+
+import com.madeeasy.service.MovieReplica;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Bytes on the wire and response time of {@code GET /movies} for every body format ({@code Accept}) with and without
+ * gzip ({@code Accept-Encoding}), measured over loopback against a seeded server. Reports per variant the median
+ * time until the last byte arrived, the bytes received and the bytes after decompression, and writes them to
+ * {@code target/catalog-encoding-result.json}.
+ *
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec@encoding-benchmark -Dencoding.args="--rows=100000 --runs=10"
+ * </pre>
+ *
+ * Add {@code --profiles=replica} to serve the catalog from the mapped replica instead of the database.
+ */
+public class CatalogEncodingBenchmark {
+
+    private static final Map<String, String> FORMATS = new LinkedHashMap<>();
+
+    static {
+        FORMATS.put("json", "application/json");
+        FORMATS.put("cbor", "application/cbor");
+        FORMATS.put("smile", "application/x-jackson-smile");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int rows = Integer.parseInt(options.getOrDefault("rows", "100000"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "10"));
+        String[] profiles = options.containsKey("profiles") ? options.get("profiles").split(",") : new String[0];
+
+        List<Result> results = new ArrayList<>();
+        try (ConfigurableApplicationContext context = SeededCatalog.start(rows, WebApplicationType.SERVLET, profiles)) {
+            if (Arrays.asList(profiles).contains("replica")) {
+                // the seed is inserted behind the application's back, load it again
+                context.getBean(MovieReplica.class).rebuild();
+            }
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + "/movies");
+            HttpClient client = HttpClient.newHttpClient();
+            for (Map.Entry<String, String> format : FORMATS.entrySet()) {
+                for (String encoding : List.of("identity", "gzip")) {
+                    HttpRequest request = HttpRequest.newBuilder(uri)
+                            .header("Accept", format.getValue())
+                            .header("Accept-Encoding", encoding)
+                            .build();
+                    // the first runs only warm up the serializers and the compressor
+                    for (int run = 0; run < 3; run++) {
+                        client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                    }
+                    long[] nanos = new long[runs];
+                    HttpResponse<byte[]> response = null;
+                    for (int run = 0; run < runs; run++) {
+                        long start = System.nanoTime();
+                        response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        nanos[run] = System.nanoTime() - start;
+                    }
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException(format.getKey() + " answered " + response.statusCode());
+                    }
+                    Result result = new Result(format.getKey(), encoding, rows, median(nanos) / 1_000_000.0,
+                            response.body().length, decodedLength(response));
+                    System.out.println(result);
+                    results.add(result);
+                }
+            }
+        }
+
+        Path output = Path.of("target", "catalog-encoding-result.json");
+        Files.createDirectories(output.getParent());
+        Files.writeString(output, results.stream().map(Result::toJson).toList().toString());
+    }
+
+    private static int decodedLength(HttpResponse<byte[]> response) throws IOException {
+        if (!response.headers().firstValue("Content-Encoding").orElse("identity").equals("gzip")) {
+            return response.body().length;
+        }
+        try (InputStream decoded = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            return decoded.readAllBytes().length;
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "true");
+        }
+        return options;
+    }
+
+    private record Result(String format, String encoding, int rows, double millis, long wireBytes,
+                          long decodedBytes) {
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"format\":\"%s\",\"encoding\":\"%s\",\"rows\":%d,\"medianMillis\":%.2f,"
+                            + "\"wireBytes\":%d,\"decodedBytes\":%d}",
+                    format, encoding, rows, millis, wireBytes, decodedBytes);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-6s %-9s rows=%d median=%.1f ms wire=%.2f MB decoded=%.2f MB",
+                    format, encoding, rows, millis, wireBytes / 1_048_576.0, decodedBytes / 1_048_576.0);
+        }
+    }
+}
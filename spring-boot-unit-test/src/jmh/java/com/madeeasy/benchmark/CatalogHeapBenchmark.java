@@ -0,0 +1,140 @@
+package com.madeeasy.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.madeeasy.repository.MovieRepository;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Heap cost of listing the whole catalog, as entities loaded with {@code findAll()} (what {@code GET /movies} used
+ * to do) versus the read-only {@code MovieSummary} projection. Both are measured inside a transaction, which is how
+ * the result is held while the response is written: the persistence context stays open until then. Reports per
+ * 100,000 rows the heap still reachable after a full GC and the bytes allocated by the query and the serialization,
+ * and writes them to {@code target/catalog-heap-result.json}.
+ *
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec@heap-benchmark -Dheap.args="--rows=100000 --runs=5"
+ * </pre>
+ *
+ * Run with a serial collector (as the execution does) so the used heap after {@code System.gc()} is stable.
+ */
+public class CatalogHeapBenchmark {
+
+    private static final int PER_ROWS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int rows = Integer.parseInt(options.getOrDefault("rows", "100000"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+
+        List<Result> results = new ArrayList<>();
+        try (ConfigurableApplicationContext context = SeededCatalog.start(rows)) {
+            MovieRepository movieRepository = context.getBean(MovieRepository.class);
+            ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+            TransactionTemplate transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+            Map<String, Supplier<List<?>>> variants = new LinkedHashMap<>();
+            variants.put("entities", movieRepository::findAll);
+            variants.put("projections", movieRepository::findAllSummaries);
+            for (Map.Entry<String, Supplier<List<?>>> variant : variants.entrySet()) {
+                // the first run only warms up the query plan and the serializers
+                measure(transaction, objectMapper, variant.getValue());
+                long[] retained = new long[runs];
+                long[] allocated = new long[runs];
+                for (int run = 0; run < runs; run++) {
+                    long[] measurement = measure(transaction, objectMapper, variant.getValue());
+                    retained[run] = measurement[0];
+                    allocated[run] = measurement[1];
+                }
+                Result result = new Result(variant.getKey(), rows,
+                        median(retained) * (double) PER_ROWS / rows,
+                        median(allocated) * (double) PER_ROWS / rows);
+                System.out.println(result);
+                results.add(result);
+            }
+        }
+
+        Path output = Path.of("target", "catalog-heap-result.json");
+        Files.createDirectories(output.getParent());
+        Files.writeString(output, results.stream().map(Result::toJson).toList().toString());
+    }
+
+    /**
+     * @return the bytes retained while the transaction still holds the list, and the bytes the calling thread
+     * allocated to load and serialize it
+     */
+    private static long[] measure(TransactionTemplate transaction, ObjectMapper objectMapper,
+                                  Supplier<List<?>> query) {
+        long before = usedAfterGc();
+        return transaction.execute(status -> {
+            long allocatedBefore = allocatedBytes();
+            List<?> movies = query.get();
+            long retained = usedAfterGc() - before;
+            try {
+                objectMapper.writeValue(OutputStream.nullOutputStream(), movies);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            long allocated = allocatedBytes() - allocatedBefore;
+            return new long[]{retained, allocated};
+        });
+    }
+
+    private static long usedAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "true");
+        }
+        return options;
+    }
+
+    private record Result(String variant, int rows, double retainedBytes, double allocatedBytes) {
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"variant\":\"%s\",\"rows\":%d,\"retainedBytesPer100k\":%.0f,\"allocatedBytesPer100k\":%.0f}",
+                    variant, rows, retainedBytes, allocatedBytes);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-12s rows=%d retained=%.1f MB/100k rows allocated=%.1f MB/100k rows",
+                    variant, rows, retainedBytes / 1_048_576, allocatedBytes / 1_048_576);
+        }
+    }
+}
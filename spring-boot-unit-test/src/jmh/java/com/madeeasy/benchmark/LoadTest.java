@@ -0,0 +1,221 @@
+package com.madeeasy.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Closed-loop HTTP load test: a fixed number of concurrent clients send requests back to back for a fixed duration,
+ * once per server mode, against a freshly seeded catalog. Modes are separated by commas, each one naming the Spring
+ * profiles to run the server with (joined by {@code +}), {@code default} meaning none. Prints throughput and latency percentiles per mode and writes them to
+ * {@code target/load-test-result.json}.
+ *
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec@load-test \
+ *     -Dload.args="--rows=100000 --concurrency=500 --duration=30 --modes=default,virtual-threads"
+ * </pre>
+ *
+ * Half of the requests are {@code GET /movies/{id}}, the other half a prefix search that always reaches H2. With
+ * {@code --write-ratio} that share of requests renames a random movie through {@code PATCH /movies/{id}} instead.
+ * {@code --storage=file} runs every mode on a fresh database file under {@code target/load-test} with the mode's
+ * own URL settings, which is how the {@code prod} profile's H2 and pool tuning is compared:
+ *
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec@load-test \
+ *     -Dload.args="--storage=file --write-ratio=0.2 --concurrency=200 --modes=default,prod"
+ * </pre>
+ *
+ * The rate and concurrency limits in front of {@code /movies} are off unless {@code --limits=on}; then every client
+ * identifies itself with an {@code X-Client-Id} header of its own, and requests refused with 429 or 503 are counted
+ * as rejected rather than as errors, leaving the latencies to the requests that were served.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int rows = Integer.parseInt(options.getOrDefault("rows", "100000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "500"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        List<String> modes = Arrays.asList(options.getOrDefault("modes", "default,virtual-threads").split(","));
+        boolean fileStorage = options.getOrDefault("storage", "memory").equals("file");
+        double writeRatio = Double.parseDouble(options.getOrDefault("write-ratio", "0"));
+        boolean limits = options.getOrDefault("limits", "off").equals("on");
+        // below the command line arguments of SeededCatalog but above application.yml
+        System.setProperty("movies.rate-limit.enabled", String.valueOf(limits));
+        System.setProperty("movies.concurrency-limit.enabled", String.valueOf(limits));
+        System.setProperty("movies.rate-limit.client-header", "X-Client-Id");
+
+        List<Result> results = new ArrayList<>();
+        for (String mode : modes) {
+            String[] profiles = mode.equals("default") ? new String[0] : mode.split("\\+");
+            Path storage = null;
+            if (fileStorage) {
+                Path directory = Path.of("target", "load-test", mode);
+                FileSystemUtils.deleteRecursively(directory);
+                storage = directory.resolve("movies");
+            }
+            try (ConfigurableApplicationContext context =
+                         SeededCatalog.start(rows, WebApplicationType.SERVLET, storage, profiles)) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                URI baseUri = URI.create("http://localhost:" + port);
+                Workload workload = new Workload(baseUri, rows, writeRatio);
+                run(workload, concurrency, warmup);
+                Result result = run(workload, concurrency, duration).named(mode);
+                System.out.println(result);
+                results.add(result);
+            }
+        }
+
+        Path output = Path.of("target", "load-test-result.json");
+        Files.createDirectories(output.getParent());
+        Files.writeString(output, results.stream().map(Result::toJson).toList().toString());
+    }
+
+    private static Result run(Workload workload, int concurrency, Duration duration) throws Exception {
+        // the client side always uses virtual threads so it is never the bottleneck of either mode
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .executor(clients)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            long deadline = System.nanoTime() + duration.toNanos();
+            List<Future<long[]>> workers = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                String client = "client-" + i;
+                workers.add(clients.submit(() -> requestUntil(httpClient, workload, client, deadline)));
+            }
+
+            List<long[]> latencies = new ArrayList<>();
+            long errors = 0;
+            long rejected = 0;
+            for (Future<long[]> worker : workers) {
+                long[] workerLatencies = worker.get();
+                errors += workerLatencies[0];
+                rejected += workerLatencies[1];
+                latencies.add(Arrays.copyOfRange(workerLatencies, 2, workerLatencies.length));
+            }
+            long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+            return new Result("", concurrency, all.length / (double) duration.toSeconds(), errors, rejected,
+                    percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999));
+        }
+    }
+
+    /**
+     * @return the error count and the rejected count followed by the latency in nanoseconds of every successful
+     * request
+     */
+    private static long[] requestUntil(HttpClient httpClient, Workload workload, String client, long deadline) {
+        long[] latencies = new long[1024];
+        int count = 2;
+        long errors = 0;
+        long rejected = 0;
+        while (System.nanoTime() < deadline) {
+            HttpRequest request = workload.next(client);
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 429 || response.statusCode() == 503) {
+                    rejected++;
+                    continue;
+                }
+                if (response.statusCode() != 200) {
+                    errors++;
+                    continue;
+                }
+            } catch (IOException e) {
+                errors++;
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+        latencies[0] = errors;
+        latencies[1] = rejected;
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000d;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "true");
+        }
+        return options;
+    }
+
+    private record Workload(URI baseUri, int rows, double writeRatio) {
+
+        HttpRequest next(String client) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long id = random.nextLong(1, rows + 1);
+            if (random.nextDouble() < writeRatio) {
+                return HttpRequest.newBuilder(baseUri.resolve("/movies/" + id))
+                        .header("X-Client-Id", client)
+                        .header("Content-Type", "application/json")
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"name\":\"Movie " + id + "\"}"))
+                        .build();
+            }
+            URI uri = random.nextBoolean()
+                    ? baseUri.resolve("/movies/" + id)
+                    : baseUri.resolve("/movies/search?namePrefix=Movie%20" + id);
+            return HttpRequest.newBuilder(uri).header("X-Client-Id", client).GET().build();
+        }
+    }
+
+    private record Result(String mode, int concurrency, double throughput, long errors, long rejected,
+                          double p50Millis, double p99Millis, double p999Millis) {
+
+        Result named(String mode) {
+            return new Result(mode, concurrency, throughput, errors, rejected, p50Millis, p99Millis, p999Millis);
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"mode\":\"%s\",\"concurrency\":%d,\"throughput\":%.1f,\"errors\":%d,\"rejected\":%d," +
+                            "\"p50Millis\":%.3f,\"p99Millis\":%.3f,\"p999Millis\":%.3f}",
+                    mode, concurrency, throughput, errors, rejected, p50Millis, p99Millis, p999Millis);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%-20s concurrency=%d throughput=%.1f req/s errors=%d rejected=%d p50=%.2fms p99=%.2fms "
+                            + "p99.9=%.2fms",
+                    mode, concurrency, throughput, errors, rejected, p50Millis, p99Millis, p999Millis);
+        }
+    }
+}
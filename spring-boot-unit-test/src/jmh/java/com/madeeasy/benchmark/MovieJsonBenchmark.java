@@ -0,0 +1,69 @@
+package com.madeeasy.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.madeeasy.entity.MovieEntity;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (de)serialization of {@link MovieEntity} with an ObjectMapper configured the way Spring MVC configures it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MovieJsonBenchmark {
+
+    private ObjectWriter movieWriter;
+    private ObjectWriter listWriter;
+    private ObjectReader movieReader;
+    private MovieEntity movie;
+    private List<MovieEntity> page;
+    private byte[] movieJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        movieWriter = objectMapper.writerFor(MovieEntity.class);
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, MovieEntity.class));
+        movieReader = objectMapper.readerFor(MovieEntity.class);
+
+        movie = MovieEntity.builder().id(42L).name("Movie 42").releaseDate(LocalDate.of(2023, 5, 17)).build();
+        page = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            page.add(MovieEntity.builder()
+                    .id(id)
+                    .name("Movie " + id)
+                    .releaseDate(LocalDate.of(2023, 5, 17).plusDays(id))
+                    .build());
+        }
+        movieJson = movieWriter.writeValueAsBytes(movie);
+    }
+
+    @Benchmark
+    public byte[] serializeMovie() throws JsonProcessingException {
+        return movieWriter.writeValueAsBytes(movie);
+    }
+
+    @Benchmark
+    public byte[] serializePageOf100() throws JsonProcessingException {
+        return listWriter.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public MovieEntity deserializeMovie() throws IOException {
+        return movieReader.readValue(movieJson);
+    }
+}
@@ -0,0 +1,103 @@
+package com.madeeasy.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.repository.MovieRepository;
+import com.madeeasy.service.MovieReplica;
+import com.madeeasy.service.MovieService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The read paths {@code GET /movies/{id}} and {@code GET /movies} take with and without the replica profile:
+ *
+ * <ul>
+ *     <li>{@code findByIdJpa}: the repository, i.e. a cache miss of {@link MovieService#findById}</li>
+ *     <li>{@code findByIdCached}: {@link MovieService#findById} with its Caffeine cache, after warm-up mostly hits</li>
+ *     <li>{@code findByIdReplica}: the mapped table</li>
+ *     <li>{@code listJpa} and {@code listReplica}: the whole catalog serialized to a discarding stream</li>
+ * </ul>
+ *
+ * Add {@code -prof gc} to see the allocation per operation:
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec@run-benchmarks -Djmh.args="MovieReplicaBenchmark -prof gc"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MovieReplicaBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private MovieRepository movieRepository;
+    private MovieService movieService;
+    private MovieReplica movieReplica;
+    private ObjectWriter catalogWriter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SeededCatalog.start(rows, WebApplicationType.NONE, "replica");
+        movieRepository = context.getBean(MovieRepository.class);
+        movieService = context.getBean(MovieService.class);
+        movieReplica = context.getBean(MovieReplica.class);
+        // the seed is inserted behind the application's back, load it again
+        movieReplica.rebuild();
+        ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+        catalogWriter = objectMapper.writerFor(objectMapper.getTypeFactory()
+                        .constructCollectionType(List.class, MovieSummary.class))
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<MovieEntity> findByIdJpa() {
+        return movieRepository.findById(randomId());
+    }
+
+    @Benchmark
+    public MovieEntity findByIdCached() {
+        return movieService.findById(randomId());
+    }
+
+    @Benchmark
+    public MovieEntity findByIdReplica() {
+        return movieReplica.findById(randomId());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void listJpa() throws IOException {
+        catalogWriter.writeValue(OutputStream.nullOutputStream(), movieService.getAllMovies());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void listReplica() throws IOException {
+        movieReplica.writeCatalog(OutputStream.nullOutputStream());
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, rows + 1);
+    }
+}
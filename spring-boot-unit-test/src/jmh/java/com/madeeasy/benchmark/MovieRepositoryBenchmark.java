@@ -0,0 +1,95 @@
+package com.madeeasy.benchmark;
+
+import com.madeeasy.dto.MovieSearchCriteria;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.repository.MovieRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MovieRepository} lookups straight against H2, without the service cache in front. Running with
+ * {@code indexed=false} drops the name and release date indexes to get the full-scan baseline for the same queries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MovieRepositoryBenchmark {
+
+    private static final LocalDate FIRST_RELEASE = LocalDate.of(1925, 1, 1);
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 20, Sort.by("id"));
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    private ConfigurableApplicationContext context;
+    private MovieRepository movieRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SeededCatalog.start(rows);
+        movieRepository = context.getBean(MovieRepository.class);
+        if (!indexed) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            jdbcTemplate.execute("drop index if exists idx_tbl_user_name");
+            jdbcTemplate.execute("drop index if exists idx_tbl_user_release_date");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<MovieEntity> findById() {
+        return movieRepository.findById(randomId());
+    }
+
+    @Benchmark
+    public List<MovieSummary> findPageAfter() {
+        return movieRepository.findPageAfter(randomId(), PageRequest.ofSize(100));
+    }
+
+    @Benchmark
+    public MovieEntity findByNameNativeQuery() {
+        return movieRepository.findByNameNativeQuery("Movie " + randomId());
+    }
+
+    @Benchmark
+    public Slice<MovieSummary> searchByNamePrefix() {
+        return movieRepository.search(MovieSearchCriteria.builder()
+                .namePrefix("Movie " + randomId())
+                .build(), FIRST_PAGE);
+    }
+
+    @Benchmark
+    public Slice<MovieSummary> searchByReleaseDateRange() {
+        LocalDate from = FIRST_RELEASE.plusDays(ThreadLocalRandom.current().nextInt(36500));
+        return movieRepository.search(MovieSearchCriteria.builder()
+                .releasedFrom(from)
+                .releasedTo(from.plusDays(7))
+                .build(), FIRST_PAGE);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, rows + 1);
+    }
+}
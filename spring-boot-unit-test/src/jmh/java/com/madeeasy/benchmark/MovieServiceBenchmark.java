@@ -0,0 +1,78 @@
+package com.madeeasy.benchmark;
+
+import com.madeeasy.dto.MoviePage;
+import com.madeeasy.dto.MoviePatch;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.service.MovieService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of {@link MovieService}, measured through the Spring proxies so transactions and caching are included.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MovieServiceBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private MovieService movieService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SeededCatalog.start(rows);
+        movieService = context.getBean(MovieService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MovieEntity findById() {
+        return movieService.findById(randomId());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<MovieSummary> getAllMovies() {
+        return movieService.getAllMovies();
+    }
+
+    @Benchmark
+    public MoviePage getMoviesPage() {
+        return movieService.getMoviesPage(null, MovieService.DEFAULT_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public MovieEntity updateMovie() {
+        long id = randomId();
+        return movieService.updateMovie(id, MovieEntity.builder()
+                .id(id)
+                .name("Updated " + id)
+                .releaseDate(LocalDate.of(2023, 5, 17))
+                .build());
+    }
+
+    @Benchmark
+    public MovieEntity partialUpdateMovie() {
+        return movieService.partialUpdateMovie(randomId(), new MoviePatch().releaseDate(LocalDate.of(2023, 5, 18)));
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, rows + 1);
+    }
+}
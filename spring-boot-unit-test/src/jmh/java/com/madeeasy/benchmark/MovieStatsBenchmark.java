@@ -0,0 +1,88 @@
+package com.madeeasy.benchmark;
+
+import com.madeeasy.dto.ReleaseCount;
+import com.madeeasy.dto.ReleaseDateCount;
+import com.madeeasy.dto.ReleaseHistogram;
+import com.madeeasy.dto.ReleaseStats;
+import com.madeeasy.repository.MovieRepository;
+import com.madeeasy.service.MovieStatsService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Release date statistics of a catalog whose release dates are spread over a hundred years, answered by
+ * {@link MovieStatsService} from its counters against the {@code GROUP BY} queries they replace:
+ *
+ * <ul>
+ *     <li>{@code countersYears} / {@code groupByYear}: movies per year, 100 rows</li>
+ *     <li>{@code countersMonths} / {@code groupByMonth}: movies per month, 1200 rows</li>
+ *     <li>{@code countersHistogram}: 20 buckets over all release dates; {@code groupByDay} is the query the
+ *     histogram is computed from without counters</li>
+ * </ul>
+ *
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec@run-benchmarks -Djmh.args="MovieStatsBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MovieStatsBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private MovieStatsService movieStatsService;
+    private MovieRepository movieRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SeededCatalog.start(rows);
+        movieRepository = context.getBean(MovieRepository.class);
+        movieStatsService = context.getBean(MovieStatsService.class);
+        // the catalog is seeded behind the application's back, count it again
+        movieStatsService.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ReleaseStats countersYears() {
+        return movieStatsService.countByYear();
+    }
+
+    @Benchmark
+    public List<ReleaseCount> groupByYear() {
+        return movieRepository.countByReleaseYear();
+    }
+
+    @Benchmark
+    public ReleaseStats countersMonths() {
+        return movieStatsService.countByMonth(null);
+    }
+
+    @Benchmark
+    public List<ReleaseCount> groupByMonth() {
+        return movieRepository.countByReleaseMonth();
+    }
+
+    @Benchmark
+    public ReleaseHistogram countersHistogram() {
+        return movieStatsService.histogram(null, null, 20);
+    }
+
+    @Benchmark
+    public List<ReleaseDateCount> groupByDay() {
+        return movieRepository.countByReleaseDate();
+    }
+}
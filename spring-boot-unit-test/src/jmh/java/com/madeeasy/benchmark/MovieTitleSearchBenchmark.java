@@ -0,0 +1,146 @@
+package com.madeeasy.benchmark;
+
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.dto.MovieTitleSearchPage;
+import com.madeeasy.repository.MovieRepository;
+import com.madeeasy.service.MovieTitleSearchService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First page of a title search, {@link MovieTitleSearchService} with its inverted index against the SQL
+ * {@code LIKE '%word%'} it replaces, on titles of one to four made-up words whose frequencies are skewed the way
+ * natural language is:
+ *
+ * <ul>
+ *     <li>{@code indexWord}: one word of the vocabulary, ranked, plus the query reading the page of movies</li>
+ *     <li>{@code indexTypo}: the same word with two adjacent letters swapped</li>
+ *     <li>{@code indexTwoWords}: two words, both of which have to match</li>
+ *     <li>{@code likeWord}: unranked substring match of one word</li>
+ * </ul>
+ *
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec@run-benchmarks -Djmh.args="MovieTitleSearchBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MovieTitleSearchBenchmark {
+
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ne", "ru", "sa", "to", "vi", "dor", "len", "mar",
+            "ost", "pel", "quin", "bra", "fen", "gal", "hum", "jor", "wex"};
+    private static final int VOCABULARY = 20_000;
+    private static final int QUERIES = 1024;
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 20);
+
+    @Param({"1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private MovieTitleSearchService movieTitleSearchService;
+    private MovieRepository movieRepository;
+    private String[] words;
+    private String[] typos;
+    private String[] pairs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SeededCatalog.start(rows);
+        movieRepository = context.getBean(MovieRepository.class);
+        movieTitleSearchService = context.getBean(MovieTitleSearchService.class);
+
+        Random random = new Random(42);
+        String[] vocabulary = vocabulary(random);
+        List<Object[]> titles = new ArrayList<>(rows);
+        for (long id = 1; id <= rows; id++) {
+            StringBuilder title = new StringBuilder();
+            int length = 1 + random.nextInt(4);
+            for (int i = 0; i < length; i++) {
+                title.append(i == 0 ? "" : " ").append(vocabulary[skewed(random)]);
+            }
+            titles.add(new Object[]{title.toString(), id});
+        }
+        context.getBean(JdbcTemplate.class).batchUpdate("update tbl_user set name = ? where id = ?", titles);
+        // the titles are written behind the application's back, load them again
+        movieTitleSearchService.rebuild();
+
+        words = new String[QUERIES];
+        typos = new String[QUERIES];
+        pairs = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String word = vocabulary[skewed(random)];
+            words[i] = word;
+            typos[i] = word.charAt(1) + "" + word.charAt(0) + word.substring(2);
+            pairs[i] = word + " " + vocabulary[skewed(random)];
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MovieTitleSearchPage indexWord() {
+        return movieTitleSearchService.search(words[next()], 0, FIRST_PAGE.getPageSize());
+    }
+
+    @Benchmark
+    public MovieTitleSearchPage indexTypo() {
+        return movieTitleSearchService.search(typos[next()], 0, FIRST_PAGE.getPageSize());
+    }
+
+    @Benchmark
+    public MovieTitleSearchPage indexTwoWords() {
+        return movieTitleSearchService.search(pairs[next()], 0, FIRST_PAGE.getPageSize());
+    }
+
+    @Benchmark
+    public Slice<MovieSummary> likeWord() {
+        return movieRepository.findByNameLike("%" + words[next()] + "%", FIRST_PAGE);
+    }
+
+    private static int next() {
+        return ThreadLocalRandom.current().nextInt(QUERIES);
+    }
+
+    /**
+     * Distinct words of two to four syllables.
+     */
+    private static String[] vocabulary(Random random) {
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < VOCABULARY) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int i = 0; i < syllables; i++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words.add(word.toString());
+        }
+        return words.toArray(String[]::new);
+    }
+
+    /**
+     * Index into the vocabulary, low indexes far more likely than high ones.
+     */
+    private static int skewed(Random random) {
+        double uniform = random.nextDouble();
+        return (int) (VOCABULARY * uniform * uniform * uniform);
+    }
+}
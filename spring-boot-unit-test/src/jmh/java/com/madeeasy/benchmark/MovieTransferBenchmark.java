@@ -0,0 +1,78 @@
+package com.madeeasy.benchmark;
+
+import com.madeeasy.dto.CatalogImportResult;
+import com.madeeasy.service.MovieTransferService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full export and a full import of the catalog through {@link MovieTransferService}, each as a single shot since
+ * one call is the unit a user waits for. Both imports load the file exported in the setup: {@code importCatalog}
+ * over the seeded catalog, replacing every movie, and {@code importIntoEmptyTable} into a table emptied before each
+ * iteration. The size of the exported file is printed once per fork.
+ *
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec@run-benchmarks -Djmh.args="MovieTransferBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class MovieTransferBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private MovieTransferService movieTransferService;
+    private byte[] file;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SeededCatalog.start(rows);
+        movieTransferService = context.getBean(MovieTransferService.class);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        movieTransferService.exportCatalog(out);
+        file = out.toByteArray();
+        System.out.printf("%n%d movies exported to %d bytes, %.1f bytes per movie%n",
+                rows, file.length, (double) file.length / rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long export() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(file.length);
+        return movieTransferService.exportCatalog(out);
+    }
+
+    @Benchmark
+    public CatalogImportResult importCatalog() {
+        return movieTransferService.importCatalog(new ByteArrayInputStream(file));
+    }
+
+    @Benchmark
+    public CatalogImportResult importIntoEmptyTable(EmptyTable emptyTable) {
+        return movieTransferService.importCatalog(new ByteArrayInputStream(file));
+    }
+
+    @State(Scope.Benchmark)
+    public static class EmptyTable {
+
+        @Setup(Level.Iteration)
+        public void deleteMovies(MovieTransferBenchmark benchmark) {
+            benchmark.context.getBean(JdbcTemplate.class).update("delete from tbl_user");
+        }
+    }
+}
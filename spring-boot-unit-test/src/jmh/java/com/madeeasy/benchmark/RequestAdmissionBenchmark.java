@@ -0,0 +1,63 @@
+package com.madeeasy.benchmark;
+
+import com.madeeasy.limit.AdaptiveConcurrencyLimit;
+import com.madeeasy.limit.ClientRateLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What admission control adds to every request to {@code /movies}: a token bucket lookup and acquisition for one of
+ * {@code clients} clients, and a concurrency limit acquisition and release with a latency sample.
+ *
+ * <pre>
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec@run-benchmarks -Djmh.args="RequestAdmissionBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RequestAdmissionBenchmark {
+
+    @Param({"10000"})
+    public int clients;
+
+    private String[] clientIds;
+    private ClientRateLimiter rateLimiter;
+    private AdaptiveConcurrencyLimit concurrencyLimit;
+
+    @Setup
+    public void setUp() {
+        clientIds = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            clientIds[i] = "10.0." + (i / 256) + "." + (i % 256);
+        }
+        // a rate no client reaches, so every call takes a permit
+        rateLimiter = new ClientRateLimiter(new ClientRateLimiter.Limit(1_000_000, 1_000_000), Map.of(),
+                clients * 2L, Duration.ofMinutes(1));
+        concurrencyLimit = new AdaptiveConcurrencyLimit(32, 4, 256, 0.9, Duration.ofSeconds(2),
+                Duration.ofMillis(100));
+    }
+
+    @Benchmark
+    public long rateLimit() {
+        String client = clientIds[ThreadLocalRandom.current().nextInt(clients)];
+        return rateLimiter.tryAcquire(client, "GET /movies/{id}", System.nanoTime());
+    }
+
+    @Benchmark
+    public boolean concurrencyLimit() {
+        boolean admitted = concurrencyLimit.tryAcquire();
+        if (admitted) {
+            long now = System.nanoTime();
+            concurrencyLimit.release(1_000_000, 0, now);
+        }
+        return admitted;
+    }
+}
@@ -0,0 +1,67 @@
+package com.madeeasy.benchmark;
+
+import com.madeeasy.SpringBootUnitTestApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the application against a private in-memory H2 database seeded with a synthetic catalog, so every
+ * benchmark fork measures the same data set of a known size.
+ */
+final class SeededCatalog {
+
+    private SeededCatalog() {
+    }
+
+    static ConfigurableApplicationContext start(int rows) {
+        return start(rows, WebApplicationType.NONE);
+    }
+
+    /**
+     * @param profiles additional Spring profiles, for instance to compare execution modes of the web server
+     */
+    static ConfigurableApplicationContext start(int rows, WebApplicationType webApplicationType, String... profiles) {
+        return start(rows, webApplicationType, null, profiles);
+    }
+
+    /**
+     * @param storage database file path without extension, keeping the profile's URL settings, or {@code null} for
+     *                a private in-memory database
+     */
+    static ConfigurableApplicationContext start(int rows, WebApplicationType webApplicationType, Path storage,
+                                                String... profiles) {
+        // command line arguments take precedence over application.yml; the schema comes from the Flyway migrations
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--logging.level.root=WARN"));
+        args.add(storage == null
+                ? "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1"
+                : "--movies.h2.path=" + storage.toAbsolutePath());
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringBootUnitTestApplication.class)
+                .web(webApplicationType)
+                .profiles(profiles)
+                .run(args.toArray(String[]::new));
+        seed(context.getBean(JdbcTemplate.class), rows);
+        return context;
+    }
+
+    /**
+     * Inserts movies 1..rows named "Movie &lt;id&gt;" with release dates spread over a hundred years, then moves the
+     * id sequence past them so rows created by a benchmark do not collide with the seed.
+     */
+    static void seed(JdbcTemplate jdbcTemplate, int rows) {
+        jdbcTemplate.update("""
+                insert into tbl_user (id, name, release_date)
+                select x, 'Movie ' || x, dateadd(day, mod(x, 36500), date '1925-01-01')
+                from system_range(1, ?)
+                """, rows);
+        jdbcTemplate.execute("alter sequence tbl_user_seq restart with " + (rows + 100));
+        jdbcTemplate.execute("analyze");
+    }
+}
@@ -0,0 +1,188 @@
+package com.madeeasy.benchmark;
+
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.jar.JarFile;
+
+/**
+ * Cold start of the packaged application: launches a fresh process on an empty database file and measures the time
+ * until {@code GET /movies/page} first answers 200, so Flyway, Hibernate and the web server are all included. Every
+ * build found under {@code target} is measured:
+ *
+ * <ul>
+ *     <li>{@code jvm}: the executable jar</li>
+ *     <li>{@code jvm-aot}: the same jar with {@code -Dspring.aot.enabled=true}, when it was packaged with
+ *     {@code -Paot}</li>
+ *     <li>{@code native}: the GraalVM executable built with {@code -Pnative native:compile}</li>
+ * </ul>
+ *
+ * Prints the median time to first request and the resident memory right after it, and writes them to
+ * {@code target/startup-benchmark-result.json}.
+ *
+ * <pre>
+ * mvn -Paot -DskipTests package
+ * mvn -Pbenchmark -DskipTests test-compile exec:exec@startup-benchmark -Dstartup.args="--runs=5"
+ * </pre>
+ */
+public class StartupBenchmark {
+
+    private static final Path TARGET = Path.of("target");
+    private static final String ARTIFACT = "spring-boot-unit-test";
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+        Map<String, List<String>> modes = new LinkedHashMap<>();
+        Path jar = TARGET.resolve(ARTIFACT + "-0.0.1-SNAPSHOT.jar");
+        if (Files.exists(jar)) {
+            modes.put("jvm", List.of(java, "-jar", jar.toString()));
+            if (isAotProcessed(jar)) {
+                modes.put("jvm-aot", List.of(java, "-Dspring.aot.enabled=true", "-jar", jar.toString()));
+            }
+        }
+        Path executable = TARGET.resolve(ARTIFACT);
+        if (Files.isExecutable(executable)) {
+            modes.put("native", List.of(executable.toString()));
+        }
+        if (modes.isEmpty()) {
+            throw new IllegalStateException("nothing to start, package the application first");
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (Map.Entry<String, List<String>> mode : modes.entrySet()) {
+            long[] millis = new long[runs];
+            long[] rssKilobytes = new long[runs];
+            for (int run = 0; run < runs; run++) {
+                long[] measurement = start(mode.getKey(), mode.getValue());
+                millis[run] = measurement[0];
+                rssKilobytes[run] = measurement[1];
+            }
+            Result result = new Result(mode.getKey(), runs, median(millis), median(rssKilobytes));
+            System.out.println(result);
+            results.add(result);
+        }
+
+        Path output = TARGET.resolve("startup-benchmark-result.json");
+        Files.writeString(output, results.stream().map(Result::toJson).toList().toString());
+    }
+
+    /**
+     * @return milliseconds from launching the process to the first successful request, and the resident set size in
+     * kilobytes at that moment (0 where {@code /proc} is not available)
+     */
+    private static long[] start(String mode, List<String> command) throws Exception {
+        Path storage = TARGET.resolve("startup-benchmark").resolve(mode);
+        FileSystemUtils.deleteRecursively(storage);
+        Files.createDirectories(storage);
+        Path log = storage.resolve("application.log");
+        int port = freePort();
+        List<String> commandLine = new ArrayList<>(command);
+        commandLine.addAll(List.of(
+                "--server.port=" + port,
+                "--movies.h2.path=" + storage.resolve("movies").toAbsolutePath(),
+                "--logging.level.root=WARN"));
+
+        HttpClient httpClient = HttpClient.newHttpClient();
+        HttpRequest firstRequest = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/movies/page?limit=1"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(commandLine)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(mode + " exited with " + process.exitValue() + ", see " + log);
+                }
+                try {
+                    if (httpClient.send(firstRequest, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        long millis = (System.nanoTime() - start) / 1_000_000;
+                        return new long[]{millis, residentKilobytes(process.pid())};
+                    }
+                } catch (IOException notListeningYet) {
+                    // keep polling
+                }
+                Thread.sleep(10);
+            }
+            throw new IllegalStateException(mode + " did not answer within " + TIMEOUT);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static boolean isAotProcessed(Path jar) throws IOException {
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            return jarFile.getEntry("BOOT-INF/classes/com/madeeasy/"
+                    + "SpringBootUnitTestApplication__ApplicationContextInitializer.class") != null;
+        }
+    }
+
+    private static long residentKilobytes(long pid) throws IOException {
+        Path status = Path.of("/proc", String.valueOf(pid), "status");
+        if (!Files.exists(status)) {
+            return 0;
+        }
+        return Files.readAllLines(status).stream()
+                .filter(line -> line.startsWith("VmRSS:"))
+                .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                .findFirst()
+                .orElse(0L);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "true");
+        }
+        return options;
+    }
+
+    private record Result(String mode, int runs, long firstRequestMillis, long rssKilobytes) {
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"mode\":\"%s\",\"runs\":%d,\"firstRequestMillis\":%d,\"rssKilobytes\":%d}",
+                    mode, runs, firstRequestMillis, rssKilobytes);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-8s runs=%d time-to-first-request=%dms rss=%.0fMB",
+                    mode, runs, firstRequestMillis, rssKilobytes / 1024d);
+        }
+    }
+}
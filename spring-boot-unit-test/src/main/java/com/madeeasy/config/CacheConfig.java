@@ -0,0 +1,43 @@
+package com.madeeasy.config;
+
+import com.madeeasy.entity.MovieEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String MOVIES_CACHE = "movies";
+
+    /**
+     * Caffeine bounded by {@code movies.cache.spec}, wrapped so that puts and evictions issued inside a transaction
+     * are only applied once it commits. A rolled back write therefore never reaches the cache, and readers never
+     * repopulate an entry from a row that is still about to change. Entries are {@link VersionedCaffeineCache}s, so
+     * a put that arrives late cannot replace a newer movie, nor bring back one evicted while it was being read.
+     */
+    @Bean
+    public CacheManager cacheManager(@Value("${movies.cache.spec}") String cacheSpec) {
+        CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager(MOVIES_CACHE) {
+            @Override
+            protected Cache adaptCaffeineCache(String name,
+                                               com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+                return new VersionedCaffeineCache(name, cache, CacheConfig::versionOf);
+            }
+        };
+        caffeineCacheManager.setCacheSpecification(cacheSpec);
+        caffeineCacheManager.setAllowNullValues(false);
+        return new TransactionAwareCacheManagerProxy(caffeineCacheManager);
+    }
+
+    private static long versionOf(Object movie) {
+        Long version = ((MovieEntity) movie).getVersion();
+        return version == null ? -1 : version;
+    }
+}
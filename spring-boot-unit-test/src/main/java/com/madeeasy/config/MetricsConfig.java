@@ -0,0 +1,90 @@
+package com.madeeasy.config;
+
+import com.madeeasy.metrics.ConnectionWaitDataSource;
+import com.madeeasy.metrics.JdbcMetricsListener;
+import com.madeeasy.metrics.RequestQueryCountFilter;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.proxy.ProxyJdbcObject;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import javax.sql.DataSource;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Hot-path instrumentation on top of what Actuator already records: {@code http.server.requests} per endpoint and
+ * {@code spring.data.repository.invocations} per repository method. Adds {@code @Timed} support for the service
+ * layer and a proxy around the data source that times each JDBC statement, counts statements per request and logs
+ * slow ones. The time each request waits for pooled connections is recorded alongside, for the concurrency limit.
+ */
+@Configuration
+@ImportRuntimeHints(MetricsConfig.JdbcProxyHints.class)
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public JdbcMetricsListener jdbcMetricsListener(MeterRegistry meterRegistry,
+                                                   @Value("${movies.jdbc.slow-query-threshold:200ms}") Duration slowQueryThreshold) {
+        return new JdbcMetricsListener(meterRegistry, slowQueryThreshold);
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public RequestQueryCountFilter requestQueryCountFilter(MeterRegistry meterRegistry,
+                                                           @Value("${movies.jdbc.n-plus-one-threshold:10}") int nPlusOneThreshold) {
+        return new RequestQueryCountFilter(meterRegistry, nPlusOneThreshold);
+    }
+
+    /**
+     * Static so that it is registered before the data source is created; the listener is only looked up then.
+     */
+    @Bean
+    public static BeanPostProcessor jdbcMetricsDataSourcePostProcessor(ObjectProvider<JdbcMetricsListener> listener) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    return ProxyDataSourceBuilder.create(beanName, new ConnectionWaitDataSource(dataSource))
+                            .listener(listener.getObject())
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * The connections, statements and result sets handed out by the proxy data source are JDK proxies, which a native
+     * image can only create for interface combinations known at build time.
+     */
+    static class JdbcProxyHints implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            for (Class<?> jdbcType : List.of(DataSource.class, Connection.class, Statement.class,
+                    PreparedStatement.class, CallableStatement.class, ResultSet.class)) {
+                hints.proxies().registerJdkProxy(ProxyJdbcObject.class, jdbcType);
+            }
+        }
+    }
+}
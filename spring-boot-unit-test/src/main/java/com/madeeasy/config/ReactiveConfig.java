@@ -0,0 +1,96 @@
+package com.madeeasy.config;
+
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.web.ReactivePageableHandlerMethodArgumentResolver;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.result.method.annotation.ArgumentResolverConfigurer;
+
+/**
+ * Reactive stack of the {@code reactive} profile: WebFlux on Netty's event loops, and R2DBC on the very database
+ * the JDBC data source points at, so both stacks can be measured against the same data.
+ *
+ * <p>Boot's own R2DBC auto-configuration is excluded: its transaction manager would displace the JPA one that the
+ * rest of the application relies on. The reactive transaction manager here only backs a {@link TransactionalOperator}
+ * and is deliberately not a bean.
+ *
+ * <p>Note that H2 is an embedded database: r2dbc-h2 runs every statement on the subscribing thread, so database
+ * work still occupies an event loop while it runs. What the reactive stack saves is the thread per open request.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfig implements WebFluxConfigurer, DisposableBean {
+
+    private static final String JDBC_H2_PREFIX = "jdbc:h2:";
+
+    /**
+     * Not a bean: a {@link ConnectionFactory} bean would make Boot back off from the JDBC data source.
+     */
+    private final ConnectionPool connectionPool;
+
+    public ReactiveConfig(DataSourceProperties dataSourceProperties,
+                          @Value("${movies.r2dbc.pool-size:16}") int poolSize) {
+        String jdbcUrl = dataSourceProperties.determineUrl();
+        if (jdbcUrl == null || !jdbcUrl.startsWith(JDBC_H2_PREFIX)) {
+            throw new IllegalStateException("reactive profile needs an H2 data source, got " + jdbcUrl);
+        }
+        H2ConnectionConfiguration.Builder h2 = H2ConnectionConfiguration.builder()
+                .url(jdbcUrl.substring(JDBC_H2_PREFIX.length()));
+        String username = dataSourceProperties.determineUsername();
+        if (username != null) {
+            h2.username(username);
+        }
+        String password = dataSourceProperties.determinePassword();
+        if (password != null) {
+            h2.password(password);
+        }
+        connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(new H2ConnectionFactory(h2.build()))
+                .initialSize(poolSize)
+                .maxSize(poolSize)
+                .build());
+    }
+
+    @Override
+    public void destroy() {
+        connectionPool.dispose();
+    }
+
+    @Bean
+    public DatabaseClient databaseClient() {
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator() {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionPool));
+    }
+
+    /**
+     * Spring Data's web support is only auto-configured for Spring MVC; {@code /movies/search} takes a Pageable.
+     */
+    @Override
+    public void configureArgumentResolvers(ArgumentResolverConfigurer configurer) {
+        configurer.addCustomResolver(new ReactivePageableHandlerMethodArgumentResolver());
+    }
+
+    /**
+     * Tomcat is on the classpath for the servlet stack and would otherwise be preferred.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
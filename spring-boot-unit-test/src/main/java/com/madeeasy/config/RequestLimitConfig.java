@@ -0,0 +1,86 @@
+package com.madeeasy.config;
+
+import com.madeeasy.limit.AdaptiveConcurrencyLimit;
+import com.madeeasy.limit.ClientRateLimiter;
+import com.madeeasy.limit.RequestAdmissionInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Admission control in front of the {@code /movies} routes, all in process: per-client token buckets
+ * ({@code movies.rate-limit.*}) and an adaptive limit on requests in flight ({@code movies.concurrency-limit.*}).
+ * Either one can be turned off on its own.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class RequestLimitConfig {
+
+    @Bean
+    public RequestAdmissionInterceptor requestAdmissionInterceptor(
+            Environment environment,
+            MeterRegistry meterRegistry,
+            @Value("${movies.rate-limit.enabled:true}") boolean rateLimitEnabled,
+            @Value("${movies.rate-limit.client-header:}") String clientHeader,
+            @Value("${movies.rate-limit.permits-per-second:100}") double permitsPerSecond,
+            @Value("${movies.rate-limit.burst-seconds:2}") double burstSeconds,
+            @Value("${movies.rate-limit.max-buckets:100000}") long maxBuckets,
+            @Value("${movies.rate-limit.idle-timeout:1m}") Duration idleTimeout,
+            @Value("${movies.concurrency-limit.enabled:true}") boolean concurrencyLimitEnabled,
+            @Value("${movies.concurrency-limit.initial:32}") int initialLimit,
+            @Value("${movies.concurrency-limit.min:4}") int minLimit,
+            @Value("${movies.concurrency-limit.max:256}") int maxLimit,
+            @Value("${movies.concurrency-limit.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${movies.concurrency-limit.latency-threshold:2s}") Duration latencyThreshold,
+            @Value("${movies.concurrency-limit.pool-wait-threshold:100ms}") Duration poolWaitThreshold,
+            @Value("${movies.concurrency-limit.unlimited-routes:}") String[] unlimitedRoutes) {
+        ClientRateLimiter rateLimiter = null;
+        if (rateLimitEnabled) {
+            // route keys such as "GET /movies" are written "[GET /movies]" in the YAML to keep the space and slashes
+            Map<String, Double> routeRates = Binder.get(environment)
+                    .bind("movies.rate-limit.routes", Bindable.mapOf(String.class, Double.class))
+                    .orElse(Map.of());
+            Map<String, ClientRateLimiter.Limit> routeLimits = new HashMap<>();
+            routeRates.forEach((route, rate) -> routeLimits.put(route, limit(rate, burstSeconds)));
+            rateLimiter = new ClientRateLimiter(limit(permitsPerSecond, burstSeconds), routeLimits, maxBuckets,
+                    idleTimeout);
+        }
+        AdaptiveConcurrencyLimit concurrencyLimit = concurrencyLimitEnabled
+                ? new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, backoffRatio, latencyThreshold,
+                        poolWaitThreshold)
+                : null;
+        return new RequestAdmissionInterceptor(rateLimiter, concurrencyLimit,
+                StringUtils.hasText(clientHeader) ? clientHeader : null, Set.of(unlimitedRoutes), meterRegistry);
+    }
+
+    @Bean
+    public WebMvcConfigurer requestAdmissionConfigurer(RequestAdmissionInterceptor requestAdmissionInterceptor) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(requestAdmissionInterceptor).addPathPatterns("/movies", "/movies/**");
+            }
+        };
+    }
+
+    /**
+     * A bucket holding {@code burstSeconds} worth of permits, at least one.
+     */
+    private static ClientRateLimiter.Limit limit(double permitsPerSecond, double burstSeconds) {
+        return new ClientRateLimiter.Limit(permitsPerSecond,
+                (int) Math.max(1, Math.ceil(permitsPerSecond * burstSeconds)));
+    }
+}
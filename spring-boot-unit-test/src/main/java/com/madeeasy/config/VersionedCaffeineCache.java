@@ -0,0 +1,91 @@
+package com.madeeasy.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * A Caffeine cache that never lets an older copy of a value replace a newer one. Puts keep whichever of the cached
+ * and the offered value has the higher version, and every eviction bumps an invalidation token for its key. A loader
+ * takes the {@link #token(Object) token} before it reads and offers its row with {@link #put(Object, Object, long)},
+ * which drops the row if the key was evicted in between: the read may have seen the row from before the commit that
+ * evicted it.
+ */
+public class VersionedCaffeineCache extends CaffeineCache {
+
+    private static final int STRIPES = 1024;
+
+    private final ToLongFunction<Object> versionOf;
+
+    // a key shares its stripe with others, which at worst drops a put that would have been fine
+    private final AtomicLongArray evictions = new AtomicLongArray(STRIPES);
+
+    private final AtomicLong clears = new AtomicLong();
+
+    public VersionedCaffeineCache(String name, Cache<Object, Object> cache, ToLongFunction<Object> versionOf) {
+        super(name, cache, false);
+        this.versionOf = versionOf;
+    }
+
+    /**
+     * Changes whenever the key is evicted or the cache cleared. Both counters only grow, so neither can undo the
+     * other in the sum.
+     */
+    public long token(Object key) {
+        return clears.get() + evictions.get(stripe(key));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        getNativeCache().asMap().compute(key, (k, cached) -> newer(cached, value));
+    }
+
+    /**
+     * Caches the value unless the key was evicted since {@code token} was taken. The check runs inside the entry's
+     * compute, which an eviction of the same key cannot interleave with.
+     */
+    public void put(Object key, Object value, long token) {
+        getNativeCache().asMap().compute(key, (k, cached) -> token(k) == token ? newer(cached, value) : cached);
+    }
+
+    @Override
+    public void evict(Object key) {
+        evictIfPresent(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean[] present = new boolean[1];
+        getNativeCache().asMap().compute(key, (k, cached) -> {
+            evictions.incrementAndGet(stripe(k));
+            present[0] = cached != null;
+            return null;
+        });
+        return present[0];
+    }
+
+    @Override
+    public void clear() {
+        // bumped first, so a put that still gets in is removed by the invalidation
+        clears.incrementAndGet();
+        super.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        clears.incrementAndGet();
+        return super.invalidate();
+    }
+
+    private Object newer(Object cached, Object value) {
+        return cached != null && versionOf.applyAsLong(cached) > versionOf.applyAsLong(value) ? cached : value;
+    }
+
+    private static int stripe(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,37 @@
+package com.madeeasy.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in (profile {@code virtual-threads}) execution of every request on its own virtual thread instead of Tomcat's
+ * fixed worker pool. Blocking JDBC calls then park a cheap virtual thread rather than pinning a platform thread, so
+ * the number of in-flight requests is no longer capped by {@code server.tomcat.threads.max}.
+ *
+ * <p>The connection pool becomes the real limit: when far more requests than connections are in flight, the surplus
+ * queues inside Hikari and fails after {@code connection-timeout}, which is why the profile keeps that timeout short.
+ */
+@Configuration
+@ConditionalOnProperty(name = "movies.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Also used by Spring MVC for asynchronous responses such as {@code /movies/stream}.
+     */
+    @Bean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
@@ -1,30 +1,179 @@
 package com.madeeasy.controller;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.madeeasy.config.JacksonFormatsConfig;
+import com.madeeasy.dto.BatchInsertResult;
+import com.madeeasy.dto.BulkChangeResult;
+import com.madeeasy.dto.CatalogFingerprint;
+import com.madeeasy.dto.CatalogImportResult;
+import com.madeeasy.dto.IngestStatus;
+import com.madeeasy.dto.MovieBulkRequest;
+import com.madeeasy.dto.MovieChangePage;
+import com.madeeasy.dto.MoviePage;
+import com.madeeasy.dto.MoviePatch;
+import com.madeeasy.dto.MovieSearchCriteria;
+import com.madeeasy.dto.MovieSearchPage;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.dto.MovieTitleSearchPage;
+import com.madeeasy.dto.ReleaseHistogram;
+import com.madeeasy.dto.ReleaseStats;
 import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.repository.MovieColumnFile;
+import com.madeeasy.service.MovieBatchService;
+import com.madeeasy.service.MovieBulkService;
+import com.madeeasy.service.MovieChangeLog;
+import com.madeeasy.service.MovieIngestService;
+import com.madeeasy.service.MovieReplica;
 import com.madeeasy.service.MovieService;
+import com.madeeasy.service.MovieStatsService;
+import com.madeeasy.service.MovieTitleSearchService;
+import com.madeeasy.service.MovieTransferService;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping(value = "/movies")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class MovieController {
 
     @Autowired
     private MovieService movieService;
 
+    @Autowired
+    private MovieBatchService movieBatchService;
+
+    @Autowired
+    private MovieIngestService movieIngestService;
+
+    @Autowired
+    private MovieBulkService movieBulkService;
+
+    @Autowired
+    private MovieTitleSearchService movieTitleSearchService;
+
+    @Autowired
+    private MovieStatsService movieStatsService;
+
+    @Autowired
+    private MovieTransferService movieTransferService;
+
+    @Autowired
+    private MovieChangeLog movieChangeLog;
+
+    /**
+     * Only present with {@code movies.replica.enabled}.
+     */
+    @Autowired(required = false)
+    private MovieReplica movieReplica;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileConverter;
+
+    @Autowired
+    private ContentNegotiationManager contentNegotiationManager;
+
+    private static final String CBOR_VARIANT = "cbor";
+    private static final String SMILE_VARIANT = "smile";
+    private static final List<String> ETAG_VARIANTS = List.of(CBOR_VARIANT, SMILE_VARIANT);
+
+    private List<CatalogFormat> catalogFormats;
+
+    private ObjectWriter summaryWriter;
+
+    /**
+     * One representation of the catalog. JSON comes first, so it answers a wildcard or missing Accept.
+     */
+    private record CatalogFormat(MediaType mediaType, String etagVariant, ObjectWriter writer) {
+
+        /**
+         * Weak, because Tomcat leaves responses with a strong ETag uncompressed: gzip changes the bytes the tag
+         * stands for. The catalog tag only ever meets {@code If-None-Match}, which compares weakly anyway.
+         */
+        String etag(CatalogFingerprint fingerprint) {
+            return "W/" + (etagVariant == null ? fingerprint.etag() : fingerprint.etag(etagVariant));
+        }
+    }
+
+    /**
+     * Resolves the serializers of the list responses once instead of on every request.
+     */
+    @PostConstruct
+    void precomputeWriters() {
+        catalogFormats = List.of(
+                new CatalogFormat(MediaType.APPLICATION_JSON, null, rowWriter(objectMapper)),
+                new CatalogFormat(MediaType.APPLICATION_CBOR, CBOR_VARIANT,
+                        rowWriter(cborConverter.getObjectMapper())),
+                new CatalogFormat(JacksonFormatsConfig.APPLICATION_SMILE, SMILE_VARIANT,
+                        rowWriter(smileConverter.getObjectMapper())));
+        summaryWriter = objectMapper.writerFor(MovieSummary.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    private static ObjectWriter rowWriter(ObjectMapper mapper) {
+        // rows go into one generator, which leaves flushing to the servlet buffer
+        return mapper.writerFor(MovieSummary.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * With {@code Prefer: respond-async} the movie is only queued for a background writer: the answer is a 202 whose
+     * Location is the status URL of the creation, or a 503 when the queue is full.
+     */
     @PostMapping("/create")
     public ResponseEntity<?> createMovie(@RequestBody MovieEntity movieEntity,
+                                         @RequestHeader(value = "Prefer", required = false) String prefer,
                                          HttpServletRequest request
     ) {
+        if (prefer != null && prefer.contains("respond-async")) {
+            IngestStatus status = movieIngestService.enqueue(movieEntity);
+            URI statusUri = ServletUriComponentsBuilder
+                    .fromContextPath(request)
+                    .path("/movies/ingest/{ticket}")
+                    .buildAndExpand(status.getTicket())
+                    .toUri();
+            return ResponseEntity
+                    .status(HttpStatus.ACCEPTED)
+                    .location(statusUri)
+                    .header("Preference-Applied", "respond-async")
+                    .body(status);
+        }
         MovieEntity savedMovie = movieService.save(movieEntity);
         HttpHeaders headers = new HttpHeaders();
         String replaceUri = ServletUriComponentsBuilder
@@ -40,12 +189,41 @@ public class MovieController {
                 .build();
     }
 
-    @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") Long id) {
-        MovieEntity findById = movieService.findById(id);
-        return ResponseEntity
-                .status(HttpStatus.OK)
-                .build();
+    /**
+     * Accepts either a JSON array or newline-delimited JSON. The body is read one movie at a time, so a catalog dump
+     * is never materialized as a whole. A body that turns unreadable halfway is answered with a 400 whose result still
+     * lists the movies created before that point.
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BatchInsertResult> createMovies(HttpServletRequest request) throws IOException {
+        try (MappingIterator<MovieEntity> movies = objectMapper.readerFor(MovieEntity.class)
+                .readValues(request.getInputStream())) {
+            BatchInsertResult result = movieBatchService.saveAll(movies);
+            return ResponseEntity.status(result.getError() == null ? HttpStatus.OK : HttpStatus.BAD_REQUEST)
+                    .body(result);
+        }
+    }
+
+    @GetMapping("/ingest/{ticket}")
+    public ResponseEntity<IngestStatus> getIngestStatus(@PathVariable("ticket") String ticket) {
+        return ResponseEntity.ok(movieIngestService.getStatus(ticket));
+    }
+
+    /**
+     * Strong ETag from the version and the format plus Last-Modified; a matching {@code If-None-Match} or
+     * {@code If-Modified-Since} turns into a 304 before the movie is serialized. The lookup itself is served from the
+     * cache.
+     */
+    @GetMapping(value = "/{id}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            JacksonFormatsConfig.APPLICATION_SMILE_VALUE})
+    public ResponseEntity<MovieEntity> findById(@PathVariable("id") Long id, NativeWebRequest request)
+            throws HttpMediaTypeNotAcceptableException {
+        // a replica miss falls through to the database, so a movie committed a moment ago is never answered with 404
+        MovieEntity findById = movieReplica != null ? movieReplica.findById(id) : null;
+        if (findById == null) {
+            findById = movieService.findById(id);
+        }
+        return validated(ResponseEntity.ok(), findById, negotiateFormat(request)).body(findById);
     }
 
     @DeleteMapping("/{id}")
@@ -54,19 +232,274 @@ public class MovieController {
         return ResponseEntity.noContent().build();
     }
 
-    @GetMapping
-    public ResponseEntity<List<MovieEntity>> getAllMovies() {
-        List<MovieEntity> movies = movieService.getAllMovies();
-        return ResponseEntity.ok(movies);
+    /**
+     * The catalog ETag comes from one aggregate query, so a client whose copy is current gets its 304 without a single
+     * row being loaded. Otherwise the read-only projections are written to the response one by one as they come off
+     * the database cursor. With the replica ready, both come from its mapped files instead.
+     *
+     * <p>The body is JSON, CBOR or Smile depending on {@code Accept}, each with an ETag of its own, and gzipped for
+     * clients that accept it.
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            JacksonFormatsConfig.APPLICATION_SMILE_VALUE})
+    public ResponseEntity<StreamingResponseBody> getAllMovies(NativeWebRequest request)
+            throws HttpMediaTypeNotAcceptableException {
+        CatalogFormat format = negotiateFormat(request);
+        boolean fromReplica = movieReplica != null && movieReplica.isReady();
+        CatalogFingerprint fingerprint = fromReplica
+                ? movieReplica.getCatalogFingerprint()
+                : movieService.getCatalogFingerprint();
+        String etag = format.etag(fingerprint);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(etag)
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(format.mediaType());
+        if (fromReplica) {
+            JsonFactory factory = format.writer().getFactory();
+            return builder.body(outputStream -> movieReplica.writeCatalog(outputStream, factory));
+        }
+        return builder.body(outputStream -> {
+            try (JsonGenerator generator = format.writer().getFactory().createGenerator(outputStream)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                generator.writeStartArray();
+                movieService.streamAllMovies(movie -> {
+                    try {
+                        format.writer().writeValue(generator, movie);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        });
+    }
+
+    private CatalogFormat negotiateFormat(NativeWebRequest request) throws HttpMediaTypeNotAcceptableException {
+        // sorted most specific first; the produces condition already made sure one of them matches
+        for (MediaType accepted : contentNegotiationManager.resolveMediaTypes(request)) {
+            for (CatalogFormat format : catalogFormats) {
+                if (accepted.isCompatibleWith(format.mediaType())) {
+                    return format;
+                }
+            }
+        }
+        return catalogFormats.get(0);
+    }
+
+    /**
+     * Deletes every movie selected by the id list or release date range of the body, chunk by chunk.
+     */
+    @DeleteMapping
+    public ResponseEntity<BulkChangeResult> deleteMovies(@RequestBody MovieBulkRequest request) {
+        return ResponseEntity.ok(movieBulkService.deleteMovies(request));
+    }
+
+    /**
+     * Applies {@code set} to every movie selected by the id list or release date range of the body, chunk by chunk.
+     */
+    @PatchMapping
+    public ResponseEntity<BulkChangeResult> patchMovies(@RequestBody MovieBulkRequest request) {
+        return ResponseEntity.ok(movieBulkService.patchMovies(request));
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<MoviePage> getMoviesPage(@RequestParam(value = "cursor", required = false) String cursor,
+                                                   @RequestParam(value = "limit", defaultValue = "" + MovieService.DEFAULT_PAGE_SIZE) int limit) {
+        return ResponseEntity.ok(movieService.getMoviesPage(cursor, limit));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<MovieSearchPage> searchMovies(@RequestParam(value = "name", required = false) String name,
+                                                        @RequestParam(value = "namePrefix", required = false) String namePrefix,
+                                                        @RequestParam(value = "releasedFrom", required = false)
+                                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedFrom,
+                                                        @RequestParam(value = "releasedTo", required = false)
+                                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedTo,
+                                                        @PageableDefault(size = 20, sort = "id") Pageable pageable) {
+        MovieSearchCriteria criteria = MovieSearchCriteria.builder()
+                .name(name)
+                .namePrefix(namePrefix)
+                .releasedFrom(releasedFrom)
+                .releasedTo(releasedTo)
+                .build();
+        return ResponseEntity.ok(movieService.searchMovies(criteria, pageable));
+    }
+
+    /**
+     * Ranked title search: every word of {@code q} has to match a word of the title, as a prefix or with a typo,
+     * e.g. {@code /movies/search/titles?q=godfater pa}.
+     */
+    @GetMapping("/search/titles")
+    public ResponseEntity<MovieTitleSearchPage> searchTitles(@RequestParam("q") String query,
+                                                             @RequestParam(value = "page", defaultValue = "0") int page,
+                                                             @RequestParam(value = "size", defaultValue = "" + MovieTitleSearchService.DEFAULT_PAGE_SIZE) int size) {
+        return ResponseEntity.ok(movieTitleSearchService.search(query, page, size));
+    }
+
+    @GetMapping("/stats/years")
+    public ResponseEntity<ReleaseStats> getReleaseYears() {
+        return ResponseEntity.ok(movieStatsService.countByYear());
+    }
+
+    /**
+     * Movies per release month, of all years or only of {@code year}.
+     */
+    @GetMapping("/stats/months")
+    public ResponseEntity<ReleaseStats> getReleaseMonths(@RequestParam(value = "year", required = false) Integer year) {
+        return ResponseEntity.ok(movieStatsService.countByMonth(year));
+    }
+
+    /**
+     * Release dates from {@code from} (inclusive) to {@code to} (exclusive) in equal buckets, e.g.
+     * {@code /movies/stats/histogram?from=1950-01-01&to=2020-01-01&buckets=7} for roughly one bucket per decade.
+     */
+    @GetMapping("/stats/histogram")
+    public ResponseEntity<ReleaseHistogram> getReleaseHistogram(@RequestParam(value = "from", required = false)
+                                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                @RequestParam(value = "to", required = false)
+                                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                @RequestParam(value = "buckets", defaultValue = "" + MovieStatsService.DEFAULT_BUCKETS) int buckets) {
+        return ResponseEntity.ok(movieStatsService.histogram(from, to, buckets));
+    }
+
+    /**
+     * Committed changes after sequence number {@code after}, oldest first, e.g. {@code /movies/changes?after=0} for
+     * all of them. With {@code wait} (seconds), a consumer that is up to date is answered as soon as the next change
+     * commits, or with no changes once the wait is over; either way it continues from {@code lastSequence}.
+     */
+    @GetMapping("/changes")
+    public CompletableFuture<MovieChangePage> getChanges(@RequestParam(value = "after", defaultValue = "0") long after,
+                                                         @RequestParam(value = "limit", defaultValue = "" + MovieChangeLog.DEFAULT_LIMIT) int limit,
+                                                         @RequestParam(value = "wait", defaultValue = "0") int waitSeconds) {
+        return movieChangeLog.changesAfter(after, limit, Duration.ofSeconds(waitSeconds));
+    }
+
+    /**
+     * The whole catalog as a {@link MovieColumnFile}, for {@code POST /movies/import} in another environment.
+     */
+    @GetMapping(value = "/export", produces = MovieColumnFile.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> exportMovies() {
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("movies.mcol")
+                        .build()
+                        .toString())
+                .contentType(MediaType.parseMediaType(MovieColumnFile.MEDIA_TYPE))
+                .body(movieTransferService::exportCatalog);
+    }
+
+    /**
+     * Creates or replaces the movies of a file written by {@code GET /movies/export}, keeping their ids.
+     */
+    @PostMapping(value = "/import", consumes = MovieColumnFile.MEDIA_TYPE)
+    public ResponseEntity<CatalogImportResult> importMovies(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(movieTransferService.importCatalog(request.getInputStream()));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllMovies() {
+        StreamingResponseBody body = outputStream -> {
+            // one row per line; leave flushing to the servlet buffer instead of flushing after every row
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            generator.setRootValueSeparator(null);
+            movieService.streamAllMovies(movie -> {
+                try {
+                    summaryWriter.writeValue(generator, movie);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * An {@code If-Match} ETag takes precedence over a version in the body; a mismatch answers 412.
+     */
+    @PutMapping(value = "/{id}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            JacksonFormatsConfig.APPLICATION_SMILE_VALUE})
+    public ResponseEntity<MovieEntity> updateMovie(@PathVariable Long id,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                   @RequestBody MovieEntity updatedMovie,
+                                                   NativeWebRequest request) throws HttpMediaTypeNotAcceptableException {
+        Long expectedVersion = expectedVersion(ifMatch);
+        if (expectedVersion != null) {
+            updatedMovie.setVersion(expectedVersion);
+        }
+        MovieEntity movie = movieService.updateMovie(id, updatedMovie);
+        return validated(ResponseEntity.ok(), movie, negotiateFormat(request)).body(movie);
+    }
+
+    @PatchMapping(value = "/{id}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            JacksonFormatsConfig.APPLICATION_SMILE_VALUE})
+    public ResponseEntity<MovieEntity> partialUpdateMovie(@PathVariable Long id,
+                                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                          @RequestBody MoviePatch patch,
+                                                          NativeWebRequest request)
+            throws HttpMediaTypeNotAcceptableException {
+        Long expectedVersion = expectedVersion(ifMatch);
+        if (expectedVersion != null) {
+            patch.version(expectedVersion);
+        }
+        MovieEntity movie = movieService.partialUpdateMovie(id, patch);
+        return validated(ResponseEntity.ok(), movie, negotiateFormat(request)).body(movie);
+    }
+
+    static ResponseEntity.BodyBuilder validated(ResponseEntity.BodyBuilder builder, MovieEntity movie) {
+        return validated(builder, movie, null);
+    }
+
+    /**
+     * The body of a movie is negotiated like the catalog, so caches must keep one copy per {@code Accept}, and each
+     * format gets a strong ETag of its own: the bytes of a CBOR copy are not those of the JSON one.
+     */
+    private static ResponseEntity.BodyBuilder validated(ResponseEntity.BodyBuilder builder, MovieEntity movie,
+                                                        CatalogFormat format) {
+        builder.varyBy(HttpHeaders.ACCEPT);
+        if (movie.getVersion() != null) {
+            builder.eTag(etag(movie.getVersion(), format == null ? null : format.etagVariant()));
+        }
+        if (movie.getLastModified() != null) {
+            builder.lastModified(movie.getLastModified());
+        }
+        return builder;
     }
 
-    @PutMapping("/{id}")
-    public MovieEntity updateMovie(@PathVariable Long id, @RequestBody MovieEntity updatedMovie) {
-        return movieService.updateMovie(id, updatedMovie);
+    static String etag(long version, String variant) {
+        return "\"" + version + (variant == null ? "" : "-" + variant) + "\"";
     }
 
-    @PatchMapping("/{id}")
-    public MovieEntity partialUpdateMovie(@PathVariable Long id, @RequestBody Map<String, Object> updates) {
-        return movieService.partialUpdateMovie(id, updates);
+    /**
+     * Maps an {@code If-Match} header to the version the update must find: {@code null} for no header or {@code *},
+     * and a version no row can have for weak or foreign ETags, which never match strongly. The ETag of any format
+     * names its version, so a client may send back whichever it holds.
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            String version = tag.substring(1, tag.length() - 1);
+            for (String variant : ETAG_VARIANTS) {
+                if (version.endsWith("-" + variant)) {
+                    version = version.substring(0, version.length() - variant.length() - 1);
+                    break;
+                }
+            }
+            try {
+                return Long.parseLong(version);
+            } catch (NumberFormatException ignored) {
+                // not one of our ETags
+            }
+        }
+        return -1L;
     }
 }
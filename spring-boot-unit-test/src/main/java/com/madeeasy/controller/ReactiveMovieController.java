@@ -0,0 +1,169 @@
+package com.madeeasy.controller;
+
+import com.madeeasy.dto.BatchInsertResult;
+import com.madeeasy.dto.CatalogFingerprint;
+import com.madeeasy.dto.MoviePage;
+import com.madeeasy.dto.MoviePatch;
+import com.madeeasy.dto.MovieSearchCriteria;
+import com.madeeasy.dto.MovieSearchPage;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.service.MovieService;
+import com.madeeasy.service.ReactiveMovieService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.reactive.accept.RequestedContentTypeResolver;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The routes of {@link MovieController} on WebFlux, active with the {@code reactive} profile. Responses, ETags and
+ * errors are the same; write-behind creation ({@code Prefer: respond-async}) is not offered here, since a reactive
+ * insert does not hold a thread while it waits for the commit anyway.
+ */
+@RestController
+@RequestMapping(value = "/movies")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveMovieController {
+
+    private static final String NDJSON_VARIANT = "ndjson";
+    // JSON first, so it answers a wildcard or missing Accept
+    private static final List<MediaType> CATALOG_TYPES =
+            List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON);
+
+    @Autowired
+    private ReactiveMovieService movieService;
+
+    @Autowired
+    private RequestedContentTypeResolver contentTypeResolver;
+
+    @PostMapping("/create")
+    public Mono<ResponseEntity<Void>> createMovie(@RequestBody MovieEntity movieEntity, ServerWebExchange exchange) {
+        return movieService.save(movieEntity)
+                .map(savedMovie -> ResponseEntity
+                        .status(HttpStatus.CREATED)
+                        .location(UriComponentsBuilder.fromUri(exchange.getRequest().getURI())
+                                .replacePath(exchange.getRequest().getPath().value().replace("/create", "/" + savedMovie.getId()))
+                                .build()
+                                .toUri())
+                        .build());
+    }
+
+    /**
+     * Accepts either a JSON array or newline-delimited JSON, decoded one movie at a time.
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<BatchInsertResult> createMovies(@RequestBody Flux<MovieEntity> movies) {
+        return movieService.saveAll(movies);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<MovieEntity>> findById(@PathVariable("id") Long id) {
+        return movieService.findById(id)
+                .map(movie -> MovieController.validated(ResponseEntity.ok(), movie).body(movie));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteMovie(@PathVariable Long id) {
+        return movieService.deleteMovie(id)
+                .thenReturn(ResponseEntity.noContent().build());
+    }
+
+    /**
+     * The body is only subscribed to, and the catalog only read, when the ETag does not match.
+     *
+     * <p>A JSON array, or one movie per line for clients that ask for NDJSON, each with an ETag of its own. The tags
+     * are weak like those of {@link MovieController#getAllMovies}, since the body may be gzipped on the way out.
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<MovieEntity>>> getAllMovies(ServerWebExchange exchange) {
+        MediaType mediaType = negotiateCatalogType(exchange);
+        String etagVariant = MediaType.APPLICATION_NDJSON.equals(mediaType) ? NDJSON_VARIANT : null;
+        return movieService.getCatalogFingerprint()
+                .map(fingerprint -> ResponseEntity.ok()
+                        .eTag(catalogEtag(fingerprint, etagVariant))
+                        .varyBy(HttpHeaders.ACCEPT)
+                        .contentType(mediaType)
+                        .body(movieService.getAllMovies()));
+    }
+
+    private MediaType negotiateCatalogType(ServerWebExchange exchange) {
+        // sorted most specific first; the produces condition already made sure one of them matches
+        for (MediaType accepted : contentTypeResolver.resolveMediaTypes(exchange)) {
+            for (MediaType catalogType : CATALOG_TYPES) {
+                if (accepted.isCompatibleWith(catalogType)) {
+                    return catalogType;
+                }
+            }
+        }
+        return CATALOG_TYPES.get(0);
+    }
+
+    private static String catalogEtag(CatalogFingerprint fingerprint, String variant) {
+        return "W/" + (variant == null ? fingerprint.etag() : fingerprint.etag(variant));
+    }
+
+    @GetMapping("/page")
+    public Mono<MoviePage> getMoviesPage(@RequestParam(value = "cursor", required = false) String cursor,
+                                         @RequestParam(value = "limit", defaultValue = "" + MovieService.DEFAULT_PAGE_SIZE) int limit) {
+        return movieService.getMoviesPage(cursor, limit);
+    }
+
+    @GetMapping("/search")
+    public Mono<MovieSearchPage> searchMovies(@RequestParam(value = "name", required = false) String name,
+                                              @RequestParam(value = "namePrefix", required = false) String namePrefix,
+                                              @RequestParam(value = "releasedFrom", required = false)
+                                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedFrom,
+                                              @RequestParam(value = "releasedTo", required = false)
+                                              @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedTo,
+                                              @PageableDefault(size = 20, sort = "id") Pageable pageable) {
+        MovieSearchCriteria criteria = MovieSearchCriteria.builder()
+                .name(name)
+                .namePrefix(namePrefix)
+                .releasedFrom(releasedFrom)
+                .releasedTo(releasedTo)
+                .build();
+        return movieService.searchMovies(criteria, pageable);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieEntity> streamAllMovies() {
+        return movieService.getAllMovies();
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<MovieEntity>> updateMovie(@PathVariable Long id,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                         @RequestBody MovieEntity updatedMovie) {
+        Long expectedVersion = MovieController.expectedVersion(ifMatch);
+        if (expectedVersion != null) {
+            updatedMovie.setVersion(expectedVersion);
+        }
+        return movieService.updateMovie(id, updatedMovie)
+                .map(movie -> MovieController.validated(ResponseEntity.ok(), movie).body(movie));
+    }
+
+    @PatchMapping("/{id}")
+    public Mono<ResponseEntity<MovieEntity>> partialUpdateMovie(@PathVariable Long id,
+                                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                                @RequestBody MoviePatch patch) {
+        Long expectedVersion = MovieController.expectedVersion(ifMatch);
+        if (expectedVersion != null) {
+            patch.version(expectedVersion);
+        }
+        return movieService.partialUpdateMovie(id, patch)
+                .map(movie -> MovieController.validated(ResponseEntity.ok(), movie).body(movie));
+    }
+}
@@ -0,0 +1,23 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BatchInsertResult {
+    private int total;
+    private int created;
+    private int failed;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+    private List<BatchItemResult> items;
+    /**
+     * Why the batch ended before the end of the request body; {@code null} once the whole body was read.
+     */
+    private String error;
+}
@@ -0,0 +1,20 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+/**
+ * Outcome of one element of a batch request, {@code index} being its position in the request body.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BatchItemResult {
+    public enum Status {CREATED, FAILED}
+
+    private int index;
+    private Long id;
+    private Status status;
+    private String error;
+}
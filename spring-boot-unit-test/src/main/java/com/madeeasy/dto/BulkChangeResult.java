@@ -0,0 +1,18 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+/**
+ * Outcome of a bulk delete or patch. Chunks are committed one by one, so when a request fails midway the movies of
+ * the chunks before stay changed.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BulkChangeResult {
+    private int affected;
+    private int chunks;
+    private long elapsedMillis;
+}
@@ -0,0 +1,31 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+/**
+ * Aggregate that changes whenever any movie is created, updated or deleted: ids are never reused and every update
+ * bumps a version. Computed with a single aggregate query, so the list ETag can be validated without loading rows.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CatalogFingerprint {
+    private Long count;
+    private Long idSum;
+    private Long versionSum;
+
+    public String etag() {
+        return "\"catalog-" + count + "-" + Long.toHexString(idSum) + "-" + Long.toHexString(versionSum) + "\"";
+    }
+
+    /**
+     * ETag of another representation of the same catalog, e.g. {@code "catalog-2-3-1-cbor"}: a strong ETag must
+     * differ between representations that differ in their bytes.
+     */
+    public String etag(String variant) {
+        return "\"catalog-" + count + "-" + Long.toHexString(idSum) + "-" + Long.toHexString(versionSum)
+                + "-" + variant + "\"";
+    }
+}
@@ -0,0 +1,15 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CatalogImportResult {
+    private long rows;
+    private long batches;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+}
@@ -0,0 +1,21 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+/**
+ * Progress of one movie accepted by {@code POST /movies/create} in write-behind mode. {@code id} is set once the
+ * movie is {@code CREATED}, {@code error} once it has {@code FAILED}.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class IngestStatus {
+    public enum State {PENDING, CREATED, FAILED}
+
+    private String ticket;
+    private State state;
+    private Long id;
+    private String error;
+}
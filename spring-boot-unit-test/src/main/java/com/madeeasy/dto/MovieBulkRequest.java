@@ -0,0 +1,23 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Body of DELETE /movies and PATCH /movies. The movies are selected either by {@code ids} or by a release date range
+ * (both bounds inclusive, at least one of them required); {@code set} holds the changes of a PATCH, as in
+ * PATCH /movies/{id}.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MovieBulkRequest {
+    private List<Long> ids;
+    private LocalDate releasedFrom;
+    private LocalDate releasedTo;
+    private MoviePatch set;
+}
@@ -0,0 +1,28 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * One committed change of the catalog, as served by {@code GET /movies/changes}. Created and updated movies carry
+ * their new state; a deleted movie only its id and the version it was deleted at. {@code RESET} stands for a change
+ * of the whole catalog, such as an import, after which a consumer has to read the catalog again.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MovieChange {
+    public enum Operation {CREATED, UPDATED, DELETED, RESET}
+
+    private long sequence;
+    private Operation operation;
+    private Long id;
+    private String name;
+    private LocalDate releaseDate;
+    private Long version;
+    private Instant changedAt;
+}
@@ -0,0 +1,19 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Changes following the requested sequence number, oldest first. {@code lastSequence} is the number to pass back as
+ * {@code after} for the next page; it equals the requested one when nothing changed in the meantime.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MovieChangePage {
+    private List<MovieChange> changes;
+    private long lastSequence;
+}
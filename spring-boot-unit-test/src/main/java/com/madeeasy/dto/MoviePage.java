@@ -0,0 +1,19 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * One keyset page of movies. {@code nextCursor} is an opaque token to pass back as {@code cursor} to fetch the
+ * following page, or {@code null} when this is the last page.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MoviePage {
+    private List<MovieSummary> movies;
+    private String nextCursor;
+}
@@ -0,0 +1,115 @@
+package com.madeeasy.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.madeeasy.entity.MovieEntity;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Body of PATCH /movies/{id}: the fields present in the request together with their already validated values. A
+ * field that is absent is left untouched, a field sent as {@code null} is cleared.
+ */
+@Getter
+@ToString
+@JsonDeserialize(using = MoviePatchDeserializer.class)
+public class MoviePatch {
+
+    /**
+     * The patchable fields, looked up by their JSON name.
+     */
+    public enum Field {
+        ID("id"),
+        NAME("name"),
+        RELEASE_DATE("releaseDate"),
+        VERSION("version");
+
+        private static final Map<String, Field> BY_JSON_NAME = new HashMap<>();
+
+        static {
+            for (Field field : values()) {
+                BY_JSON_NAME.put(field.jsonName, field);
+            }
+        }
+
+        private final String jsonName;
+        private final int mask;
+
+        Field(String jsonName) {
+            this.jsonName = jsonName;
+            this.mask = 1 << ordinal();
+        }
+
+        public String jsonName() {
+            return jsonName;
+        }
+
+        /**
+         * @return the field, or {@code null} when the name is not patchable
+         */
+        public static Field forJsonName(String jsonName) {
+            return BY_JSON_NAME.get(jsonName);
+        }
+    }
+
+    @Getter(AccessLevel.NONE)
+    private int presentFields;
+    private Long id;
+    private String name;
+    private LocalDate releaseDate;
+    private Long version;
+
+    public boolean has(Field field) {
+        return (presentFields & field.mask) != 0;
+    }
+
+    public MoviePatch id(Long id) {
+        this.id = id;
+        presentFields |= Field.ID.mask;
+        return this;
+    }
+
+    public MoviePatch name(String name) {
+        this.name = name;
+        presentFields |= Field.NAME.mask;
+        return this;
+    }
+
+    public MoviePatch releaseDate(LocalDate releaseDate) {
+        this.releaseDate = releaseDate;
+        presentFields |= Field.RELEASE_DATE.mask;
+        return this;
+    }
+
+    /**
+     * Expected current version of the movie; the patch only applies if it still matches.
+     */
+    public MoviePatch version(Long version) {
+        this.version = version;
+        presentFields |= Field.VERSION.mask;
+        return this;
+    }
+
+    /**
+     * @return whether the patch changes anything besides identifying the movie and its expected version
+     */
+    public boolean hasChanges() {
+        return has(Field.NAME) || has(Field.RELEASE_DATE);
+    }
+
+    /**
+     * Copies the present fields onto the entity. Id and version are never copied, they only identify the movie.
+     */
+    public void applyTo(MovieEntity movie) {
+        if (has(Field.NAME)) {
+            movie.setName(name);
+        }
+        if (has(Field.RELEASE_DATE)) {
+            movie.setReleaseDate(releaseDate);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.madeeasy.dto;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reads a {@link MoviePatch} straight from the token stream: every field name is resolved through
+ * {@link MoviePatch.Field} and its value token is type checked before it is stored, so nothing is boxed into an
+ * intermediate map and a malformed value is rejected instead of being ignored.
+ */
+public class MoviePatchDeserializer extends StdDeserializer<MoviePatch> {
+
+    public MoviePatchDeserializer() {
+        super(MoviePatch.class);
+    }
+
+    @Override
+    public MoviePatch deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (!parser.isExpectedStartObjectToken()) {
+            return (MoviePatch) context.handleUnexpectedToken(MoviePatch.class, parser);
+        }
+        MoviePatch patch = new MoviePatch();
+        for (String fieldName = parser.nextFieldName(); fieldName != null; fieldName = parser.nextFieldName()) {
+            MoviePatch.Field field = MoviePatch.Field.forJsonName(fieldName);
+            if (field == null) {
+                return context.reportInputMismatch(this, "unknown field '%s'", fieldName);
+            }
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case ID -> {
+                    if (token != JsonToken.VALUE_NUMBER_INT) {
+                        return context.reportInputMismatch(this, "'id' must be an integer");
+                    }
+                    patch.id(parser.getLongValue());
+                }
+                case VERSION -> {
+                    if (token != JsonToken.VALUE_NUMBER_INT) {
+                        return context.reportInputMismatch(this, "'version' must be an integer");
+                    }
+                    patch.version(parser.getLongValue());
+                }
+                case NAME -> {
+                    if (token != JsonToken.VALUE_STRING && token != JsonToken.VALUE_NULL) {
+                        return context.reportInputMismatch(this, "'name' must be a string");
+                    }
+                    patch.name(token == JsonToken.VALUE_NULL ? null : parser.getText());
+                }
+                case RELEASE_DATE -> {
+                    if (token == JsonToken.VALUE_NULL) {
+                        patch.releaseDate(null);
+                    } else if (token == JsonToken.VALUE_STRING) {
+                        try {
+                            patch.releaseDate(LocalDate.parse(parser.getText()));
+                        } catch (DateTimeParseException e) {
+                            return context.reportInputMismatch(this,
+                                    "'releaseDate' must be an ISO date (yyyy-MM-dd), got '%s'", parser.getText());
+                        }
+                    } else {
+                        return context.reportInputMismatch(this, "'releaseDate' must be a string");
+                    }
+                }
+            }
+        }
+        return patch;
+    }
+}
@@ -0,0 +1,9 @@
+package com.madeeasy.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Release date of one movie, {@code null} when it has none; all the release stats need to know of a movie.
+ */
+public record MovieReleaseDate(Long id, LocalDate releaseDate) {
+}
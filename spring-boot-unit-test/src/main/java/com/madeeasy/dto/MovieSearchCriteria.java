@@ -0,0 +1,21 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Filters of GET /movies/search. Every filter is optional and they are combined with AND; each one maps to a
+ * predicate that can be answered from the name or release date index.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MovieSearchCriteria {
+    private String name;
+    private String namePrefix;
+    private LocalDate releasedFrom;
+    private LocalDate releasedTo;
+}
@@ -0,0 +1,17 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MovieSearchPage {
+    private List<MovieSummary> movies;
+    private int page;
+    private int size;
+    private boolean hasNext;
+}
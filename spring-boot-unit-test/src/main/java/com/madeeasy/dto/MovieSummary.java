@@ -0,0 +1,19 @@
+package com.madeeasy.dto;
+
+import com.madeeasy.entity.MovieEntity;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Read-only view of a movie for list, page and search responses. Selected with a constructor expression, so a row
+ * becomes one immutable object instead of a managed entity plus the snapshot Hibernate keeps for dirty checking.
+ * Serializes to the same JSON as {@link MovieEntity}.
+ */
+public record MovieSummary(Long id, String name, LocalDate releaseDate, Long version, Instant lastModified) {
+
+    public static MovieSummary of(MovieEntity movie) {
+        return new MovieSummary(movie.getId(), movie.getName(), movie.getReleaseDate(), movie.getVersion(),
+                movie.getLastModified());
+    }
+}
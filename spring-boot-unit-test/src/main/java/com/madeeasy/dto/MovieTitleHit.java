@@ -0,0 +1,7 @@
+package com.madeeasy.dto;
+
+/**
+ * A movie found by title search, with its relevance: higher is better, comparable within one search only.
+ */
+public record MovieTitleHit(MovieSummary movie, double score) {
+}
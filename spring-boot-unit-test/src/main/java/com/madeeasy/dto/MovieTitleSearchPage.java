@@ -0,0 +1,22 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * One page of title search hits, best first. {@code total} is the number of movies matching the query; it is
+ * {@code null} and every score 0 while the title index is still loading and the search falls back to SQL.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MovieTitleSearchPage {
+    private List<MovieTitleHit> hits;
+    private int page;
+    private int size;
+    private Long total;
+    private boolean hasNext;
+}
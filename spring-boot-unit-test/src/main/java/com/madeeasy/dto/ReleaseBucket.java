@@ -0,0 +1,9 @@
+package com.madeeasy.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Movies released from {@code from} (inclusive) to {@code to} (exclusive).
+ */
+public record ReleaseBucket(LocalDate from, LocalDate to, long count) {
+}
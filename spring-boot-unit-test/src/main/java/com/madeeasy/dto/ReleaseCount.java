@@ -0,0 +1,23 @@
+package com.madeeasy.dto;
+
+/**
+ * Number of movies released in one period of a release date breakdown.
+ *
+ * @param period the year ({@code 1999}) or the month ({@code 1999-03}) the movies were released in
+ */
+public record ReleaseCount(String period, long count) {
+
+    /**
+     * Row of a per-year {@code GROUP BY}.
+     */
+    public ReleaseCount(Integer year, Long count) {
+        this(String.valueOf(year), count);
+    }
+
+    /**
+     * Row of a per-month {@code GROUP BY}.
+     */
+    public ReleaseCount(Integer year, Integer month, Long count) {
+        this(String.format("%04d-%02d", year, month), count);
+    }
+}
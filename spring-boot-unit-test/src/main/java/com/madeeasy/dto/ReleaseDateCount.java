@@ -0,0 +1,9 @@
+package com.madeeasy.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Number of movies released on one day; {@code releaseDate} is {@code null} for the movies without one.
+ */
+public record ReleaseDateCount(LocalDate releaseDate, Long count) {
+}
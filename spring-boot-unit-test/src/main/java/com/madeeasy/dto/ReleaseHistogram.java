@@ -0,0 +1,19 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Release dates in buckets of equal width, oldest first; the last bucket may be shorter. Empty buckets are listed
+ * too, {@code total} is the sum of all buckets.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ReleaseHistogram {
+    private List<ReleaseBucket> buckets;
+    private long total;
+}
@@ -0,0 +1,20 @@
+package com.madeeasy.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Movies per release year or month, oldest period first. Periods without movies are left out; {@code total} is the
+ * sum of the listed counts and {@code undated} the number of movies without a release date.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ReleaseStats {
+    private List<ReleaseCount> counts;
+    private long total;
+    private long undated;
+}
@@ -2,8 +2,12 @@ package com.madeeasy.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 
 @Entity
 @AllArgsConstructor
@@ -11,12 +15,40 @@ import java.time.LocalDate;
 @Getter
 @Setter
 @Builder
-@Table(name = "tbl_user")
+@Table(name = "tbl_user", indexes = {
+        @Index(name = "idx_tbl_user_name", columnList = "name"),
+        @Index(name = "idx_tbl_user_release_date", columnList = "releaseDate")
+})
 @ToString
+@DynamicUpdate
 public class MovieEntity {
+    /**
+     * Ids come from a pooled sequence: one round-trip to {@code tbl_user_seq} hands out a block of 50 ids, which
+     * also lets Hibernate batch the inserts. The allocation size must match the sequence increment.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tbl_user_seq")
+    @SequenceGenerator(name = "tbl_user_seq", sequenceName = "tbl_user_seq", allocationSize = 50)
     private Long id;
     private String name;
     private LocalDate releaseDate;
+    /**
+     * Optimistic lock version, incremented by every update. Clients may send it back on PUT/PATCH to make the update
+     * conditional on nobody having changed the movie in the meantime.
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+    /**
+     * When the movie was last created or changed, served as {@code Last-Modified}. Millisecond precision so the value
+     * survives the round trip through the database unchanged.
+     */
+    private Instant lastModified;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    }
 }
@@ -0,0 +1,247 @@
+package com.madeeasy.error;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * The error contract of the movie API: status and {@link ApiError} body for every failure. Shared by the servlet
+ * ({@link GlobalErrorHandling}) and the reactive ({@link ReactiveErrorHandling}) stack so both answer alike.
+ *
+ * <p>Errors whose body never varies are serialized once, with the application's ObjectMapper, and the very same
+ * response is handed out on every occurrence: a flood of unknown ids costs neither allocation nor serialization.
+ */
+final class ApiErrors {
+
+    private final ResponseEntity<byte[]> movieNotFound;
+    private final ResponseEntity<byte[]> versionConflict;
+    private final ResponseEntity<byte[]> preconditionFailed;
+    private final ResponseEntity<byte[]> ingestTicketNotFound;
+    private final ResponseEntity<byte[]> invalidCursor;
+    private final ResponseEntity<byte[]> changeLogTruncated;
+    private final ResponseEntity<byte[]> rateLimitExceeded;
+    private final ResponseEntity<byte[]> serverOverloaded;
+
+    ApiErrors(ObjectMapper objectMapper) {
+        movieNotFound = preSerialized(objectMapper, HttpStatus.NOT_FOUND, ApiError.builder()
+                .details("id is not correct")
+                .hint("check the id")
+                .message("try again")
+                .nextActions("send request with correct data")
+                .build());
+        ApiError versionConflictError = ApiError.builder()
+                .details("movie was modified by someone else")
+                .hint("fetch the movie again to get its current version")
+                .message("try again")
+                .nextActions("send request with the current version")
+                .build();
+        // a failed If-Match precondition is a 412, a stale version in the body a 409
+        versionConflict = preSerialized(objectMapper, HttpStatus.CONFLICT, versionConflictError);
+        preconditionFailed = preSerialized(objectMapper, HttpStatus.PRECONDITION_FAILED, versionConflictError);
+        ingestTicketNotFound = preSerialized(objectMapper, HttpStatus.NOT_FOUND, ApiError.builder()
+                .details("ingest ticket is not known")
+                .hint("statuses are only kept for a limited time after the movie was written")
+                .message("try again")
+                .nextActions("send request with the Location returned by the create request")
+                .build());
+        invalidCursor = preSerialized(objectMapper, HttpStatus.BAD_REQUEST, ApiError.builder()
+                .details("cursor is not valid")
+                .hint("use the nextCursor returned by the previous page")
+                .message("try again")
+                .nextActions("send request without cursor to start from the first page")
+                .build());
+        changeLogTruncated = preSerialized(objectMapper, HttpStatus.GONE, ApiError.builder()
+                .details("changes after this sequence number have been purged")
+                .hint("the change log only keeps changes for a limited time")
+                .message("read the catalog again")
+                .nextActions("send request with after set to the sequence number read before the catalog")
+                .build());
+        // rejections are answered most often exactly when the server is busiest; the Retry-After of a rate limit
+        // varies, so only its body is shared
+        rateLimitExceeded = preSerialized(objectMapper, HttpStatus.TOO_MANY_REQUESTS, ApiError.builder()
+                .details("too many requests")
+                .hint("this client sent more requests to this endpoint than its rate limit allows")
+                .message("try again later")
+                .nextActions("send request again after the Retry-After delay")
+                .build());
+        ApiError serverOverloadedError = ApiError.builder()
+                .details("server is overloaded")
+                .hint("the server sheds requests while its responses are slow")
+                .message("try again later")
+                .nextActions("send request again after the Retry-After delay")
+                .build();
+        serverOverloaded = withRetryAfter(
+                preSerialized(objectMapper, HttpStatus.SERVICE_UNAVAILABLE, serverOverloadedError), 1);
+    }
+
+    private static ResponseEntity<byte[]> preSerialized(ObjectMapper objectMapper, HttpStatus status, ApiError apiError) {
+        try {
+            return ResponseEntity
+                    .status(status)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(objectMapper.writeValueAsBytes(apiError));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("error!! cannot serialize " + apiError, e);
+        }
+    }
+
+    private static ResponseEntity<byte[]> withRetryAfter(ResponseEntity<byte[]> response, long seconds) {
+        return ResponseEntity
+                .status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(seconds))
+                .body(response.getBody());
+    }
+
+    ResponseEntity<byte[]> movieNotFound() {
+        return movieNotFound;
+    }
+
+    /**
+     * @param ifMatch whether the stale version came from an {@code If-Match} header rather than the body
+     */
+    ResponseEntity<byte[]> versionConflict(boolean ifMatch) {
+        return ifMatch ? preconditionFailed : versionConflict;
+    }
+
+    ResponseEntity<ApiError> ingestQueueFull(IngestQueueFullException exception) {
+        ApiError apiError = ApiError.builder()
+                .details(exception.getMessage())
+                .hint("too many movies are waiting to be written")
+                .message("try again later")
+                .nextActions("send request again after the Retry-After delay")
+                .build();
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(apiError);
+    }
+
+    ResponseEntity<ApiError> catalogImportRunning(CatalogImportRunningException exception) {
+        ApiError apiError = ApiError.builder()
+                .details(exception.getMessage())
+                .hint("the catalog is being replaced by an import")
+                .message("try again later")
+                .nextActions("send request again after the Retry-After delay")
+                .build();
+        // an import of a large catalog takes a while; a retry every second would mostly be refused again
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(apiError);
+    }
+
+    ResponseEntity<byte[]> ingestTicketNotFound() {
+        return ingestTicketNotFound;
+    }
+
+    ResponseEntity<byte[]> invalidCursor() {
+        return invalidCursor;
+    }
+
+    ResponseEntity<byte[]> changeLogTruncated() {
+        return changeLogTruncated;
+    }
+
+    ResponseEntity<byte[]> rateLimitExceeded(RateLimitExceededException exception) {
+        return withRetryAfter(rateLimitExceeded, exception.getRetryAfterSeconds());
+    }
+
+    ResponseEntity<byte[]> serverOverloaded() {
+        return serverOverloaded;
+    }
+
+    ResponseEntity<ApiError> invalidMoviePatch(InvalidMoviePatchException exception) {
+        ApiError apiError = ApiError.builder()
+                .details(exception.getMessage())
+                .hint("only name and releaseDate can be patched")
+                .message("try again")
+                .nextActions("send request with correct data")
+                .build();
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(apiError);
+    }
+
+    ResponseEntity<ApiError> invalidBulkRequest(InvalidBulkRequestException exception) {
+        ApiError apiError = ApiError.builder()
+                .details(exception.getMessage())
+                .hint("select movies either by ids or by a releasedFrom/releasedTo range")
+                .message("try again")
+                .nextActions("send request with correct data")
+                .build();
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(apiError);
+    }
+
+    ResponseEntity<ApiError> invalidCatalogFile(InvalidCatalogFileException exception) {
+        ApiError apiError = ApiError.builder()
+                .details(exception.getMessage())
+                .hint("the body has to be a complete file written by GET /movies/export")
+                .message("try again")
+                .nextActions("export the catalog again and send the whole file")
+                .build();
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(apiError);
+    }
+
+    ResponseEntity<ApiError> invalidSearchRequest(InvalidSearchRequestException exception) {
+        ApiError apiError = ApiError.builder()
+                .details(exception.getMessage())
+                .hint("sort by id, name or releaseDate")
+                .message("try again")
+                .nextActions("send request with correct data")
+                .build();
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(apiError);
+    }
+
+    ResponseEntity<ApiError> invalidStatsRequest(InvalidStatsRequestException exception) {
+        ApiError apiError = ApiError.builder()
+                .details(exception.getMessage())
+                .hint("from has to be before to, buckets a positive number within the limit")
+                .message("try again")
+                .nextActions("send request with correct data")
+                .build();
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(apiError);
+    }
+
+    ResponseEntity<ApiError> invalidChangeRequest(InvalidChangeRequestException exception) {
+        ApiError apiError = ApiError.builder()
+                .details(exception.getMessage())
+                .hint("after has to be a sequence number returned as lastSequence, limit and wait within their limits")
+                .message("try again")
+                .nextActions("send request with correct data")
+                .build();
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(apiError);
+    }
+
+    /**
+     * @param cause most specific cause of the failure to read the request body
+     */
+    ResponseEntity<ApiError> unreadableBody(Throwable cause) {
+        // the original message of a Jackson error names the offending field without echoing parser internals
+        String details = cause instanceof JsonProcessingException jsonException
+                ? jsonException.getOriginalMessage()
+                : "request body is not readable";
+        ApiError apiError = ApiError.builder()
+                .details(details)
+                .hint("check the request body")
+                .message("try again")
+                .nextActions("send request with correct data")
+                .build();
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(apiError);
+    }
+}
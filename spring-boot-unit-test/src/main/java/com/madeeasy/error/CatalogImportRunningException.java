@@ -0,0 +1,7 @@
+package com.madeeasy.error;
+
+public class CatalogImportRunningException extends RuntimeException {
+    public CatalogImportRunningException(String message) {
+        super(message, null, false, false);
+    }
+}
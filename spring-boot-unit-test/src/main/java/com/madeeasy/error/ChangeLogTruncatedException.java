@@ -0,0 +1,7 @@
+package com.madeeasy.error;
+
+public class ChangeLogTruncatedException extends RuntimeException {
+    public ChangeLogTruncatedException(String message) {
+        super(message, null, false, false);
+    }
+}
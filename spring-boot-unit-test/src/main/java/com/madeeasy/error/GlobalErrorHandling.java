@@ -1,24 +1,110 @@
 package com.madeeasy.error;
 
-import org.springframework.http.HttpStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 @ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class GlobalErrorHandling extends ResponseEntityExceptionHandler {
 
+    private final ApiErrors apiErrors;
+
+    public GlobalErrorHandling(ObjectMapper objectMapper) {
+        this.apiErrors = new ApiErrors(objectMapper);
+    }
+
     @ExceptionHandler(MovieNotFoundException.class)
     public ResponseEntity<?> handleMovieNotFoundException(MovieNotFoundException exception){
-        ApiError apiError = ApiError.builder()
-                .details("id is not correct")
-                .hint("check the id")
-                .message("try again")
-                .nextActions("send request with correct data")
-                .build();
+        return apiErrors.movieNotFound();
+    }
+
+    @ExceptionHandler(MovieVersionConflictException.class)
+    public ResponseEntity<?> handleMovieVersionConflictException(MovieVersionConflictException exception,
+                                                                 WebRequest request){
+        return apiErrors.versionConflict(request.getHeader(HttpHeaders.IF_MATCH) != null);
+    }
+
+    @ExceptionHandler(IngestQueueFullException.class)
+    public ResponseEntity<?> handleIngestQueueFullException(IngestQueueFullException exception){
+        return apiErrors.ingestQueueFull(exception);
+    }
+
+    @ExceptionHandler(CatalogImportRunningException.class)
+    public ResponseEntity<?> handleCatalogImportRunningException(CatalogImportRunningException exception){
+        return apiErrors.catalogImportRunning(exception);
+    }
+
+    @ExceptionHandler(IngestTicketNotFoundException.class)
+    public ResponseEntity<?> handleIngestTicketNotFoundException(IngestTicketNotFoundException exception){
+        return apiErrors.ingestTicketNotFound();
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<?> handleInvalidCursorException(InvalidCursorException exception){
+        return apiErrors.invalidCursor();
+    }
+
+    @ExceptionHandler(InvalidMoviePatchException.class)
+    public ResponseEntity<?> handleInvalidMoviePatchException(InvalidMoviePatchException exception){
+        return apiErrors.invalidMoviePatch(exception);
+    }
+
+    @ExceptionHandler(InvalidBulkRequestException.class)
+    public ResponseEntity<?> handleInvalidBulkRequestException(InvalidBulkRequestException exception){
+        return apiErrors.invalidBulkRequest(exception);
+    }
+
+    @ExceptionHandler(InvalidCatalogFileException.class)
+    public ResponseEntity<?> handleInvalidCatalogFileException(InvalidCatalogFileException exception){
+        return apiErrors.invalidCatalogFile(exception);
+    }
+
+    @ExceptionHandler(InvalidSearchRequestException.class)
+    public ResponseEntity<?> handleInvalidSearchRequestException(InvalidSearchRequestException exception){
+        return apiErrors.invalidSearchRequest(exception);
+    }
+
+    @ExceptionHandler(InvalidStatsRequestException.class)
+    public ResponseEntity<?> handleInvalidStatsRequestException(InvalidStatsRequestException exception){
+        return apiErrors.invalidStatsRequest(exception);
+    }
+
+    @ExceptionHandler(ChangeLogTruncatedException.class)
+    public ResponseEntity<?> handleChangeLogTruncatedException(ChangeLogTruncatedException exception){
+        return apiErrors.changeLogTruncated();
+    }
+
+    @ExceptionHandler(InvalidChangeRequestException.class)
+    public ResponseEntity<?> handleInvalidChangeRequestException(InvalidChangeRequestException exception){
+        return apiErrors.invalidChangeRequest(exception);
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<?> handleRateLimitExceededException(RateLimitExceededException exception){
+        return apiErrors.rateLimitExceeded(exception);
+    }
+
+    @ExceptionHandler(ServerOverloadedException.class)
+    public ResponseEntity<?> handleServerOverloadedException(ServerOverloadedException exception){
+        return apiErrors.serverOverloaded();
+    }
+
+    @Override
+    protected ResponseEntity<Object> handleHttpMessageNotReadable(HttpMessageNotReadableException exception,
+                                                                  HttpHeaders headers,
+                                                                  HttpStatusCode status,
+                                                                  WebRequest request) {
+        ResponseEntity<ApiError> apiError = apiErrors.unreadableBody(exception.getMostSpecificCause());
         return ResponseEntity
-                .status(HttpStatus.BAD_REQUEST)
-                .body(apiError);
+                .status(apiError.getStatusCode())
+                .body(apiError.getBody());
     }
 }
@@ -0,0 +1,7 @@
+package com.madeeasy.error;
+
+public class IngestQueueFullException extends RuntimeException {
+    public IngestQueueFullException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,7 @@
+package com.madeeasy.error;
+
+public class IngestTicketNotFoundException extends RuntimeException {
+    public IngestTicketNotFoundException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,7 @@
+package com.madeeasy.error;
+
+public class InvalidBulkRequestException extends RuntimeException {
+    public InvalidBulkRequestException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,7 @@
+package com.madeeasy.error;
+
+public class InvalidCatalogFileException extends RuntimeException {
+    public InvalidCatalogFileException(String message) {
+        super(message, null, false, false);
+    }
+}
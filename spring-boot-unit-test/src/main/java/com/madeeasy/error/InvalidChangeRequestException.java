@@ -0,0 +1,7 @@
+package com.madeeasy.error;
+
+public class InvalidChangeRequestException extends RuntimeException {
+    public InvalidChangeRequestException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,7 @@
+package com.madeeasy.error;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,7 @@
+package com.madeeasy.error;
+
+public class InvalidMoviePatchException extends RuntimeException {
+    public InvalidMoviePatchException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,7 @@
+package com.madeeasy.error;
+
+public class InvalidSearchRequestException extends RuntimeException {
+    public InvalidSearchRequestException(String message) {
+        super(message, null, false, false);
+    }
+}
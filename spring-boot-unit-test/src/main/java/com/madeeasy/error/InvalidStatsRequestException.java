@@ -0,0 +1,7 @@
+package com.madeeasy.error;
+
+public class InvalidStatsRequestException extends RuntimeException {
+    public InvalidStatsRequestException(String message) {
+        super(message, null, false, false);
+    }
+}
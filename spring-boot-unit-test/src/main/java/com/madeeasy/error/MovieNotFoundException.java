@@ -1,7 +1,12 @@
 package com.madeeasy.error;
 
+/**
+ * Expected outcome of probing an unknown id, not a bug: thrown without capturing a stack trace, which would cost far
+ * more than the lookup itself when invalid ids arrive in bulk. The same goes for the other expected errors of this
+ * package.
+ */
 public class MovieNotFoundException extends RuntimeException {
     public MovieNotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -0,0 +1,7 @@
+package com.madeeasy.error;
+
+public class MovieVersionConflictException extends RuntimeException {
+    public MovieVersionConflictException(String message) {
+        super(message, null, false, false);
+    }
+}
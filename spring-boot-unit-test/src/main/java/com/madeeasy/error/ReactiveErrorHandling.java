@@ -0,0 +1,59 @@
+package com.madeeasy.error;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebInputException;
+
+/**
+ * WebFlux counterpart of {@link GlobalErrorHandling}, answering with the same statuses and bodies.
+ */
+@ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveErrorHandling {
+
+    private final ApiErrors apiErrors;
+
+    public ReactiveErrorHandling(ObjectMapper objectMapper) {
+        this.apiErrors = new ApiErrors(objectMapper);
+    }
+
+    @ExceptionHandler(MovieNotFoundException.class)
+    public ResponseEntity<?> handleMovieNotFoundException(MovieNotFoundException exception){
+        return apiErrors.movieNotFound();
+    }
+
+    @ExceptionHandler(MovieVersionConflictException.class)
+    public ResponseEntity<?> handleMovieVersionConflictException(MovieVersionConflictException exception,
+                                                                 ServerWebExchange exchange){
+        return apiErrors.versionConflict(exchange.getRequest().getHeaders().containsKey(HttpHeaders.IF_MATCH));
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<?> handleInvalidCursorException(InvalidCursorException exception){
+        return apiErrors.invalidCursor();
+    }
+
+    @ExceptionHandler(InvalidMoviePatchException.class)
+    public ResponseEntity<?> handleInvalidMoviePatchException(InvalidMoviePatchException exception){
+        return apiErrors.invalidMoviePatch(exception);
+    }
+
+    @ExceptionHandler(InvalidSearchRequestException.class)
+    public ResponseEntity<?> handleInvalidSearchRequestException(InvalidSearchRequestException exception){
+        return apiErrors.invalidSearchRequest(exception);
+    }
+
+    /**
+     * Unreadable bodies and malformed parameters; the reactive stack reports both as {@link ServerWebInputException}.
+     */
+    @ExceptionHandler(ServerWebInputException.class)
+    public ResponseEntity<?> handleServerWebInputException(ServerWebInputException exception){
+        return apiErrors.unreadableBody(NestedExceptionUtils.getMostSpecificCause(exception));
+    }
+}
@@ -0,0 +1,7 @@
+package com.madeeasy.error;
+
+public class ServerOverloadedException extends RuntimeException {
+    public ServerOverloadedException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,98 @@
+package com.madeeasy.limit;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cap on requests in flight that follows the health of the server: additive increase, multiplicative decrease.
+ * Every completed request is a sample. A sample slower than {@code latencyThreshold}, or one that waited longer than
+ * {@code poolWaitThreshold} for database connections, shrinks the limit by {@code backoffRatio}; once per
+ * {@code latencyThreshold} at most, since the requests completing right after the first slow one were slowed down by
+ * the same overload. A limit of n grows by one after n healthy samples, but only while at least half of it is in use,
+ * so an idle server does not talk itself into a limit it never tried.
+ *
+ * <p>Acquiring is a compare-and-set on the in-flight count; nothing blocks and nothing queues, requests over the
+ * limit are refused right away so that the ones admitted keep their latency.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final long poolWaitThresholdNanos;
+
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger healthySamples = new AtomicInteger();
+    private final AtomicLong nextDecrease = new AtomicLong(System.nanoTime());
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                                    Duration latencyThreshold, Duration poolWaitThreshold) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("error!! the concurrency limit needs 1 <= min <= initial <= max, not "
+                    + minLimit + " <= " + initialLimit + " <= " + maxLimit);
+        }
+        if (!(backoffRatio > 0 && backoffRatio < 1)) {
+            throw new IllegalArgumentException("error!! the backoff ratio must be between 0 and 1, not "
+                    + backoffRatio);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.poolWaitThresholdNanos = poolWaitThreshold.toNanos();
+        this.limit = new AtomicInteger(initialLimit);
+    }
+
+    /**
+     * @return whether the request may proceed; if so, {@link #release} must follow exactly once
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.get()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends a request admitted by {@link #tryAcquire} and feeds its timings to the limit.
+     *
+     * @param now {@link System#nanoTime()}
+     */
+    public void release(long latencyNanos, long poolWaitNanos, long now) {
+        int current = inFlight.getAndDecrement();
+        if (latencyNanos > latencyThresholdNanos || poolWaitNanos > poolWaitThresholdNanos) {
+            long next = nextDecrease.get();
+            if (now - next >= 0 && nextDecrease.compareAndSet(next, now + latencyThresholdNanos)) {
+                limit.updateAndGet(value -> Math.max(minLimit, (int) (value * backoffRatio)));
+                healthySamples.set(0);
+            }
+        } else if (current * 2 >= limit.get() && healthySamples.incrementAndGet() >= limit.get()) {
+            healthySamples.set(0);
+            limit.updateAndGet(value -> Math.min(maxLimit, value + 1));
+        }
+    }
+
+    /**
+     * Ends a request admitted by {@link #tryAcquire} without judging it, for requests whose duration says nothing
+     * about the server, such as long-running streams.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return limit.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
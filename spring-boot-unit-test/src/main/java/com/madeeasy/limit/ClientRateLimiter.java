@@ -0,0 +1,67 @@
+package com.madeeasy.limit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * One {@link TokenBucket} per client and route, so a client hammering one endpoint neither starves other clients nor
+ * its own calls to other endpoints. Routes are handler patterns such as {@code GET /movies/{id}}; routes without a
+ * limit of their own share the default limit, each with its own bucket.
+ *
+ * <p>Buckets live in a bounded Caffeine cache and are dropped after being idle for {@code idleTimeout}, which should
+ * exceed the time a bucket needs to fill up again; a client forgotten earlier merely starts over with a full bucket.
+ * Looking up an existing bucket takes no lock.
+ */
+public class ClientRateLimiter {
+
+    public record Limit(double permitsPerSecond, int burst) {
+
+        public Limit {
+            if (!(permitsPerSecond > 0) || burst < 1) {
+                throw new IllegalArgumentException("error!! a rate limit needs a positive rate and a burst of at "
+                        + "least 1, not " + permitsPerSecond + "/s and " + burst);
+            }
+        }
+    }
+
+    private record Key(String client, String route) {
+    }
+
+    private final Limit defaultLimit;
+    private final Map<String, Limit> routeLimits;
+    private final Cache<Key, TokenBucket> buckets;
+
+    public ClientRateLimiter(Limit defaultLimit, Map<String, Limit> routeLimits, long maxBuckets,
+                             Duration idleTimeout) {
+        this.defaultLimit = defaultLimit;
+        this.routeLimits = Map.copyOf(routeLimits);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(idleTimeout)
+                .build();
+    }
+
+    /**
+     * @param now {@link System#nanoTime()}
+     * @return 0 if the request may proceed, otherwise how many nanoseconds the client has to wait
+     */
+    public long tryAcquire(String client, String route, long now) {
+        return buckets.get(new Key(client, route), key -> newBucket(key.route(), now)).tryAcquire(now);
+    }
+
+    public Limit limitOf(String route) {
+        return routeLimits.getOrDefault(route, defaultLimit);
+    }
+
+    public long bucketCount() {
+        return buckets.estimatedSize();
+    }
+
+    private TokenBucket newBucket(String route, long now) {
+        Limit limit = limitOf(route);
+        return new TokenBucket(limit.permitsPerSecond(), limit.burst(), now);
+    }
+}
@@ -0,0 +1,140 @@
+package com.madeeasy.limit;
+
+import com.madeeasy.error.RateLimitExceededException;
+import com.madeeasy.error.ServerOverloadedException;
+import com.madeeasy.metrics.RequestQueryStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Set;
+
+/**
+ * Decides whether a request to the movie API is served at all, before its handler runs: first the client's
+ * {@link ClientRateLimiter rate limit} for the route, answered with 429 and a Retry-After, then the server-wide
+ * {@link AdaptiveConcurrencyLimit}, answered with 503. Every rejection increments {@code movies.http.rejected}, tagged
+ * with the reason and the route template; clients are deliberately not a tag.
+ *
+ * <p>A request that goes asynchronous, such as {@code /movies/stream}, holds its place in the concurrency limit until
+ * the asynchronous dispatch completes, but its duration is not taken as a latency sample. Routes that mostly wait
+ * without holding a connection, like long polls, can be left out of the concurrency limit altogether.
+ */
+public class RequestAdmissionInterceptor implements AsyncHandlerInterceptor {
+
+    public static final String REJECTED = "movies.http.rejected";
+    public static final String CONCURRENCY_LIMIT = "movies.http.concurrency.limit";
+    public static final String IN_FLIGHT = "movies.http.concurrency.in_flight";
+    public static final String RATE_LIMIT_BUCKETS = "movies.http.rate_limit.buckets";
+
+    private static final String ADMITTED_AT = RequestAdmissionInterceptor.class.getName() + ".admittedAt";
+
+    @Nullable
+    private final ClientRateLimiter rateLimiter;
+    @Nullable
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    @Nullable
+    private final String clientHeader;
+    private final Set<String> unlimitedRoutes;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param rateLimiter      {@code null} to admit any rate
+     * @param concurrencyLimit {@code null} to admit any concurrency
+     * @param clientHeader     request header naming the client, falling back to the remote address when absent;
+     *                         {@code null} to always use the remote address
+     * @param unlimitedRoutes  routes such as {@code GET /movies/changes} that only the rate limit applies to
+     */
+    public RequestAdmissionInterceptor(@Nullable ClientRateLimiter rateLimiter,
+                                       @Nullable AdaptiveConcurrencyLimit concurrencyLimit,
+                                       @Nullable String clientHeader, Set<String> unlimitedRoutes,
+                                       MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimit = concurrencyLimit;
+        this.clientHeader = clientHeader;
+        this.unlimitedRoutes = Set.copyOf(unlimitedRoutes);
+        this.meterRegistry = meterRegistry;
+        if (rateLimiter != null) {
+            Gauge.builder(RATE_LIMIT_BUCKETS, rateLimiter, ClientRateLimiter::bucketCount)
+                    .description("Token buckets of clients seen recently, one per client and route")
+                    .register(meterRegistry);
+        }
+        if (concurrencyLimit != null) {
+            Gauge.builder(CONCURRENCY_LIMIT, concurrencyLimit, AdaptiveConcurrencyLimit::getLimit)
+                    .description("Requests allowed in flight at the moment")
+                    .register(meterRegistry);
+            Gauge.builder(IN_FLIGHT, concurrencyLimit, AdaptiveConcurrencyLimit::getInFlight)
+                    .description("Requests in flight")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            // admitted when the request started
+            return true;
+        }
+        String route = route(request);
+        if (rateLimiter != null) {
+            long waitNanos = rateLimiter.tryAcquire(client(request), route, System.nanoTime());
+            if (waitNanos > 0) {
+                reject("rate_limit", request);
+                throw new RateLimitExceededException("error!! too many requests to " + route,
+                        Math.max(1, (waitNanos + 999_999_999) / 1_000_000_000));
+            }
+        }
+        if (concurrencyLimit != null && !unlimitedRoutes.contains(route)) {
+            if (!concurrencyLimit.tryAcquire()) {
+                reject("concurrency_limit", request);
+                throw new ServerOverloadedException("error!! more than " + concurrencyLimit.getLimit()
+                        + " requests in flight");
+            }
+            request.setAttribute(ADMITTED_AT, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                @Nullable Exception ex) {
+        Object admittedAt = request.getAttribute(ADMITTED_AT);
+        if (admittedAt == null || concurrencyLimit == null) {
+            return;
+        }
+        request.removeAttribute(ADMITTED_AT);
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            concurrencyLimit.release();
+            return;
+        }
+        long now = System.nanoTime();
+        RequestQueryStats stats = RequestQueryStats.current();
+        concurrencyLimit.release(now - (long) admittedAt, stats != null ? stats.getConnectionWaitNanos() : 0, now);
+    }
+
+    private String client(HttpServletRequest request) {
+        String client = clientHeader != null ? request.getHeader(clientHeader) : null;
+        return client != null ? client : request.getRemoteAddr();
+    }
+
+    private static String route(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : "UNKNOWN");
+    }
+
+    private void reject(String reason, HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Counter.builder(REJECTED)
+                .description("Requests refused before reaching their handler")
+                .tag("reason", reason)
+                .tag("method", request.getMethod())
+                .tag("uri", pattern != null ? pattern.toString() : "UNKNOWN")
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,44 @@
+package com.madeeasy.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket kept as a single timestamp, the generic cell rate algorithm: instead of a token count refilled by a
+ * clock, the bucket stores the time at which it would be full again. Taking a permit pushes that time one interval
+ * further; a permit is refused while it lies more than the burst ahead of now. One compare-and-set per permit, no
+ * lock and no refill task.
+ */
+final class TokenBucket {
+
+    private final long nanosPerPermit;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * @param permitsPerSecond sustained rate
+     * @param burst            permits that can be taken at once from a full bucket, at least 1
+     * @param now              {@link System#nanoTime()} at creation; the bucket starts full
+     */
+    TokenBucket(double permitsPerSecond, int burst, long now) {
+        this.nanosPerPermit = Math.max(1, Math.round(1_000_000_000d / permitsPerSecond));
+        this.burstNanos = (burst - 1) * nanosPerPermit;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * @return 0 if a permit was taken, otherwise how many nanoseconds from {@code now} the next permit is available
+     */
+    long tryAcquire(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long start = Math.max(current, now);
+            long wait = start - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, start + nanosPerPermit)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.madeeasy.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Adds the time spent obtaining each connection to the {@link RequestQueryStats} of the current request. Only
+ * {@code getConnection} is intercepted, so statements run at the speed of the data source underneath.
+ */
+public class ConnectionWaitDataSource extends DelegatingDataSource {
+
+    public ConnectionWaitDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return super.getConnection();
+        } finally {
+            record(start);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return super.getConnection(username, password);
+        } finally {
+            record(start);
+        }
+    }
+
+    private static void record(long start) {
+        RequestQueryStats stats = RequestQueryStats.current();
+        if (stats != null) {
+            stats.recordConnectionWait(System.nanoTime() - start);
+        }
+    }
+}
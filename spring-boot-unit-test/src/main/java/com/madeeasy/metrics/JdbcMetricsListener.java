@@ -0,0 +1,78 @@
+package com.madeeasy.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.QueryType;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Times every statement that goes through the proxied data source as {@code movies.jdbc.query}, tagged by statement
+ * type and outcome, attributes it to the current request and logs it when it is slower than the configured
+ * threshold. A JDBC batch counts as one execution. A SELECT of the rows an UPDATE or DELETE changed, e.g.
+ * {@code select ... from old table (delete ...)}, counts as the statement it wraps, so the chunks of a bulk change are
+ * not mistaken for a repeated read.
+ */
+@Slf4j
+public class JdbcMetricsListener implements QueryExecutionListener {
+
+    public static final String QUERY_TIMER = "movies.jdbc.query";
+
+    private static final Pattern DATA_CHANGE_DELTA_TABLE =
+            Pattern.compile("\\b(?:old|new|final)\\s+table\\s*\\(\\s*", Pattern.CASE_INSENSITIVE);
+
+    private final MeterRegistry meterRegistry;
+    private final Duration slowQueryThreshold;
+
+    public JdbcMetricsListener(MeterRegistry meterRegistry, Duration slowQueryThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        String sql = queryInfoList.isEmpty() ? "" : queryInfoList.get(0).getQuery();
+        QueryType type = queryType(sql);
+        Timer.builder(QUERY_TIMER)
+                .description("JDBC statement execution time")
+                .tag("type", type.name().toLowerCase())
+                .tag("batch", String.valueOf(execInfo.isBatch()))
+                .tag("outcome", execInfo.isSuccess() ? "success" : "error")
+                .register(meterRegistry)
+                .record(execInfo.getElapsedTime(), TimeUnit.MILLISECONDS);
+
+        RequestQueryStats stats = RequestQueryStats.current();
+        if (stats != null) {
+            stats.record(sql, type == QueryType.SELECT);
+        }
+
+        if (execInfo.getElapsedTime() >= slowQueryThreshold.toMillis()) {
+            log.warn("slow query ({} ms, batch size {}): {}",
+                    execInfo.getElapsedTime(), execInfo.getBatchSize(), sql);
+        }
+    }
+
+    static QueryType queryType(String sql) {
+        QueryType type = QueryUtils.getQueryType(sql);
+        if (type == QueryType.SELECT) {
+            Matcher deltaTable = DATA_CHANGE_DELTA_TABLE.matcher(sql);
+            if (deltaTable.find()) {
+                return QueryUtils.getQueryType(sql.substring(deltaTable.end()));
+            }
+        }
+        return type;
+    }
+}
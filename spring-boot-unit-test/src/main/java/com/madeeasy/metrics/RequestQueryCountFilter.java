@@ -0,0 +1,73 @@
+package com.madeeasy.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Publishes the number of JDBC statements per request as {@code movies.jdbc.queries.per.request} and flags requests
+ * that repeat one SELECT at least {@code nPlusOneThreshold} times: each such request increments
+ * {@code movies.jdbc.n_plus_one} and is logged with the offending statement. Only reads count as SELECTs here: the
+ * chunks of a bulk change select the rows they changed, but are updates and deletes. Both are tagged with the route
+ * template, never the raw path, to keep the tag cardinality bounded.
+ */
+@Slf4j
+public class RequestQueryCountFilter extends OncePerRequestFilter {
+
+    public static final String QUERIES_PER_REQUEST = "movies.jdbc.queries.per.request";
+    public static final String N_PLUS_ONE = "movies.jdbc.n_plus_one";
+
+    private final MeterRegistry meterRegistry;
+    private final int nPlusOneThreshold;
+
+    public RequestQueryCountFilter(MeterRegistry meterRegistry, int nPlusOneThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestQueryStats stats = RequestQueryStats.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestQueryStats.end();
+            report(request, stats);
+        }
+    }
+
+    private void report(HttpServletRequest request, RequestQueryStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        DistributionSummary.builder(QUERIES_PER_REQUEST)
+                .description("JDBC statements executed per request")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(stats.getStatements());
+
+        for (Map.Entry<String, Integer> select : stats.getSelects().entrySet()) {
+            if (select.getValue() >= nPlusOneThreshold) {
+                Counter.builder(N_PLUS_ONE)
+                        .description("Requests that repeated one SELECT often enough to suggest an N+1 access pattern")
+                        .tag("method", request.getMethod())
+                        .tag("uri", uri)
+                        .register(meterRegistry)
+                        .increment();
+                log.warn("possible N+1 in {} {}: {} executions of {}",
+                        request.getMethod(), uri, select.getValue(), select.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.madeeasy.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JDBC statements executed while serving the current request, and the time spent waiting for pooled connections.
+ * Bound to the request thread by {@link RequestQueryCountFilter} and filled in by {@link JdbcMetricsListener} and
+ * {@link ConnectionWaitDataSource}; work done outside a request, such as the body of {@code /movies/stream}, is not
+ * attributed to any request.
+ */
+public class RequestQueryStats {
+
+    private static final ThreadLocal<RequestQueryStats> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long connectionWaitNanos;
+    private final Map<String, Integer> selects = new HashMap<>();
+
+    static RequestQueryStats begin() {
+        RequestQueryStats stats = new RequestQueryStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    public static RequestQueryStats current() {
+        return CURRENT.get();
+    }
+
+    void record(String sql, boolean select) {
+        statements++;
+        if (select) {
+            selects.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    void recordConnectionWait(long nanos) {
+        connectionWaitNanos += nanos;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    /**
+     * Executions per distinct SELECT. The same SELECT issued over and over within one request, with only its
+     * parameters changing, is the signature of an N+1 access pattern.
+     */
+    public Map<String, Integer> getSelects() {
+        return selects;
+    }
+
+    /**
+     * Time spent in {@code DataSource.getConnection}, which for a pool is the wait for a free connection.
+     */
+    public long getConnectionWaitNanos() {
+        return connectionWaitNanos;
+    }
+}
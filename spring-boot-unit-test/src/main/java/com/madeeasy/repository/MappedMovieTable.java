@@ -0,0 +1,500 @@
+package com.madeeasy.repository;
+
+import com.madeeasy.dto.CatalogFingerprint;
+import com.madeeasy.dto.MovieSummary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Copy of {@code tbl_user} in memory-mapped files instead of on the Java heap, so holding the catalog costs no
+ * objects at all and reading a row costs none beyond what the caller asks for. The files are sized for
+ * {@code maxRows} up front and stay sparse until written:
+ *
+ * <ul>
+ *     <li>{@code rows.bin}: one fixed-width record per movie, in the order the rows arrived: id, version, last
+ *     modified (epoch millis), release date (epoch day), offset of the name in the pool and flags</li>
+ *     <li>{@code names.bin}: the string pool, UTF-8 names prefixed with their length; a name shared by several
+ *     movies is stored once and a renamed movie leaves its old name behind until the next {@link #clear()}</li>
+ *     <li>{@code ids.idx} and {@code names.idx}: open addressing hash tables from id to record and from name to pool
+ *     offset</li>
+ * </ul>
+ *
+ * A deleted movie keeps its record as a tombstone, so a late copy of the row can never bring it back: ids are never
+ * reused. Writers are serialized; readers do not block them and only take the read lock when a write overlapped
+ * their read. Every {@link #clear()} starts a new generation of the table, which the rows and names of the previous
+ * one are overwritten by.
+ */
+public class MappedMovieTable implements Closeable {
+
+    public static final int NO_DATE = Integer.MIN_VALUE;
+    public static final long NO_INSTANT = Long.MIN_VALUE;
+    // the id index of the largest table is just within the 2 GB a single mapping can address
+    public static final int MAX_ROWS = 1 << 24;
+
+    // record layout, padded to keep the longs 8-byte aligned
+    private static final int ROW_BYTES = 40;
+    private static final int ID = 0;
+    private static final int VERSION = 8;
+    private static final int LAST_MODIFIED = 16;
+    private static final int RELEASE_DATE = 24;
+    private static final int NAME = 28;
+    private static final int FLAGS = 32;
+
+    private static final int DELETED = 1;
+    private static final int NO_NAME = -1;
+    // id (0 marks a free entry, ids start at 1) and record number, padded to 16 bytes
+    private static final int ID_ENTRY_BYTES = 16;
+    // pool offset + 1, 0 marks a free entry
+    private static final int NAME_ENTRY_BYTES = 4;
+
+    private final Path directory;
+    private final int maxRows;
+    private final MappedByteBuffer rows;
+    private final MappedByteBuffer names;
+    private final MappedByteBuffer idIndex;
+    private final MappedByteBuffer nameIndex;
+    private final int idMask;
+    private final int nameMask;
+    private final StampedLock lock = new StampedLock();
+
+    // guarded by lock
+    private int rowCount;
+    private int poolBytes;
+    private int indexedNames;
+    private long liveRows;
+    private long idSum;
+    private long versionSum;
+    private long maxId;
+    private boolean idOrdered = true;
+    private long generation;
+
+    public MappedMovieTable(Path directory, int maxRows, int maxNameBytes) throws IOException {
+        if (maxRows < 1 || maxRows > MAX_ROWS) {
+            throw new IllegalArgumentException("maxRows must be between 1 and " + MAX_ROWS);
+        }
+        // both hash tables stay at most half full
+        int tableSize = Integer.highestOneBit(maxRows) << 2;
+        this.directory = Files.createDirectories(directory);
+        this.maxRows = maxRows;
+        this.rows = map(directory.resolve("rows.bin"), (long) maxRows * ROW_BYTES);
+        this.names = map(directory.resolve("names.bin"), maxNameBytes);
+        this.idIndex = map(directory.resolve("ids.idx"), (long) tableSize * ID_ENTRY_BYTES);
+        this.nameIndex = map(directory.resolve("names.idx"), (long) tableSize * NAME_ENTRY_BYTES);
+        this.idMask = tableSize - 1;
+        this.nameMask = tableSize - 1;
+    }
+
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Stores the movie unless a newer version of it, or its tombstone, is already there.
+     *
+     * @return whether the table changed
+     * @throws IllegalStateException when the table or its string pool is full
+     */
+    public boolean upsert(MovieSummary movie) {
+        long id = movie.id();
+        long version = movie.version() == null ? 0 : movie.version();
+        byte[] name = movie.name() == null ? null : movie.name().getBytes(StandardCharsets.UTF_8);
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotOf(id);
+            if (slot >= 0) {
+                int row = slot * ROW_BYTES;
+                if ((rows.getInt(row + FLAGS) & DELETED) != 0 || rows.getLong(row + VERSION) >= version) {
+                    return false;
+                }
+                int nameOffset = intern(name);
+                versionSum += version - rows.getLong(row + VERSION);
+                write(slot, movie, version, nameOffset);
+            } else {
+                checkCapacity();
+                int nameOffset = intern(name);
+                slot = append(id);
+                liveRows++;
+                idSum += id;
+                versionSum += version;
+                write(slot, movie, version, nameOffset);
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Marks the movie deleted, leaving a tombstone even if it was never stored.
+     *
+     * @return whether a stored movie was deleted
+     * @throws IllegalStateException when the table is full
+     */
+    public boolean delete(long id) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotOf(id);
+            if (slot < 0) {
+                checkCapacity();
+                slot = append(id);
+                rows.putLong(slot * ROW_BYTES + VERSION, 0);
+                rows.putInt(slot * ROW_BYTES + NAME, NO_NAME);
+                rows.putInt(slot * ROW_BYTES + FLAGS, DELETED);
+                return false;
+            }
+            int row = slot * ROW_BYTES;
+            if ((rows.getInt(row + FLAGS) & DELETED) != 0) {
+                return false;
+            }
+            rows.putInt(row + FLAGS, DELETED);
+            liveRows--;
+            idSum -= id;
+            versionSum -= rows.getLong(row + VERSION);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public MovieSummary find(long id) {
+        Row row = new Row();
+        if (!loadById(id, row)) {
+            return null;
+        }
+        return new MovieSummary(row.id,
+                row.nameLength < 0 ? null : new String(row.name, 0, row.nameLength, StandardCharsets.UTF_8),
+                row.releaseDate == NO_DATE ? null : LocalDate.ofEpochDay(row.releaseDate),
+                row.version,
+                row.lastModified == NO_INSTANT ? null : Instant.ofEpochMilli(row.lastModified));
+    }
+
+    /**
+     * Visits every stored movie in id order. Each row is read consistently, the table as a whole is not: rows written
+     * during the iteration may or may not be seen.
+     *
+     * @throws ConcurrentModificationException when the table is cleared during the iteration; the rows visited up to
+     *                                         then belong to the table as it was before
+     */
+    public void forEach(RowVisitor visitor) throws IOException {
+        Row row = new Row();
+        int count;
+        long[] ids = null;
+        long started;
+        long stamp = lock.readLock();
+        try {
+            count = rowCount;
+            started = generation;
+            if (!idOrdered) {
+                ids = liveIds();
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        if (ids == null) {
+            for (int slot = 0; slot < count; slot++) {
+                if (loadBySlot(slot, row) && checkGeneration(row, started)) {
+                    visitor.visit(row.id, row.name, row.nameLength, row.releaseDate, row.version, row.lastModified);
+                }
+            }
+        } else {
+            // rows arrived out of id order, concurrent transactions commit in any order
+            Arrays.sort(ids);
+            for (long id : ids) {
+                if (loadById(id, row) && checkGeneration(row, started)) {
+                    visitor.visit(row.id, row.name, row.nameLength, row.releaseDate, row.version, row.lastModified);
+                }
+            }
+        }
+    }
+
+    /**
+     * The same aggregate as {@link MovieRepository#getCatalogFingerprint()}, maintained on every write.
+     */
+    public CatalogFingerprint fingerprint() {
+        long stamp = lock.readLock();
+        try {
+            return new CatalogFingerprint(liveRows, idSum, versionSum);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long size() {
+        long stamp = lock.readLock();
+        try {
+            return liveRows;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long poolBytes() {
+        long stamp = lock.readLock();
+        try {
+            return poolBytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Empties the table, including its tombstones and the names no longer used.
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            zero(idIndex);
+            zero(nameIndex);
+            rowCount = 0;
+            poolBytes = 0;
+            indexedNames = 0;
+            liveRows = 0;
+            idSum = 0;
+            versionSum = 0;
+            maxId = 0;
+            idOrdered = true;
+            generation++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Deletes the files. The mappings stay valid until the buffers are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        for (String file : new String[]{"rows.bin", "names.bin", "ids.idx", "names.idx"}) {
+            Files.deleteIfExists(directory.resolve(file));
+        }
+    }
+
+    private void checkCapacity() {
+        if (rowCount == maxRows) {
+            throw new IllegalStateException("error!! replica is full at " + maxRows + " rows");
+        }
+    }
+
+    private int append(long id) {
+        int slot = rowCount++;
+        rows.putLong(slot * ROW_BYTES + ID, id);
+        int entry = hash(id) & idMask;
+        while (idIndex.getLong(entry * ID_ENTRY_BYTES) != 0) {
+            entry = (entry + 1) & idMask;
+        }
+        idIndex.putInt(entry * ID_ENTRY_BYTES + 8, slot);
+        idIndex.putLong(entry * ID_ENTRY_BYTES, id);
+        idOrdered &= id > maxId;
+        maxId = Math.max(maxId, id);
+        return slot;
+    }
+
+    private void write(int slot, MovieSummary movie, long version, int nameOffset) {
+        int row = slot * ROW_BYTES;
+        rows.putLong(row + VERSION, version);
+        rows.putLong(row + LAST_MODIFIED, movie.lastModified() == null
+                ? NO_INSTANT : movie.lastModified().toEpochMilli());
+        rows.putInt(row + RELEASE_DATE, movie.releaseDate() == null
+                ? NO_DATE : Math.toIntExact(movie.releaseDate().toEpochDay()));
+        rows.putInt(row + NAME, nameOffset);
+        rows.putInt(row + FLAGS, 0);
+    }
+
+    /**
+     * @return the record number of the id, or -1. Bounded, so that it also terminates on a torn optimistic read.
+     */
+    private int slotOf(long id) {
+        int entry = hash(id) & idMask;
+        for (int probes = 0; probes <= idMask; probes++) {
+            long key = idIndex.getLong(entry * ID_ENTRY_BYTES);
+            if (key == id) {
+                return idIndex.getInt(entry * ID_ENTRY_BYTES + 8);
+            }
+            if (key == 0) {
+                return -1;
+            }
+            entry = (entry + 1) & idMask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the pool offset of the name, appending it unless an equal name is already pooled
+     */
+    private int intern(byte[] name) {
+        if (name == null) {
+            return NO_NAME;
+        }
+        int entry = hash(Arrays.hashCode(name)) & nameMask;
+        for (int value; (value = nameIndex.getInt(entry * NAME_ENTRY_BYTES)) != 0; entry = (entry + 1) & nameMask) {
+            if (isPooled(value - 1, name)) {
+                return value - 1;
+            }
+        }
+        if ((long) poolBytes + Integer.BYTES + name.length > names.capacity()) {
+            throw new IllegalStateException("error!! replica name pool is full at " + poolBytes + " bytes");
+        }
+        int offset = poolBytes;
+        names.putInt(offset, name.length);
+        names.put(offset + Integer.BYTES, name);
+        poolBytes += Integer.BYTES + name.length;
+        // past half full, new names are still pooled but no longer shared
+        if (indexedNames < (nameMask + 1) / 2) {
+            nameIndex.putInt(entry * NAME_ENTRY_BYTES, offset + 1);
+            indexedNames++;
+        }
+        return offset;
+    }
+
+    private boolean isPooled(int offset, byte[] name) {
+        if (names.getInt(offset) != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (names.get(offset + Integer.BYTES + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long[] liveIds() {
+        long[] ids = new long[Math.toIntExact(liveRows)];
+        int live = 0;
+        for (int slot = 0; slot < rowCount; slot++) {
+            if ((rows.getInt(slot * ROW_BYTES + FLAGS) & DELETED) == 0) {
+                ids[live++] = rows.getLong(slot * ROW_BYTES + ID);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @return whether the id is a live movie
+     */
+    private boolean loadById(long id, Row row) {
+        long stamp = lock.tryOptimisticRead();
+        int slot = slotOf(id);
+        if (slot >= 0) {
+            row.load(this, slot);
+        }
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                slot = slotOf(id);
+                if (slot >= 0) {
+                    row.load(this, slot);
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return slot >= 0 && !row.deleted;
+    }
+
+    /**
+     * @return whether the record is a live movie
+     */
+    private boolean loadBySlot(int slot, Row row) {
+        long stamp = lock.tryOptimisticRead();
+        row.load(this, slot);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                row.load(this, slot);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return !row.deleted;
+    }
+
+    private static boolean checkGeneration(Row row, long started) {
+        if (row.generation != started) {
+            throw new ConcurrentModificationException("error!! the replica was cleared while it was read");
+        }
+        return true;
+    }
+
+    private static int hash(long value) {
+        long mixed = value * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    private static void zero(ByteBuffer buffer) {
+        byte[] zeros = new byte[64 * 1024];
+        for (int position = 0; position < buffer.capacity(); position += zeros.length) {
+            buffer.put(position, zeros, 0, Math.min(zeros.length, buffer.capacity() - position));
+        }
+    }
+
+    /**
+     * Receives the columns of one movie. {@code name} is only valid during the call and holds {@code nameLength}
+     * bytes of UTF-8, a length of -1 stands for no name.
+     */
+    @FunctionalInterface
+    public interface RowVisitor {
+        void visit(long id, byte[] name, int nameLength, int releaseEpochDay, long version, long lastModifiedMillis)
+                throws IOException;
+    }
+
+    /**
+     * Reusable holder for the columns and the name of one record, loaded within one lock stamp: a {@link #clear()}
+     * lets later writes overwrite pooled names, so a name is only valid together with the record that points to it.
+     */
+    private static final class Row {
+        long id;
+        long version;
+        long lastModified;
+        int releaseDate;
+        int nameOffset;
+        boolean deleted;
+        byte[] name = new byte[64];
+        int nameLength;
+        long generation;
+
+        /**
+         * Also called on optimistic reads that may see a record half written, so offsets and lengths are checked
+         * against the pool before use; what such a read loaded is thrown away.
+         */
+        void load(MappedMovieTable table, int slot) {
+            int row = slot * ROW_BYTES;
+            id = table.rows.getLong(row + ID);
+            version = table.rows.getLong(row + VERSION);
+            lastModified = table.rows.getLong(row + LAST_MODIFIED);
+            releaseDate = table.rows.getInt(row + RELEASE_DATE);
+            nameOffset = table.rows.getInt(row + NAME);
+            deleted = (table.rows.getInt(row + FLAGS) & DELETED) != 0;
+            generation = table.generation;
+            nameLength = -1;
+            if (deleted || nameOffset < 0 || nameOffset > table.names.capacity() - Integer.BYTES) {
+                return;
+            }
+            int length = table.names.getInt(nameOffset);
+            if (length < 0 || length > table.names.capacity() - Integer.BYTES - nameOffset) {
+                return;
+            }
+            if (name.length < length) {
+                name = new byte[Math.max(length, name.length * 2)];
+            }
+            table.names.get(nameOffset + Integer.BYTES, name, 0, length);
+            nameLength = length;
+        }
+    }
+}
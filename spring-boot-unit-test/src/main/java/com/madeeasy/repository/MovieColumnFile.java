@@ -0,0 +1,547 @@
+package com.madeeasy.repository;
+
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.error.InvalidCatalogFileException;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Self-describing, compressed columnar file of {@code tbl_user}, written and read as a stream so neither side ever
+ * holds more than one row group. All numbers are big-endian:
+ *
+ * <ul>
+ *     <li>header: {@code MCOL}, the format version (1 byte), the number of columns (1 byte) and per column its name
+ *     (modified UTF-8), type and whether it is nullable (1 byte each)</li>
+ *     <li>row groups: the number of rows (int, at least 1), then per column the length of its values before and after
+ *     compression (ints) and the deflated values</li>
+ *     <li>trailer: a row count of 0 and the number of rows in the file (long)</li>
+ * </ul>
+ *
+ * Values of a column are encoded before they are deflated: a nullable column starts with a bitmap of the rows that
+ * have a value. Numbers, dates (epoch day) and instants (epoch microseconds) are zigzag varints of the difference to
+ * the previous value, which makes ascending ids one byte each; strings are the varint UTF-8 lengths of all values
+ * followed by all their bytes. A reader skips columns it does not know and leaves columns missing from the file
+ * {@code null}, a missing version 0.
+ */
+public final class MovieColumnFile {
+
+    public static final String MEDIA_TYPE = "application/vnd.movies.columnar";
+    public static final int DEFAULT_ROW_GROUP_SIZE = 65_536;
+
+    static final byte[] MAGIC = {'M', 'C', 'O', 'L'};
+    static final int FORMAT_VERSION = 1;
+    // bounds checked on read, so a corrupt length cannot make the reader allocate gigabytes
+    static final int MAX_ROW_GROUP_SIZE = 1 << 20;
+    static final int MAX_COLUMN_BYTES = 1 << 28;
+
+    private static final long NULL = Long.MIN_VALUE;
+
+    enum Type {
+        INT64, STRING, DATE, TIMESTAMP
+    }
+
+    /**
+     * The columns this application writes, in file order.
+     */
+    enum Column {
+        ID("id", Type.INT64, false),
+        NAME("name", Type.STRING, true),
+        RELEASE_DATE("release_date", Type.DATE, true),
+        VERSION("version", Type.INT64, false),
+        LAST_MODIFIED("last_modified", Type.TIMESTAMP, true);
+
+        final String columnName;
+        final Type type;
+        final boolean nullable;
+
+        Column(String columnName, Type type, boolean nullable) {
+            this.columnName = columnName;
+            this.type = type;
+            this.nullable = nullable;
+        }
+
+        static Column named(String name) {
+            for (Column column : values()) {
+                if (column.columnName.equals(name)) {
+                    return column;
+                }
+            }
+            return null;
+        }
+    }
+
+    private MovieColumnFile() {
+    }
+
+    /**
+     * Appends movies to a stream. {@link #finish()} writes the last row group and the trailer; the target stream is
+     * neither flushed before that nor ever closed.
+     */
+    public static final class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private final int rowGroupSize;
+        private final Deflater deflater;
+        private final long[] ids;
+        private final String[] names;
+        private final long[] releaseDates;
+        private final long[] versions;
+        private final long[] lastModified;
+        private final Buffer values = new Buffer();
+        private final Buffer strings = new Buffer();
+        private byte[] compressed = new byte[1 << 16];
+        private int rows;
+        private long total;
+        private boolean finished;
+
+        /**
+         * @param compressionLevel {@link Deflater} level, 1 (fastest) to 9 (smallest)
+         */
+        public Writer(OutputStream out, int rowGroupSize, int compressionLevel) throws IOException {
+            if (rowGroupSize < 1 || rowGroupSize > MAX_ROW_GROUP_SIZE) {
+                throw new IllegalArgumentException("error!! row group size must be between 1 and "
+                        + MAX_ROW_GROUP_SIZE);
+            }
+            this.out = new DataOutputStream(out);
+            this.rowGroupSize = rowGroupSize;
+            this.deflater = new Deflater(compressionLevel);
+            ids = new long[rowGroupSize];
+            names = new String[rowGroupSize];
+            releaseDates = new long[rowGroupSize];
+            versions = new long[rowGroupSize];
+            lastModified = new long[rowGroupSize];
+            writeHeader();
+        }
+
+        public void write(MovieSummary movie) throws IOException {
+            ids[rows] = movie.id();
+            names[rows] = movie.name();
+            releaseDates[rows] = movie.releaseDate() == null ? NULL : movie.releaseDate().toEpochDay();
+            versions[rows] = movie.version() == null ? 0 : movie.version();
+            lastModified[rows] = movie.lastModified() == null ? NULL : toEpochMicros(movie.lastModified());
+            if (++rows == rowGroupSize) {
+                writeRowGroup();
+            }
+        }
+
+        /**
+         * @return the number of movies written
+         */
+        public long finish() throws IOException {
+            if (!finished) {
+                if (rows > 0) {
+                    writeRowGroup();
+                }
+                out.writeInt(0);
+                out.writeLong(total);
+                out.flush();
+                finished = true;
+            }
+            return total;
+        }
+
+        @Override
+        public void close() {
+            deflater.end();
+        }
+
+        private void writeHeader() throws IOException {
+            out.write(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeByte(Column.values().length);
+            for (Column column : Column.values()) {
+                out.writeUTF(column.columnName);
+                out.writeByte(column.type.ordinal());
+                out.writeByte(column.nullable ? 1 : 0);
+            }
+        }
+
+        private void writeRowGroup() throws IOException {
+            out.writeInt(rows);
+            for (Column column : Column.values()) {
+                values.reset();
+                switch (column) {
+                    case ID -> encodeLongs(ids, false);
+                    case NAME -> encodeStrings();
+                    case RELEASE_DATE -> encodeLongs(releaseDates, true);
+                    case VERSION -> encodeLongs(versions, false);
+                    case LAST_MODIFIED -> encodeLongs(lastModified, true);
+                }
+                writeDeflated();
+            }
+            total += rows;
+            rows = 0;
+            // no references to the names of this group beyond it
+            Arrays.fill(names, null);
+        }
+
+        private void encodeLongs(long[] column, boolean nullable) {
+            if (nullable) {
+                encodePresence(row -> column[row] != NULL);
+            }
+            long previous = 0;
+            for (int row = 0; row < rows; row++) {
+                if (column[row] != NULL) {
+                    values.writeVarLong(zigzag(column[row] - previous));
+                    previous = column[row];
+                }
+            }
+        }
+
+        private void encodeStrings() {
+            encodePresence(row -> names[row] != null);
+            strings.reset();
+            for (int row = 0; row < rows; row++) {
+                if (names[row] != null) {
+                    byte[] utf8 = names[row].getBytes(StandardCharsets.UTF_8);
+                    values.writeVarLong(utf8.length);
+                    strings.write(utf8, 0, utf8.length);
+                }
+            }
+            values.write(strings.bytes, 0, strings.size);
+        }
+
+        private void encodePresence(RowPredicate present) {
+            for (int row = 0; row < rows; row += 8) {
+                int bits = 0;
+                for (int bit = 0; bit < 8 && row + bit < rows; bit++) {
+                    if (present.test(row + bit)) {
+                        bits |= 1 << bit;
+                    }
+                }
+                values.writeByte(bits);
+            }
+        }
+
+        private void writeDeflated() throws IOException {
+            deflater.reset();
+            deflater.setInput(values.bytes, 0, values.size);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            out.writeInt(values.size);
+            out.writeInt(length);
+            out.write(compressed, 0, length);
+        }
+    }
+
+    /**
+     * Reads the movies of a stream in file order. Throws {@link InvalidCatalogFileException} when the stream is not a
+     * complete file of this format and {@link UncheckedIOException} when reading it fails.
+     */
+    public static final class Reader implements Iterator<MovieSummary>, Closeable {
+
+        private final DataInputStream in;
+        private final Inflater inflater = new Inflater();
+        // per column of the file: the column it is, or null to skip it
+        private final Column[] columns;
+        private final boolean[] nullable;
+        private long[] ids = new long[0];
+        private String[] names = new String[0];
+        private long[] releaseDates = new long[0];
+        private long[] versions = new long[0];
+        private long[] lastModified = new long[0];
+        private byte[] compressed = new byte[1 << 16];
+        private final Buffer values = new Buffer();
+        private int rows;
+        private int next;
+        private long total;
+        private boolean ended;
+
+        public Reader(InputStream in) {
+            this.in = new DataInputStream(in);
+            try {
+                byte[] magic = new byte[MAGIC.length];
+                this.in.readFully(magic);
+                if (!Arrays.equals(magic, MAGIC)) {
+                    throw new InvalidCatalogFileException("error!! not a movie column file");
+                }
+                int version = this.in.readUnsignedByte();
+                if (version != FORMAT_VERSION) {
+                    throw new InvalidCatalogFileException("error!! unsupported movie column file version " + version);
+                }
+                int count = this.in.readUnsignedByte();
+                columns = new Column[count];
+                nullable = new boolean[count];
+                boolean hasId = false;
+                for (int i = 0; i < count; i++) {
+                    String name = this.in.readUTF();
+                    int type = this.in.readUnsignedByte();
+                    nullable[i] = this.in.readUnsignedByte() != 0;
+                    Column column = Column.named(name);
+                    if (column != null && (type != column.type.ordinal() || (nullable[i] && !column.nullable))) {
+                        throw new InvalidCatalogFileException("error!! column " + name + " has an unexpected type");
+                    }
+                    columns[i] = column;
+                    hasId |= column == Column.ID;
+                }
+                if (!hasId) {
+                    throw new InvalidCatalogFileException("error!! the file has no id column");
+                }
+            } catch (EOFException e) {
+                throw new InvalidCatalogFileException("error!! the file ends within its header");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == rows && !ended) {
+                try {
+                    readRowGroup();
+                } catch (EOFException e) {
+                    throw new InvalidCatalogFileException("error!! the file is truncated after " + total + " rows");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next < rows;
+        }
+
+        @Override
+        public MovieSummary next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int row = next++;
+            return new MovieSummary(
+                    ids[row],
+                    names[row],
+                    releaseDates[row] == NULL ? null : LocalDate.ofEpochDay(releaseDates[row]),
+                    versions[row],
+                    lastModified[row] == NULL ? null : fromEpochMicros(lastModified[row]));
+        }
+
+        @Override
+        public void close() {
+            inflater.end();
+        }
+
+        private void readRowGroup() throws IOException {
+            int count = in.readInt();
+            if (count == 0) {
+                long expected = in.readLong();
+                if (expected != total) {
+                    throw new InvalidCatalogFileException("error!! the file holds " + total + " rows instead of "
+                            + expected);
+                }
+                ended = true;
+                rows = 0;
+                next = 0;
+                return;
+            }
+            if (count < 0 || count > MAX_ROW_GROUP_SIZE) {
+                throw new InvalidCatalogFileException("error!! invalid row group of " + count + " rows");
+            }
+            if (ids.length < count) {
+                ids = new long[count];
+                names = new String[count];
+                releaseDates = new long[count];
+                versions = new long[count];
+                lastModified = new long[count];
+            }
+            // columns missing from the file
+            Arrays.fill(names, 0, count, null);
+            Arrays.fill(releaseDates, 0, count, NULL);
+            Arrays.fill(versions, 0, count, 0);
+            Arrays.fill(lastModified, 0, count, NULL);
+            for (int i = 0; i < columns.length; i++) {
+                inflateColumn(columns[i] != null);
+                if (columns[i] == null) {
+                    continue;
+                }
+                switch (columns[i]) {
+                    case ID -> decodeLongs(ids, count, nullable[i]);
+                    case NAME -> decodeStrings(count, nullable[i]);
+                    case RELEASE_DATE -> decodeLongs(releaseDates, count, nullable[i]);
+                    case VERSION -> decodeLongs(versions, count, nullable[i]);
+                    case LAST_MODIFIED -> decodeLongs(lastModified, count, nullable[i]);
+                }
+                if (values.position != values.size) {
+                    throw new InvalidCatalogFileException("error!! column " + columns[i].columnName
+                            + " has trailing bytes");
+                }
+            }
+            total += count;
+            rows = count;
+            next = 0;
+        }
+
+        private void inflateColumn(boolean needed) throws IOException {
+            int rawLength = in.readInt();
+            int length = in.readInt();
+            if (rawLength < 0 || rawLength > MAX_COLUMN_BYTES || length < 0 || length > MAX_COLUMN_BYTES) {
+                throw new InvalidCatalogFileException("error!! invalid column length");
+            }
+            if (!needed) {
+                in.skipNBytes(length);
+                return;
+            }
+            if (compressed.length < length) {
+                compressed = new byte[Math.max(length, compressed.length * 2)];
+            }
+            in.readFully(compressed, 0, length);
+            values.reset();
+            values.ensureCapacity(rawLength);
+            inflater.reset();
+            inflater.setInput(compressed, 0, length);
+            try {
+                int inflated = 0;
+                while (!inflater.finished() && inflated < rawLength) {
+                    int count = inflater.inflate(values.bytes, inflated, rawLength - inflated);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += count;
+                }
+                if (inflated != rawLength || (rawLength > 0 && !inflater.finished())) {
+                    throw new InvalidCatalogFileException("error!! column data does not match its length");
+                }
+            } catch (DataFormatException e) {
+                throw new InvalidCatalogFileException("error!! column data is corrupt");
+            }
+            values.size = rawLength;
+        }
+
+        private void decodeLongs(long[] column, int count, boolean nullable) {
+            byte[] presence = nullable ? presence(count) : null;
+            long previous = 0;
+            for (int row = 0; row < count; row++) {
+                if (presence == null || (presence[row >>> 3] & (1 << (row & 7))) != 0) {
+                    previous += unzigzag(values.readVarLong());
+                    column[row] = previous;
+                } else {
+                    column[row] = NULL;
+                }
+            }
+        }
+
+        private void decodeStrings(int count, boolean nullable) {
+            byte[] presence = nullable ? presence(count) : null;
+            int[] lengths = new int[count];
+            for (int row = 0; row < count; row++) {
+                boolean present = presence == null || (presence[row >>> 3] & (1 << (row & 7))) != 0;
+                lengths[row] = present ? (int) values.readVarLong() : -1;
+            }
+            for (int row = 0; row < count; row++) {
+                if (lengths[row] >= 0) {
+                    values.require(lengths[row]);
+                    names[row] = new String(values.bytes, values.position, lengths[row], StandardCharsets.UTF_8);
+                    values.position += lengths[row];
+                } else {
+                    names[row] = null;
+                }
+            }
+        }
+
+        private byte[] presence(int count) {
+            int length = (count + 7) >>> 3;
+            values.require(length);
+            byte[] presence = Arrays.copyOfRange(values.bytes, values.position, values.position + length);
+            values.position += length;
+            return presence;
+        }
+    }
+
+    static long toEpochMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+
+    static Instant fromEpochMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @FunctionalInterface
+    private interface RowPredicate {
+        boolean test(int row);
+    }
+
+    /**
+     * Growable byte array with varint encoding, reused from row group to row group.
+     */
+    private static final class Buffer {
+        byte[] bytes = new byte[1 << 16];
+        int size;
+        int position;
+
+        void reset() {
+            size = 0;
+            position = 0;
+        }
+
+        void ensureCapacity(int capacity) {
+            if (bytes.length < capacity) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(size + 1);
+            bytes[size++] = (byte) value;
+        }
+
+        void write(byte[] source, int offset, int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(size + 10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                require(1);
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new InvalidCatalogFileException("error!! malformed number");
+        }
+
+        void require(int length) {
+            if (length < 0 || position + length > size) {
+                throw new InvalidCatalogFileException("error!! column data ends early");
+            }
+        }
+    }
+}
@@ -1,19 +1,52 @@
 package com.madeeasy.repository;
 
+import com.madeeasy.dto.CatalogFingerprint;
+import com.madeeasy.dto.MovieReleaseDate;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.dto.ReleaseCount;
+import com.madeeasy.dto.ReleaseDateCount;
 import com.madeeasy.entity.MovieEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface MovieRepository extends JpaRepository<MovieEntity,Long> {
+public interface MovieRepository extends JpaRepository<MovieEntity,Long>, MovieRepositoryCustom {
+
+    /**
+     * Constructor expression of the read-only {@link MovieSummary} projection: rows selected with it are never
+     * attached to the persistence context.
+     */
+    String SUMMARY = "new com.madeeasy.dto.MovieSummary(m.id, m.name, m.releaseDate, m.version, m.lastModified)";
 
     Optional<MovieEntity> findById(Long id);
 
+    @Query("select " + SUMMARY + " from MovieEntity m where m.id = :id")
+    Optional<MovieSummary> findSummaryById(@Param("id") Long id);
+
+    @Query("select " + SUMMARY + " from MovieEntity m where m.id in :ids")
+    List<MovieSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Unranked, case-insensitive substring match on the name. The leading wildcard rules out any index, so this scans
+     * the whole table; title search only falls back to it while its index is loading.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select " + SUMMARY + " from MovieEntity m where lower(m.name) like :pattern escape '\\' order by m.id")
+    Slice<MovieSummary> findByNameLike(@Param("pattern") String pattern, Pageable pageable);
+
     @Query(
             value = "select * from tbl_user as u where u.name = :name",
             nativeQuery = true
@@ -21,4 +54,77 @@ public interface MovieRepository extends JpaRepository<MovieEntity,Long> {
     MovieEntity findByNameNativeQuery(@Param("name") String name);
     MovieEntity findByReleaseDate(LocalDate releaseDate);
 
+    /**
+     * Keyset (seek) page: seeks on the primary key instead of using an offset, so every page costs the same no
+     * matter how deep into the table it is. Only the page size of the {@link Pageable} is used.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select " + SUMMARY + " from MovieEntity m where m.id > :afterId order by m.id")
+    List<MovieSummary> findPageAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * The whole catalog in id order, read in fetches of 500 rows.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select " + SUMMARY + " from MovieEntity m order by m.id")
+    List<MovieSummary> findAllSummaries();
+
+    /**
+     * Forward-only cursor over the whole table. Must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select " + SUMMARY + " from MovieEntity m order by m.id")
+    Stream<MovieSummary> streamAllOrderById();
+
+    /**
+     * Forward-only cursor over the release date of every movie in id order. Must be consumed inside a transaction and
+     * closed afterwards.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.madeeasy.dto.MovieReleaseDate(m.id, m.releaseDate) from MovieEntity m order by m.id")
+    Stream<MovieReleaseDate> streamReleaseDatesOrderById();
+
+    /**
+     * Movies per release day, including a {@code null} day for the movies without a release date.
+     */
+    @Query("select new com.madeeasy.dto.ReleaseDateCount(m.releaseDate, count(m)) from MovieEntity m " +
+            "group by m.releaseDate order by m.releaseDate")
+    List<ReleaseDateCount> countByReleaseDate();
+
+    /**
+     * Movies per release day from {@code from} to {@code to}, both inclusive; a range scan of the release date index.
+     */
+    @Query("select new com.madeeasy.dto.ReleaseDateCount(m.releaseDate, count(m)) from MovieEntity m " +
+            "where m.releaseDate between :from and :to group by m.releaseDate order by m.releaseDate")
+    List<ReleaseDateCount> countByReleaseDateBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("select new com.madeeasy.dto.ReleaseCount(year(m.releaseDate), count(m)) from MovieEntity m " +
+            "where m.releaseDate is not null group by year(m.releaseDate) order by year(m.releaseDate)")
+    List<ReleaseCount> countByReleaseYear();
+
+    @Query("select new com.madeeasy.dto.ReleaseCount(year(m.releaseDate), month(m.releaseDate), count(m)) " +
+            "from MovieEntity m where m.releaseDate is not null " +
+            "group by year(m.releaseDate), month(m.releaseDate) order by year(m.releaseDate), month(m.releaseDate)")
+    List<ReleaseCount> countByReleaseMonth();
+
+    @Query("select new com.madeeasy.dto.ReleaseCount(year(m.releaseDate), month(m.releaseDate), count(m)) " +
+            "from MovieEntity m where m.releaseDate between :from and :to " +
+            "group by year(m.releaseDate), month(m.releaseDate) order by year(m.releaseDate), month(m.releaseDate)")
+    List<ReleaseCount> countByReleaseMonthBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    long countByReleaseDateIsNull();
+
+    @Query("select new com.madeeasy.dto.CatalogFingerprint(count(m), coalesce(sum(m.id), 0L), " +
+            "coalesce(sum(m.version), 0L)) from MovieEntity m")
+    CatalogFingerprint getCatalogFingerprint();
+
 }
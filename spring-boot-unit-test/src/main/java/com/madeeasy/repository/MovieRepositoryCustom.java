@@ -0,0 +1,59 @@
+package com.madeeasy.repository;
+
+import com.madeeasy.dto.MovieBulkRequest;
+import com.madeeasy.dto.MoviePatch;
+import com.madeeasy.dto.MovieSearchCriteria;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.entity.MovieEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Queries of {@link MovieRepository} that are assembled at runtime and therefore cannot be declared with
+ * {@code @Query}.
+ */
+public interface MovieRepositoryCustom {
+
+    /**
+     * Returns a slice rather than a page so no count query runs next to the search itself.
+     */
+    Slice<MovieSummary> search(MovieSearchCriteria criteria, Pageable pageable);
+
+    /**
+     * Updates the name and/or release date present in the patch, increments the version and stamps
+     * {@code modifiedAt}, in one statement and without loading the entity first. When the patch carries a version,
+     * the row is only updated if its version still matches.
+     *
+     * @return the row as it was before the update (detached), or empty if no row was updated
+     */
+    Optional<MovieEntity> patchById(Long id, MoviePatch patch, Instant modifiedAt);
+
+    /**
+     * Deletes the movie in one statement, without loading it first.
+     *
+     * @return the deleted row (detached), or empty if there was no such movie
+     */
+    Optional<MovieEntity> deleteByIdReturning(Long id);
+
+    /**
+     * Deletes the next chunk of the selected movies, the {@code limit} lowest ids above {@code afterId}, in one
+     * statement. Only the ids and the release date range of the request select movies.
+     *
+     * @return the deleted rows (detached), in no particular order; fewer than {@code limit} once the selection is
+     * exhausted
+     */
+    List<MovieEntity> deleteChunk(MovieBulkRequest selection, long afterId, int limit);
+
+    /**
+     * Like {@link #deleteChunk} but applies the patch to the chunk instead, incrementing every version and stamping
+     * {@code modifiedAt}.
+     *
+     * @return the rows as they were before the update (detached), in no particular order
+     */
+    List<MovieEntity> patchChunk(MovieBulkRequest selection, MoviePatch patch, Instant modifiedAt, long afterId,
+                                 int limit);
+}
@@ -0,0 +1,195 @@
+package com.madeeasy.repository;
+
+import com.madeeasy.dto.MovieBulkRequest;
+import com.madeeasy.dto.MoviePatch;
+import com.madeeasy.dto.MovieSearchCriteria;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.entity.MovieEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.TypedParameterValue;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public class MovieRepositoryCustomImpl implements MovieRepositoryCustom {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    /**
+     * H2's data change delta tables return the affected rows of an UPDATE/DELETE from the very same statement:
+     * OLD TABLE yields them as they were before the change.
+     */
+    private static final String RETURNING_OLD_ROW =
+            "select id, name, release_date, version, last_modified from old table (%s)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Slice<MovieSummary> search(MovieSearchCriteria criteria, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<MovieSummary> query = cb.createQuery(MovieSummary.class);
+        Root<MovieEntity> movie = query.from(MovieEntity.class);
+
+        // only equality, left-anchored LIKE and ranges, so every predicate can seek on an index
+        List<Predicate> predicates = new ArrayList<>();
+        if (criteria.getName() != null) {
+            predicates.add(cb.equal(movie.get("name"), criteria.getName()));
+        }
+        if (criteria.getNamePrefix() != null) {
+            predicates.add(cb.like(movie.get("name"), escapeLike(criteria.getNamePrefix()) + "%", LIKE_ESCAPE));
+        }
+        if (criteria.getReleasedFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(movie.get("releaseDate"), criteria.getReleasedFrom()));
+        }
+        if (criteria.getReleasedTo() != null) {
+            predicates.add(cb.lessThanOrEqualTo(movie.get("releaseDate"), criteria.getReleasedTo()));
+        }
+        query.select(cb.construct(MovieSummary.class, movie.get("id"), movie.get("name"), movie.get("releaseDate"),
+                        movie.get("version"), movie.get("lastModified")))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(QueryUtils.toOrders(pageable.getSort(), movie, cb));
+
+        // one extra row tells whether a next slice exists
+        List<MovieSummary> movies = entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        boolean hasNext = movies.size() > pageable.getPageSize();
+        if (hasNext) {
+            movies = movies.subList(0, pageable.getPageSize());
+        }
+        return new SliceImpl<>(movies, pageable, hasNext);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
+    @Override
+    public Optional<MovieEntity> patchById(Long id, MoviePatch patch, Instant modifiedAt) {
+        StringBuilder update = new StringBuilder("update tbl_user set ");
+        List<Object> parameters = new ArrayList<>();
+        appendAssignments(patch, modifiedAt, update, parameters);
+        update.append(" where id = ?").append(parameters.size() + 1);
+        parameters.add(id);
+        if (patch.has(MoviePatch.Field.VERSION)) {
+            update.append(" and version = ?").append(parameters.size() + 1);
+            parameters.add(patch.getVersion());
+        }
+        return returningOldRows(update.toString(), parameters).stream().findFirst();
+    }
+
+    @Override
+    public Optional<MovieEntity> deleteByIdReturning(Long id) {
+        return returningOldRows("delete from tbl_user where id = ?1", List.of(id)).stream().findFirst();
+    }
+
+    @Override
+    public List<MovieEntity> deleteChunk(MovieBulkRequest selection, long afterId, int limit) {
+        StringBuilder delete = new StringBuilder("delete from tbl_user");
+        List<Object> parameters = new ArrayList<>();
+        appendChunkCondition(selection, afterId, limit, delete, parameters);
+        return returningOldRows(delete.toString(), parameters);
+    }
+
+    @Override
+    public List<MovieEntity> patchChunk(MovieBulkRequest selection, MoviePatch patch, Instant modifiedAt,
+                                        long afterId, int limit) {
+        StringBuilder update = new StringBuilder("update tbl_user set ");
+        List<Object> parameters = new ArrayList<>();
+        appendAssignments(patch, modifiedAt, update, parameters);
+        appendChunkCondition(selection, afterId, limit, update, parameters);
+        return returningOldRows(update.toString(), parameters);
+    }
+
+    /**
+     * Sets the name and/or release date present in the patch, stamps {@code modifiedAt} and increments the version.
+     */
+    private static void appendAssignments(MoviePatch patch, Instant modifiedAt, StringBuilder update,
+                                          List<Object> parameters) {
+        if (patch.has(MoviePatch.Field.NAME)) {
+            update.append("name = ?").append(parameters.size() + 1).append(", ");
+            parameters.add(new TypedParameterValue<>(StandardBasicTypes.STRING, patch.getName()));
+        }
+        if (patch.has(MoviePatch.Field.RELEASE_DATE)) {
+            update.append("release_date = ?").append(parameters.size() + 1).append(", ");
+            parameters.add(new TypedParameterValue<>(StandardBasicTypes.LOCAL_DATE, patch.getReleaseDate()));
+        }
+        update.append("last_modified = ?").append(parameters.size() + 1).append(", ");
+        parameters.add(new TypedParameterValue<>(StandardBasicTypes.INSTANT, modifiedAt));
+        update.append("version = version + 1");
+    }
+
+    /**
+     * Restricts the statement to the next {@code limit} selected ids after {@code afterId}. The chunk is picked by a
+     * subquery seeking on the primary key, so the statement itself stays set-based and every chunk costs the same.
+     */
+    private static void appendChunkCondition(MovieBulkRequest selection, long afterId, int limit,
+                                             StringBuilder statement, List<Object> parameters) {
+        statement.append(" where id in (select id from tbl_user where id > ?").append(parameters.size() + 1);
+        parameters.add(afterId);
+        if (selection.getIds() != null) {
+            statement.append(" and id in (?").append(parameters.size() + 1).append(")");
+            parameters.add(selection.getIds());
+        }
+        if (selection.getReleasedFrom() != null) {
+            statement.append(" and release_date >= ?").append(parameters.size() + 1);
+            parameters.add(new TypedParameterValue<>(StandardBasicTypes.LOCAL_DATE, selection.getReleasedFrom()));
+        }
+        if (selection.getReleasedTo() != null) {
+            statement.append(" and release_date <= ?").append(parameters.size() + 1);
+            parameters.add(new TypedParameterValue<>(StandardBasicTypes.LOCAL_DATE, selection.getReleasedTo()));
+        }
+        statement.append(" order by id fetch first ?").append(parameters.size() + 1).append(" rows only)");
+        parameters.add(limit);
+    }
+
+    private List<MovieEntity> returningOldRows(String statement, List<Object> parameters) {
+        NativeQuery<?> query = entityManager.createNativeQuery(RETURNING_OLD_ROW.formatted(statement))
+                .unwrap(NativeQuery.class)
+                .addScalar("id", StandardBasicTypes.LONG)
+                .addScalar("name", StandardBasicTypes.STRING)
+                .addScalar("release_date", StandardBasicTypes.LOCAL_DATE)
+                .addScalar("version", StandardBasicTypes.LONG)
+                .addScalar("last_modified", StandardBasicTypes.INSTANT);
+        for (int i = 0; i < parameters.size(); i++) {
+            if (parameters.get(i) instanceof Collection<?> values) {
+                query.setParameterList(i + 1, values);
+            } else {
+                query.setParameter(i + 1, parameters.get(i));
+            }
+        }
+        return query.getResultList().stream()
+                .map(row -> {
+                    Object[] columns = (Object[]) row;
+                    return MovieEntity.builder()
+                            .id((Long) columns[0])
+                            .name((String) columns[1])
+                            .releaseDate((LocalDate) columns[2])
+                            .version((Long) columns[3])
+                            .lastModified((Instant) columns[4])
+                            .build();
+                })
+                .toList();
+    }
+}
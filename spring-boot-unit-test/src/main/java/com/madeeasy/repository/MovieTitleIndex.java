@@ -0,0 +1,512 @@
+package com.madeeasy.repository;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index over movie titles: every token of a title, lower-cased and stripped of accents, maps to the sorted
+ * ids of the movies whose title contains it. Queries are tokenized the same way; every query token has to match a
+ * title token exactly, as a prefix, or within one edit (two for tokens of eight letters and more), and the movies
+ * found are ranked with BM25, the weight of a match falling from exact to prefix to fuzzy.
+ *
+ * <p>A posting packs the id and the number of tokens of the title into one {@code long}, so the index holds no
+ * object per movie and the title length needed by BM25 travels with the posting. Removing a title therefore needs the
+ * title itself, which the caller has: it is the state before the change. Adding a posting that is already there and
+ * removing one that is not are no-ops, so replaying a change that the index already reflects does no harm.
+ *
+ * <p>Fuzzy matching only compares the query token with terms starting with its first or second letter, which keeps
+ * the scan to a small part of the dictionary; a typo in the first letter is found when it swapped the first two
+ * letters or put a letter in front. Tokens containing digits and tokens shorter than four letters are never matched
+ * fuzzily. A search costs a hash table update per posting of the terms matched, sized for the candidates of the
+ * rarest query token. Readers share a read lock; writes take the write lock for the few array updates of one title.
+ */
+public class MovieTitleIndex {
+
+    /**
+     * Titles with more tokens are indexed with their first 255.
+     */
+    static final int MAX_TOKENS = 255;
+
+    /**
+     * Query tokens beyond this are ignored.
+     */
+    static final int MAX_QUERY_TOKENS = 16;
+
+    /**
+     * Terms a query token may expand to by prefix; the shortest, in lexical order, win.
+     */
+    static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private static final int LENGTH_BITS = 8;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final double EXACT = 1.0;
+    private static final double PREFIX = 0.8;
+    private static final double ONE_EDIT = 0.6;
+    private static final double TWO_EDITS = 0.4;
+
+    // BM25 with a term frequency of one, which is what a title token almost always has
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long titles;
+    private long tokens;
+
+    /**
+     * A movie found by {@link #search}.
+     */
+    public record Hit(long id, double score) {
+    }
+
+    /**
+     * One page of hits, best first, and the number of movies matching the query.
+     */
+    public record Result(List<Hit> hits, long total) {
+    }
+
+    public void add(long id, String title) {
+        List<String> titleTokens = tokenize(title, MAX_TOKENS);
+        if (titleTokens.isEmpty()) {
+            return;
+        }
+        long posting = posting(id, titleTokens.size());
+        lock.writeLock().lock();
+        try {
+            add(posting, titleTokens);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id, String title) {
+        List<String> titleTokens = tokenize(title, MAX_TOKENS);
+        if (titleTokens.isEmpty()) {
+            return;
+        }
+        long posting = posting(id, titleTokens.size());
+        lock.writeLock().lock();
+        try {
+            remove(posting, titleTokens);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the title {@code before} of a movie by {@code after}, either of which may be {@code null}. Readers see
+     * the old or the new title, never neither.
+     */
+    public void replace(long id, String before, String after) {
+        List<String> beforeTokens = tokenize(before, MAX_TOKENS);
+        List<String> afterTokens = tokenize(after, MAX_TOKENS);
+        lock.writeLock().lock();
+        try {
+            if (!beforeTokens.isEmpty()) {
+                remove(posting(id, beforeTokens.size()), beforeTokens);
+            }
+            if (!afterTokens.isEmpty()) {
+                add(posting(id, afterTokens.size()), afterTokens);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            titles = 0;
+            tokens = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of indexed titles.
+     */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return titles;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param offset number of best hits to skip
+     * @param limit  maximum number of hits to return
+     */
+    public Result search(String query, int offset, int limit) {
+        List<String> queryTokens = tokenize(query, MAX_QUERY_TOKENS);
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return new Result(List.of(), 0);
+        }
+        lock.readLock().lock();
+        try {
+            List<List<Expansion>> matches = new ArrayList<>();
+            for (String queryToken : queryTokens) {
+                Map<String, Double> expansions = expand(queryToken);
+                if (expansions.isEmpty()) {
+                    // every query token has to match
+                    return new Result(List.of(), 0);
+                }
+                // all terms of a query token share the rarity of the most frequent one, so that a rare term it
+                // only matches by prefix or with a typo does not outrank the term it names
+                int documentFrequency = 0;
+                for (String term : expansions.keySet()) {
+                    documentFrequency = Math.max(documentFrequency, terms.get(term).size);
+                }
+                double idf = idf(documentFrequency);
+                List<Expansion> tokenMatches = new ArrayList<>(expansions.size());
+                expansions.forEach((term, weight) -> tokenMatches.add(new Expansion(terms.get(term), weight * idf)));
+                matches.add(tokenMatches);
+            }
+            return rank(matches, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lower-cased, accent-free, distinct tokens of {@code text} in order of appearance.
+     */
+    static List<String> tokenize(String text, int maxTokens) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String token : SEPARATORS.split(folded)) {
+            if (!token.isEmpty() && distinct.size() < maxTokens) {
+                distinct.add(token);
+            }
+        }
+        return List.copyOf(distinct);
+    }
+
+    /**
+     * Optimal string alignment distance, i.e. Levenshtein plus transpositions of adjacent letters, or
+     * {@code max + 1} as soon as it is known to exceed {@code max}.
+     */
+    static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        // the common case has a prefix and a suffix in common, which do not change the distance
+        int start = 0;
+        while (start < a.length() && start < b.length() && a.charAt(start) == b.charAt(start)) {
+            start++;
+        }
+        int endA = a.length();
+        int endB = b.length();
+        while (endA > start && endB > start && a.charAt(endA - 1) == b.charAt(endB - 1)) {
+            endA--;
+            endB--;
+        }
+        if (endA - start <= 2 && endB - start <= 2) {
+            return shortDistance(a, start, endA, b, endB);
+        }
+        if (max <= 1) {
+            // more than two letters differ on both sides of the common prefix and suffix
+            return max + 1;
+        }
+        return alignmentDistance(a.substring(start, endA), b.substring(start, endB), max);
+    }
+
+    /**
+     * Distance of two strings that differ in at most two letters at {@code start}.
+     */
+    private static int shortDistance(String a, int start, int endA, String b, int endB) {
+        int lengthA = endA - start;
+        int lengthB = endB - start;
+        if (lengthA == 2 && lengthB == 2) {
+            boolean swapped = a.charAt(start) == b.charAt(start + 1) && a.charAt(start + 1) == b.charAt(start);
+            return swapped ? 1 : 2;
+        }
+        return Math.max(lengthA, lengthB);
+    }
+
+    private static int alignmentDistance(String a, String b, int max) {
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMinimum = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int distance = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    distance = Math.min(distance, previous2[j - 2] + 1);
+                }
+                current[j] = distance;
+                rowMinimum = Math.min(rowMinimum, distance);
+            }
+            if (rowMinimum > max) {
+                return max + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+
+    private void add(long posting, List<String> titleTokens) {
+        boolean added = false;
+        for (String token : titleTokens) {
+            added |= terms.computeIfAbsent(token, key -> new Postings()).add(posting);
+        }
+        if (added) {
+            titles++;
+            tokens += titleTokens.size();
+        }
+    }
+
+    private void remove(long posting, List<String> titleTokens) {
+        boolean removed = false;
+        for (String token : titleTokens) {
+            Postings postings = terms.get(token);
+            if (postings != null && postings.remove(posting)) {
+                removed = true;
+                if (postings.size == 0) {
+                    terms.remove(token);
+                }
+            }
+        }
+        if (removed) {
+            titles--;
+            tokens -= titleTokens.size();
+        }
+    }
+
+    /**
+     * The terms a query token matches, with the weight of the best way it matches them.
+     */
+    private Map<String, Double> expand(String token) {
+        Map<String, Double> expansions = new LinkedHashMap<>();
+        if (terms.containsKey(token)) {
+            expansions.put(token, EXACT);
+        }
+        if (token.length() >= 2) {
+            int expanded = 0;
+            for (String term : terms.tailMap(token, false).keySet()) {
+                if (!term.startsWith(token) || expanded++ == MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                expansions.put(term, PREFIX);
+            }
+        }
+        if (token.length() >= 4 && token.chars().noneMatch(Character::isDigit)) {
+            int maxEdits = token.length() >= 8 ? 2 : 1;
+            fuzzy(token, token.substring(0, 1), maxEdits, expansions);
+            if (token.charAt(1) != token.charAt(0)) {
+                fuzzy(token, token.substring(1, 2), maxEdits, expansions);
+            }
+        }
+        return expansions;
+    }
+
+    private void fuzzy(String token, String firstLetter, int maxEdits, Map<String, Double> expansions) {
+        NavigableMap<String, Postings> bucket = terms.subMap(firstLetter, true, firstLetter + Character.MAX_VALUE,
+                true);
+        for (String term : bucket.keySet()) {
+            if (expansions.containsKey(term) || Math.abs(term.length() - token.length()) > maxEdits) {
+                continue;
+            }
+            int distance = editDistance(token, term, maxEdits);
+            if (distance <= maxEdits) {
+                expansions.put(term, distance == 1 ? ONE_EDIT : TWO_EDITS);
+            }
+        }
+    }
+
+    private double idf(int documentFrequency) {
+        return Math.log(1 + (titles - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    /**
+     * Scores every movie matching all query tokens in one pass over their postings and keeps the best
+     * {@code offset + limit}. The rarest query token goes first and decides which movies are candidates at all; the
+     * others only add to those.
+     */
+    private Result rank(List<List<Expansion>> matches, int offset, int limit) {
+        matches.sort(Comparator.comparingLong(MovieTitleIndex::postingCount));
+        ScoreTable scores = new ScoreTable(postingCount(matches.get(0)));
+        for (int token = 0; token < matches.size(); token++) {
+            int bit = 1 << token;
+            List<Expansion> expansions = new ArrayList<>(matches.get(token));
+            // best weight first: a movie counts for a query token with the best term it matches it by
+            expansions.sort(Comparator.comparingDouble(Expansion::weight).reversed());
+            for (Expansion expansion : expansions) {
+                long[] entries = expansion.postings().entries;
+                for (int i = 0; i < expansion.postings().size; i++) {
+                    scores.add(entries[i], bit, expansion.weight(), token == 0);
+                }
+            }
+        }
+
+        double averageLength = titles == 0 ? 1 : (double) tokens / titles;
+        Comparator<Hit> worstFirst = Comparator.comparingDouble(Hit::score)
+                .thenComparing(Comparator.comparingLong(Hit::id).reversed());
+        int keep = offset + limit;
+        PriorityQueue<Hit> best = new PriorityQueue<>(worstFirst);
+        int allMatched = (1 << matches.size()) - 1;
+        long total = 0;
+        for (int slot = 0; slot < scores.postings.length; slot++) {
+            long posting = scores.postings[slot];
+            if (posting == 0 || scores.matched[slot] != allMatched) {
+                continue;
+            }
+            total++;
+            int length = (int) (posting & ((1 << LENGTH_BITS) - 1));
+            double score = scores.scores[slot] * (K1 + 1) / (1 + K1 * (1 - B + B * length / averageLength));
+            if (best.size() < keep) {
+                best.add(new Hit(posting >>> LENGTH_BITS, score));
+            } else if (score >= best.peek().score()) {
+                Hit hit = new Hit(posting >>> LENGTH_BITS, score);
+                if (worstFirst.compare(hit, best.peek()) > 0) {
+                    best.poll();
+                    best.add(hit);
+                }
+            }
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(worstFirst.reversed());
+        return new Result(offset >= hits.size() ? List.of() : List.copyOf(hits.subList(offset, hits.size())), total);
+    }
+
+    private static long postingCount(List<Expansion> expansions) {
+        long count = 0;
+        for (Expansion expansion : expansions) {
+            count += expansion.postings().size;
+        }
+        return count;
+    }
+
+    private static long posting(long id, int tokenCount) {
+        return id << LENGTH_BITS | tokenCount;
+    }
+
+    /**
+     * Postings of one term, sorted. Titles mostly arrive in id order, so adding is usually an append.
+     */
+    private static final class Postings {
+
+        private long[] entries = new long[2];
+        private int size;
+
+        boolean add(long posting) {
+            if (size > 0 && entries[size - 1] < posting) {
+                ensureCapacity();
+                entries[size++] = posting;
+                return true;
+            }
+            int index = Arrays.binarySearch(entries, 0, size, posting);
+            if (index >= 0) {
+                return false;
+            }
+            int insertion = -index - 1;
+            ensureCapacity();
+            System.arraycopy(entries, insertion, entries, insertion + 1, size - insertion);
+            entries[insertion] = posting;
+            size++;
+            return true;
+        }
+
+        boolean remove(long posting) {
+            int index = Arrays.binarySearch(entries, 0, size, posting);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(entries, index + 1, entries, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        private void ensureCapacity() {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+        }
+    }
+
+    private record Expansion(Postings postings, double weight) {
+    }
+
+    /**
+     * Open-addressing map from posting to the summed score and the bit set of query tokens matched so far, in
+     * parallel arrays; 0 marks a free slot, which no posting is since every title has at least one token.
+     */
+    private static final class ScoreTable {
+
+        private final long[] postings;
+        private final double[] scores;
+        private final int[] matched;
+        private final int mask;
+
+        ScoreTable(long expected) {
+            // at most three quarters full
+            int capacity = Integer.highestOneBit((int) (Math.min(Math.max(expected, 8), 1 << 28) * 4 / 3)) << 1;
+            postings = new long[capacity];
+            scores = new double[capacity];
+            matched = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        /**
+         * Adds the weight of a query token unless the posting already has one for it.
+         *
+         * @param insert whether an unknown posting is added, or ignored as not matching an earlier token
+         */
+        void add(long posting, int token, double weight, boolean insert) {
+            int slot = (int) (posting * 0x9E3779B97F4A7C15L >>> 32) & mask;
+            while (postings[slot] != 0 && postings[slot] != posting) {
+                slot = (slot + 1) & mask;
+            }
+            if (postings[slot] == 0) {
+                if (insert) {
+                    postings[slot] = posting;
+                    scores[slot] = weight;
+                    matched[slot] = token;
+                }
+            } else if ((matched[slot] & token) == 0) {
+                matched[slot] |= token;
+                scores[slot] += weight;
+            }
+        }
+    }
+}
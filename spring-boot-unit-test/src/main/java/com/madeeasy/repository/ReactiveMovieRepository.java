@@ -0,0 +1,239 @@
+package com.madeeasy.repository;
+
+import com.madeeasy.dto.CatalogFingerprint;
+import com.madeeasy.dto.MoviePatch;
+import com.madeeasy.dto.MovieSearchCriteria;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.error.InvalidSearchRequestException;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * R2DBC mirror of {@link MovieRepository} for the reactive stack, issuing the same SQL against the same table:
+ * keyset pages, index-friendly search, and single-statement updates and deletes that hand back the previous row.
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveMovieRepository {
+
+    private static final String COLUMNS = "id, name, release_date, version, last_modified";
+
+    private static final String RETURNING_OLD_ROW = "select " + COLUMNS + " from old table (%s)";
+
+    /**
+     * Sortable properties of {@link MovieEntity} and their columns.
+     */
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "id", "id",
+            "name", "name",
+            "releaseDate", "release_date",
+            "version", "version",
+            "lastModified", "last_modified");
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    public Mono<MovieEntity> findById(Long id) {
+        return databaseClient.sql("select " + COLUMNS + " from tbl_user where id = $1")
+                .bind(0, id)
+                .map(ReactiveMovieRepository::toMovie)
+                .one();
+    }
+
+    public Mono<Boolean> existsById(Long id) {
+        return databaseClient.sql("select 1 from tbl_user where id = $1")
+                .bind(0, id)
+                .map(row -> 1)
+                .one()
+                .hasElement();
+    }
+
+    /**
+     * Every movie in id order, emitted as rows arrive.
+     */
+    public Flux<MovieEntity> findAllOrderById() {
+        return databaseClient.sql("select " + COLUMNS + " from tbl_user order by id")
+                .map(ReactiveMovieRepository::toMovie)
+                .all();
+    }
+
+    public Flux<MovieEntity> findPageAfter(Long afterId, int limit) {
+        return databaseClient.sql("select " + COLUMNS + " from tbl_user where id > $1 order by id limit $2")
+                .bind(0, afterId)
+                .bind(1, limit)
+                .map(ReactiveMovieRepository::toMovie)
+                .all();
+    }
+
+    /**
+     * Same predicates as {@link MovieRepositoryCustomImpl#search}; fetches one row more than the page size so the
+     * caller can tell whether a next slice exists.
+     */
+    public Flux<MovieEntity> search(MovieSearchCriteria criteria, Pageable pageable) {
+        StringBuilder sql = new StringBuilder("select " + COLUMNS + " from tbl_user where 1 = 1");
+        List<Object> parameters = new ArrayList<>();
+        if (criteria.getName() != null) {
+            parameters.add(criteria.getName());
+            sql.append(" and name = $").append(parameters.size());
+        }
+        if (criteria.getNamePrefix() != null) {
+            parameters.add(escapeLike(criteria.getNamePrefix()) + "%");
+            sql.append(" and name like $").append(parameters.size()).append(" escape '\\'");
+        }
+        if (criteria.getReleasedFrom() != null) {
+            parameters.add(criteria.getReleasedFrom());
+            sql.append(" and release_date >= $").append(parameters.size());
+        }
+        if (criteria.getReleasedTo() != null) {
+            parameters.add(criteria.getReleasedTo());
+            sql.append(" and release_date <= $").append(parameters.size());
+        }
+        sql.append(orderBy(pageable.getSort()));
+        parameters.add(pageable.getPageSize() + 1);
+        sql.append(" limit $").append(parameters.size());
+        parameters.add(pageable.getOffset());
+        sql.append(" offset $").append(parameters.size());
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        for (int i = 0; i < parameters.size(); i++) {
+            spec = spec.bind(i, parameters.get(i));
+        }
+        return spec.map(ReactiveMovieRepository::toMovie).all();
+    }
+
+    private static String orderBy(Sort sort) {
+        if (sort.isUnsorted()) {
+            return "";
+        }
+        List<String> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            String column = SORT_COLUMNS.get(order.getProperty());
+            if (column == null) {
+                throw new InvalidSearchRequestException("error!! cannot sort by " + order.getProperty());
+            }
+            orders.add(column + (order.isAscending() ? " asc" : " desc"));
+        }
+        return " order by " + String.join(", ", orders);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
+    /**
+     * Inserts the movie with an id from {@code tbl_user_seq}. Taking single values of the sequence never collides
+     * with the blocks Hibernate's pooled optimizer reserves from it.
+     */
+    public Mono<MovieEntity> insert(MovieEntity movie, Instant modifiedAt) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("""
+                select id from final table (
+                    insert into tbl_user (id, name, release_date, version, last_modified)
+                    values (next value for tbl_user_seq, $1, $2, 0, $3))
+                """);
+        spec = movie.getName() == null ? spec.bindNull(0, String.class) : spec.bind(0, movie.getName());
+        spec = movie.getReleaseDate() == null
+                ? spec.bindNull(1, LocalDate.class)
+                : spec.bind(1, movie.getReleaseDate());
+        return spec.bind(2, OffsetDateTime.ofInstant(modifiedAt, ZoneOffset.UTC))
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .map(id -> MovieEntity.builder()
+                        .id(id)
+                        .name(movie.getName())
+                        .releaseDate(movie.getReleaseDate())
+                        .version(0L)
+                        .lastModified(modifiedAt)
+                        .build());
+    }
+
+    /**
+     * @see MovieRepositoryCustom#patchById
+     */
+    public Mono<MovieEntity> patchById(Long id, MoviePatch patch, Instant modifiedAt) {
+        StringBuilder update = new StringBuilder("update tbl_user set ");
+        List<Object> parameters = new ArrayList<>();
+        List<Class<?>> types = new ArrayList<>();
+        if (patch.has(MoviePatch.Field.NAME)) {
+            parameters.add(patch.getName());
+            types.add(String.class);
+            update.append("name = $").append(parameters.size()).append(", ");
+        }
+        if (patch.has(MoviePatch.Field.RELEASE_DATE)) {
+            parameters.add(patch.getReleaseDate());
+            types.add(LocalDate.class);
+            update.append("release_date = $").append(parameters.size()).append(", ");
+        }
+        parameters.add(OffsetDateTime.ofInstant(modifiedAt, ZoneOffset.UTC));
+        types.add(OffsetDateTime.class);
+        update.append("last_modified = $").append(parameters.size()).append(", ");
+        parameters.add(id);
+        types.add(Long.class);
+        update.append("version = version + 1 where id = $").append(parameters.size());
+        if (patch.has(MoviePatch.Field.VERSION)) {
+            parameters.add(patch.getVersion());
+            types.add(Long.class);
+            update.append(" and version = $").append(parameters.size());
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(RETURNING_OLD_ROW.formatted(update));
+        for (int i = 0; i < parameters.size(); i++) {
+            spec = parameters.get(i) == null ? spec.bindNull(i, types.get(i)) : spec.bind(i, parameters.get(i));
+        }
+        return spec.map(ReactiveMovieRepository::toMovie).one();
+    }
+
+    /**
+     * @see MovieRepositoryCustom#deleteByIdReturning
+     */
+    public Mono<MovieEntity> deleteByIdReturning(Long id) {
+        return databaseClient.sql(RETURNING_OLD_ROW.formatted("delete from tbl_user where id = $1"))
+                .bind(0, id)
+                .map(ReactiveMovieRepository::toMovie)
+                .one();
+    }
+
+    /**
+     * @see MovieRepository#getCatalogFingerprint
+     */
+    public Mono<CatalogFingerprint> getCatalogFingerprint() {
+        return databaseClient.sql("""
+                        select count(*) as movies,
+                               cast(coalesce(sum(id), 0) as bigint) as id_sum,
+                               cast(coalesce(sum(version), 0) as bigint) as version_sum
+                        from tbl_user
+                        """)
+                .map(row -> new CatalogFingerprint(
+                        row.get("movies", Long.class),
+                        row.get("id_sum", Long.class),
+                        row.get("version_sum", Long.class)))
+                .one();
+    }
+
+    private static MovieEntity toMovie(Readable row) {
+        OffsetDateTime lastModified = row.get("last_modified", OffsetDateTime.class);
+        return MovieEntity.builder()
+                .id(row.get("id", Long.class))
+                .name(row.get("name", String.class))
+                .releaseDate(row.get("release_date", LocalDate.class))
+                .version(row.get("version", Long.class))
+                .lastModified(lastModified == null ? null : lastModified.toInstant())
+                .build();
+    }
+}
@@ -0,0 +1,10 @@
+package com.madeeasy.service;
+
+/**
+ * Published once a catalog import has committed. The import writes straight to the table without
+ * {@link MoviesChangedEvent}s, so everything that keeps a copy of the catalog loads it again.
+ *
+ * @param rows the number of movies the import created or replaced
+ */
+public record CatalogImportedEvent(long rows) {
+}
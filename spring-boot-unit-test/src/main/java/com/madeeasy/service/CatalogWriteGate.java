@@ -0,0 +1,101 @@
+package com.madeeasy.service;
+
+import com.madeeasy.error.CatalogImportRunningException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Keeps changes of the catalog and a {@link MovieTransferService catalog import} apart. An import writes ids and
+ * moves the id sequence on its own, so a movie created or changed meanwhile could take an imported id or be replaced
+ * by the import. Every write holds the shared side of the gate; an import waits for the writes in flight and then
+ * holds the exclusive side until it has ended, refusing new writes in the meantime.
+ */
+@Component
+public class CatalogWriteGate {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // a tryLock of the shared side barges past a waiting import, which would then only get in during a lull
+    private volatile boolean importing;
+
+    /**
+     * Admits the calling thread as a writer until {@link #leave()}. A thread already admitted is admitted again.
+     *
+     * @throws CatalogImportRunningException while an import runs or waits to start
+     */
+    public void enter() {
+        if (lock.getReadHoldCount() == 0 && importing || !lock.readLock().tryLock()) {
+            throw new CatalogImportRunningException("error!! movies cannot be changed while a catalog import runs");
+        }
+    }
+
+    /**
+     * Like {@link #enter()}, but waits for a running import to end instead of refusing, for writers that have no
+     * client to send away.
+     */
+    public void await() {
+        lock.readLock().lock();
+    }
+
+    public void leave() {
+        lock.readLock().unlock();
+    }
+
+    /**
+     * Runs {@code write} {@link #enter() entered}.
+     */
+    public <T> T admitted(Supplier<T> write) {
+        enter();
+        try {
+            return write.get();
+        } finally {
+            leave();
+        }
+    }
+
+    /**
+     * {@link #enter() Enters} for the rest of the current transaction, so the write stays admitted until it has
+     * committed or rolled back.
+     */
+    public void enterUntilCompletion() {
+        enter();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            leave();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                leave();
+            }
+        });
+    }
+
+    /**
+     * Runs {@code importer} once every admitted write has finished, refusing writes until it returns.
+     *
+     * @throws CatalogImportRunningException if another import is running
+     */
+    public <T> T exclusively(Supplier<T> importer) {
+        synchronized (this) {
+            if (importing) {
+                throw new CatalogImportRunningException("error!! another catalog import is running");
+            }
+            importing = true;
+        }
+        try {
+            lock.writeLock().lock();
+            try {
+                return importer.get();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            importing = false;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.madeeasy.service;
+
+import com.madeeasy.dto.BatchInsertResult;
+import com.madeeasy.dto.BatchItemResult;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.entity.MovieEntity;
+import io.micrometer.core.annotation.Timed;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Bulk creation of movies. Unlike {@link MovieService} this is not transactional as a whole: the input is consumed
+ * in chunks and every chunk is committed in its own transaction, so a large import neither holds one huge
+ * transaction open nor keeps every entity in the persistence context.
+ */
+@Slf4j
+@Service
+@Timed("movies.service")
+public class MovieBatchService {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CatalogWriteGate writeGate;
+
+    /**
+     * Rows per transaction. Keep it a multiple of {@code hibernate.jdbc.batch_size}.
+     */
+    @Value("${movies.batch.chunk-size:500}")
+    private int chunkSize = 500;
+
+    /**
+     * Saves every movie the iterator yields. An iterator that fails, e.g. on a body that stops being valid JSON
+     * halfway, ends the batch instead of failing it: the chunks committed before cannot be taken back, so the movies
+     * read up to that point are saved too and the result names the failure in {@code error}.
+     *
+     * @throws com.madeeasy.error.CatalogImportRunningException while a catalog import runs; no movie is saved then
+     */
+    public BatchInsertResult saveAll(Iterator<MovieEntity> movies) {
+        return writeGate.admitted(() -> save(movies));
+    }
+
+    private BatchInsertResult save(Iterator<MovieEntity> movies) {
+        long start = System.nanoTime();
+        List<BatchItemResult> items = new ArrayList<>();
+        List<MovieEntity> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        String error = null;
+        while (true) {
+            MovieEntity movie;
+            try {
+                if (!movies.hasNext()) {
+                    break;
+                }
+                movie = movies.next();
+            } catch (RuntimeException unreadable) {
+                error = "error!! movie at index " + (index + chunk.size()) + " could not be read: "
+                        + unreadable.getMessage();
+                break;
+            }
+            chunk.add(movie);
+            if (chunk.size() == chunkSize) {
+                saveChunk(chunk, index, items);
+                index += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk(chunk, index, items);
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        int created = (int) items.stream()
+                .filter(item -> item.getStatus() == BatchItemResult.Status.CREATED)
+                .count();
+        return BatchInsertResult.builder()
+                .total(items.size())
+                .created(created)
+                .failed(items.size() - created)
+                .elapsedMillis(elapsedNanos / 1_000_000)
+                .rowsPerSecond(elapsedNanos == 0 ? 0 : created * 1_000_000_000d / elapsedNanos)
+                .items(items)
+                .error(error)
+                .build();
+    }
+
+    private void saveChunk(List<MovieEntity> chunk, int firstIndex, List<BatchItemResult> items) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> persistAll(chunk));
+            for (int i = 0; i < chunk.size(); i++) {
+                items.add(created(firstIndex + i, chunk.get(i)));
+            }
+        } catch (RuntimeException chunkFailure) {
+            // one bad row must not fail the whole chunk: replay it row by row to find out which ones it was
+            for (int i = 0; i < chunk.size(); i++) {
+                MovieEntity movie = chunk.get(i);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> persistAll(List.of(movie)));
+                    items.add(created(firstIndex + i, movie));
+                } catch (RuntimeException rowFailure) {
+                    log.warn("could not save the movie at index {} of a batch", firstIndex + i, rowFailure);
+                    items.add(BatchItemResult.builder()
+                            .index(firstIndex + i)
+                            .status(BatchItemResult.Status.FAILED)
+                            .error(failureReason(rowFailure))
+                            .build());
+                }
+            }
+        }
+    }
+
+    private void persistAll(List<MovieEntity> movies) {
+        for (MovieEntity movie : movies) {
+            // ids are always allocated from the sequence, never taken from the request
+            movie.setId(null);
+            entityManager.persist(movie);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        eventPublisher.publishEvent(new MoviesChangedEvent(movies.stream()
+                .map(movie -> new MoviesChangedEvent.Change(null, MovieSummary.of(movie)))
+                .toList()));
+    }
+
+    /**
+     * What the client is told about a row that could not be saved. The exception itself quotes the SQL and names
+     * tables and constraints, so it only goes to the log.
+     */
+    static String failureReason(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLIntegrityConstraintViolationException
+                    || cause instanceof ConstraintViolationException
+                    || cause instanceof DataIntegrityViolationException
+                    || cause instanceof R2dbcDataIntegrityViolationException) {
+                return "constraint violation";
+            }
+        }
+        return "invalid value";
+    }
+
+    private static BatchItemResult created(int index, MovieEntity movie) {
+        return BatchItemResult.builder()
+                .index(index)
+                .id(movie.getId())
+                .status(BatchItemResult.Status.CREATED)
+                .build();
+    }
+}
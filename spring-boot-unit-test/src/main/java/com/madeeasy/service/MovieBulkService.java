@@ -0,0 +1,162 @@
+package com.madeeasy.service;
+
+import com.madeeasy.config.CacheConfig;
+import com.madeeasy.dto.BulkChangeResult;
+import com.madeeasy.dto.MovieBulkRequest;
+import com.madeeasy.dto.MoviePatch;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.error.InvalidBulkRequestException;
+import com.madeeasy.repository.MovieRepository;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Deletes and patches of many movies at once. Every chunk of {@code movies.bulk.chunk-size} movies is changed by one
+ * set-based statement and committed in its own transaction, so neither the locks nor the undo log of a large request
+ * grow with its size, and no movie is loaded before it is changed.
+ */
+@Service
+@Timed("movies.service")
+public class MovieBulkService {
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CatalogWriteGate writeGate;
+
+    @Value("${movies.bulk.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    public BulkChangeResult deleteMovies(MovieBulkRequest request) {
+        validateSelection(request);
+        return changeInChunks(request, (selection, afterId) ->
+                movieRepository.deleteChunk(selection, afterId, chunkSize), movie -> null);
+    }
+
+    public BulkChangeResult patchMovies(MovieBulkRequest request) {
+        validateSelection(request);
+        MoviePatch patch = request.getSet();
+        if (patch == null || !patch.hasChanges()) {
+            throw new InvalidBulkRequestException("error!! 'set' must contain name and/or releaseDate");
+        }
+        if (patch.has(MoviePatch.Field.ID) || patch.has(MoviePatch.Field.VERSION)) {
+            throw new InvalidBulkRequestException("error!! id and version cannot be set in bulk");
+        }
+        Instant modifiedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        return changeInChunks(request, (selection, afterId) ->
+                movieRepository.patchChunk(selection, patch, modifiedAt, afterId, chunkSize), movie -> {
+            MovieEntity patched = MovieEntity.builder()
+                    .id(movie.getId())
+                    .name(movie.getName())
+                    .releaseDate(movie.getReleaseDate())
+                    .version(movie.getVersion() + 1)
+                    .lastModified(modifiedAt)
+                    .build();
+            patch.applyTo(patched);
+            return MovieSummary.of(patched);
+        });
+    }
+
+    private static void validateSelection(MovieBulkRequest request) {
+        boolean byRange = request.getReleasedFrom() != null || request.getReleasedTo() != null;
+        if (request.getIds() != null) {
+            if (byRange) {
+                throw new InvalidBulkRequestException("error!! select movies either by ids or by release date");
+            }
+            if (request.getIds().isEmpty() || request.getIds().stream().anyMatch(Objects::isNull)) {
+                throw new InvalidBulkRequestException("error!! ids must not be empty or contain null");
+            }
+        } else if (!byRange) {
+            // never turn a forgotten filter into a change of the whole catalog
+            throw new InvalidBulkRequestException("error!! ids or a release date range is required");
+        } else if (request.getReleasedFrom() != null && request.getReleasedTo() != null
+                && request.getReleasedFrom().isAfter(request.getReleasedTo())) {
+            throw new InvalidBulkRequestException("error!! releasedFrom must not be after releasedTo");
+        }
+    }
+
+    /**
+     * @param afterChange the state of a changed movie after the statement, given its state before
+     */
+    private BulkChangeResult changeInChunks(MovieBulkRequest request, ChunkStatement statement,
+                                            Function<MovieEntity, MovieSummary> afterChange) {
+        return writeGate.admitted(() -> {
+            long start = System.nanoTime();
+            int affected = 0;
+            int chunks = 0;
+            if (request.getIds() != null) {
+                // sorted so that concurrent requests lock shared rows in the same order
+                List<Long> ids = request.getIds().stream().distinct().sorted().toList();
+                for (int from = 0; from < ids.size(); from += chunkSize) {
+                    MovieBulkRequest selection = MovieBulkRequest.builder()
+                            .ids(ids.subList(from, Math.min(from + chunkSize, ids.size())))
+                            .build();
+                    affected += changeChunk(statement, afterChange, selection, Long.MIN_VALUE).size();
+                    chunks++;
+                }
+            } else {
+                // seek past the last id of the previous chunk: a patched movie may still match the range
+                long afterId = Long.MIN_VALUE;
+                List<MovieEntity> changed;
+                do {
+                    changed = changeChunk(statement, afterChange, request, afterId);
+                    affected += changed.size();
+                    chunks++;
+                    afterId = changed.stream().mapToLong(MovieEntity::getId).max().orElse(afterId);
+                } while (changed.size() == chunkSize);
+            }
+            return BulkChangeResult.builder()
+                    .affected(affected)
+                    .chunks(chunks)
+                    .elapsedMillis((System.nanoTime() - start) / 1_000_000)
+                    .build();
+        });
+    }
+
+    private List<MovieEntity> changeChunk(ChunkStatement statement, Function<MovieEntity, MovieSummary> afterChange,
+                                          MovieBulkRequest selection, long afterId) {
+        return transactionTemplate.execute(status -> {
+            List<MovieEntity> changed = statement.execute(selection, afterId);
+            eventPublisher.publishEvent(new MoviesChangedEvent(changed.stream()
+                    .map(movie -> new MoviesChangedEvent.Change(MovieSummary.of(movie), afterChange.apply(movie)))
+                    .toList()));
+            // the cache is transaction aware: the evictions apply once the chunk has committed
+            Cache cache = cacheManager.getCache(CacheConfig.MOVIES_CACHE);
+            if (cache != null) {
+                changed.forEach(movie -> cache.evict(movie.getId()));
+            }
+            return changed;
+        });
+    }
+
+    @FunctionalInterface
+    private interface ChunkStatement {
+        /**
+         * @return the changed rows as they were before the change
+         */
+        List<MovieEntity> execute(MovieBulkRequest selection, long afterId);
+    }
+}
@@ -0,0 +1,411 @@
+package com.madeeasy.service;
+
+import com.madeeasy.dto.MovieChange;
+import com.madeeasy.dto.MovieChangePage;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.error.ChangeLogTruncatedException;
+import com.madeeasy.error.InvalidChangeRequestException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persisted, ordered log of the committed changes of the catalog, read by downstream consumers through
+ * {@code GET /movies/changes} instead of polling the whole catalog. Every {@link MoviesChangedEvent} of a transaction
+ * is written to {@code tbl_movie_change} within that transaction, so a change is logged if and only if it commits.
+ *
+ * <p>Sequence numbers follow commit order without gaps: they are handed out right before the commit under a lock
+ * that is held until the commit has completed, and handed back if it fails. A consumer that has read up to n
+ * therefore never misses a change numbered below n that commits later. The writes of a transaction are flushed before
+ * it takes the lock, so the lock is never held while waiting for a row lock. Commits of movie writes are serialized
+ * by this, which for the embedded H2 costs little; writes of the reactive stack do not publish events and are not
+ * logged.
+ *
+ * <p>Consumers that are up to date can wait for the next change. They are answered by a single background thread
+ * once a commit has completed, straight from the changes just written when they were waiting right behind them,
+ * which is the usual case, so many waiting consumers cost no queries. Changes older than
+ * {@code movies.changes.retention} are purged on the same thread, always keeping the newest one; a consumer that has
+ * fallen behind the purge gets 410 and reads the catalog again.
+ */
+@Slf4j
+@Service
+public class MovieChangeLog implements SmartLifecycle {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private static final String INSERT = "insert into tbl_movie_change "
+            + "(seq, operation, movie_id, name, release_date, version, changed_at) values (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_AFTER = "select seq, operation, movie_id, name, release_date, version, "
+            + "changed_at from tbl_movie_change where seq > ? order by seq limit ?";
+    private static final String PURGE = "delete from tbl_movie_change where changed_at < ? and seq < ? "
+            + "fetch first ? rows only";
+    private static final int PURGE_CHUNK_SIZE = 10_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${movies.changes.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${movies.changes.retention:7d}")
+    private Duration retention = Duration.ofDays(7);
+
+    @Value("${movies.changes.purge-interval:1h}")
+    private Duration purgeInterval = Duration.ofHours(1);
+
+    @Value("${movies.changes.max-wait:60s}")
+    private Duration maxWait = Duration.ofSeconds(60);
+
+    // held from right before the commit of a logged transaction until it has completed
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // guarded by appendLock, 0 until read from the table
+    private long nextSequence;
+    // the newest committed sequence number, -1 until read from the table
+    private final AtomicLong head = new AtomicLong(-1);
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService feed;
+    private volatile boolean running;
+
+    /**
+     * Stages the changes for the log of the writing transaction, or logs them in a transaction of their own when
+     * there is none.
+     */
+    @EventListener
+    public void onMoviesChanged(MoviesChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        List<MovieChange> changes = new ArrayList<>(event.changes().size());
+        for (MoviesChangedEvent.Change change : event.changes()) {
+            changes.add(toChange(change));
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            stage(changes);
+        } else {
+            transactionTemplate.executeWithoutResult(status -> stage(changes));
+        }
+    }
+
+    /**
+     * An import bypasses the change events; consumers are told to read the catalog again instead.
+     */
+    @EventListener
+    public void onCatalogImported(CatalogImportedEvent event) {
+        if (enabled) {
+            transactionTemplate.executeWithoutResult(status -> stage(new ArrayList<>(List.of(MovieChange.builder()
+                    .operation(MovieChange.Operation.RESET)
+                    .build()))));
+        }
+    }
+
+    /**
+     * Changes after sequence number {@code after}, at most {@code limit} of them; when there are none yet, waits for
+     * up to {@code wait} (capped at {@code movies.changes.max-wait}) for the next commit.
+     *
+     * @return completed right away if there are changes or nothing to wait for
+     */
+    public CompletableFuture<MovieChangePage> changesAfter(long after, int limit, Duration wait) {
+        if (after < 0 || limit < 1 || limit > MAX_LIMIT || wait.isNegative()) {
+            throw new InvalidChangeRequestException("error!! after must not be negative, limit between 1 and "
+                    + MAX_LIMIT + " and wait not negative");
+        }
+        long latest = head();
+        if (after > latest) {
+            throw new InvalidChangeRequestException("error!! there are no changes after " + latest + " yet");
+        }
+        if (after < latest || wait.isZero() || !running) {
+            return CompletableFuture.completedFuture(read(after, limit));
+        }
+        Waiter waiter = new Waiter(after, limit, new CompletableFuture<>());
+        waiters.add(waiter);
+        waiter.page().whenComplete((page, failure) -> waiters.remove(waiter));
+        waiter.page().completeOnTimeout(emptyPage(after), Math.min(wait.toMillis(), maxWait.toMillis()),
+                TimeUnit.MILLISECONDS);
+        // a commit completed since head() was read may have notified the waiters before this one was added
+        if (head() > after) {
+            answer(waiter);
+        }
+        return waiter.page();
+    }
+
+    /**
+     * The newest committed sequence number, 0 while the log is empty.
+     */
+    public long head() {
+        long latest = head.get();
+        if (latest < 0) {
+            latest = head.accumulateAndGet(maxSequence(), Math::max);
+        }
+        return latest;
+    }
+
+    @Override
+    public void start() {
+        Gauge.builder("movies.changes.head", this, log -> log.head.get())
+                .description("Newest committed sequence number of the change log")
+                .register(meterRegistry);
+        Gauge.builder("movies.changes.waiting", waiters, Queue::size)
+                .description("Consumers waiting for the next change")
+                .register(meterRegistry);
+        feed = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "movie-change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (enabled) {
+            feed.scheduleWithFixedDelay(this::purge, purgeInterval.toMillis(), purgeInterval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        feed.shutdownNow();
+        // waiting consumers must not hold up the shutdown
+        for (Waiter waiter : waiters) {
+            waiter.page().complete(emptyPage(waiter.after()));
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Deletes changes older than the retention, in chunks so that waiting consumers are answered in between.
+     */
+    void purge() {
+        try {
+            int deleted = jdbcTemplate.update(PURGE, Instant.now().minus(retention), head(), PURGE_CHUNK_SIZE);
+            if (deleted > 0) {
+                log.info("purged {} movie changes older than {}", deleted, retention);
+            }
+            if (deleted == PURGE_CHUNK_SIZE && running) {
+                feed.execute(this::purge);
+            }
+        } catch (RuntimeException e) {
+            log.error("purging the movie change log failed", e);
+        }
+    }
+
+    private void stage(List<MovieChange> changes) {
+        @SuppressWarnings("unchecked")
+        List<MovieChange> staged = (List<MovieChange>) TransactionSynchronizationManager.getResource(this);
+        if (staged != null) {
+            staged.addAll(changes);
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, changes);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long first = -1;
+
+            /**
+             * After the synchronization of the release stats, so that every thread takes its lock before the append
+             * lock and never waits for it while holding the append lock.
+             */
+            @Override
+            public int getOrder() {
+                return Ordered.LOWEST_PRECEDENCE;
+            }
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                // take the row locks of the transaction before the append lock, never while holding it
+                entityManager.flush();
+                appendLock.lock();
+                try {
+                    first = append(changes);
+                } catch (RuntimeException e) {
+                    // the commit fails and afterCompletion finds nothing to hand back
+                    nextSequence = 0;
+                    appendLock.unlock();
+                    throw e;
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(MovieChangeLog.this);
+                // not locked when a synchronization before this one or the append failed the commit
+                if (first < 0) {
+                    return;
+                }
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        head.accumulateAndGet(first + changes.size() - 1, Math::max);
+                    } else {
+                        // numbers of a failed commit are handed out again, of an unknown outcome read again
+                        nextSequence = status == STATUS_ROLLED_BACK ? first : 0;
+                    }
+                } finally {
+                    appendLock.unlock();
+                }
+                if (status == STATUS_COMMITTED && running) {
+                    feed.execute(() -> notifyWaiters(first - 1, changes));
+                }
+            }
+        });
+    }
+
+    /**
+     * Numbers and inserts the changes; the caller holds the append lock.
+     *
+     * @return the sequence number of the first change
+     */
+    private long append(List<MovieChange> changes) {
+        if (nextSequence == 0) {
+            nextSequence = maxSequence() + 1;
+        }
+        long first = nextSequence;
+        Instant now = Instant.now();
+        for (MovieChange change : changes) {
+            change.setSequence(nextSequence++);
+            change.setChangedAt(now);
+        }
+        jdbcTemplate.batchUpdate(INSERT, changes, changes.size(), (statement, change) -> {
+            statement.setLong(1, change.getSequence());
+            statement.setString(2, change.getOperation().name());
+            statement.setObject(3, change.getId(), Types.BIGINT);
+            statement.setString(4, change.getName());
+            statement.setObject(5, change.getReleaseDate(), Types.DATE);
+            statement.setObject(6, change.getVersion(), Types.BIGINT);
+            statement.setObject(7, change.getChangedAt(), Types.TIMESTAMP_WITH_TIMEZONE);
+        });
+        return first;
+    }
+
+    /**
+     * Answers the consumers waiting for changes after {@code previousHead} from the changes just committed, and
+     * any others from the table.
+     */
+    private void notifyWaiters(long previousHead, List<MovieChange> committed) {
+        long latest = committed.get(committed.size() - 1).getSequence();
+        for (Iterator<Waiter> iterator = waiters.iterator(); iterator.hasNext(); ) {
+            Waiter waiter = iterator.next();
+            if (waiter.after() >= latest) {
+                continue;
+            }
+            iterator.remove();
+            if (waiter.after() == previousHead) {
+                List<MovieChange> changes = committed.subList(0, Math.min(waiter.limit(), committed.size()));
+                waiter.page().complete(MovieChangePage.builder()
+                        .changes(changes)
+                        .lastSequence(changes.get(changes.size() - 1).getSequence())
+                        .build());
+            } else {
+                answer(waiter);
+            }
+        }
+    }
+
+    private void answer(Waiter waiter) {
+        try {
+            waiter.page().complete(read(waiter.after(), waiter.limit()));
+        } catch (RuntimeException e) {
+            waiter.page().completeExceptionally(e);
+        }
+    }
+
+    private MovieChangePage read(long after, int limit) {
+        List<MovieChange> changes = jdbcTemplate.query(SELECT_AFTER, MovieChangeLog::mapChange, after, limit);
+        if (changes.isEmpty()) {
+            return emptyPage(after);
+        }
+        // sequence numbers have no gaps, so a missing successor was purged
+        if (changes.get(0).getSequence() != after + 1) {
+            throw new ChangeLogTruncatedException("error!! changes after " + after + " have been purged");
+        }
+        return MovieChangePage.builder()
+                .changes(changes)
+                .lastSequence(changes.get(changes.size() - 1).getSequence())
+                .build();
+    }
+
+    private long maxSequence() {
+        Long max = jdbcTemplate.queryForObject("select max(seq) from tbl_movie_change", Long.class);
+        return max != null ? max : 0;
+    }
+
+    private static MovieChangePage emptyPage(long after) {
+        return MovieChangePage.builder()
+                .changes(List.of())
+                .lastSequence(after)
+                .build();
+    }
+
+    private static MovieChange toChange(MoviesChangedEvent.Change change) {
+        if (change.after() == null) {
+            return MovieChange.builder()
+                    .operation(MovieChange.Operation.DELETED)
+                    .id(change.before().id())
+                    .version(change.before().version())
+                    .build();
+        }
+        MovieSummary after = change.after();
+        return MovieChange.builder()
+                .operation(change.before() == null ? MovieChange.Operation.CREATED : MovieChange.Operation.UPDATED)
+                .id(after.id())
+                .name(after.name())
+                .releaseDate(after.releaseDate())
+                .version(after.version())
+                .build();
+    }
+
+    private static MovieChange mapChange(ResultSet resultSet, int rowNum) throws SQLException {
+        return MovieChange.builder()
+                .sequence(resultSet.getLong(1))
+                .operation(MovieChange.Operation.valueOf(resultSet.getString(2)))
+                .id(resultSet.getObject(3, Long.class))
+                .name(resultSet.getString(4))
+                .releaseDate(resultSet.getObject(5, LocalDate.class))
+                .version(resultSet.getObject(6, Long.class))
+                .changedAt(resultSet.getObject(7, Instant.class))
+                .build();
+    }
+
+    private record Waiter(long after, int limit, CompletableFuture<MovieChangePage> page) {
+    }
+}
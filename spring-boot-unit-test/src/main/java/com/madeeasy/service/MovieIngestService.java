@@ -0,0 +1,197 @@
+package com.madeeasy.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.madeeasy.dto.BatchInsertResult;
+import com.madeeasy.dto.BatchItemResult;
+import com.madeeasy.dto.IngestStatus;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.error.IngestQueueFullException;
+import com.madeeasy.error.IngestTicketNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind creation of movies. {@link #enqueue} only puts the movie on a bounded queue and hands out a ticket; a
+ * single background writer drains the queue and commits what it finds through {@link MovieBatchService}, up to
+ * {@code movies.batch.chunk-size} movies per transaction. Client latency therefore no longer includes the commit,
+ * and a burst of creations turns into a few large transactions instead of many small ones.
+ *
+ * <p>When the queue stays full for {@code movies.ingest.offer-timeout} the movie is rejected, which pushes back on
+ * the client instead of buffering without bound. Statuses are kept for {@code movies.ingest.status-retention}, and
+ * at most {@code movies.ingest.status-capacity} of them. Accepted movies that are still queued at shutdown are written
+ * before the application stops; a crash loses them.
+ */
+@Slf4j
+@Service
+public class MovieIngestService implements SmartLifecycle {
+
+    @Autowired
+    private MovieBatchService movieBatchService;
+
+    @Autowired
+    private CatalogWriteGate writeGate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${movies.ingest.queue-capacity:10000}")
+    private int queueCapacity = 10000;
+
+    @Value("${movies.ingest.offer-timeout:100ms}")
+    private Duration offerTimeout = Duration.ofMillis(100);
+
+    @Value("${movies.ingest.status-retention:10m}")
+    private Duration statusRetention = Duration.ofMinutes(10);
+
+    @Value("${movies.ingest.status-capacity:100000}")
+    private int statusCapacity = 100000;
+
+    @Value("${movies.batch.chunk-size:500}")
+    private int batchSize = 500;
+
+    private BlockingQueue<Ticket> queue;
+    private Cache<String, IngestStatus> statuses;
+    private Counter accepted;
+    private Counter rejected;
+    private Thread writer;
+    private volatile boolean running;
+
+    public IngestStatus enqueue(MovieEntity movie) {
+        if (!running) {
+            throw new IngestQueueFullException("error!! ingestion is not running");
+        }
+        Ticket ticket = new Ticket(UUID.randomUUID().toString(), movie);
+        IngestStatus status = IngestStatus.builder()
+                .ticket(ticket.id())
+                .state(IngestStatus.State.PENDING)
+                .build();
+        statuses.put(ticket.id(), status);
+        try {
+            if (!queue.offer(ticket, offerTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                statuses.invalidate(ticket.id());
+                rejected.increment();
+                throw new IngestQueueFullException("error!! ingestion queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            statuses.invalidate(ticket.id());
+            throw new IngestQueueFullException("error!! interrupted while waiting for the ingestion queue");
+        }
+        accepted.increment();
+        return status;
+    }
+
+    public IngestStatus getStatus(String ticket) {
+        IngestStatus status = statuses.getIfPresent(ticket);
+        if (status == null) {
+            throw new IngestTicketNotFoundException("error!! ingest ticket not found");
+        }
+        return status;
+    }
+
+    @Override
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        // a burst of creations must not grow the heap within the retention, but every queued movie keeps its status
+        statuses = Caffeine.newBuilder()
+                .maximumSize(Math.max(statusCapacity, queueCapacity))
+                .expireAfterWrite(statusRetention)
+                .build();
+        accepted = meterRegistry.counter("movies.ingest.accepted");
+        rejected = meterRegistry.counter("movies.ingest.rejected");
+        Gauge.builder("movies.ingest.queue.size", queue, BlockingQueue::size)
+                .description("Movies accepted but not yet written")
+                .register(meterRegistry);
+        running = true;
+        writer = new Thread(this::drain, "movie-ingest-writer");
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drain() {
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        // keeps draining after stop() until everything accepted has been written
+        while (running || !queue.isEmpty()) {
+            try {
+                Ticket first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("writing {} queued movies failed", batch.size(), e);
+                for (Ticket ticket : batch) {
+                    statuses.put(ticket.id(), failed(ticket, e.getMessage()));
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Ticket> batch) {
+        // accepted movies wait for a running catalog import instead of failing on it
+        writeGate.await();
+        BatchInsertResult result;
+        try {
+            result = movieBatchService.saveAll(batch.stream().map(Ticket::movie).iterator());
+        } finally {
+            writeGate.leave();
+        }
+        for (BatchItemResult item : result.getItems()) {
+            Ticket ticket = batch.get(item.getIndex());
+            statuses.put(ticket.id(), item.getStatus() == BatchItemResult.Status.CREATED
+                    ? IngestStatus.builder()
+                            .ticket(ticket.id())
+                            .state(IngestStatus.State.CREATED)
+                            .id(item.getId())
+                            .build()
+                    : failed(ticket, item.getError()));
+        }
+    }
+
+    private static IngestStatus failed(Ticket ticket, String error) {
+        return IngestStatus.builder()
+                .ticket(ticket.id())
+                .state(IngestStatus.State.FAILED)
+                .error(error)
+                .build();
+    }
+
+    private record Ticket(String id, MovieEntity movie) {
+    }
+}
@@ -0,0 +1,313 @@
+package com.madeeasy.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.madeeasy.dto.CatalogFingerprint;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.repository.MappedMovieTable;
+import com.madeeasy.repository.MovieRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+/**
+ * Read replica of the catalog in a {@link MappedMovieTable}, serving {@code GET /movies/{id}} and {@code GET /movies}
+ * without Hibernate, H2 or a connection. It is loaded from the database in the background at startup and then kept
+ * current from the {@link MoviesChangedEvent}s of committed writes; until the load has finished, and again if the
+ * table runs full, {@link #isReady()} is false and reads go to the database.
+ *
+ * <p>A write becomes visible here right after its commit, on the committing thread, so the writer reads its own
+ * writes; other threads may read the previous state for that moment. Writes made by the reactive stack or directly in
+ * the database are not seen until the next {@link #rebuild()}. The files are recreated on every start.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "movies.replica.enabled", havingValue = "true")
+public class MovieReplica implements SmartLifecycle {
+
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString RELEASE_DATE = new SerializedString("releaseDate");
+    private static final SerializableString VERSION = new SerializedString("version");
+    private static final SerializableString LAST_MODIFIED = new SerializedString("lastModified");
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Directory of the mapped files, a new temporary directory when empty.
+     */
+    @Value("${movies.replica.directory:}")
+    private String directory = "";
+
+    @Value("${movies.replica.max-rows:1000000}")
+    private int maxRows = 1_000_000;
+
+    @Value("${movies.replica.max-name-bytes:64MB}")
+    private DataSize maxNameBytes = DataSize.ofMegabytes(64);
+
+    private MappedMovieTable table;
+    private Path storage;
+    private Thread loader;
+    private volatile boolean running;
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return the movie, or {@code null} when it is not in the replica or the replica is not ready
+     */
+    public MovieEntity findById(Long id) {
+        MovieSummary movie = ready ? table.find(id) : null;
+        if (movie == null) {
+            return null;
+        }
+        return MovieEntity.builder()
+                .id(movie.id())
+                .name(movie.name())
+                .releaseDate(movie.releaseDate())
+                .version(movie.version())
+                .lastModified(movie.lastModified())
+                .build();
+    }
+
+    public CatalogFingerprint getCatalogFingerprint() {
+        return table.fingerprint();
+    }
+
+    /**
+     * Writes the whole catalog as the same JSON array {@code List<MovieSummary>} serializes to, straight from the
+     * mapped columns. Dates are formatted by hand into a reused buffer, so no object is created per movie.
+     */
+    public void writeCatalog(OutputStream outputStream) throws IOException {
+        writeCatalog(outputStream, objectMapper.getFactory());
+    }
+
+    /**
+     * Same as {@link #writeCatalog(OutputStream)} in the format of {@code factory}, e.g. CBOR or Smile.
+     *
+     * @throws java.util.ConcurrentModificationException when a {@link #rebuild()} starts while the catalog is being
+     *                                                   written; the output then ends unfinished rather than mixing
+     *                                                   the catalog before and after the rebuild
+     */
+    public void writeCatalog(OutputStream outputStream, JsonFactory factory) throws IOException {
+        try (JsonGenerator generator = factory.createGenerator(outputStream)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            char[] buffer = new char[32];
+            generator.writeStartArray();
+            table.forEach((id, name, nameLength, releaseEpochDay, version, lastModifiedMillis) -> {
+                generator.writeStartObject();
+                generator.writeFieldName(ID);
+                generator.writeNumber(id);
+                generator.writeFieldName(NAME);
+                if (nameLength < 0) {
+                    generator.writeNull();
+                } else {
+                    generator.writeUTF8String(name, 0, nameLength);
+                }
+                generator.writeFieldName(RELEASE_DATE);
+                if (releaseEpochDay == MappedMovieTable.NO_DATE) {
+                    generator.writeNull();
+                } else {
+                    generator.writeString(buffer, 0, formatDate(releaseEpochDay, buffer));
+                }
+                generator.writeFieldName(VERSION);
+                generator.writeNumber(version);
+                generator.writeFieldName(LAST_MODIFIED);
+                if (lastModifiedMillis == MappedMovieTable.NO_INSTANT) {
+                    generator.writeNull();
+                } else {
+                    generator.writeString(buffer, 0, formatInstant(lastModifiedMillis, buffer));
+                }
+                generator.writeEndObject();
+            });
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Reloads the table from the database. Writes committed meanwhile are applied as they come: the version of a
+     * row, or its tombstone, decides between the loaded copy and the event. A second call waits for the first.
+     */
+    public synchronized void rebuild() {
+        ready = false;
+        long start = System.nanoTime();
+        table.clear();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        try {
+            readOnly.executeWithoutResult(status -> {
+                try (Stream<MovieSummary> movies = movieRepository.streamAllOrderById()) {
+                    movies.forEach(table::upsert);
+                }
+            });
+            ready = true;
+            log.info("movie replica loaded {} movies in {} ms", table.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("loading the movie replica failed, reads stay on the database", e);
+        }
+    }
+
+    @TransactionalEventListener
+    public void onMoviesChanged(MoviesChangedEvent event) {
+        try {
+            for (MoviesChangedEvent.Change change : event.changes()) {
+                if (change.after() != null) {
+                    table.upsert(change.after());
+                } else {
+                    table.delete(change.before().id());
+                }
+            }
+        } catch (IllegalStateException e) {
+            // a replica missing a write must not serve reads any more
+            ready = false;
+            log.error("movie replica is out of date, reads go to the database until it is rebuilt", e);
+        }
+    }
+
+    @EventListener
+    public void onCatalogImported(CatalogImportedEvent event) {
+        rebuild();
+    }
+
+    @Override
+    public void start() {
+        try {
+            storage = directory.isBlank()
+                    ? Files.createTempDirectory("movies-replica")
+                    : Path.of(directory);
+            table = new MappedMovieTable(storage, maxRows, Math.toIntExact(maxNameBytes.toBytes()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Gauge.builder("movies.replica.rows", table, MappedMovieTable::size)
+                .description("Movies held by the read replica")
+                .register(meterRegistry);
+        Gauge.builder("movies.replica.pool.bytes", table, MappedMovieTable::poolBytes)
+                .description("Bytes used by the name pool of the read replica")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        running = true;
+        loader = new Thread(this::rebuild, "movie-replica-loader");
+        loader.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        ready = false;
+        try {
+            loader.join();
+            table.close();
+            if (directory.isBlank()) {
+                FileSystemUtils.deleteRecursively(storage);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("could not delete the movie replica files in {}", storage, e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * ISO-8601 date, as {@link LocalDate#toString()} writes it.
+     *
+     * @return the number of characters written
+     */
+    static int formatDate(int epochDay, char[] buffer) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        if (date.getYear() < 0 || date.getYear() > 9999) {
+            return copy(date.toString(), buffer);
+        }
+        return formatDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth(), buffer);
+    }
+
+    /**
+     * ISO-8601 instant in UTC with millisecond precision, as {@link Instant#toString()} writes it.
+     *
+     * @return the number of characters written
+     */
+    static int formatInstant(long epochMillis, char[] buffer) {
+        long epochSecond = Math.floorDiv(epochMillis, 1000);
+        int millis = (int) Math.floorMod(epochMillis, 1000);
+        int secondOfDay = (int) Math.floorMod(epochSecond, 86_400);
+        LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(epochSecond, 86_400));
+        if (date.getYear() < 0 || date.getYear() > 9999) {
+            return copy(Instant.ofEpochMilli(epochMillis).toString(), buffer);
+        }
+        int length = formatDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth(), buffer);
+        buffer[length++] = 'T';
+        length = digits(secondOfDay / 3600, 2, buffer, length);
+        buffer[length++] = ':';
+        length = digits(secondOfDay / 60 % 60, 2, buffer, length);
+        buffer[length++] = ':';
+        length = digits(secondOfDay % 60, 2, buffer, length);
+        if (millis != 0) {
+            buffer[length++] = '.';
+            length = digits(millis, 3, buffer, length);
+        }
+        buffer[length++] = 'Z';
+        return length;
+    }
+
+    private static int formatDate(int year, int month, int day, char[] buffer) {
+        int length = digits(year, 4, buffer, 0);
+        buffer[length++] = '-';
+        length = digits(month, 2, buffer, length);
+        buffer[length++] = '-';
+        return digits(day, 2, buffer, length);
+    }
+
+    private static int digits(int value, int width, char[] buffer, int offset) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + width;
+    }
+
+    private static int copy(String value, char[] buffer) {
+        value.getChars(0, value.length(), buffer, 0);
+        return value.length();
+    }
+}
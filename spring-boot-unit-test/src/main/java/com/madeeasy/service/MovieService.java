@@ -1,94 +1,284 @@
 package com.madeeasy.service;
 
+import com.madeeasy.config.CacheConfig;
+import com.madeeasy.config.VersionedCaffeineCache;
+import com.madeeasy.dto.CatalogFingerprint;
+import com.madeeasy.dto.MoviePage;
+import com.madeeasy.dto.MoviePatch;
+import com.madeeasy.dto.MovieSearchCriteria;
+import com.madeeasy.dto.MovieSearchPage;
+import com.madeeasy.dto.MovieSummary;
 import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.error.InvalidCursorException;
+import com.madeeasy.error.InvalidMoviePatchException;
+import com.madeeasy.error.InvalidSearchRequestException;
 import com.madeeasy.error.MovieNotFoundException;
+import com.madeeasy.error.MovieVersionConflictException;
 import com.madeeasy.repository.MovieRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.time.LocalDate;
-import java.time.format.DateTimeParseException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Timed("movies.service")
 @Transactional
 public class MovieService {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Properties a search may be sorted by. Anything else would only fail once the query is built.
+     */
+    public static final Set<String> SORTABLE_PROPERTIES = Set.of("id", "name", "releaseDate");
+
     @Autowired
     private MovieRepository movieRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CatalogWriteGate writeGate;
+
+    private final SingleFlight<Long, MovieEntity> findByIdFlights = new SingleFlight<>("findById");
+
+    @PostConstruct
+    void registerMetrics() {
+        findByIdFlights.bindTo(meterRegistry);
+    }
+
+    /**
+     * Caches the saved movie once the transaction commits, unless a newer version got there first or the movie was
+     * evicted after this save.
+     */
     public MovieEntity save(MovieEntity movieEntity) {
-        return movieRepository.save(movieEntity);
+        writeGate.enterUntilCompletion();
+        // an id and a version make this a merge of an existing movie rather than a creation
+        boolean existing = movieEntity.getId() != null && movieEntity.getVersion() != null;
+        MovieSummary before = existing ? movieRepository.findSummaryById(movieEntity.getId()).orElse(null) : null;
+        MovieEntity saved = movieRepository.save(movieEntity);
+        if (existing) {
+            // the new version and last modified of a merge are only assigned when it is flushed
+            movieRepository.flush();
+        }
+        eventPublisher.publishEvent(MoviesChangedEvent.of(before, MovieSummary.of(saved)));
+        // no one else can evict the movie before this transaction commits, so the token is taken in time
+        VersionedCaffeineCache cache = movieCache();
+        long token = cache.token(saved.getId());
+        afterCommit(() -> cache.put(saved.getId(), saved, token));
+        return saved;
     }
 
+    /**
+     * Read-through the movies cache. Concurrent cache misses for one id share a single query, and its not-found.
+     * Runs without a transaction of its own, so callers waiting for that query hold no connection; the repository
+     * reads in its own read-only one.
+     * <p>
+     * Only the query's own caller caches the row, and not if the movie was evicted while it was being read: the read
+     * may have seen the row from before an update whose commit-time evict has already happened.
+     */
+    @Transactional(Transactional.TxType.SUPPORTS)
     public MovieEntity findById(Long id) {
-        Optional<MovieEntity> findById = movieRepository.findById(id);
-        if (findById.isEmpty()) {
-            throw new MovieNotFoundException("error!! movie not found");
+        VersionedCaffeineCache cache = movieCache();
+        MovieEntity cached = cache.get(id, MovieEntity.class);
+        if (cached != null) {
+            return cached;
         }
-        return findById.get();
+        return findByIdFlights.load(id, () -> {
+            long token = cache.token(id);
+            Optional<MovieEntity> findById = movieRepository.findById(id);
+            if (findById.isEmpty()) {
+                throw new MovieNotFoundException("error!! movie not found");
+            }
+            afterCommit(() -> cache.put(id, findById.get(), token));
+            return findById.get();
+        });
     }
 
+    @CacheEvict(cacheNames = CacheConfig.MOVIES_CACHE, key = "#id")
     public void deleteMovie(Long id) {
-        movieRepository.deleteById(id);
+        writeGate.enterUntilCompletion();
+        MovieEntity deleted = movieRepository.deleteByIdReturning(id)
+                .orElseThrow(() -> new MovieNotFoundException("error!! movie not found"));
+        eventPublisher.publishEvent(MoviesChangedEvent.of(MovieSummary.of(deleted), null));
     }
 
-    public List<MovieEntity> getAllMovies() {
-        return movieRepository.findAll();
+    public List<MovieSummary> getAllMovies() {
+        return movieRepository.findAllSummaries();
     }
 
-    public MovieEntity updateMovie(Long id, MovieEntity updatedMovie) {
-        MovieEntity existingMovie = movieRepository.findById(id)
-                .orElseThrow(() -> new IllegalArgumentException("Movie not found with id: " + id));
-
-        existingMovie.setName(updatedMovie.getName());
-        existingMovie.setReleaseDate(updatedMovie.getReleaseDate());
-
-        return movieRepository.save(existingMovie);
-    }
-
-    public MovieEntity partialUpdateMovie(Long id, Map<String, Object> updates) {
-        MovieEntity existingMovie = movieRepository.findById(id)
-                .orElseThrow(() -> new IllegalArgumentException("Movie not found with id: " + id));
-
-        for (Map.Entry<String, Object> entry : updates.entrySet()) {
-            String key = entry.getKey();
-            Object value = entry.getValue();
-
-            // Perform partial updates based on the provided fields
-            switch (key) {
-                case "id" -> existingMovie.setId((Long) value);
-                case "name" -> existingMovie.setName((String) value);
-                case "releaseDate" -> {
-                    if (value instanceof String) {
-                        try {
-                            existingMovie.setReleaseDate(LocalDate.parse((String) value));
-                        } catch (DateTimeParseException e) {
-                            // Handle the case where the provided date string is invalid
-                            // You can throw an exception, log an error, or handle it in any other way that makes sense for your application
-                        }
-                    }
-
-                    // Handle other fields as needed
-                 /*   switch (key) {
-                        case "id":
-                            existingMovie.setId((Long) value);
-                            break;
-                        case "name":
-                            existingMovie.setName((String) value);
-                            break;
-                        case "releaseDate":
-                            existingMovie.setReleaseDate((LocalDate) value);
-                            break;
-                        // Handle other fields as needed*/
-                }
+    public CatalogFingerprint getCatalogFingerprint() {
+        return movieRepository.getCatalogFingerprint();
+    }
+
+    public MoviePage getMoviesPage(String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        long afterId = decodeCursor(cursor);
+
+        // fetch one extra row to know whether another page follows without a count query
+        List<MovieSummary> movies = movieRepository.findPageAfter(afterId, PageRequest.ofSize(pageSize + 1));
+        String nextCursor = null;
+        if (movies.size() > pageSize) {
+            movies = movies.subList(0, pageSize);
+            nextCursor = encodeCursor(movies.get(pageSize - 1).id());
+        }
+        return MoviePage.builder()
+                .movies(movies)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    public MovieSearchPage searchMovies(MovieSearchCriteria criteria, Pageable pageable) {
+        for (Sort.Order order : pageable.getSort()) {
+            if (!SORTABLE_PROPERTIES.contains(order.getProperty())) {
+                throw new InvalidSearchRequestException("error!! cannot sort by " + order.getProperty());
             }
         }
+        Slice<MovieSummary> movies = movieRepository.search(criteria, pageable);
+        return MovieSearchPage.builder()
+                .movies(movies.getContent())
+                .page(movies.getNumber())
+                .size(movies.getSize())
+                .hasNext(movies.hasNext())
+                .build();
+    }
 
-        return movieRepository.save(existingMovie);
+    /**
+     * Hands every movie to the consumer in id order straight off a JDBC cursor, in a read-only transaction of its own.
+     * Rows are projections that never enter the persistence context, so the heap stays flat however big the table is.
+     */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public void streamAllMovies(Consumer<MovieSummary> consumer) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            try (Stream<MovieSummary> movies = movieRepository.streamAllOrderById()) {
+                movies.forEach(consumer);
+            }
+        });
     }
-}
 
+    static String encodeCursor(Long lastId) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(String.valueOf(lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("error!! invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Replaces name and release date with a single UPDATE. If {@code updatedMovie} carries a version, the update only
+     * applies while the stored movie still has that version.
+     */
+    @CacheEvict(cacheNames = CacheConfig.MOVIES_CACHE, key = "#id")
+    public MovieEntity updateMovie(Long id, MovieEntity updatedMovie) {
+        MoviePatch patch = new MoviePatch()
+                .name(updatedMovie.getName())
+                .releaseDate(updatedMovie.getReleaseDate());
+        if (updatedMovie.getVersion() != null) {
+            patch.version(updatedMovie.getVersion());
+        }
+        return applyPatch(id, patch);
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.MOVIES_CACHE, key = "#id")
+    public MovieEntity partialUpdateMovie(Long id, MoviePatch patch) {
+        if (patch.has(MoviePatch.Field.ID) && !id.equals(patch.getId())) {
+            throw new InvalidMoviePatchException("error!! id of a movie cannot be changed");
+        }
+        if (!patch.hasChanges()) {
+            return findById(id);
+        }
+        return applyPatch(id, patch);
+    }
+
+    private MovieEntity applyPatch(Long id, MoviePatch patch) {
+        writeGate.enterUntilCompletion();
+        // the UPDATE hands back the previous row, so the new state is known without reading it again
+        Instant modifiedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        MovieEntity movie = movieRepository.patchById(id, patch, modifiedAt)
+                .orElseThrow(() -> notUpdated(id, patch));
+        MovieSummary before = MovieSummary.of(movie);
+        patch.applyTo(movie);
+        movie.setVersion(movie.getVersion() + 1);
+        movie.setLastModified(modifiedAt);
+        eventPublisher.publishEvent(MoviesChangedEvent.of(before, MovieSummary.of(movie)));
+        return movie;
+    }
+
+    private VersionedCaffeineCache movieCache() {
+        Cache cache = cacheManager.getCache(CacheConfig.MOVIES_CACHE);
+        if (cache instanceof TransactionAwareCacheDecorator transactionAware) {
+            cache = transactionAware.getTargetCache();
+        }
+        return (VersionedCaffeineCache) cache;
+    }
+
+    private static void afterCommit(Runnable put) {
+        // as the transaction-aware cache would, so that a rolled back write never reaches the cache
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put.run();
+            }
+        });
+    }
+
+    private RuntimeException notUpdated(Long id, MoviePatch patch) {
+        // only a failed conditional update needs the extra lookup to tell a stale version from a missing movie
+        if (patch.has(MoviePatch.Field.VERSION) && movieRepository.existsById(id)) {
+            return new MovieVersionConflictException(
+                    "error!! movie " + id + " is no longer at version " + patch.getVersion());
+        }
+        return new MovieNotFoundException("error!! movie not found");
+    }
+}
 
@@ -0,0 +1,474 @@
+package com.madeeasy.service;
+
+import com.madeeasy.dto.MovieReleaseDate;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.dto.ReleaseBucket;
+import com.madeeasy.dto.ReleaseCount;
+import com.madeeasy.dto.ReleaseDateCount;
+import com.madeeasy.dto.ReleaseHistogram;
+import com.madeeasy.dto.ReleaseStats;
+import com.madeeasy.error.InvalidStatsRequestException;
+import com.madeeasy.repository.MovieRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Release date statistics: movies per year, per month and as a histogram. They are answered from counters per day,
+ * month and year held in memory, so a dashboard query costs the periods it lists and never touches the table. The
+ * counters are loaded in the background at startup, from one pass over the release date of every movie, and then
+ * moved by every committed {@link MoviesChangedEvent}. Until they are loaded, or with
+ * {@code movies.release-stats.enabled} off, every query is a {@code GROUP BY} in the database instead.
+ *
+ * <p>The load reads the table without holding up writes. Changes committed meanwhile are collected and, once it is
+ * done, settled against the release dates it read: each movie they touched is taken out of the loaded counters as the
+ * load saw it and put back as its newest change left it, whether or not the load already saw that change. Writes
+ * hold the read side of a lock from right before their commit until their change is counted, and the load swaps in
+ * its counters under the write side, so no commit that overlapped the load is missed; writes wait only for that swap,
+ * which never touches the database. The counters of one answer are read one by one, so an answer given while writes
+ * commit may count some of them and not others. Writes made by the reactive stack or directly in the database are not
+ * counted until the next {@link #rebuild()}.
+ */
+@Slf4j
+@Service
+public class MovieStatsService implements SmartLifecycle {
+
+    public static final int DEFAULT_BUCKETS = 10;
+    public static final int MAX_BUCKETS = 1000;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${movies.release-stats.enabled:true}")
+    private boolean enabled = true;
+
+    private final Object rebuildLock = new Object();
+    // read side held by a write from right before its commit until its change is applied, write side by a load while
+    // it swaps in the counters it read
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    /**
+     * {@code null} until loaded, and again when a load failed.
+     */
+    private volatile ReleaseCounters counters;
+    /**
+     * Changes committed while a load is running, settled once it has read the table; {@code null} otherwise.
+     */
+    private volatile Queue<MoviesChangedEvent.Change> replay;
+    private Thread loader;
+    private volatile boolean running;
+
+    public boolean isReady() {
+        return counters != null;
+    }
+
+    @Timed("movies.service")
+    public ReleaseStats countByYear() {
+        ReleaseCounters loaded = counters;
+        if (loaded == null) {
+            return stats(movieRepository.countByReleaseYear(), movieRepository.countByReleaseDateIsNull());
+        }
+        List<ReleaseCount> counts = new ArrayList<>();
+        loaded.years.forEach((year, count) -> addCount(counts, String.valueOf(year), count));
+        return stats(counts, loaded.undated.sum());
+    }
+
+    /**
+     * @param year only the months of this year, all months when {@code null}
+     */
+    @Timed("movies.service")
+    public ReleaseStats countByMonth(Integer year) {
+        ReleaseCounters loaded = counters;
+        if (loaded == null) {
+            List<ReleaseCount> counts = year == null
+                    ? movieRepository.countByReleaseMonth()
+                    : movieRepository.countByReleaseMonthBetween(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
+            return stats(counts, movieRepository.countByReleaseDateIsNull());
+        }
+        NavigableMap<YearMonth, LongAdder> months = year == null
+                ? loaded.months
+                : loaded.months.subMap(YearMonth.of(year, 1), true, YearMonth.of(year, 12), true);
+        List<ReleaseCount> counts = new ArrayList<>();
+        months.forEach((month, count) -> addCount(counts, month.toString(), count));
+        return stats(counts, loaded.undated.sum());
+    }
+
+    /**
+     * Movies released from {@code from} to {@code to} in {@code buckets} buckets of whole days.
+     *
+     * @param from first day of the first bucket, the oldest release date when {@code null}
+     * @param to   day after the last bucket, the day after the newest release date when {@code null}
+     */
+    @Timed("movies.service")
+    public ReleaseHistogram histogram(LocalDate from, LocalDate to, int buckets) {
+        if (buckets < 1 || buckets > MAX_BUCKETS) {
+            throw new InvalidStatsRequestException("error!! buckets must be between 1 and " + MAX_BUCKETS);
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new InvalidStatsRequestException("error!! from must be before to");
+        }
+        ReleaseCounters loaded = counters;
+        NavigableMap<LocalDate, LongAdder> days = loaded != null ? loaded.days : countByDayInDatabase(from, to);
+        if (from == null) {
+            from = firstDay(days.entrySet());
+        }
+        if (to == null) {
+            LocalDate last = firstDay(days.descendingMap().entrySet());
+            to = last == null ? null : last.plusDays(1);
+        }
+        if (from == null || to == null || !from.isBefore(to)) {
+            return ReleaseHistogram.builder().buckets(List.of()).build();
+        }
+        long first = from.toEpochDay();
+        long width = Math.ceilDiv(to.toEpochDay() - first, buckets);
+        long[] counts = new long[(int) Math.ceilDiv(to.toEpochDay() - first, width)];
+        long total = 0;
+        for (Map.Entry<LocalDate, LongAdder> day : days.subMap(from, true, to, false).entrySet()) {
+            long count = day.getValue().sum();
+            counts[(int) ((day.getKey().toEpochDay() - first) / width)] += count;
+            total += count;
+        }
+        List<ReleaseBucket> histogram = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            LocalDate start = from.plusDays(i * width);
+            LocalDate end = i == counts.length - 1 ? to : start.plusDays(width);
+            histogram.add(new ReleaseBucket(start, end, counts[i]));
+        }
+        return ReleaseHistogram.builder()
+                .buckets(histogram)
+                .total(total)
+                .build();
+    }
+
+    /**
+     * Loads the counters from the database again while writes go on; a second call waits for the first.
+     */
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.nanoTime();
+            TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+            readOnly.setReadOnly(true);
+            // set before the table is read: a change that finds it unset committed before the read started
+            replay = new ConcurrentLinkedQueue<>();
+            try {
+                ReleaseCounters loaded = new ReleaseCounters();
+                LoadedDates dates = new LoadedDates();
+                readOnly.executeWithoutResult(status -> {
+                    try (Stream<MovieReleaseDate> movies = movieRepository.streamReleaseDatesOrderById()) {
+                        movies.forEach(movie -> {
+                            loaded.add(movie.releaseDate(), 1);
+                            dates.add(movie.id(), movie.releaseDate());
+                        });
+                    }
+                });
+                swapLock.writeLock().lock();
+                try {
+                    settle(loaded, dates, replay);
+                    counters = loaded;
+                    replay = null;
+                } finally {
+                    swapLock.writeLock().unlock();
+                }
+                log.info("release stats loaded {} release days in {} ms", loaded.days.size(),
+                        (System.nanoTime() - start) / 1_000_000);
+            } catch (RuntimeException e) {
+                swapLock.writeLock().lock();
+                try {
+                    counters = null;
+                    replay = null;
+                } finally {
+                    swapLock.writeLock().unlock();
+                }
+                log.error("loading the release stats failed, they stay on SQL", e);
+            }
+        }
+    }
+
+    /**
+     * Delivered inside the writing transaction; the change is counted once, and only if, it commits.
+     */
+    @EventListener
+    public void onMoviesChanged(MoviesChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            swapLock.readLock().lock();
+            try {
+                committed(event.changes());
+            } finally {
+                swapLock.readLock().unlock();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean locked;
+
+            /**
+             * Before the synchronization of the {@link MovieChangeLog}, which takes its lock after this one.
+             */
+            @Override
+            public int getOrder() {
+                return 0;
+            }
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                swapLock.readLock().lock();
+                locked = true;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                // not locked when a synchronization before this one failed the commit
+                if (!locked) {
+                    return;
+                }
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        committed(event.changes());
+                    }
+                } finally {
+                    swapLock.readLock().unlock();
+                }
+            }
+        });
+    }
+
+    @EventListener
+    public void onCatalogImported(CatalogImportedEvent event) {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Override
+    public void start() {
+        Gauge.builder("movies.release.stats.days", this, service -> {
+                    ReleaseCounters loaded = service.counters;
+                    return loaded == null ? 0 : loaded.days.size();
+                })
+                .description("Release days counted by the release stats")
+                .register(meterRegistry);
+        running = true;
+        if (enabled) {
+            loader = new Thread(this::rebuild, "movie-release-stats-loader");
+            loader.start();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (loader != null) {
+            try {
+                loader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        counters = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Called with the read side of the swap lock held.
+     */
+    private void committed(List<MoviesChangedEvent.Change> changes) {
+        Queue<MoviesChangedEvent.Change> pending = replay;
+        if (pending != null) {
+            pending.addAll(changes);
+        }
+        ReleaseCounters loaded = counters;
+        if (loaded != null) {
+            apply(loaded, changes);
+        }
+    }
+
+    private static void apply(ReleaseCounters loaded, List<MoviesChangedEvent.Change> changes) {
+        for (MoviesChangedEvent.Change change : changes) {
+            LocalDate before = releaseDate(change.before());
+            LocalDate after = releaseDate(change.after());
+            if (change.before() != null && change.after() != null && Objects.equals(before, after)) {
+                continue;
+            }
+            if (change.before() != null) {
+                loaded.add(before, -1);
+            }
+            if (change.after() != null) {
+                loaded.add(after, 1);
+            }
+        }
+    }
+
+    /**
+     * Settles the changes committed during a load with the counters it loaded: every movie they touched is counted
+     * with its newest change instead of the release date the load read, or not at all when that change deleted it.
+     */
+    private static void settle(ReleaseCounters loaded, LoadedDates dates, Queue<MoviesChangedEvent.Change> changes) {
+        Map<Long, MoviesChangedEvent.Change> newest = new HashMap<>();
+        for (MoviesChangedEvent.Change change : changes) {
+            MovieSummary movie = change.after() != null ? change.after() : change.before();
+            newest.merge(movie.id(), change, (current, next) -> isNewer(next, current) ? next : current);
+        }
+        newest.forEach((id, change) -> {
+            int index = dates.indexOf(id);
+            if (index >= 0) {
+                loaded.add(dates.releaseDate(index), -1);
+            }
+            if (change.after() != null) {
+                loaded.add(change.after().releaseDate(), 1);
+            }
+        });
+    }
+
+    /**
+     * Commits of one movie are ordered by its version, and nothing follows its deletion.
+     */
+    private static boolean isNewer(MoviesChangedEvent.Change change, MoviesChangedEvent.Change than) {
+        if (than.after() == null) {
+            return false;
+        }
+        return change.after() == null || change.after().version() > than.after().version();
+    }
+
+    /**
+     * Movies per dated release day from the database, from {@code from} (inclusive) to {@code to} (exclusive) when
+     * both are given and all of them otherwise.
+     */
+    private NavigableMap<LocalDate, LongAdder> countByDayInDatabase(LocalDate from, LocalDate to) {
+        List<ReleaseDateCount> rows = from != null && to != null
+                ? movieRepository.countByReleaseDateBetween(from, to.minusDays(1))
+                : movieRepository.countByReleaseDate();
+        NavigableMap<LocalDate, LongAdder> days = new TreeMap<>();
+        for (ReleaseDateCount row : rows) {
+            if (row.releaseDate() != null) {
+                days.computeIfAbsent(row.releaseDate(), day -> new LongAdder()).add(row.count());
+            }
+        }
+        return days;
+    }
+
+    /**
+     * @return the first day with movies, {@code null} if there is none
+     */
+    private static LocalDate firstDay(Iterable<Map.Entry<LocalDate, LongAdder>> days) {
+        for (Map.Entry<LocalDate, LongAdder> day : days) {
+            if (day.getValue().sum() > 0) {
+                return day.getKey();
+            }
+        }
+        return null;
+    }
+
+    private static LocalDate releaseDate(MovieSummary movie) {
+        return movie == null ? null : movie.releaseDate();
+    }
+
+    private static void addCount(List<ReleaseCount> counts, String period, LongAdder count) {
+        // periods whose last movie was deleted or moved keep a counter at 0
+        long sum = count.sum();
+        if (sum > 0) {
+            counts.add(new ReleaseCount(period, sum));
+        }
+    }
+
+    private static ReleaseStats stats(List<ReleaseCount> counts, long undated) {
+        return ReleaseStats.builder()
+                .counts(counts)
+                .total(counts.stream().mapToLong(ReleaseCount::count).sum())
+                .undated(undated)
+                .build();
+    }
+
+    /**
+     * Release date of every movie a load read, by id, for as long as the load runs: ids in the ascending order they
+     * were read in, and the release days as epoch days.
+     */
+    private static final class LoadedDates {
+        private static final long UNDATED = Long.MIN_VALUE;
+
+        private long[] ids = new long[1024];
+        private long[] days = new long[1024];
+        private int size;
+
+        void add(long id, LocalDate releaseDate) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                days = Arrays.copyOf(days, size * 2);
+            }
+            ids[size] = id;
+            days[size] = releaseDate == null ? UNDATED : releaseDate.toEpochDay();
+            size++;
+        }
+
+        /**
+         * @return negative when the load did not read the movie
+         */
+        int indexOf(long id) {
+            return Arrays.binarySearch(ids, 0, size, id);
+        }
+
+        LocalDate releaseDate(int index) {
+            return days[index] == UNDATED ? null : LocalDate.ofEpochDay(days[index]);
+        }
+    }
+
+    /**
+     * Movies per release day, month and year, and without a release date.
+     */
+    private static final class ReleaseCounters {
+        final ConcurrentSkipListMap<LocalDate, LongAdder> days = new ConcurrentSkipListMap<>();
+        final ConcurrentSkipListMap<YearMonth, LongAdder> months = new ConcurrentSkipListMap<>();
+        final ConcurrentSkipListMap<Integer, LongAdder> years = new ConcurrentSkipListMap<>();
+        final LongAdder undated = new LongAdder();
+
+        void add(LocalDate releaseDate, long delta) {
+            if (releaseDate == null) {
+                undated.add(delta);
+                return;
+            }
+            days.computeIfAbsent(releaseDate, day -> new LongAdder()).add(delta);
+            months.computeIfAbsent(YearMonth.from(releaseDate), month -> new LongAdder()).add(delta);
+            years.computeIfAbsent(releaseDate.getYear(), year -> new LongAdder()).add(delta);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.madeeasy.service;
+
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.dto.MovieTitleHit;
+import com.madeeasy.dto.MovieTitleSearchPage;
+import com.madeeasy.repository.MovieRepository;
+import com.madeeasy.repository.MovieTitleIndex;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tokenized, typo-tolerant and ranked title search, served from a {@link MovieTitleIndex}. The index is loaded from
+ * the database in the background at startup and then kept current from the {@link MoviesChangedEvent}s of committed
+ * writes. Only ids and scores come from the index; the movies of a page are read in one query, so a hit always shows
+ * the movie as it is now. Until the index is loaded, or with {@code movies.title-index.enabled} off, searches fall
+ * back to an unranked substring match in SQL.
+ *
+ * <p>Two commits of the same movie whose events arrive in reverse order can leave the older title findable as well
+ * until the next {@link #rebuild()}; the hit then still shows the current title.
+ */
+@Slf4j
+@Service
+public class MovieTitleSearchService implements SmartLifecycle {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * Ranked hits deeper than this are not served: every page has to rank all hits before it.
+     */
+    public static final int MAX_RESULT_WINDOW = 10_000;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${movies.title-index.enabled:true}")
+    private boolean enabled = true;
+
+    private final MovieTitleIndex index = new MovieTitleIndex();
+    private final Object rebuildLock = new Object();
+    private final Object replayLock = new Object();
+
+    /**
+     * Changes committed while a rebuild is running, applied again once it has loaded the table; {@code null}
+     * otherwise.
+     */
+    private List<MoviesChangedEvent.Change> replay;
+    private Thread loader;
+    private volatile boolean running;
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Timed("movies.service")
+    public MovieTitleSearchPage search(String query, int page, int size) {
+        int pageNumber = Math.max(0, page);
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        if (!ready) {
+            return searchWithLike(query, pageNumber, pageSize);
+        }
+        long offset = (long) pageNumber * pageSize;
+        if (offset >= MAX_RESULT_WINDOW) {
+            return MovieTitleSearchPage.builder()
+                    .hits(List.of())
+                    .page(pageNumber)
+                    .size(pageSize)
+                    .total(index.search(query, 0, 1).total())
+                    .build();
+        }
+        MovieTitleIndex.Result result = index.search(query, (int) offset, pageSize);
+        Map<Long, MovieSummary> movies = result.hits().isEmpty()
+                ? Map.of()
+                : movieRepository.findSummariesByIdIn(result.hits().stream().map(MovieTitleIndex.Hit::id).toList())
+                .stream()
+                .collect(Collectors.toMap(MovieSummary::id, Function.identity()));
+        List<MovieTitleHit> hits = new ArrayList<>(result.hits().size());
+        for (MovieTitleIndex.Hit hit : result.hits()) {
+            // gone if deleted after the index answered
+            MovieSummary movie = movies.get(hit.id());
+            if (movie != null) {
+                hits.add(new MovieTitleHit(movie, hit.score()));
+            }
+        }
+        return MovieTitleSearchPage.builder()
+                .hits(hits)
+                .page(pageNumber)
+                .size(pageSize)
+                .total(result.total())
+                .hasNext(offset + pageSize < Math.min(result.total(), MAX_RESULT_WINDOW))
+                .build();
+    }
+
+    /**
+     * Reloads the index from the database. Writes committed meanwhile are applied as they come and once more after
+     * the load, so a row loaded before its change still ends up with the new title. A second call waits for the
+     * first.
+     */
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            ready = false;
+            long start = System.nanoTime();
+            synchronized (replayLock) {
+                replay = new ArrayList<>();
+                index.clear();
+            }
+            TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+            readOnly.setReadOnly(true);
+            try {
+                readOnly.executeWithoutResult(status -> {
+                    try (Stream<MovieSummary> movies = movieRepository.streamAllOrderById()) {
+                        movies.forEach(movie -> index.add(movie.id(), movie.name()));
+                    }
+                });
+                synchronized (replayLock) {
+                    apply(replay);
+                    replay = null;
+                }
+                ready = true;
+                log.info("title index loaded {} titles, {} terms in {} ms", index.size(), index.termCount(),
+                        (System.nanoTime() - start) / 1_000_000);
+            } catch (RuntimeException e) {
+                synchronized (replayLock) {
+                    replay = null;
+                }
+                log.error("loading the title index failed, title search stays on SQL", e);
+            }
+        }
+    }
+
+    @TransactionalEventListener
+    public void onMoviesChanged(MoviesChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (replayLock) {
+            if (replay != null) {
+                replay.addAll(event.changes());
+            }
+        }
+        apply(event.changes());
+    }
+
+    @EventListener
+    public void onCatalogImported(CatalogImportedEvent event) {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Override
+    public void start() {
+        Gauge.builder("movies.title.index.titles", index, MovieTitleIndex::size)
+                .description("Titles held by the title search index")
+                .register(meterRegistry);
+        Gauge.builder("movies.title.index.terms", index, MovieTitleIndex::termCount)
+                .description("Distinct tokens held by the title search index")
+                .register(meterRegistry);
+        running = true;
+        if (enabled) {
+            loader = new Thread(this::rebuild, "movie-title-index-loader");
+            loader.start();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        ready = false;
+        if (loader != null) {
+            try {
+                loader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        index.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void apply(List<MoviesChangedEvent.Change> changes) {
+        for (MoviesChangedEvent.Change change : changes) {
+            index.replace(change.id(),
+                    change.before() == null ? null : change.before().name(),
+                    change.after() == null ? null : change.after().name());
+        }
+    }
+
+    private MovieTitleSearchPage searchWithLike(String query, int page, int size) {
+        List<MovieTitleHit> hits = new ArrayList<>();
+        boolean hasNext = false;
+        if (query != null && !query.isBlank()) {
+            String pattern = "%" + escapeLike(query.trim().toLowerCase(Locale.ROOT)) + "%";
+            Slice<MovieSummary> movies = movieRepository.findByNameLike(pattern, PageRequest.of(page, size));
+            movies.forEach(movie -> hits.add(new MovieTitleHit(movie, 0)));
+            hasNext = movies.hasNext();
+        }
+        return MovieTitleSearchPage.builder()
+                .hits(hits)
+                .page(page)
+                .size(size)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+}
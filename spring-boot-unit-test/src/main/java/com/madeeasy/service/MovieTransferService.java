@@ -0,0 +1,278 @@
+package com.madeeasy.service;
+
+import com.madeeasy.config.CacheConfig;
+import com.madeeasy.dto.CatalogImportResult;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.repository.MovieColumnFile;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Export and import of the whole catalog as a {@link MovieColumnFile}, for moving {@code tbl_user} between
+ * environments. Both directions use plain JDBC on one connection and hold no more than one row group or batch, so
+ * they handle tens of millions of rows in the same memory as a thousand.
+ *
+ * <p>The export is a single forward-only query, which sees the table as it was when the query started. The import
+ * keeps ids and modification times: a movie of the file replaces the movie with the same id or is created with it.
+ * A created movie keeps its version; a replaced one gets a version above both, since the same id and version may
+ * well stand for different content in another environment and would otherwise keep the ETags of the old row.
+ * Every batch of {@code movies.transfer.batch-size} rows is committed on its own, so a failed import leaves the
+ * batches before the failure behind. Each batch moves the id sequence past the largest imported id.
+ *
+ * <p>The import holds the {@link CatalogWriteGate} exclusively: it starts once the writes in flight have finished,
+ * and every other change of the catalog is refused until it has ended, so none can take an imported id or be
+ * overwritten by the import. Before the gate opens again, the ids that Hibernate had already drawn from the sequence
+ * are skipped as far as imported ids could be among them, the movie cache is cleared and a
+ * {@link CatalogImportedEvent} makes the in-memory copies of the catalog load it again; also when the import failed
+ * after a batch committed.
+ */
+@Slf4j
+@Service
+public class MovieTransferService {
+
+    private static final String SELECT_ALL =
+            "select id, name, release_date, version, last_modified from tbl_user order by id";
+    // a replaced movie gets a version above both its own and the imported one, so its ETags change
+    private static final String MERGE = "merge into tbl_user t using (values (cast(? as bigint), "
+            + "cast(? as varchar(255)), cast(? as date), cast(? as bigint), cast(? as timestamp(6) with time zone))) "
+            + "s (id, name, release_date, version, last_modified) on t.id = s.id "
+            + "when matched then update set name = s.name, release_date = s.release_date, "
+            + "version = greatest(t.version, s.version) + 1, last_modified = s.last_modified "
+            + "when not matched then insert (id, name, release_date, version, last_modified) "
+            + "values (s.id, s.name, s.release_date, s.version, s.last_modified)";
+    // the pooled optimizer of MovieEntity hands out the allocation size of ids up to the value it draws
+    private static final int ID_ALLOCATION_SIZE = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CatalogWriteGate writeGate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${movies.transfer.batch-size:5000}")
+    private int batchSize = 5000;
+
+    @Value("${movies.transfer.fetch-size:1000}")
+    private int fetchSize = 1000;
+
+    @Value("${movies.transfer.row-group-size:" + MovieColumnFile.DEFAULT_ROW_GROUP_SIZE + "}")
+    private int rowGroupSize = MovieColumnFile.DEFAULT_ROW_GROUP_SIZE;
+
+    @Value("${movies.transfer.compression-level:1}")
+    private int compressionLevel = 1;
+
+    /**
+     * Writes every movie to {@code outputStream}, which is left open.
+     *
+     * @return the number of movies written
+     */
+    @Timed("movies.service")
+    public long exportCatalog(OutputStream outputStream) {
+        long start = System.nanoTime();
+        Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            // H2 would otherwise materialize the whole result before handing out the first row
+            setLazyQueryExecution(connection, true);
+            try (PreparedStatement select = connection.prepareStatement(SELECT_ALL, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+                 MovieColumnFile.Writer writer = new MovieColumnFile.Writer(outputStream, rowGroupSize,
+                         compressionLevel)) {
+                select.setFetchSize(fetchSize);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        writer.write(new MovieSummary(
+                                resultSet.getLong(1),
+                                resultSet.getString(2),
+                                resultSet.getObject(3, LocalDate.class),
+                                resultSet.getLong(4),
+                                resultSet.getObject(5, Instant.class)));
+                    }
+                }
+                return writer.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                setLazyQueryExecution(connection, false);
+            }
+        });
+        long elapsedNanos = System.nanoTime() - start;
+        log.info("exported {} movies in {} ms, {} rows/s", rows, elapsedNanos / 1_000_000,
+                Math.round(rowsPerSecond(rows, elapsedNanos)));
+        return rows;
+    }
+
+    /**
+     * Creates or replaces every movie of the file read from {@code inputStream}. When the import fails, the batches
+     * committed before the failure are announced like a complete import.
+     *
+     * @throws com.madeeasy.error.CatalogImportRunningException if another import is running
+     */
+    @Timed("movies.service")
+    public CatalogImportResult importCatalog(InputStream inputStream) {
+        return writeGate.exclusively(() -> importExclusively(inputStream));
+    }
+
+    private CatalogImportResult importExclusively(InputStream inputStream) {
+        long start = System.nanoTime();
+        ImportProgress progress = new ImportProgress();
+        boolean completed = false;
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try (MovieColumnFile.Reader reader = new MovieColumnFile.Reader(inputStream);
+                     PreparedStatement merge = connection.prepareStatement(MERGE)) {
+                    long maxId = 0;
+                    int pending = 0;
+                    while (reader.hasNext()) {
+                        MovieSummary movie = reader.next();
+                        merge.setLong(1, movie.id());
+                        merge.setString(2, movie.name());
+                        merge.setObject(3, movie.releaseDate(), Types.DATE);
+                        merge.setLong(4, movie.version());
+                        merge.setObject(5, movie.lastModified(), Types.TIMESTAMP_WITH_TIMEZONE);
+                        merge.addBatch();
+                        maxId = Math.max(maxId, movie.id());
+                        if (++pending == batchSize) {
+                            commitBatch(connection, merge, pending, maxId, progress);
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        commitBatch(connection, merge, pending, maxId, progress);
+                    }
+                    return null;
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            });
+            completed = true;
+        } finally {
+            // a file found truncated or corrupt after some batches committed still changed the catalog
+            if (completed || progress.batches > 0) {
+                skipAllocatedIdsUpTo(progress.maxId);
+                Cache cache = cacheManager.getCache(CacheConfig.MOVIES_CACHE);
+                if (cache != null) {
+                    cache.clear();
+                }
+                eventPublisher.publishEvent(new CatalogImportedEvent(progress.rows));
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        log.info("imported {} movies in {} ms, {} rows/s", progress.rows, elapsedNanos / 1_000_000,
+                Math.round(rowsPerSecond(progress.rows, elapsedNanos)));
+        return CatalogImportResult.builder()
+                .rows(progress.rows)
+                .batches(progress.batches)
+                .elapsedMillis(elapsedNanos / 1_000_000)
+                .rowsPerSecond(rowsPerSecond(progress.rows, elapsedNanos))
+                .build();
+    }
+
+    /**
+     * Commits the rows added to {@code merge}, together with moving the id sequence past the largest id so far, so
+     * that every committed batch leaves the sequence ready for it.
+     */
+    private static void commitBatch(Connection connection, PreparedStatement merge, int rows, long maxId,
+                                    ImportProgress progress) throws SQLException {
+        merge.executeBatch();
+        moveSequencePast(connection, maxId);
+        connection.commit();
+        progress.rows += rows;
+        progress.batches++;
+        progress.maxId = maxId;
+    }
+
+    /**
+     * Draws ids for {@link MovieEntity} until one above {@code maxId} comes up. The pooled optimizer keeps the block
+     * it drew from the sequence in memory, and restarting the sequence does not reach it, so the rest of a block
+     * drawn before the import could hold imported ids. This can only run once the last batch has committed, as the
+     * largest id is not known before the end of the file, but it still runs before any other write is admitted.
+     * At most one block of ids is lost.
+     */
+    private void skipAllocatedIdsUpTo(long maxId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            // persisting assigns the next id; the rollback leaves neither a row nor an insert behind
+            for (int drawn = 0; drawn <= ID_ALLOCATION_SIZE; drawn++) {
+                MovieEntity placeholder = new MovieEntity();
+                entityManager.persist(placeholder);
+                if (placeholder.getId() > maxId) {
+                    break;
+                }
+            }
+            status.setRollbackOnly();
+        });
+    }
+
+    /**
+     * Restarts {@code tbl_user_seq} so the next block of ids starts after {@code maxId}, unless it already does.
+     */
+    private static void moveSequencePast(Connection connection, long maxId) throws SQLException {
+        long next = maxId + ID_ALLOCATION_SIZE;
+        try (Statement statement = connection.createStatement();
+             ResultSet sequence = statement.executeQuery("select base_value from information_schema.sequences "
+                     + "where sequence_schema = current_schema and sequence_name = 'TBL_USER_SEQ'")) {
+            if (sequence.next() && sequence.getLong(1) < next) {
+                statement.execute("alter sequence tbl_user_seq restart with " + next);
+            }
+        }
+    }
+
+    private static void setLazyQueryExecution(Connection connection, boolean lazy) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("set lazy_query_execution " + lazy);
+        }
+    }
+
+    private static double rowsPerSecond(long rows, long elapsedNanos) {
+        return elapsedNanos == 0 ? 0 : rows * 1_000_000_000d / elapsedNanos;
+    }
+
+    /**
+     * What an import has committed so far.
+     */
+    private static final class ImportProgress {
+        long rows;
+        long batches;
+        long maxId;
+    }
+}
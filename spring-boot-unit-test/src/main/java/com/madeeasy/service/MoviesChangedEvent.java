@@ -0,0 +1,31 @@
+package com.madeeasy.service;
+
+import com.madeeasy.dto.MovieSummary;
+
+import java.util.List;
+
+/**
+ * Published inside the transaction of every write that goes through the JPA services, one event per statement or
+ * chunk. Listeners that must only see committed data use {@code @TransactionalEventListener}, which delivers the event
+ * after the commit and drops it on rollback.
+ *
+ * <p>Listeners on different threads may see the events of concurrent transactions out of commit order; the
+ * version of a row tells which state is the newer one.
+ */
+public record MoviesChangedEvent(List<Change> changes) {
+
+    public static MoviesChangedEvent of(MovieSummary before, MovieSummary after) {
+        return new MoviesChangedEvent(List.of(new Change(before, after)));
+    }
+
+    /**
+     * @param before the row before the write, {@code null} when it was created
+     * @param after  the row after the write, {@code null} when it was deleted
+     */
+    public record Change(MovieSummary before, MovieSummary after) {
+
+        public Long id() {
+            return after != null ? after.id() : before.id();
+        }
+    }
+}
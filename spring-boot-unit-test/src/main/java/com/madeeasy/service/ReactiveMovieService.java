@@ -0,0 +1,214 @@
+package com.madeeasy.service;
+
+import com.madeeasy.dto.BatchInsertResult;
+import com.madeeasy.dto.BatchItemResult;
+import com.madeeasy.dto.CatalogFingerprint;
+import com.madeeasy.dto.MoviePage;
+import com.madeeasy.dto.MoviePatch;
+import com.madeeasy.dto.MovieSearchCriteria;
+import com.madeeasy.dto.MovieSearchPage;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.error.InvalidMoviePatchException;
+import com.madeeasy.error.MovieNotFoundException;
+import com.madeeasy.error.MovieVersionConflictException;
+import com.madeeasy.repository.ReactiveMovieRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Reactive counterpart of {@link MovieService} and {@link MovieBatchService}, with the same semantics and errors.
+ * There is no read-through cache here: Spring's cache abstraction does not cache {@code Mono} results.
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveMovieService {
+
+    @Autowired
+    private ReactiveMovieRepository movieRepository;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Value("${movies.batch.chunk-size:500}")
+    private int chunkSize = 500;
+
+    public Mono<MovieEntity> save(MovieEntity movieEntity) {
+        return movieRepository.insert(movieEntity, now());
+    }
+
+    public Mono<MovieEntity> findById(Long id) {
+        return movieRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new MovieNotFoundException("error!! movie not found")));
+    }
+
+    public Mono<Void> deleteMovie(Long id) {
+        return movieRepository.deleteByIdReturning(id)
+                .switchIfEmpty(Mono.error(() -> new MovieNotFoundException("error!! movie not found")))
+                .then();
+    }
+
+    public Flux<MovieEntity> getAllMovies() {
+        return movieRepository.findAllOrderById();
+    }
+
+    public Mono<CatalogFingerprint> getCatalogFingerprint() {
+        return movieRepository.getCatalogFingerprint();
+    }
+
+    public Mono<MoviePage> getMoviesPage(String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MovieService.MAX_PAGE_SIZE));
+        long afterId = MovieService.decodeCursor(cursor);
+
+        // fetch one extra row to know whether another page follows without a count query
+        return movieRepository.findPageAfter(afterId, pageSize + 1)
+                .collectList()
+                .map(movies -> {
+                    String nextCursor = null;
+                    if (movies.size() > pageSize) {
+                        movies = movies.subList(0, pageSize);
+                        nextCursor = MovieService.encodeCursor(movies.get(pageSize - 1).getId());
+                    }
+                    return MoviePage.builder()
+                            .movies(movies.stream().map(MovieSummary::of).toList())
+                            .nextCursor(nextCursor)
+                            .build();
+                });
+    }
+
+    public Mono<MovieSearchPage> searchMovies(MovieSearchCriteria criteria, Pageable pageable) {
+        return movieRepository.search(criteria, pageable)
+                .collectList()
+                .map(movies -> {
+                    boolean hasNext = movies.size() > pageable.getPageSize();
+                    return MovieSearchPage.builder()
+                            .movies((hasNext ? movies.subList(0, pageable.getPageSize()) : movies).stream()
+                                    .map(MovieSummary::of)
+                                    .toList())
+                            .page(pageable.getPageNumber())
+                            .size(pageable.getPageSize())
+                            .hasNext(hasNext)
+                            .build();
+                });
+    }
+
+    /**
+     * @see MovieService#updateMovie
+     */
+    public Mono<MovieEntity> updateMovie(Long id, MovieEntity updatedMovie) {
+        MoviePatch patch = new MoviePatch()
+                .name(updatedMovie.getName())
+                .releaseDate(updatedMovie.getReleaseDate());
+        if (updatedMovie.getVersion() != null) {
+            patch.version(updatedMovie.getVersion());
+        }
+        return applyPatch(id, patch);
+    }
+
+    public Mono<MovieEntity> partialUpdateMovie(Long id, MoviePatch patch) {
+        if (patch.has(MoviePatch.Field.ID) && !id.equals(patch.getId())) {
+            return Mono.error(new InvalidMoviePatchException("error!! id of a movie cannot be changed"));
+        }
+        if (!patch.hasChanges()) {
+            return findById(id);
+        }
+        return applyPatch(id, patch);
+    }
+
+    private Mono<MovieEntity> applyPatch(Long id, MoviePatch patch) {
+        Instant modifiedAt = now();
+        return movieRepository.patchById(id, patch, modifiedAt)
+                .map(movie -> {
+                    patch.applyTo(movie);
+                    movie.setVersion(movie.getVersion() + 1);
+                    movie.setLastModified(modifiedAt);
+                    return movie;
+                })
+                .switchIfEmpty(Mono.defer(() -> notUpdated(id, patch)));
+    }
+
+    private Mono<MovieEntity> notUpdated(Long id, MoviePatch patch) {
+        if (!patch.has(MoviePatch.Field.VERSION)) {
+            return Mono.error(new MovieNotFoundException("error!! movie not found"));
+        }
+        return movieRepository.existsById(id)
+                .flatMap(exists -> Mono.error(exists
+                        ? new MovieVersionConflictException(
+                                "error!! movie " + id + " is no longer at version " + patch.getVersion())
+                        : new MovieNotFoundException("error!! movie not found")));
+    }
+
+    /**
+     * @see MovieBatchService#saveAll
+     */
+    public Mono<BatchInsertResult> saveAll(Flux<MovieEntity> movies) {
+        long start = System.nanoTime();
+        return movies.index()
+                .buffer(chunkSize)
+                .concatMap(this::saveChunk)
+                .collectList()
+                .map(items -> {
+                    long elapsedNanos = System.nanoTime() - start;
+                    int created = (int) items.stream()
+                            .filter(item -> item.getStatus() == BatchItemResult.Status.CREATED)
+                            .count();
+                    return BatchInsertResult.builder()
+                            .total(items.size())
+                            .created(created)
+                            .failed(items.size() - created)
+                            .elapsedMillis(elapsedNanos / 1_000_000)
+                            .rowsPerSecond(elapsedNanos == 0 ? 0 : created * 1_000_000_000d / elapsedNanos)
+                            .items(items)
+                            .build();
+                });
+    }
+
+    private Flux<BatchItemResult> saveChunk(List<Tuple2<Long, MovieEntity>> chunk) {
+        Instant modifiedAt = now();
+        return Flux.fromIterable(chunk)
+                .concatMap(movie -> movieRepository.insert(movie.getT2(), modifiedAt)
+                        .map(saved -> created(movie.getT1(), saved)))
+                .collectList()
+                .as(transactionalOperator::transactional)
+                .flatMapMany(Flux::fromIterable)
+                // one bad row must not fail the whole chunk: replay it row by row to find out which ones it was
+                .onErrorResume(chunkFailure -> Flux.fromIterable(chunk)
+                        .concatMap(movie -> movieRepository.insert(movie.getT2(), modifiedAt)
+                                .as(transactionalOperator::transactional)
+                                .map(saved -> created(movie.getT1(), saved))
+                                .onErrorResume(rowFailure -> {
+                                    log.warn("could not save the movie at index {} of a batch", movie.getT1(),
+                                            rowFailure);
+                                    return Mono.just(BatchItemResult.builder()
+                                            .index(movie.getT1().intValue())
+                                            .status(BatchItemResult.Status.FAILED)
+                                            .error(MovieBatchService.failureReason(rowFailure))
+                                            .build());
+                                })));
+    }
+
+    private static BatchItemResult created(long index, MovieEntity movie) {
+        return BatchItemResult.builder()
+                .index((int) index)
+                .id(movie.getId())
+                .status(BatchItemResult.Status.CREATED)
+                .build();
+    }
+
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+}
@@ -0,0 +1,95 @@
+package com.madeeasy.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one load per key at a time: a caller asking for a key whose load is already in flight waits for that
+ * load and gets its result, or its exception, instead of starting another one. Nothing is kept once the load has
+ * finished, so the next caller loads again; caching stays the job of the cache.
+ *
+ * <p>A caller that joins a load may get a value read just before a write it already saw committed, the same as a
+ * caller that started the load itself a moment earlier.
+ */
+public class SingleFlight<K, V> implements MeterBinder {
+
+    private final String name;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param name value of the {@code name} tag of the metrics
+     */
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, call);
+        if (running != null) {
+            coalesced.increment();
+            return join(running);
+        }
+        executed.increment();
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    long executedCalls() {
+        return executed.sum();
+    }
+
+    long coalescedCalls() {
+        return coalesced.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("movies.singleflight.calls", executed, LongAdder::sum)
+                .description("Loads that ran")
+                .tag("name", name)
+                .tag("outcome", "executed")
+                .register(registry);
+        FunctionCounter.builder("movies.singleflight.calls", coalesced, LongAdder::sum)
+                .description("Calls that waited for a load already in flight instead of running their own")
+                .tag("name", name)
+                .tag("outcome", "coalesced")
+                .register(registry);
+        Gauge.builder("movies.singleflight.in.flight", inFlight, ConcurrentHashMap::size)
+                .description("Keys being loaded")
+                .tag("name", name)
+                .register(registry);
+    }
+
+    private static <V> V join(CompletableFuture<V> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+-- the schema Hibernate created for MovieEntity before the migrations existed (ddl-auto: update), which is what an
+-- existing database is baselined at; ids are handed out in blocks of 50, matching the allocation size of MovieEntity
+create sequence tbl_user_seq start with 1 increment by 50;
+
+create table tbl_user (
+    id bigint not null,
+    name varchar(255),
+    release_date date,
+    primary key (id)
+);
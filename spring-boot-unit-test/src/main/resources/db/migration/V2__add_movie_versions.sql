@@ -0,0 +1,6 @@
+-- optimistic locking and conditional requests; movies that predate this start at version 0 without a modification time
+alter table tbl_user add column version bigint default 0 not null;
+alter table tbl_user add column last_modified timestamp(6) with time zone;
+
+create index idx_tbl_user_name on tbl_user (name);
+create index idx_tbl_user_release_date on tbl_user (release_date);
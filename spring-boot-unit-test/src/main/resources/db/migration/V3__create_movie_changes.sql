@@ -0,0 +1,14 @@
+-- change log behind GET /movies/changes: one row per committed create, update or delete of a movie, numbered in
+-- commit order by the application (see MovieChangeLog), so seq has neither gaps nor reorderings
+create table tbl_movie_change (
+    seq bigint not null,
+    operation varchar(16) not null,
+    movie_id bigint,
+    name varchar(255),
+    release_date date,
+    version bigint,
+    changed_at timestamp(6) with time zone not null,
+    primary key (seq)
+);
+
+create index idx_tbl_movie_change_changed_at on tbl_movie_change (changed_at);
@@ -0,0 +1,72 @@
+package com.madeeasy;
+
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.service.MovieService;
+import com.madeeasy.service.MovieTitleSearchService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts on a database the way the app left it before the migrations existed: the schema Hibernate created for the
+ * original mapping, with a movie in it. Flyway has to baseline it and bring it up to date, and Hibernate validates the
+ * result against the mapping.
+ */
+@SpringBootTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+class LegacySchemaUpgradeTests {
+
+	private static final String URL = "jdbc:h2:mem:legacy;DB_CLOSE_DELAY=-1";
+
+	@Autowired
+	private Flyway flyway;
+
+	@Autowired
+	private MovieService movieService;
+
+	@Autowired
+	private MovieTitleSearchService movieTitleSearchService;
+
+	@DynamicPropertySource
+	static void legacyDatabase(DynamicPropertyRegistry registry) throws SQLException {
+		try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+			 Statement statement = connection.createStatement()) {
+			statement.execute("create sequence tbl_user_seq start with 1 increment by 50");
+			statement.execute("create table tbl_user (id bigint not null, name varchar(255), release_date date, "
+					+ "primary key (id))");
+			statement.execute("insert into tbl_user (id, name, release_date) "
+					+ "values (next value for tbl_user_seq, 'Alien', date '1979-05-25')");
+		}
+		registry.add("spring.datasource.url", () -> URL);
+	}
+
+	@Test
+	void legacyDatabaseIsUpgraded() {
+		assertEquals("1", flyway.info().applied()[0].getVersion().getVersion());
+		assertEquals(0, flyway.info().pending().length);
+
+		MovieEntity alien = movieService.findById(1L);
+		assertEquals("Alien", alien.getName());
+		assertEquals(0L, alien.getVersion());
+
+		movieTitleSearchService.rebuild();
+		assertTrue(movieTitleSearchService.isReady());
+		assertEquals(1L, movieTitleSearchService.search("alien", 0, 10).getTotal());
+
+		MovieEntity aliens = new MovieEntity();
+		aliens.setName("Aliens");
+		aliens.setReleaseDate(LocalDate.of(1986, 7, 18));
+		assertTrue(movieService.save(aliens).getId() > 1L);
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.madeeasy;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts the prod profile on a scratch database file, migrated by Flyway and then validated by Hibernate: the context
+ * only loads if the migrations in db/migration still match the entity mapping.
+ */
+@SpringBootTest(properties = {
+		"movies.h2.path=./target/prod-profile-test/movies",
+		"spring.jpa.hibernate.ddl-auto=validate"
+})
+@ActiveProfiles("prod")
+class ProdProfileTests {
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private Flyway flyway;
+
+	@Test
+	void contextLoadsWithValidatedSchema() throws Exception {
+		HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+		assertEquals("movies", hikari.getPoolName());
+		assertEquals(16, hikari.getMaximumPoolSize());
+		assertTrue(hikari.getJdbcUrl().contains("QUERY_CACHE_SIZE=64"));
+		assertEquals(0, flyway.info().pending().length);
+	}
+
+}
@@ -1,32 +1,91 @@
 package com.madeeasy.controller;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.madeeasy.config.JacksonFormatsConfig;
+import com.madeeasy.dto.BatchInsertResult;
+import com.madeeasy.dto.BatchItemResult;
+import com.madeeasy.dto.BulkChangeResult;
+import com.madeeasy.dto.CatalogFingerprint;
+import com.madeeasy.dto.CatalogImportResult;
+import com.madeeasy.dto.IngestStatus;
+import com.madeeasy.dto.MovieChange;
+import com.madeeasy.dto.MovieChangePage;
+import com.madeeasy.dto.MovieBulkRequest;
+import com.madeeasy.dto.MoviePage;
+import com.madeeasy.dto.MoviePatch;
+import com.madeeasy.dto.MovieSearchCriteria;
+import com.madeeasy.dto.MovieSearchPage;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.dto.MovieTitleHit;
+import com.madeeasy.dto.MovieTitleSearchPage;
+import com.madeeasy.dto.ReleaseBucket;
+import com.madeeasy.dto.ReleaseCount;
+import com.madeeasy.dto.ReleaseHistogram;
+import com.madeeasy.dto.ReleaseStats;
 import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.repository.MovieColumnFile;
+import com.madeeasy.error.CatalogImportRunningException;
+import com.madeeasy.error.ChangeLogTruncatedException;
+import com.madeeasy.error.IngestQueueFullException;
+import com.madeeasy.error.InvalidBulkRequestException;
+import com.madeeasy.error.InvalidCatalogFileException;
+import com.madeeasy.error.InvalidSearchRequestException;
+import com.madeeasy.error.InvalidStatsRequestException;
+import com.madeeasy.error.MovieNotFoundException;
+import com.madeeasy.error.MovieVersionConflictException;
+import com.madeeasy.service.MovieBatchService;
+import com.madeeasy.service.MovieBulkService;
+import com.madeeasy.service.MovieChangeLog;
+import com.madeeasy.service.MovieIngestService;
+import com.madeeasy.service.MovieReplica;
 import com.madeeasy.service.MovieService;
+import com.madeeasy.service.MovieStatsService;
+import com.madeeasy.service.MovieTitleSearchService;
+import com.madeeasy.service.MovieTransferService;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(MovieController.class)
+@Import(JacksonFormatsConfig.class)
 public class MovieControllerTest {
     @Autowired
     private MockMvc mockMvc;
@@ -34,6 +93,30 @@ public class MovieControllerTest {
     @MockBean
     private MovieService movieService;
 
+    @MockBean
+    private MovieBatchService movieBatchService;
+
+    @MockBean
+    private MovieIngestService movieIngestService;
+
+    @MockBean
+    private MovieBulkService movieBulkService;
+
+    @MockBean
+    private MovieReplica movieReplica;
+
+    @MockBean
+    private MovieTitleSearchService movieTitleSearchService;
+
+    @MockBean
+    private MovieStatsService movieStatsService;
+
+    @MockBean
+    private MovieTransferService movieTransferService;
+
+    @MockBean
+    private MovieChangeLog movieChangeLog;
+
     @Test
     public void testCreateMovie() throws Exception {
         MovieEntity savedMovie = new MovieEntity();
@@ -54,6 +137,126 @@ public class MovieControllerTest {
         verify(movieService).save(any(MovieEntity.class));
     }
 
+    @Test
+    public void testCreateMovieAsync() throws Exception {
+        when(movieIngestService.enqueue(any(MovieEntity.class))).thenReturn(IngestStatus.builder()
+                .ticket("abc")
+                .state(IngestStatus.State.PENDING)
+                .build());
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/movies/create")
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Test Movie\",\"releaseDate\":\"2023-05-17\"}"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "http://localhost/movies/ingest/abc"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.state").value("PENDING"));
+
+        // nothing is written on the request thread
+        verify(movieService, never()).save(any(MovieEntity.class));
+
+        when(movieIngestService.getStatus("abc")).thenReturn(IngestStatus.builder()
+                .ticket("abc")
+                .state(IngestStatus.State.CREATED)
+                .id(7L)
+                .build());
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/ingest/{ticket}", "abc"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(7));
+    }
+
+    @Test
+    public void testCreateMovieAsyncWithFullQueue() throws Exception {
+        when(movieIngestService.enqueue(any(MovieEntity.class)))
+                .thenThrow(new IngestQueueFullException("error!! ingestion queue is full"));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/movies/create")
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Test Movie\",\"releaseDate\":\"2023-05-17\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+    }
+
+    @Test
+    public void testCreateMovieWhileACatalogImportRuns() throws Exception {
+        String details = "error!! movies cannot be changed while a catalog import runs";
+        when(movieService.save(any(MovieEntity.class))).thenThrow(new CatalogImportRunningException(details));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/movies/create")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Test Movie\",\"releaseDate\":\"2023-05-17\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "5"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.details").value(details));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCreateMoviesFromNdjson() throws Exception {
+        List<String> receivedNames = new ArrayList<>();
+        when(movieBatchService.saveAll(any(Iterator.class))).thenAnswer(invocation -> {
+            Iterator<MovieEntity> movies = invocation.getArgument(0);
+            movies.forEachRemaining(movie -> receivedNames.add(movie.getName()));
+            return BatchInsertResult.builder()
+                    .total(2)
+                    .created(2)
+                    .items(List.of(
+                            new BatchItemResult(0, 1L, BatchItemResult.Status.CREATED, null),
+                            new BatchItemResult(1, 2L, BatchItemResult.Status.CREATED, null)))
+                    .build();
+        });
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/movies/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"name\":\"Movie 1\",\"releaseDate\":\"2023-05-17\"}\n" +
+                                "{\"name\":\"Movie 2\",\"releaseDate\":\"2023-05-18\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.created").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items", hasSize(2)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.items[1].id").value(2));
+
+        assertEquals(List.of("Movie 1", "Movie 2"), receivedNames);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCreateMoviesFromJsonArray() throws Exception {
+        List<String> receivedNames = new ArrayList<>();
+        when(movieBatchService.saveAll(any(Iterator.class))).thenAnswer(invocation -> {
+            Iterator<MovieEntity> movies = invocation.getArgument(0);
+            movies.forEachRemaining(movie -> receivedNames.add(movie.getName()));
+            return BatchInsertResult.builder().total(2).created(2).items(List.of()).build();
+        });
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/movies/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"name\":\"Movie 1\"},{\"name\":\"Movie 2\"}]"))
+                .andExpect(status().isOk());
+
+        assertEquals(List.of("Movie 1", "Movie 2"), receivedNames);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCreateMoviesFromTruncatedBody() throws Exception {
+        when(movieBatchService.saveAll(any(Iterator.class))).thenReturn(BatchInsertResult.builder()
+                .total(1)
+                .created(1)
+                .items(List.of(new BatchItemResult(0, 1L, BatchItemResult.Status.CREATED, null)))
+                .error("error!! movie at index 1 could not be read: Unexpected end-of-input")
+                .build());
+
+        // the movies before the break are committed, so the result comes along with the 400
+        mockMvc.perform(MockMvcRequestBuilders.post("/movies/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"name\":\"Movie 1\"},{\"name\":"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.created").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.error")
+                        .value("error!! movie at index 1 could not be read: Unexpected end-of-input"));
+    }
+
     @Test
     public void testFindById() throws Exception {
         // Mock the movieService.findById() method
@@ -67,6 +270,77 @@ public class MovieControllerTest {
         verify(movieService).findById(1L);
     }
 
+    @Test
+    public void testFindByIdFromReplica() throws Exception {
+        when(movieReplica.findById(1L)).thenReturn(MovieEntity.builder()
+                .id(1L)
+                .name("Replicated Movie")
+                .version(2L)
+                .build());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/{id}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("Replicated Movie"));
+
+        verify(movieService, never()).findById(any());
+    }
+
+    @Test
+    public void testFindByIdIsConditional() throws Exception {
+        MovieEntity movie = MovieEntity.builder()
+                .id(1L)
+                .name("Test Movie")
+                .version(3L)
+                .lastModified(Instant.parse("2023-05-17T10:15:30Z"))
+                .build();
+        when(movieService.findById(1L)).thenReturn(movie);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/{id}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(header().string(HttpHeaders.LAST_MODIFIED, "Wed, 17 May 2023 10:15:30 GMT"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("Test Movie"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/{id}", 1L)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/{id}", 1L)
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, "Wed, 17 May 2023 10:15:30 GMT"))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/{id}", 1L)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testFindByIdNotFound() throws Exception {
+        when(movieService.findById(1L)).thenThrow(new MovieNotFoundException("error!! movie not found"));
+
+        // the pre-serialized body is the same JSON an ApiError would be rendered as
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/{id}", 1L))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json("{\"message\":\"try again\",\"details\":\"id is not correct\"," +
+                        "\"hint\":\"check the id\",\"nextActions\":\"send request with correct data\"," +
+                        "\"support\":null}", true));
+    }
+
+    @Test
+    public void testUpdateMissingMovie() throws Exception {
+        when(movieService.updateMovie(eq(1L), any(MovieEntity.class)))
+                .thenThrow(new MovieNotFoundException("error!! movie not found"));
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/movies/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Test Movie\",\"releaseDate\":\"2023-05-17\"}"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.details").value("id is not correct"));
+    }
+
     @Test
     public void testDeleteMovie() throws Exception {
         // Perform the DELETE request
@@ -79,21 +353,241 @@ public class MovieControllerTest {
 
     @Test
     public void testGetAllMovies() throws Exception {
-        // Create a sample list of MovieEntity
-        List<MovieEntity> movies = new ArrayList<>();
-        movies.add(new MovieEntity());
-        movies.add(new MovieEntity());
+        List<MovieSummary> movies = List.of(
+                new MovieSummary(1L, "Movie 1", LocalDate.of(2023, Month.MAY, 17), 0L, null),
+                new MovieSummary(2L, "Movie 2", LocalDate.of(2023, Month.MAY, 18), 1L, null));
 
-        // Mock the movieService.getAllMovies() method
-        when(movieService.getAllMovies()).thenReturn(movies);
+        // Mock the movieService.streamAllMovies() method
+        streamMovies(movies);
+        when(movieService.getCatalogFingerprint()).thenReturn(new CatalogFingerprint(2L, 3L, 1L));
 
-        // Perform the GET request
-        mockMvc.perform(MockMvcRequestBuilders.get("/movies"))
+        // Perform the GET request; the body is written by the precomputed writer once the handler returned
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/movies"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"catalog-2-3-1\""))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().string("[" +
+                        "{\"id\":1,\"name\":\"Movie 1\",\"releaseDate\":\"2023-05-17\",\"version\":0,\"lastModified\":null}," +
+                        "{\"id\":2,\"name\":\"Movie 2\",\"releaseDate\":\"2023-05-18\",\"version\":1,\"lastModified\":null}]"));
+
+        // Verify that the rows were streamed rather than loaded as a list
+        verify(movieService).streamAllMovies(any());
+        verify(movieService, never()).getAllMovies();
+    }
+
+    @Test
+    public void testGetAllMoviesFromReplica() throws Exception {
+        when(movieReplica.isReady()).thenReturn(true);
+        when(movieReplica.getCatalogFingerprint()).thenReturn(new CatalogFingerprint(1L, 1L, 0L));
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("[{\"id\":1}]".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(movieReplica).writeCatalog(any(OutputStream.class), any(JsonFactory.class));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/movies"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"catalog-1-1-0\""))
+                .andExpect(content().string("[{\"id\":1}]"));
+
+        // neither the fingerprint nor the rows come from the database
+        verify(movieService, never()).getCatalogFingerprint();
+        verify(movieService, never()).streamAllMovies(any());
+    }
+
+    @Test
+    public void testGetAllMoviesAsCbor() throws Exception {
+        streamMovies(List.of(new MovieSummary(1L, "Movie 1", LocalDate.of(2023, Month.MAY, 17), 0L, null)));
+        when(movieService.getCatalogFingerprint()).thenReturn(new CatalogFingerprint(1L, 1L, 0L));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/movies")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"catalog-1-1-0-cbor\""))
+                .andExpect(header().string(HttpHeaders.VARY, Matchers.containsString(HttpHeaders.ACCEPT)))
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // dates are written the way the JSON mapper writes them
+        JsonNode movies = new CBORMapper().readTree(body);
+        assertEquals("Movie 1", movies.get(0).get("name").asText());
+        assertEquals("2023-05-17", movies.get(0).get("releaseDate").asText());
+    }
+
+    @Test
+    public void testFindByIdAsSmile() throws Exception {
+        when(movieService.findById(1L)).thenReturn(MovieEntity.builder()
+                .id(1L)
+                .name("Test Movie")
+                .releaseDate(LocalDate.of(2023, Month.MAY, 17))
+                .version(0L)
+                .build());
+
+        byte[] body = mockMvc.perform(MockMvcRequestBuilders.get("/movies/1")
+                        .accept(JacksonFormatsConfig.APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0-smile\""))
+                .andExpect(content().contentType(JacksonFormatsConfig.APPLICATION_SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode movie = new SmileMapper().readTree(body);
+        assertEquals("Test Movie", movie.get("name").asText());
+        assertEquals("2023-05-17", movie.get("releaseDate").asText());
+
+        // the JSON copy a client holds does not stand for the Smile bytes
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/1")
+                        .accept(JacksonFormatsConfig.APPLICATION_SMILE)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/1")
+                        .accept(JacksonFormatsConfig.APPLICATION_SMILE)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"0-smile\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void testGetAllMoviesNotAcceptable() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies")
+                        .accept(MediaType.APPLICATION_XML))
+                .andExpect(status().isNotAcceptable());
+
+        verifyNoInteractions(movieService);
+    }
+
+    @Test
+    public void testGetAllMoviesNotModified() throws Exception {
+        when(movieService.getCatalogFingerprint()).thenReturn(new CatalogFingerprint(2L, 3L, 0L));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"catalog-2-3-0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // the catalog itself is never loaded for a 304
+        verify(movieService, never()).streamAllMovies(any());
+    }
+
+    @Test
+    public void testDeleteMovies() throws Exception {
+        when(movieBulkService.deleteMovies(any(MovieBulkRequest.class)))
+                .thenReturn(new BulkChangeResult(3, 1, 5));
+
+        mockMvc.perform(MockMvcRequestBuilders.delete("/movies")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"releasedFrom\":\"1970-01-01\",\"releasedTo\":\"1979-12-31\"}"))
                 .andExpect(status().isOk())
-                .andExpect(MockMvcResultMatchers.jsonPath("$", hasSize(2)));
+                .andExpect(MockMvcResultMatchers.jsonPath("$.affected").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.chunks").value(1));
+
+        ArgumentCaptor<MovieBulkRequest> request = ArgumentCaptor.forClass(MovieBulkRequest.class);
+        verify(movieBulkService).deleteMovies(request.capture());
+        assertEquals(LocalDate.of(1970, 1, 1), request.getValue().getReleasedFrom());
+        assertNull(request.getValue().getIds());
+    }
+
+    @Test
+    public void testPatchMoviesInvalidRequest() throws Exception {
+        when(movieBulkService.patchMovies(any(MovieBulkRequest.class)))
+                .thenThrow(new InvalidBulkRequestException("error!! ids or a release date range is required"));
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/movies")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"set\":{\"name\":\"Renamed\"}}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.details")
+                        .value("error!! ids or a release date range is required"));
 
-        // Verify that the movieService.getAllMovies() method was called
-        verify(movieService).getAllMovies();
+        ArgumentCaptor<MovieBulkRequest> request = ArgumentCaptor.forClass(MovieBulkRequest.class);
+        verify(movieBulkService).patchMovies(request.capture());
+        assertEquals("Renamed", request.getValue().getSet().getName());
+    }
+
+    @Test
+    public void testGetMoviesPage() throws Exception {
+        MovieSummary movie = new MovieSummary(1L, "Test Movie", null, 0L, null);
+
+        when(movieService.getMoviesPage("MQ", 1)).thenReturn(new MoviePage(List.of(movie), "Mg"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/page")
+                        .param("cursor", "MQ")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.movies", hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.nextCursor").value("Mg"));
+
+        verify(movieService).getMoviesPage("MQ", 1);
+    }
+
+    @Test
+    public void testSearchMovies() throws Exception {
+        MovieSummary movie = new MovieSummary(1L, "Star Wars", LocalDate.of(1977, Month.MAY, 25), 0L, null);
+        when(movieService.searchMovies(any(MovieSearchCriteria.class), any(Pageable.class)))
+                .thenReturn(new MovieSearchPage(List.of(movie), 0, 20, false));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/search")
+                        .param("namePrefix", "Star")
+                        .param("releasedFrom", "1970-01-01")
+                        .param("releasedTo", "1979-12-31"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.movies", hasSize(1)))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.hasNext").value(false));
+
+        ArgumentCaptor<MovieSearchCriteria> criteria = ArgumentCaptor.forClass(MovieSearchCriteria.class);
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(movieService).searchMovies(criteria.capture(), pageable.capture());
+        assertEquals("Star", criteria.getValue().getNamePrefix());
+        assertEquals(LocalDate.of(1970, 1, 1), criteria.getValue().getReleasedFrom());
+        assertEquals(LocalDate.of(1979, 12, 31), criteria.getValue().getReleasedTo());
+        assertEquals(20, pageable.getValue().getPageSize());
+        assertEquals(Sort.by("id"), pageable.getValue().getSort());
+    }
+
+    @Test
+    public void testSearchMoviesRejectsUnknownSortProperty() throws Exception {
+        when(movieService.searchMovies(any(MovieSearchCriteria.class), any(Pageable.class)))
+                .thenThrow(new InvalidSearchRequestException("error!! cannot sort by budget"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/search")
+                        .param("namePrefix", "Star")
+                        .param("sort", "budget"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.details").value("error!! cannot sort by budget"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStreamAllMovies() throws Exception {
+        MovieSummary movie1 = new MovieSummary(1L, "Movie 1", LocalDate.of(2023, Month.MAY, 17), null, null);
+        MovieSummary movie2 = new MovieSummary(2L, "Movie 2", LocalDate.of(2023, Month.MAY, 18), null, null);
+
+        doAnswer(invocation -> {
+            Consumer<MovieSummary> consumer = invocation.getArgument(0);
+            consumer.accept(movie1);
+            consumer.accept(movie2);
+            return null;
+        }).when(movieService).streamAllMovies(any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/movies/stream"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"id\":1,\"name\":\"Movie 1\",\"releaseDate\":\"2023-05-17\",\"version\":null,\"lastModified\":null}\n" +
+                        "{\"id\":2,\"name\":\"Movie 2\",\"releaseDate\":\"2023-05-18\",\"version\":null,\"lastModified\":null}\n"));
     }
 
     @Test
@@ -120,15 +614,76 @@ public class MovieControllerTest {
         verify(movieService).updateMovie(eq(1L), any(MovieEntity.class));
     }
 
+    @Test
+    public void testUpdateMovieWithStaleVersion() throws Exception {
+        when(movieService.updateMovie(eq(1L), any(MovieEntity.class)))
+                .thenThrow(new MovieVersionConflictException("stale"));
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/movies/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Test Movie\",\"releaseDate\":\"2023-05-17\",\"version\":2}"))
+                .andExpect(status().isConflict())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.details").value("movie was modified by someone else"));
+    }
+
+    @Test
+    public void testPartialUpdateMovieWithIfMatch() throws Exception {
+        when(movieService.partialUpdateMovie(eq(1L), any(MoviePatch.class)))
+                .thenReturn(MovieEntity.builder().id(1L).name("Updated Movie").version(4L).build());
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/movies/{id}", 1L)
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Updated Movie\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+
+        // the If-Match ETag becomes the expected version
+        ArgumentCaptor<MoviePatch> patch = ArgumentCaptor.forClass(MoviePatch.class);
+        verify(movieService).partialUpdateMovie(eq(1L), patch.capture());
+        assertEquals(3L, patch.getValue().getVersion());
+    }
+
+    @Test
+    public void testPartialUpdateMovieWithIfMatchOfAnotherFormat() throws Exception {
+        when(movieService.partialUpdateMovie(eq(1L), any(MoviePatch.class)))
+                .thenReturn(MovieEntity.builder().id(1L).name("Updated Movie").version(4L).build());
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/movies/{id}", 1L)
+                        .header(HttpHeaders.IF_MATCH, "\"3-cbor\"")
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Updated Movie\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4-cbor\""));
+
+        ArgumentCaptor<MoviePatch> patch = ArgumentCaptor.forClass(MoviePatch.class);
+        verify(movieService).partialUpdateMovie(eq(1L), patch.capture());
+        assertEquals(3L, patch.getValue().getVersion());
+    }
+
+    @Test
+    public void testPartialUpdateMovieWithFailedIfMatch() throws Exception {
+        when(movieService.partialUpdateMovie(eq(1L), any(MoviePatch.class)))
+                .thenThrow(new MovieVersionConflictException("stale"));
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/movies/{id}", 1L)
+                        .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Updated Movie\"}"))
+                .andExpect(status().isPreconditionFailed());
+
+        // weak ETags never match strongly, so the update is asked for a version no row has
+        ArgumentCaptor<MoviePatch> patch = ArgumentCaptor.forClass(MoviePatch.class);
+        verify(movieService).partialUpdateMovie(eq(1L), patch.capture());
+        assertEquals(-1L, patch.getValue().getVersion());
+    }
+
     @Test
     public void testPartialUpdateMovie() throws Exception {
-        // Mock the id and updates
+        // Mock the id
         Long id = 1L;
 
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("name", "Updated Movie");
-        updates.put("releaseDate", "2023-05-17");
-
         // Mock the movieEntity
         MovieEntity movieEntity = new MovieEntity();
         movieEntity.setId(id);
@@ -136,7 +691,7 @@ public class MovieControllerTest {
         movieEntity.setReleaseDate(LocalDate.of(2023, Month.MAY, 17));
 
         // Mock the movieService partialUpdateMovie method
-        when(movieService.partialUpdateMovie(eq(id), anyMap())).thenReturn(movieEntity);
+        when(movieService.partialUpdateMovie(eq(id), any(MoviePatch.class))).thenReturn(movieEntity);
 
         // Perform the PATCH request
         mockMvc.perform(MockMvcRequestBuilders.patch("/movies/{id}", id)
@@ -147,9 +702,195 @@ public class MovieControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("Test Movie"))
                 .andExpect(MockMvcResultMatchers.jsonPath("$.releaseDate").value("2023-05-17"));
 
-        // Verify that the movieService partialUpdateMovie method was called with the id and updates
-        verify(movieService, times(1)).partialUpdateMovie(eq(id), eq(updates));
+        // Verify that the movieService partialUpdateMovie method was called with the id and the parsed patch
+        ArgumentCaptor<MoviePatch> patch = ArgumentCaptor.forClass(MoviePatch.class);
+        verify(movieService, times(1)).partialUpdateMovie(eq(id), patch.capture());
+        assertTrue(patch.getValue().has(MoviePatch.Field.NAME));
+        assertTrue(patch.getValue().has(MoviePatch.Field.RELEASE_DATE));
+        assertFalse(patch.getValue().has(MoviePatch.Field.ID));
+        assertEquals("Updated Movie", patch.getValue().getName());
+        assertEquals(LocalDate.of(2023, Month.MAY, 17), patch.getValue().getReleaseDate());
+    }
+
+    @Test
+    public void testPartialUpdateMovieAcceptsIntegerId() throws Exception {
+        when(movieService.partialUpdateMovie(eq(1L), any(MoviePatch.class))).thenReturn(new MovieEntity());
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/movies/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\": 1, \"name\": null}"))
+                .andExpect(status().isOk());
 
+        ArgumentCaptor<MoviePatch> patch = ArgumentCaptor.forClass(MoviePatch.class);
+        verify(movieService).partialUpdateMovie(eq(1L), patch.capture());
+        assertEquals(1L, patch.getValue().getId());
+        assertTrue(patch.getValue().has(MoviePatch.Field.NAME));
+        assertNull(patch.getValue().getName());
+    }
+
+    @Test
+    public void testPartialUpdateMovieRejectsInvalidValues() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.patch("/movies/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"releaseDate\": \"17/05/2023\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.details",
+                        Matchers.containsString("'releaseDate' must be an ISO date")));
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/movies/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": 42}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/movies/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"rating\": 5}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.details").value("unknown field 'rating'"));
+
+        verifyNoInteractions(movieService);
+    }
+
+    @Test
+    public void testSearchTitles() throws Exception {
+        MovieSummary movie = new MovieSummary(1L, "The Godfather", LocalDate.of(1972, Month.MARCH, 24), 0L, null);
+        when(movieTitleSearchService.search("godfater", 1, 5)).thenReturn(MovieTitleSearchPage.builder()
+                .hits(List.of(new MovieTitleHit(movie, 2.5)))
+                .page(1)
+                .size(5)
+                .total(6L)
+                .hasNext(false)
+                .build());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/search/titles")
+                        .param("q", "godfater")
+                        .param("page", "1")
+                        .param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.hits[0].movie.name").value("The Godfather"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.hits[0].score").value(2.5))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.total").value(6))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.hasNext").value(false));
     }
 
+    @Test
+    public void testReleaseStats() throws Exception {
+        when(movieStatsService.countByMonth(1979)).thenReturn(ReleaseStats.builder()
+                .counts(List.of(new ReleaseCount("1979-05", 3)))
+                .total(3)
+                .undated(1)
+                .build());
+        when(movieStatsService.histogram(LocalDate.of(1970, 1, 1), null, 2)).thenReturn(ReleaseHistogram.builder()
+                .buckets(List.of(new ReleaseBucket(LocalDate.of(1970, 1, 1), LocalDate.of(1975, 1, 1), 4)))
+                .total(4)
+                .build());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/stats/months").param("year", "1979"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.counts[0].period").value("1979-05"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.counts[0].count").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.undated").value(1));
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/stats/histogram")
+                        .param("from", "1970-01-01")
+                        .param("buckets", "2"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.buckets[0].to").value("1975-01-01"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.total").value(4));
+    }
+
+    @Test
+    public void testReleaseHistogramRejectsInvalidBuckets() throws Exception {
+        when(movieStatsService.histogram(null, null, 0))
+                .thenThrow(new InvalidStatsRequestException("error!! buckets must be between 1 and 1000"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/stats/histogram").param("buckets", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.details")
+                        .value("error!! buckets must be between 1 and 1000"));
+    }
+
+    @Test
+    public void testExportMovies() throws Exception {
+        when(movieTransferService.exportCatalog(any(OutputStream.class))).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("MCOL".getBytes(StandardCharsets.US_ASCII));
+            return 0L;
+        });
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/movies/export"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MovieColumnFile.MEDIA_TYPE))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"movies.mcol\""))
+                .andExpect(content().string("MCOL"));
+    }
+
+    @Test
+    public void testImportMovies() throws Exception {
+        when(movieTransferService.importCatalog(any(InputStream.class))).thenAnswer(invocation -> {
+            if (invocation.<InputStream>getArgument(0).readAllBytes().length == 0) {
+                throw new InvalidCatalogFileException("error!! the file ends within its header");
+            }
+            return CatalogImportResult.builder()
+                    .rows(2)
+                    .batches(1)
+                    .elapsedMillis(4)
+                    .rowsPerSecond(500)
+                    .build();
+        });
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/movies/import")
+                        .contentType(MovieColumnFile.MEDIA_TYPE)
+                        .content(new byte[]{'M', 'C', 'O', 'L'}))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.rows").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.rowsPerSecond").value(500.0));
+        mockMvc.perform(MockMvcRequestBuilders.post("/movies/import")
+                        .contentType(MovieColumnFile.MEDIA_TYPE)
+                        .content(new byte[0]))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.details").value("error!! the file ends within its header"));
+    }
+
+    @Test
+    public void testGetChanges() throws Exception {
+        when(movieChangeLog.changesAfter(4L, 100, Duration.ofSeconds(30))).thenReturn(CompletableFuture.completedFuture(
+                MovieChangePage.builder()
+                        .changes(List.of(MovieChange.builder()
+                                .sequence(5L)
+                                .operation(MovieChange.Operation.UPDATED)
+                                .id(1L)
+                                .name("Alien")
+                                .releaseDate(LocalDate.of(1979, Month.MAY, 25))
+                                .version(2L)
+                                .build()))
+                        .lastSequence(5L)
+                        .build()));
+        when(movieChangeLog.changesAfter(1L, 100, Duration.ZERO))
+                .thenThrow(new ChangeLogTruncatedException("error!! changes after 1 have been purged"));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/movies/changes")
+                        .param("after", "4")
+                        .param("wait", "30"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.changes[0].sequence").value(5))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.changes[0].operation").value("UPDATED"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.lastSequence").value(5));
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/changes").param("after", "1"))
+                .andExpect(status().isGone());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void streamMovies(List<MovieSummary> movies) {
+        doAnswer(invocation -> {
+            movies.forEach(invocation.<Consumer<MovieSummary>>getArgument(0));
+            return null;
+        }).when(movieService).streamAllMovies(any(Consumer.class));
+    }
 }
@@ -0,0 +1,145 @@
+package com.madeeasy.controller;
+
+import com.madeeasy.entity.MovieEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the reactive stack end to end against an in-memory database, checking it keeps the contract of
+ * {@link MovieController}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:mem:reactive;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("reactive")
+class ReactiveMovieControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void testCreateFindUpdateAndDelete() {
+        URI location = webTestClient.post().uri("/movies/create")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"name\":\"Test Movie\",\"releaseDate\":\"2023-05-17\"}")
+                .exchange()
+                .expectStatus().isCreated()
+                .returnResult(Void.class)
+                .getResponseHeaders()
+                .getLocation();
+        assertNotNull(location);
+
+        MovieEntity movie = webTestClient.get().uri(location.getPath())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody(MovieEntity.class)
+                .returnResult()
+                .getResponseBody();
+        assertEquals("Test Movie", movie.getName());
+        assertNotNull(movie.getLastModified());
+
+        webTestClient.get().uri(location.getPath())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isNotModified();
+
+        webTestClient.patch().uri(location.getPath())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"name\":\"Patched Movie\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"")
+                .expectBody().jsonPath("$.name").isEqualTo("Patched Movie");
+
+        // same error contract as the servlet stack
+        webTestClient.patch().uri(location.getPath())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"name\":\"Stale Movie\"}")
+                .exchange()
+                .expectStatus().isEqualTo(412)
+                .expectBody().jsonPath("$.details").isEqualTo("movie was modified by someone else");
+
+        webTestClient.patch().uri(location.getPath())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"rating\":5}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.details").isEqualTo("unknown field 'rating'");
+
+        webTestClient.delete().uri(location.getPath())
+                .exchange()
+                .expectStatus().isNoContent();
+
+        webTestClient.get().uri(location.getPath())
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody().jsonPath("$.details").isEqualTo("id is not correct");
+    }
+
+    @Test
+    void testBatchSearchAndPage() {
+        webTestClient.post().uri("/movies/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"name\":\"Batch 1\",\"releaseDate\":\"2001-01-01\"}\n" +
+                        "{\"name\":\"Batch 2\",\"releaseDate\":\"2002-01-01\"}\n" +
+                        "{\"name\":\"Other\",\"releaseDate\":\"2003-01-01\"}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.created").isEqualTo(3);
+
+        webTestClient.get().uri("/movies/search?namePrefix=Batch&sort=name,desc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.movies.length()").isEqualTo(2)
+                .jsonPath("$.movies[0].name").isEqualTo("Batch 2")
+                .jsonPath("$.hasNext").isEqualTo(false);
+
+        webTestClient.get().uri("/movies/page?limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.movies.length()").isEqualTo(1)
+                .jsonPath("$.nextCursor").isNotEmpty();
+
+        webTestClient.get().uri("/movies/page?cursor=!!")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.details").isEqualTo("cursor is not valid");
+
+        String etag = webTestClient.get().uri("/movies")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MovieEntity.class)
+                .getResponseHeaders()
+                .getETag();
+        // weak like the servlet stack's, since the body may be gzipped
+        assertTrue(etag.startsWith("W/\"catalog-"));
+        webTestClient.get().uri("/movies")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified();
+
+        String ndjsonEtag = webTestClient.get().uri("/movies")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .returnResult(MovieEntity.class)
+                .getResponseHeaders()
+                .getETag();
+        assertEquals(etag.replaceFirst("\"$", "-ndjson\""), ndjsonEtag);
+    }
+}
@@ -0,0 +1,71 @@
+package com.madeeasy.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long FAST = Duration.ofMillis(5).toNanos();
+    private static final long SLOW = Duration.ofSeconds(1).toNanos();
+
+    private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 12, 0.5,
+            Duration.ofMillis(100), Duration.ofMillis(20));
+
+    @Test
+    void testRefusesRequestsOverTheLimit() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        assertFalse(limit.tryAcquire());
+        assertEquals(10, limit.getInFlight());
+
+        limit.release();
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void testSlowRequestsShrinkTheLimitOncePerThreshold() {
+        long now = System.nanoTime();
+        acquire(10);
+
+        // the slow requests completing together count as one overload
+        for (int i = 0; i < 5; i++) {
+            limit.release(SLOW, 0, now);
+        }
+        assertEquals(5, limit.getLimit());
+        limit.release(FAST, Duration.ofMillis(50).toNanos(), now + SLOW);
+        assertEquals(2, limit.getLimit());
+        // never below the minimum
+        limit.release(SLOW, 0, now + 2 * SLOW);
+        assertEquals(2, limit.getLimit());
+        assertEquals(3, limit.getInFlight());
+    }
+
+    @Test
+    void testHealthyRequestsGrowTheLimitOnlyWhileItIsUsed() {
+        long now = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            acquire(1);
+            limit.release(FAST, 0, now);
+        }
+        assertEquals(10, limit.getLimit());
+
+        // a limit of n grows by one after n healthy samples with at least half of it in flight, up to the maximum
+        for (int round = 0; round < 5; round++) {
+            acquire(limit.getLimit());
+            for (int i = limit.getInFlight(); i > 0; i--) {
+                limit.release(FAST, 0, now);
+            }
+        }
+        assertEquals(12, limit.getLimit());
+    }
+
+    private void acquire(int requests) {
+        for (int i = 0; i < requests; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+    }
+}
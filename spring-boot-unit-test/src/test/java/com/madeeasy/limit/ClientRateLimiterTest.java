@@ -0,0 +1,74 @@
+package com.madeeasy.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientRateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final ClientRateLimiter rateLimiter = new ClientRateLimiter(
+            new ClientRateLimiter.Limit(10, 3),
+            Map.of("GET /movies", new ClientRateLimiter.Limit(0.5, 1)),
+            1000, Duration.ofMinutes(1));
+
+    @Test
+    void testBurstThenSustainedRate() {
+        long now = 0;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("alice", "GET /movies/{id}", now));
+        }
+        // a tenth of a second for the next permit
+        assertEquals(SECOND / 10, rateLimiter.tryAcquire("alice", "GET /movies/{id}", now));
+        assertEquals(SECOND / 20, rateLimiter.tryAcquire("alice", "GET /movies/{id}", now + SECOND / 20));
+        assertEquals(0, rateLimiter.tryAcquire("alice", "GET /movies/{id}", now + SECOND / 10));
+        assertTrue(rateLimiter.tryAcquire("alice", "GET /movies/{id}", now + SECOND / 10) > 0);
+        // refilled after a quiet second, but never beyond the burst
+        now += 2 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("alice", "GET /movies/{id}", now));
+        }
+        assertTrue(rateLimiter.tryAcquire("alice", "GET /movies/{id}", now) > 0);
+    }
+
+    @Test
+    void testBucketsPerClientAndRoute() {
+        assertEquals(0, rateLimiter.tryAcquire("alice", "GET /movies", 0));
+        assertEquals(2 * SECOND, rateLimiter.tryAcquire("alice", "GET /movies", 0));
+
+        // other routes of the same client and the same route of other clients are not affected
+        assertEquals(0, rateLimiter.tryAcquire("alice", "GET /movies/{id}", 0));
+        assertEquals(0, rateLimiter.tryAcquire("bob", "GET /movies", 0));
+        assertEquals(new ClientRateLimiter.Limit(10, 3), rateLimiter.limitOf("PATCH /movies/{id}"));
+    }
+
+    @Test
+    void testConcurrentClientsGetExactlyTheBurst() throws InterruptedException {
+        ClientRateLimiter slow = new ClientRateLimiter(new ClientRateLimiter.Limit(0.001, 100), Map.of(), 10,
+                Duration.ofMinutes(1));
+        long now = System.nanoTime();
+        int[] admitted = new int[8];
+        Thread[] threads = new Thread[admitted.length];
+        for (int t = 0; t < threads.length; t++) {
+            int index = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    if (slow.tryAcquire("alice", "GET /movies", now) == 0) {
+                        admitted[index]++;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(100, Arrays.stream(admitted).sum());
+    }
+}
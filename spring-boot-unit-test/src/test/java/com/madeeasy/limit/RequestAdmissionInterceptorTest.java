@@ -0,0 +1,109 @@
+package com.madeeasy.limit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.madeeasy.error.GlobalErrorHandling;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class RequestAdmissionInterceptorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(1, 1, 1, 0.5,
+            Duration.ofSeconds(1), Duration.ofMillis(100));
+    private final RequestAdmissionInterceptor interceptor = new RequestAdmissionInterceptor(
+            new ClientRateLimiter(new ClientRateLimiter.Limit(0.01, 1), Map.of(), 100, Duration.ofMinutes(1)),
+            concurrencyLimit, "X-Client-Id", Set.of(), meterRegistry);
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new StubController())
+            .setControllerAdvice(new GlobalErrorHandling(new ObjectMapper()))
+            .addMappedInterceptors(new String[]{"/movies", "/movies/**"}, interceptor)
+            .build();
+
+    @Test
+    void testClientOverItsRateGets429() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/1").header("X-Client-Id", "alice"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/2").header("X-Client-Id", "alice"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "100"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.details").value("too many requests"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/2").header("X-Client-Id", "bob"))
+                .andExpect(status().isOk());
+
+        assertEquals(1.0, meterRegistry.get(RequestAdmissionInterceptor.REJECTED)
+                .tag("reason", "rate_limit")
+                .tag("uri", "/movies/{id}")
+                .counter().count());
+        assertEquals(2.0, meterRegistry.get(RequestAdmissionInterceptor.RATE_LIMIT_BUCKETS).gauge().value());
+        assertEquals(0.0, meterRegistry.get(RequestAdmissionInterceptor.IN_FLIGHT).gauge().value());
+    }
+
+    @Test
+    void testRequestsOverTheConcurrencyLimitGet503() throws Exception {
+        MockHttpServletRequest inFlight = new MockHttpServletRequest("GET", "/movies/1");
+        inFlight.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/movies/{id}");
+        assertTrue(interceptor.preHandle(inFlight, new MockHttpServletResponse(), new Object()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/2").header("X-Client-Id", "bob"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.details").value("server is overloaded"));
+        assertEquals(1.0, meterRegistry.get(RequestAdmissionInterceptor.REJECTED)
+                .tag("reason", "concurrency_limit")
+                .counter().count());
+
+        interceptor.afterCompletion(inFlight, new MockHttpServletResponse(), new Object(), null);
+        mockMvc.perform(MockMvcRequestBuilders.get("/movies/3").header("X-Client-Id", "carol"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testStreamHoldsItsPlaceUntilTheAsyncDispatchCompletes() throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/movies/stream"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        assertEquals(1, concurrencyLimit.getInFlight());
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        assertEquals(0, concurrencyLimit.getInFlight());
+        assertEquals(1, concurrencyLimit.getLimit());
+    }
+
+    // an inner class, so the component scan of the application tests does not pick it up
+    @RestController
+    class StubController {
+
+        @GetMapping("/movies/{id}")
+        String movie(@PathVariable Long id) {
+            return "movie " + id;
+        }
+
+        @GetMapping("/movies/stream")
+        StreamingResponseBody stream() {
+            return outputStream -> outputStream.write('\n');
+        }
+    }
+}
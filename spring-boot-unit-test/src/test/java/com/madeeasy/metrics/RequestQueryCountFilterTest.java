@@ -0,0 +1,89 @@
+package com.madeeasy.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestQueryCountFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JdbcMetricsListener listener = new JdbcMetricsListener(meterRegistry, Duration.ofMillis(200));
+    private final RequestQueryCountFilter filter = new RequestQueryCountFilter(meterRegistry, 3);
+
+    @Test
+    void testCountsStatementsPerRequest() throws Exception {
+        MockHttpServletRequest request = request("/movies/{id}");
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            execute("select m.id from tbl_user m where m.id=?");
+            execute("update tbl_user set name=? where id=?");
+        });
+
+        assertEquals(2.0, meterRegistry.get(RequestQueryCountFilter.QUERIES_PER_REQUEST)
+                .tag("uri", "/movies/{id}").summary().totalAmount());
+        assertEquals(1L, meterRegistry.get(JdbcMetricsListener.QUERY_TIMER).tag("type", "select").timer().count());
+        assertEquals(1L, meterRegistry.get(JdbcMetricsListener.QUERY_TIMER).tag("type", "update").timer().count());
+        assertNull(meterRegistry.find(RequestQueryCountFilter.N_PLUS_ONE).counter());
+    }
+
+    @Test
+    void testFlagsRepeatedSelectAsNPlusOne() throws Exception {
+        MockHttpServletRequest request = request("/movies");
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            execute("select m.id from tbl_user m");
+            for (int i = 0; i < 3; i++) {
+                execute("select m.name from tbl_user m where m.id=?");
+            }
+        });
+
+        assertEquals(1.0, meterRegistry.get(RequestQueryCountFilter.N_PLUS_ONE).tag("uri", "/movies").counter().count());
+    }
+
+    @Test
+    void testChunksOfABulkChangeAreNotNPlusOne() throws Exception {
+        MockHttpServletRequest request = request("/movies");
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            for (int i = 0; i < 3; i++) {
+                execute("select id, name from old table (delete from tbl_movie where id between ? and ?)");
+                execute("select id, name from OLD TABLE ( update tbl_movie set name=? where id between ? and ?)");
+            }
+        });
+
+        assertNull(meterRegistry.find(RequestQueryCountFilter.N_PLUS_ONE).counter());
+        assertEquals(3L, meterRegistry.get(JdbcMetricsListener.QUERY_TIMER).tag("type", "delete").timer().count());
+        assertEquals(3L, meterRegistry.get(JdbcMetricsListener.QUERY_TIMER).tag("type", "update").timer().count());
+        assertNull(meterRegistry.find(JdbcMetricsListener.QUERY_TIMER).tag("type", "select").timer());
+    }
+
+    @Test
+    void testStatementsOutsideRequestAreOnlyTimed() {
+        execute("select m.id from tbl_user m");
+
+        assertEquals(1L, meterRegistry.get(JdbcMetricsListener.QUERY_TIMER).timer().count());
+        assertNull(meterRegistry.find(RequestQueryCountFilter.QUERIES_PER_REQUEST).summary());
+    }
+
+    private MockHttpServletRequest request(String pattern) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", pattern);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        return request;
+    }
+
+    private void execute(String sql) {
+        ExecutionInfo executionInfo = new ExecutionInfo();
+        executionInfo.setSuccess(true);
+        executionInfo.setElapsedTime(1);
+        listener.afterQuery(executionInfo, List.of(new QueryInfo(sql)));
+    }
+}
@@ -0,0 +1,163 @@
+package com.madeeasy.repository;
+
+import com.madeeasy.dto.CatalogFingerprint;
+import com.madeeasy.dto.MovieSummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedMovieTableTest {
+
+    @TempDir
+    private Path directory;
+
+    private MappedMovieTable table;
+
+    @BeforeEach
+    void openTable() throws IOException {
+        table = new MappedMovieTable(directory, 4, 1024);
+    }
+
+    @AfterEach
+    void closeTable() throws IOException {
+        table.close();
+    }
+
+    @Test
+    void testUpsertAndFind() {
+        MovieSummary movie = movie(1L, "Das Boot", 0L);
+
+        assertTrue(table.upsert(movie));
+
+        assertEquals(movie, table.find(1L));
+        assertNull(table.find(2L));
+    }
+
+    @Test
+    void testFindWithoutOptionalColumns() {
+        table.upsert(new MovieSummary(1L, null, null, 0L, null));
+
+        assertEquals(new MovieSummary(1L, null, null, 0L, null), table.find(1L));
+    }
+
+    @Test
+    void testOlderVersionDoesNotOverwriteNewer() {
+        table.upsert(movie(1L, "Renamed", 2L));
+
+        assertFalse(table.upsert(movie(1L, "Original", 1L)));
+        assertTrue(table.upsert(movie(1L, "Renamed again", 3L)));
+
+        assertEquals("Renamed again", table.find(1L).name());
+        assertEquals(new CatalogFingerprint(1L, 1L, 3L).etag(), table.fingerprint().etag());
+    }
+
+    @Test
+    void testDeletedMovieIsNotRestoredByLateCopy() {
+        table.upsert(movie(1L, "Doomed", 0L));
+        assertTrue(table.delete(1L));
+        // a delete can also arrive before the row itself
+        assertFalse(table.delete(2L));
+
+        assertFalse(table.upsert(movie(1L, "Doomed", 1L)));
+        assertFalse(table.upsert(movie(2L, "Never seen", 0L)));
+
+        assertNull(table.find(1L));
+        assertNull(table.find(2L));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void testEqualNamesArePooledOnce() {
+        table.upsert(movie(1L, "Remake", 0L));
+        long pooled = table.poolBytes();
+
+        table.upsert(movie(2L, "Remake", 0L));
+
+        assertEquals(pooled, table.poolBytes());
+        assertEquals(Integer.BYTES + "Remake".getBytes(StandardCharsets.UTF_8).length, pooled);
+    }
+
+    @Test
+    void testForEachVisitsLiveMoviesInIdOrder() throws IOException {
+        table.upsert(movie(3L, "Third", 0L));
+        table.upsert(movie(1L, "First", 0L));
+        table.upsert(movie(2L, "Zweiter Teil", 0L));
+        table.delete(3L);
+
+        List<String> visited = new ArrayList<>();
+        table.forEach((id, name, nameLength, releaseEpochDay, version, lastModifiedMillis) ->
+                visited.add(id + ":" + new String(name, 0, nameLength, StandardCharsets.UTF_8)));
+
+        assertEquals(List.of("1:First", "2:Zweiter Teil"), visited);
+    }
+
+    @Test
+    void testForEachStopsWhenTheTableIsCleared() {
+        table.upsert(movie(1L, "First", 0L));
+        table.upsert(movie(2L, "Second", 0L));
+
+        List<String> visited = new ArrayList<>();
+        assertThrows(ConcurrentModificationException.class,
+                () -> table.forEach((id, name, nameLength, releaseEpochDay, version, lastModifiedMillis) -> {
+                    visited.add(new String(name, 0, nameLength, StandardCharsets.UTF_8));
+                    // a reload overwrites the records and names still to be read
+                    table.clear();
+                    table.upsert(movie(7L, "Reloaded", 0L));
+                    table.upsert(movie(8L, "Also reloaded", 0L));
+                }));
+
+        assertEquals(List.of("First"), visited);
+    }
+
+    @Test
+    void testFingerprintMatchesAggregateOfLiveRows() {
+        table.upsert(movie(1L, "One", 0L));
+        table.upsert(movie(2L, "Two", 4L));
+        table.upsert(movie(3L, "Three", 1L));
+        table.delete(3L);
+
+        CatalogFingerprint fingerprint = table.fingerprint();
+
+        assertEquals(2L, fingerprint.getCount());
+        assertEquals(3L, fingerprint.getIdSum());
+        assertEquals(4L, fingerprint.getVersionSum());
+    }
+
+    @Test
+    void testFullTableIsReported() {
+        for (long id = 1; id <= 4; id++) {
+            table.upsert(movie(id, "Movie " + id, 0L));
+        }
+
+        assertThrows(IllegalStateException.class, () -> table.upsert(movie(5L, "One too many", 0L)));
+        assertEquals(4, table.size());
+    }
+
+    @Test
+    void testClearDropsTombstones() {
+        table.upsert(movie(1L, "Movie", 0L));
+        table.delete(1L);
+
+        table.clear();
+
+        assertTrue(table.upsert(movie(1L, "Movie", 0L)));
+        assertEquals(0L, table.find(1L).version());
+    }
+
+    private static MovieSummary movie(Long id, String name, Long version) {
+        return new MovieSummary(id, name, LocalDate.of(2023, 5, 17), version,
+                Instant.parse("2023-05-17T10:15:30.120Z"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.madeeasy.repository;
+
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.error.InvalidCatalogFileException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieColumnFileTest {
+
+    private static final List<MovieSummary> MOVIES = List.of(
+            new MovieSummary(1L, "Amélie", LocalDate.of(2001, 4, 25), 3L, Instant.parse("2023-05-17T10:15:30.123456Z")),
+            new MovieSummary(2L, null, null, 0L, null),
+            new MovieSummary(50L, "", LocalDate.of(1895, 12, 28), 1L, Instant.parse("1969-12-31T23:59:59.999999Z")),
+            new MovieSummary(7L, "千と千尋の神隠し", LocalDate.of(2001, 7, 20), 0L, Instant.EPOCH));
+
+    @Test
+    void testRoundTripOverSeveralRowGroups() throws IOException {
+        byte[] file = write(MOVIES, 3);
+
+        assertEquals(MOVIES, read(file));
+    }
+
+    @Test
+    void testEmptyCatalog() throws IOException {
+        assertEquals(List.of(), read(write(List.of(), 3)));
+    }
+
+    @Test
+    void testRepeatedValuesCompress() throws IOException {
+        List<MovieSummary> movies = new ArrayList<>();
+        for (long id = 1; id <= 10_000; id++) {
+            movies.add(new MovieSummary(id, "Movie " + id, LocalDate.of(2000, 1, 1), 0L, null));
+        }
+
+        byte[] file = write(movies, MovieColumnFile.DEFAULT_ROW_GROUP_SIZE);
+
+        // ids, dates, versions and the null instants cost next to nothing, the names about two bytes each
+        assertTrue(file.length < 30_000, "file of " + file.length + " bytes");
+        assertEquals(movies, read(file));
+    }
+
+    @Test
+    void testIncompleteFilesAreRejected() throws IOException {
+        byte[] file = write(MOVIES, 3);
+
+        assertThrows(InvalidCatalogFileException.class, () -> read("[{\"id\":1}]".getBytes()));
+        // cut within the second row group, then right before the trailer
+        assertThrows(InvalidCatalogFileException.class, () -> read(Arrays.copyOf(file, file.length - 20)));
+        assertThrows(InvalidCatalogFileException.class, () -> read(Arrays.copyOf(file, file.length - 12)));
+        byte[] corrupt = file.clone();
+        corrupt[corrupt.length - 1]++;
+        assertThrows(InvalidCatalogFileException.class, () -> read(corrupt));
+    }
+
+    private static byte[] write(List<MovieSummary> movies, int rowGroupSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MovieColumnFile.Writer writer = new MovieColumnFile.Writer(out, rowGroupSize, 6)) {
+            for (MovieSummary movie : movies) {
+                writer.write(movie);
+            }
+            assertEquals(movies.size(), writer.finish());
+        }
+        return out.toByteArray();
+    }
+
+    private static List<MovieSummary> read(byte[] file) {
+        List<MovieSummary> movies = new ArrayList<>();
+        try (MovieColumnFile.Reader reader = new MovieColumnFile.Reader(new ByteArrayInputStream(file))) {
+            reader.forEachRemaining(movies::add);
+        }
+        return movies;
+    }
+}
@@ -2,14 +2,29 @@ package com.madeeasy.repository;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.madeeasy.dto.CatalogFingerprint;
+import com.madeeasy.dto.MovieBulkRequest;
+import com.madeeasy.dto.MoviePatch;
+import com.madeeasy.dto.MovieSearchCriteria;
+import com.madeeasy.dto.MovieReleaseDate;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.dto.ReleaseCount;
+import com.madeeasy.dto.ReleaseDateCount;
 import com.madeeasy.entity.MovieEntity;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * =================== Database Cleanup After the Test ===================
@@ -102,4 +117,254 @@ class MovieRepositoryTest {
         assertEquals(movie2.getName(), foundMovie2.getName());
         assertEquals(movie2.getReleaseDate(), foundMovie2.getReleaseDate());
     }
+
+    @Test
+    void testFindPageAfter() {
+        // Persist three movies; ids come from the sequence so they are increasing
+        for (int i = 1; i <= 3; i++) {
+            MovieEntity movie = new MovieEntity();
+            movie.setName("Movie " + i);
+            movie.setReleaseDate(LocalDate.now());
+            entityManager.persist(movie);
+        }
+        entityManager.flush();
+
+        List<MovieSummary> firstPage = movieRepository.findPageAfter(Long.MIN_VALUE, PageRequest.ofSize(2));
+        assertEquals(2, firstPage.size());
+        assertTrue(firstPage.get(0).id() < firstPage.get(1).id());
+
+        // Seeking past the last id of the first page returns the remaining movie
+        List<MovieSummary> secondPage = movieRepository.findPageAfter(firstPage.get(1).id(), PageRequest.ofSize(2));
+        assertEquals(1, secondPage.size());
+        assertEquals("Movie 3", secondPage.get(0).name());
+    }
+
+    @Test
+    void testFindAllSummariesStaysOutOfPersistenceContext() {
+        persist("Star Wars", LocalDate.of(1977, 5, 25));
+        persist("Star Trek", LocalDate.of(1979, 12, 7));
+        entityManager.flush();
+        entityManager.clear();
+
+        List<MovieSummary> movies = movieRepository.findAllSummaries();
+
+        assertEquals(2, movies.size());
+        assertEquals("Star Wars", movies.get(0).name());
+        assertEquals(0L, movies.get(0).version());
+        // nothing to dirty check or snapshot: no entity was attached to the session
+        Session session = entityManager.getEntityManager().unwrap(Session.class);
+        assertEquals(0, session.getStatistics().getEntityCount());
+    }
+
+    @Test
+    void testSearch() {
+        persist("Star Wars", LocalDate.of(1977, 5, 25));
+        persist("Star Trek", LocalDate.of(1979, 12, 7));
+        persist("Stardust", LocalDate.of(2007, 8, 10));
+        persist("100% Wolf", LocalDate.of(2020, 6, 26));
+        entityManager.flush();
+
+        // Exact name
+        Slice<MovieSummary> exact = movieRepository.search(
+                MovieSearchCriteria.builder().name("Star Trek").build(), PageRequest.of(0, 10));
+        assertEquals(1, exact.getNumberOfElements());
+
+        // Name prefix combined with a release date range, sorted by name
+        Slice<MovieSummary> prefixInRange = movieRepository.search(
+                MovieSearchCriteria.builder()
+                        .namePrefix("Star")
+                        .releasedFrom(LocalDate.of(1970, 1, 1))
+                        .releasedTo(LocalDate.of(1999, 12, 31))
+                        .build(),
+                PageRequest.of(0, 10, Sort.by("name")));
+        assertEquals(2, prefixInRange.getNumberOfElements());
+        assertEquals("Star Trek", prefixInRange.getContent().get(0).name());
+        assertFalse(prefixInRange.hasNext());
+
+        // Slicing without a count query
+        Slice<MovieSummary> firstSlice = movieRepository.search(
+                MovieSearchCriteria.builder().namePrefix("Star").build(), PageRequest.of(0, 2, Sort.by("id")));
+        assertEquals(2, firstSlice.getNumberOfElements());
+        assertTrue(firstSlice.hasNext());
+
+        // LIKE wildcards in the prefix are matched literally
+        Slice<MovieSummary> wildcard = movieRepository.search(
+                MovieSearchCriteria.builder().namePrefix("%").build(), PageRequest.of(0, 10));
+        assertEquals(0, wildcard.getNumberOfElements());
+        Slice<MovieSummary> literalPercent = movieRepository.search(
+                MovieSearchCriteria.builder().namePrefix("100%").build(), PageRequest.of(0, 10));
+        assertEquals(1, literalPercent.getNumberOfElements());
+    }
+
+    @Test
+    void testFindByNameLikeAndSummariesByIds() {
+        MovieEntity starWars = persist("Star Wars", LocalDate.of(1977, 5, 25));
+        persist("Lone Star", LocalDate.of(1996, 6, 21));
+        MovieEntity wolf = persist("100% Wolf", LocalDate.of(2020, 6, 26));
+        entityManager.flush();
+
+        Slice<MovieSummary> star = movieRepository.findByNameLike("%star%", PageRequest.of(0, 1));
+        assertEquals("Star Wars", star.getContent().get(0).name());
+        assertTrue(star.hasNext());
+        assertEquals(1, movieRepository.findByNameLike("%100\\%%", PageRequest.of(0, 10)).getNumberOfElements());
+
+        List<MovieSummary> byIds = movieRepository.findSummariesByIdIn(List.of(wolf.getId(), starWars.getId()));
+        assertEquals(2, byIds.size());
+    }
+
+    @Test
+    void testPatchById() {
+        MovieEntity movie = persist("Test Movie", LocalDate.of(2023, 5, 17));
+        entityManager.flush();
+        entityManager.clear();
+
+        // The previous row comes back from the UPDATE itself
+        Optional<MovieEntity> previous = movieRepository.patchById(movie.getId(),
+                new MoviePatch().name("Patched Movie"), Instant.now());
+        assertTrue(previous.isPresent());
+        assertEquals("Test Movie", previous.get().getName());
+        assertEquals(0L, previous.get().getVersion());
+
+        MovieEntity stored = movieRepository.findById(movie.getId()).orElseThrow();
+        assertEquals("Patched Movie", stored.getName());
+        assertEquals(LocalDate.of(2023, 5, 17), stored.getReleaseDate());
+        assertEquals(1L, stored.getVersion());
+        entityManager.clear();
+
+        // A stale version matches no row
+        assertTrue(movieRepository.patchById(movie.getId(), new MoviePatch().releaseDate(null).version(0L), Instant.now()).isEmpty());
+        // The current one does, and null clears the column
+        assertTrue(movieRepository.patchById(movie.getId(), new MoviePatch().releaseDate(null).version(1L), Instant.now()).isPresent());
+        MovieEntity cleared = movieRepository.findById(movie.getId()).orElseThrow();
+        assertNull(cleared.getReleaseDate());
+        assertEquals(2L, cleared.getVersion());
+
+        assertTrue(movieRepository.patchById(-1L, new MoviePatch().name("Nobody"), Instant.now()).isEmpty());
+    }
+
+    @Test
+    void testDeleteByIdReturning() {
+        MovieEntity movie = persist("Test Movie", LocalDate.of(2023, 5, 17));
+        entityManager.flush();
+        entityManager.clear();
+
+        Optional<MovieEntity> deleted = movieRepository.deleteByIdReturning(movie.getId());
+
+        assertTrue(deleted.isPresent());
+        assertEquals("Test Movie", deleted.get().getName());
+        assertFalse(movieRepository.existsById(movie.getId()));
+        assertTrue(movieRepository.deleteByIdReturning(movie.getId()).isEmpty());
+    }
+
+    @Test
+    void testDeleteChunk() {
+        MovieEntity seventies = persist("Star Wars", LocalDate.of(1977, 5, 25));
+        MovieEntity eighties = persist("Back to the Future", LocalDate.of(1985, 7, 3));
+        MovieEntity alsoSeventies = persist("Alien", LocalDate.of(1979, 5, 25));
+        entityManager.flush();
+        entityManager.clear();
+        MovieBulkRequest seventiesRange = MovieBulkRequest.builder()
+                .releasedFrom(LocalDate.of(1970, 1, 1))
+                .releasedTo(LocalDate.of(1979, 12, 31))
+                .build();
+
+        // one row per chunk, seeking past the previous chunk
+        List<MovieEntity> first = movieRepository.deleteChunk(seventiesRange, Long.MIN_VALUE, 1);
+        assertEquals(List.of(seventies.getId()), first.stream().map(MovieEntity::getId).toList());
+        List<MovieEntity> second = movieRepository.deleteChunk(seventiesRange, first.get(0).getId(), 1);
+        assertEquals(List.of(alsoSeventies.getId()), second.stream().map(MovieEntity::getId).toList());
+        assertTrue(movieRepository.deleteChunk(seventiesRange, second.get(0).getId(), 1).isEmpty());
+        assertTrue(movieRepository.existsById(eighties.getId()));
+
+        // an id list only matches the listed movies
+        List<MovieEntity> byId = movieRepository.deleteChunk(MovieBulkRequest.builder()
+                .ids(List.of(eighties.getId(), -1L))
+                .build(), Long.MIN_VALUE, 10);
+        assertEquals(1, byId.size());
+        assertEquals(0L, movieRepository.count());
+    }
+
+    @Test
+    void testPatchChunk() {
+        MovieEntity first = persist("Star Wars", LocalDate.of(1977, 5, 25));
+        MovieEntity second = persist("Star Trek", LocalDate.of(1979, 12, 7));
+        MovieEntity untouched = persist("Stardust", LocalDate.of(2007, 8, 10));
+        entityManager.flush();
+        entityManager.clear();
+        Instant modifiedAt = Instant.parse("2024-01-01T00:00:00Z");
+
+        List<MovieEntity> previous = movieRepository.patchChunk(MovieBulkRequest.builder()
+                        .ids(List.of(first.getId(), second.getId()))
+                        .build(),
+                new MoviePatch().releaseDate(LocalDate.of(2000, 1, 1)), modifiedAt, Long.MIN_VALUE, 10);
+
+        assertEquals(2, previous.size());
+        assertTrue(previous.stream().allMatch(movie -> movie.getVersion() == 0L));
+        entityManager.clear();
+        MovieEntity patched = movieRepository.findById(first.getId()).orElseThrow();
+        assertEquals(LocalDate.of(2000, 1, 1), patched.getReleaseDate());
+        assertEquals("Star Wars", patched.getName());
+        assertEquals(1L, patched.getVersion());
+        assertEquals(modifiedAt, patched.getLastModified());
+        assertEquals(0L, movieRepository.findById(untouched.getId()).orElseThrow().getVersion());
+    }
+
+    @Test
+    void testCatalogFingerprintChangesOnEveryWrite() {
+        MovieEntity first = persist("First Movie", LocalDate.of(2023, 5, 17));
+        MovieEntity second = persist("Second Movie", LocalDate.of(2023, 5, 18));
+        entityManager.flush();
+        assertNotNull(first.getLastModified());
+
+        CatalogFingerprint created = movieRepository.getCatalogFingerprint();
+        assertEquals(2L, created.getCount());
+
+        movieRepository.patchById(first.getId(), new MoviePatch().name("Renamed Movie"), Instant.now());
+        CatalogFingerprint updated = movieRepository.getCatalogFingerprint();
+        assertNotEquals(created.etag(), updated.etag());
+
+        movieRepository.deleteByIdReturning(second.getId());
+        CatalogFingerprint deleted = movieRepository.getCatalogFingerprint();
+        assertEquals(1L, deleted.getCount());
+        assertNotEquals(updated.etag(), deleted.etag());
+    }
+
+    @Test
+    void testCountsByReleasePeriod() {
+        persist("Alien", LocalDate.of(1979, 5, 25));
+        persist("Apocalypse Now", LocalDate.of(1979, 8, 15));
+        persist("The Shining", LocalDate.of(1980, 5, 23));
+        persist("Raging Bull", LocalDate.of(1980, 11, 14));
+        persist("Untitled Sequel", null);
+        entityManager.flush();
+
+        assertEquals(List.of(new ReleaseCount("1979", 2), new ReleaseCount("1980", 2)),
+                movieRepository.countByReleaseYear());
+        assertEquals(List.of(new ReleaseCount("1979-05", 1), new ReleaseCount("1979-08", 1),
+                        new ReleaseCount("1980-05", 1), new ReleaseCount("1980-11", 1)),
+                movieRepository.countByReleaseMonth());
+        assertEquals(List.of(new ReleaseCount("1980-05", 1), new ReleaseCount("1980-11", 1)),
+                movieRepository.countByReleaseMonthBetween(LocalDate.of(1980, 1, 1), LocalDate.of(1980, 12, 31)));
+        assertEquals(List.of(new ReleaseDateCount(LocalDate.of(1979, 8, 15), 1L),
+                        new ReleaseDateCount(LocalDate.of(1980, 5, 23), 1L)),
+                movieRepository.countByReleaseDateBetween(LocalDate.of(1979, 6, 1), LocalDate.of(1980, 6, 1)));
+        List<ReleaseDateCount> days = movieRepository.countByReleaseDate();
+        assertEquals(5, days.size());
+        assertTrue(days.contains(new ReleaseDateCount(null, 1L)));
+        assertEquals(1L, movieRepository.countByReleaseDateIsNull());
+        try (Stream<MovieReleaseDate> dates = movieRepository.streamReleaseDatesOrderById()) {
+            List<MovieReleaseDate> all = dates.toList();
+            assertEquals(5, all.size());
+            assertEquals(new MovieReleaseDate(all.get(0).id(), LocalDate.of(1979, 5, 25)), all.get(0));
+            assertNull(all.get(4).releaseDate());
+        }
+    }
+
+    private MovieEntity persist(String name, LocalDate releaseDate) {
+        MovieEntity movie = new MovieEntity();
+        movie.setName(name);
+        movie.setReleaseDate(releaseDate);
+        entityManager.persist(movie);
+        return movie;
+    }
 }
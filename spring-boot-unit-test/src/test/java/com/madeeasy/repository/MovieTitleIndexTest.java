@@ -0,0 +1,107 @@
+package com.madeeasy.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieTitleIndexTest {
+
+    private final MovieTitleIndex index = new MovieTitleIndex();
+
+    @Test
+    void testTokensAreCaseAndAccentFree() {
+        assertEquals(List.of("amelie", "l", "ete", "2001"),
+                MovieTitleIndex.tokenize("Amélie: L'été, 2001 — l'ÉTÉ", MovieTitleIndex.MAX_TOKENS));
+        assertEquals(List.of(), MovieTitleIndex.tokenize(" -- ", MovieTitleIndex.MAX_TOKENS));
+    }
+
+    @Test
+    void testEditDistanceCountsTranspositionsOnce() {
+        assertEquals(1, MovieTitleIndex.editDistance("godfater", "godfather", 2));
+        assertEquals(1, MovieTitleIndex.editDistance("mtarix", "matrix", 2));
+        assertEquals(2, MovieTitleIndex.editDistance("kitten", "sitting", 1));
+    }
+
+    @Test
+    void testShorterTitleRanksFirstOnEqualMatch() {
+        index.add(1L, "Alien vs. Predator: Requiem");
+        index.add(2L, "Alien");
+        index.add(3L, "Aliens");
+
+        MovieTitleIndex.Result result = index.search("ALIEN", 0, 10);
+
+        // the short exact match first, the prefix match "Aliens" still ahead of the long exact match
+        assertEquals(List.of(2L, 3L, 1L), ids(result));
+        assertEquals(3, result.total());
+    }
+
+    @Test
+    void testTyposAreTolerated() {
+        index.add(1L, "The Godfather");
+        index.add(2L, "The Matrix");
+        index.add(3L, "Amélie");
+
+        assertEquals(List.of(1L), ids(index.search("godfater", 0, 10)));
+        assertEquals(List.of(2L), ids(index.search("the mtarix", 0, 10)));
+        assertEquals(List.of(3L), ids(index.search("amelei", 0, 10)));
+        // too short to be matched fuzzily
+        assertEquals(List.of(), ids(index.search("tha", 0, 10)));
+    }
+
+    @Test
+    void testEveryQueryTokenHasToMatch() {
+        index.add(1L, "Star Wars");
+        index.add(2L, "Star Trek");
+        index.add(3L, "Lone Star");
+
+        assertEquals(List.of(2L), ids(index.search("star tre", 0, 10)));
+        assertEquals(List.of(), ids(index.search("star unknown", 0, 10)));
+    }
+
+    @Test
+    void testReplaceAndRemove() {
+        index.add(1L, "Working Title");
+        index.replace(1L, "Working Title", "Final Title");
+        index.add(2L, "Another Title");
+        index.remove(2L, "Another Title");
+
+        assertEquals(List.of(), ids(index.search("working", 0, 10)));
+        assertEquals(List.of(1L), ids(index.search("final", 0, 10)));
+        assertEquals(List.of(1L), ids(index.search("title", 0, 10)));
+        assertEquals(1, index.size());
+        assertEquals(2, index.termCount());
+    }
+
+    @Test
+    void testReplayingAChangeIsHarmless() {
+        index.add(1L, "Final Title");
+
+        // a change the index already reflects, as after a rebuild that read the new title
+        index.replace(1L, "Working Title", "Final Title");
+        index.add(1L, "Final Title");
+        index.remove(2L, "Never Indexed");
+
+        assertEquals(List.of(1L), ids(index.search("final title", 0, 10)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void testPagesOfRankedHits() {
+        for (long id = 1; id <= 25; id++) {
+            index.add(id, "Movie " + id);
+        }
+
+        MovieTitleIndex.Result second = index.search("movie", 10, 10);
+
+        // equal scores are ordered by id
+        assertEquals(25, second.total());
+        assertEquals(List.of(11L, 12L, 13L, 14L, 15L, 16L, 17L, 18L, 19L, 20L), ids(second));
+        assertEquals(List.of(), ids(index.search("movie", 30, 10)));
+    }
+
+    private static List<Long> ids(MovieTitleIndex.Result result) {
+        return result.hits().stream().map(MovieTitleIndex.Hit::id).toList();
+    }
+}
@@ -0,0 +1,132 @@
+package com.madeeasy.service;
+
+import com.madeeasy.dto.BatchInsertResult;
+import com.madeeasy.dto.BatchItemResult;
+import com.madeeasy.entity.MovieEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class MovieBatchServiceTest {
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @Spy
+    private CatalogWriteGate writeGate = new CatalogWriteGate();
+
+    @InjectMocks
+    private MovieBatchService movieBatchService;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    public MovieBatchServiceTest() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(movieBatchService, "chunkSize", 2);
+        // simulate the id generator
+        doAnswer(invocation -> {
+            invocation.<MovieEntity>getArgument(0).setId(sequence.incrementAndGet());
+            return null;
+        }).when(entityManager).persist(any(MovieEntity.class));
+    }
+
+    @Test
+    void testSaveAllCommitsPerChunk() {
+        List<MovieEntity> movies = movies("Movie 1", "Movie 2", "Movie 3");
+
+        BatchInsertResult result = movieBatchService.saveAll(movies.iterator());
+
+        assertEquals(3, result.getTotal());
+        assertEquals(3, result.getCreated());
+        assertEquals(0, result.getFailed());
+        assertEquals(List.of(1L, 2L, 3L), result.getItems().stream().map(BatchItemResult::getId).toList());
+
+        // chunk size 2: two transactions, each flushed and cleared once
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+        verify(entityManager, times(2)).flush();
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    void testSaveAllReportsFailedRows() {
+        List<MovieEntity> movies = movies("Movie 1", "Broken", "Movie 3");
+        doThrow(new PersistenceException("could not execute statement", new ConstraintViolationException(
+                "Unique index or primary key violation: PUBLIC.PRIMARY_KEY_9 ON PUBLIC.TBL_USER(ID)",
+                new SQLException(), "PRIMARY_KEY_9")))
+                .when(entityManager).persist(argThat(movie -> movie instanceof MovieEntity m && "Broken".equals(m.getName())));
+
+        BatchInsertResult result = movieBatchService.saveAll(movies.iterator());
+
+        assertEquals(3, result.getTotal());
+        assertEquals(2, result.getCreated());
+        assertEquals(1, result.getFailed());
+        BatchItemResult failed = result.getItems().get(1);
+        assertEquals(1, failed.getIndex());
+        assertEquals(BatchItemResult.Status.FAILED, failed.getStatus());
+        // neither SQL nor constraint names reach the client
+        assertEquals("constraint violation", failed.getError());
+        assertEquals(BatchItemResult.Status.CREATED, result.getItems().get(2).getStatus());
+    }
+
+    @Test
+    void testSaveAllKeepsWhatWasReadBeforeAnUnreadableBody() {
+        Iterator<MovieEntity> movies = movies("Movie 1", "Movie 2", "Movie 3").iterator();
+        Iterator<MovieEntity> breaksOff = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                if (!movies.hasNext()) {
+                    throw new RuntimeException("Unexpected end-of-input");
+                }
+                return true;
+            }
+
+            @Override
+            public MovieEntity next() {
+                return movies.next();
+            }
+        };
+
+        BatchInsertResult result = movieBatchService.saveAll(breaksOff);
+
+        assertEquals(3, result.getTotal());
+        assertEquals(3, result.getCreated());
+        assertEquals("error!! movie at index 3 could not be read: Unexpected end-of-input", result.getError());
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+    }
+
+    private static List<MovieEntity> movies(String... names) {
+        List<MovieEntity> movies = new ArrayList<>();
+        for (String name : names) {
+            MovieEntity movie = new MovieEntity();
+            movie.setName(name);
+            movies.add(movie);
+        }
+        return movies;
+    }
+}
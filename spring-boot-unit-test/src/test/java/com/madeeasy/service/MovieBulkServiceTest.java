@@ -0,0 +1,139 @@
+package com.madeeasy.service;
+
+import com.madeeasy.config.CacheConfig;
+import com.madeeasy.dto.BulkChangeResult;
+import com.madeeasy.dto.MovieBulkRequest;
+import com.madeeasy.dto.MoviePatch;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.error.InvalidBulkRequestException;
+import com.madeeasy.repository.MovieRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MovieBulkServiceTest {
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager(CacheConfig.MOVIES_CACHE);
+
+    @Spy
+    private CatalogWriteGate writeGate = new CatalogWriteGate();
+
+    @InjectMocks
+    private MovieBulkService movieBulkService;
+
+    public MovieBulkServiceTest() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(movieBulkService, "chunkSize", 2);
+    }
+
+    @Test
+    void testDeleteMoviesByIdsInChunks() {
+        when(movieRepository.deleteChunk(any(MovieBulkRequest.class), eq(Long.MIN_VALUE), eq(2)))
+                .thenAnswer(invocation -> movies(invocation.<MovieBulkRequest>getArgument(0).getIds()
+                        .stream().mapToLong(Long::longValue).toArray()));
+        cacheManager.getCache(CacheConfig.MOVIES_CACHE).put(3L, new MovieEntity());
+
+        BulkChangeResult result = movieBulkService.deleteMovies(MovieBulkRequest.builder()
+                .ids(List.of(5L, 3L, 1L, 3L))
+                .build());
+
+        // duplicates dropped, ids sorted: [1, 3] then [5], each chunk in its own transaction
+        assertEquals(3, result.getAffected());
+        assertEquals(2, result.getChunks());
+        ArgumentCaptor<MovieBulkRequest> selections = ArgumentCaptor.forClass(MovieBulkRequest.class);
+        verify(movieRepository, times(2)).deleteChunk(selections.capture(), eq(Long.MIN_VALUE), eq(2));
+        assertEquals(List.of(1L, 3L), selections.getAllValues().get(0).getIds());
+        assertEquals(List.of(5L), selections.getAllValues().get(1).getIds());
+        verify(transactionTemplate, times(2)).execute(any());
+        assertNull(cacheManager.getCache(CacheConfig.MOVIES_CACHE).get(3L));
+    }
+
+    @Test
+    void testPatchMoviesByRangeSeeksPastEveryChunk() {
+        MovieBulkRequest request = MovieBulkRequest.builder()
+                .releasedFrom(LocalDate.of(1970, 1, 1))
+                .set(new MoviePatch().name("Renamed"))
+                .build();
+        when(movieRepository.patchChunk(eq(request), eq(request.getSet()), any(Instant.class), anyLong(), eq(2)))
+                .thenReturn(movies(1, 2), movies(4, 7), movies(9));
+
+        BulkChangeResult result = movieBulkService.patchMovies(request);
+
+        assertEquals(5, result.getAffected());
+        assertEquals(3, result.getChunks());
+        verify(movieRepository).patchChunk(any(), any(), any(), eq(Long.MIN_VALUE), anyInt());
+        verify(movieRepository).patchChunk(any(), any(), any(), eq(2L), anyInt());
+        verify(movieRepository).patchChunk(any(), any(), any(), eq(7L), anyInt());
+
+        // one event per chunk, carrying every changed movie with the patch applied
+        ArgumentCaptor<MoviesChangedEvent> events = ArgumentCaptor.forClass(MoviesChangedEvent.class);
+        verify(eventPublisher, times(3)).publishEvent(events.capture());
+        MoviesChangedEvent.Change change = events.getAllValues().get(1).changes().get(1);
+        assertEquals(7L, change.id());
+        assertEquals(0L, change.before().version());
+        assertEquals("Renamed", change.after().name());
+        assertEquals(1L, change.after().version());
+    }
+
+    @Test
+    void testInvalidSelectionsAreRejected() {
+        assertThrows(InvalidBulkRequestException.class,
+                () -> movieBulkService.deleteMovies(new MovieBulkRequest()));
+        assertThrows(InvalidBulkRequestException.class,
+                () -> movieBulkService.deleteMovies(MovieBulkRequest.builder().ids(List.of()).build()));
+        assertThrows(InvalidBulkRequestException.class,
+                () -> movieBulkService.deleteMovies(MovieBulkRequest.builder()
+                        .ids(List.of(1L))
+                        .releasedTo(LocalDate.of(2000, 1, 1))
+                        .build()));
+        assertThrows(InvalidBulkRequestException.class,
+                () -> movieBulkService.deleteMovies(MovieBulkRequest.builder()
+                        .releasedFrom(LocalDate.of(2000, 1, 2))
+                        .releasedTo(LocalDate.of(2000, 1, 1))
+                        .build()));
+        assertThrows(InvalidBulkRequestException.class,
+                () -> movieBulkService.patchMovies(MovieBulkRequest.builder()
+                        .ids(List.of(1L))
+                        .set(new MoviePatch().version(3L))
+                        .build()));
+
+        verifyNoInteractions(movieRepository);
+    }
+
+    private static List<MovieEntity> movies(long... ids) {
+        return LongStream.of(ids)
+                .mapToObj(id -> MovieEntity.builder().id(id).version(0L).build())
+                .toList();
+    }
+}
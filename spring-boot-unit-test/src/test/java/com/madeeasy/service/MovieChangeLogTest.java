@@ -0,0 +1,181 @@
+package com.madeeasy.service;
+
+import com.madeeasy.dto.MovieChange;
+import com.madeeasy.dto.MovieChangePage;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.error.ChangeLogTruncatedException;
+import com.madeeasy.error.InvalidChangeRequestException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The change log against a private in-memory database, written to by the real services. Sequence numbers carry over
+ * from test to test, so every test starts from the head it finds. Nothing is older than a retention of zero, so a
+ * purge removes everything but the newest change.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:changes;DB_CLOSE_DELAY=-1",
+        "movies.changes.retention=0s"
+})
+class MovieChangeLogTest {
+
+    @Autowired
+    private MovieChangeLog movieChangeLog;
+
+    @Autowired
+    private MovieService movieService;
+
+    @Autowired
+    private MovieTransferService movieTransferService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testWritesAreLoggedInCommitOrder() throws Exception {
+        long head = movieChangeLog.head();
+        MovieEntity alien = movieService.save(movie("Alien", LocalDate.of(1979, 5, 25)));
+        movieService.updateMovie(alien.getId(), movie("Alien: Director's Cut", LocalDate.of(2003, 10, 31)));
+        movieService.deleteMovie(alien.getId());
+
+        MovieChangePage page = movieChangeLog.changesAfter(head, 10, Duration.ZERO).get();
+
+        assertEquals(List.of(head + 1, head + 2, head + 3),
+                page.getChanges().stream().map(MovieChange::getSequence).toList());
+        assertEquals(List.of(MovieChange.Operation.CREATED, MovieChange.Operation.UPDATED,
+                        MovieChange.Operation.DELETED),
+                page.getChanges().stream().map(MovieChange::getOperation).toList());
+        assertEquals("Alien: Director's Cut", page.getChanges().get(1).getName());
+        assertEquals(1L, page.getChanges().get(1).getVersion());
+        assertEquals(alien.getId(), page.getChanges().get(2).getId());
+        assertNotNull(page.getChanges().get(2).getChangedAt());
+        assertEquals(head + 3, page.getLastSequence());
+        assertEquals(head + 3, movieChangeLog.head());
+        // pages follow on from lastSequence
+        assertEquals(List.of(head + 3), movieChangeLog.changesAfter(head + 2, 10, Duration.ZERO).get()
+                .getChanges().stream().map(MovieChange::getSequence).toList());
+    }
+
+    @Test
+    void testRolledBackWritesLeaveNoGap() throws Exception {
+        long head = movieChangeLog.head();
+        transactionTemplate.executeWithoutResult(status -> {
+            movieService.save(movie("Alien", LocalDate.of(1979, 5, 25)));
+            status.setRollbackOnly();
+        });
+        assertEquals(head, movieChangeLog.head());
+
+        movieService.save(movie("Aliens", LocalDate.of(1986, 7, 18)));
+
+        MovieChangePage page = movieChangeLog.changesAfter(head, 10, Duration.ZERO).get();
+        assertEquals(1, page.getChanges().size());
+        assertEquals(head + 1, page.getChanges().get(0).getSequence());
+        assertEquals("Aliens", page.getChanges().get(0).getName());
+    }
+
+    @Test
+    void testFailedAppendFailsTheCommitAndReleasesTheLog() throws Exception {
+        long head = movieChangeLog.head();
+        jdbcTemplate.execute("alter table tbl_movie_change rename to tbl_movie_change_away");
+        try {
+            assertThrows(RuntimeException.class, () -> movieService.save(movie("Alien", LocalDate.of(1979, 5, 25))));
+        } finally {
+            jdbcTemplate.execute("alter table tbl_movie_change_away rename to tbl_movie_change");
+        }
+
+        // from another thread, which would wait forever for a lock left held
+        CompletableFuture.runAsync(() -> movieService.save(movie("Aliens", LocalDate.of(1986, 7, 18))))
+                .get(10, TimeUnit.SECONDS);
+
+        MovieChangePage page = movieChangeLog.changesAfter(head, 10, Duration.ZERO).get();
+        assertEquals(1, page.getChanges().size());
+        assertEquals("Aliens", page.getChanges().get(0).getName());
+        assertEquals(head + 1, page.getLastSequence());
+    }
+
+    @Test
+    void testWaitingConsumerIsAnsweredByTheNextCommit() throws Exception {
+        long head = movieChangeLog.head();
+        CompletableFuture<MovieChangePage> next = movieChangeLog.changesAfter(head, 10, Duration.ofSeconds(30));
+        assertFalse(next.isDone());
+
+        movieService.save(movie("Alien", LocalDate.of(1979, 5, 25)));
+
+        MovieChangePage page = next.get(10, TimeUnit.SECONDS);
+        assertEquals(1, page.getChanges().size());
+        assertEquals("Alien", page.getChanges().get(0).getName());
+        assertEquals(head + 1, page.getLastSequence());
+    }
+
+    @Test
+    void testWaitEndsWithAnEmptyPage() throws Exception {
+        long head = movieChangeLog.head();
+
+        MovieChangePage page = movieChangeLog.changesAfter(head, 10, Duration.ofMillis(50)).get(10, TimeUnit.SECONDS);
+
+        assertTrue(page.getChanges().isEmpty());
+        assertEquals(head, page.getLastSequence());
+    }
+
+    @Test
+    void testConsumerBehindThePurgeIsTruncated() throws Exception {
+        long head = movieChangeLog.head();
+        movieService.save(movie("Alien", LocalDate.of(1979, 5, 25)));
+        movieService.save(movie("Aliens", LocalDate.of(1986, 7, 18)));
+
+        movieChangeLog.purge();
+
+        assertThrows(ChangeLogTruncatedException.class, () -> movieChangeLog.changesAfter(head, 10, Duration.ZERO));
+        // the newest change is kept
+        MovieChangePage page = movieChangeLog.changesAfter(head + 1, 10, Duration.ZERO).get();
+        assertEquals("Aliens", page.getChanges().get(0).getName());
+    }
+
+    @Test
+    void testImportTellsConsumersToStartOver() throws Exception {
+        movieService.save(movie("Alien", LocalDate.of(1979, 5, 25)));
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        movieTransferService.exportCatalog(file);
+        long head = movieChangeLog.head();
+
+        movieTransferService.importCatalog(new ByteArrayInputStream(file.toByteArray()));
+
+        MovieChangePage page = movieChangeLog.changesAfter(head, 10, Duration.ZERO).get();
+        assertEquals(1, page.getChanges().size());
+        assertEquals(MovieChange.Operation.RESET, page.getChanges().get(0).getOperation());
+        assertNull(page.getChanges().get(0).getId());
+    }
+
+    @Test
+    void testConsumerCannotReadAheadOfTheLog() {
+        long head = movieChangeLog.head();
+
+        assertThrows(InvalidChangeRequestException.class,
+                () -> movieChangeLog.changesAfter(head + 1, 10, Duration.ZERO));
+        assertThrows(InvalidChangeRequestException.class,
+                () -> movieChangeLog.changesAfter(head, MovieChangeLog.MAX_LIMIT + 1, Duration.ZERO));
+    }
+
+    private static MovieEntity movie(String name, LocalDate releaseDate) {
+        MovieEntity movie = new MovieEntity();
+        movie.setName(name);
+        movie.setReleaseDate(releaseDate);
+        return movie;
+    }
+}
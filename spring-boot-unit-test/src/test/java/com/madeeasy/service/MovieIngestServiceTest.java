@@ -0,0 +1,145 @@
+package com.madeeasy.service;
+
+import com.madeeasy.dto.BatchInsertResult;
+import com.madeeasy.dto.BatchItemResult;
+import com.madeeasy.dto.IngestStatus;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.error.IngestQueueFullException;
+import com.madeeasy.error.IngestTicketNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MovieIngestServiceTest {
+
+    @Mock
+    private MovieBatchService movieBatchService;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private CatalogWriteGate writeGate = new CatalogWriteGate();
+
+    @InjectMocks
+    private MovieIngestService movieIngestService;
+
+    public MovieIngestServiceTest() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(movieIngestService, "queueCapacity", 2);
+        ReflectionTestUtils.setField(movieIngestService, "offerTimeout", Duration.ZERO);
+    }
+
+    @AfterEach
+    void stopWriter() {
+        if (movieIngestService.isRunning()) {
+            movieIngestService.stop();
+        }
+    }
+
+    @Test
+    void testQueuedMoviesAreWrittenInOneBatch() {
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<String>> batches = new ArrayList<>();
+        when(movieBatchService.saveAll(any())).thenAnswer(invocation -> {
+            List<String> names = new ArrayList<>();
+            invocation.<Iterator<MovieEntity>>getArgument(0).forEachRemaining(movie -> names.add(movie.getName()));
+            batches.add(names);
+            writerBusy.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return created(batches.size() * 10L, names.size());
+        });
+        movieIngestService.start();
+
+        IngestStatus first = movieIngestService.enqueue(movie("Movie 1"));
+        awaitTrue(writerBusy);
+        // the writer is busy with the first movie, the next two wait in the queue
+        IngestStatus second = movieIngestService.enqueue(movie("Movie 2"));
+        IngestStatus third = movieIngestService.enqueue(movie("Movie 3"));
+        assertEquals(IngestStatus.State.PENDING, movieIngestService.getStatus(second.getTicket()).getState());
+        release.countDown();
+        movieIngestService.stop();
+
+        assertEquals(List.of(List.of("Movie 1"), List.of("Movie 2", "Movie 3")), batches);
+        assertEquals(10L, movieIngestService.getStatus(first.getTicket()).getId());
+        assertEquals(20L, movieIngestService.getStatus(second.getTicket()).getId());
+        assertEquals(21L, movieIngestService.getStatus(third.getTicket()).getId());
+        assertEquals(IngestStatus.State.CREATED, movieIngestService.getStatus(third.getTicket()).getState());
+    }
+
+    @Test
+    void testFullQueueRejectsMovie() {
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(movieBatchService.saveAll(any())).thenAnswer(invocation -> {
+            writerBusy.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return created(1L, 1);
+        });
+        movieIngestService.start();
+
+        movieIngestService.enqueue(movie("Movie 1"));
+        awaitTrue(writerBusy);
+        movieIngestService.enqueue(movie("Movie 2"));
+        movieIngestService.enqueue(movie("Movie 3"));
+
+        assertThrows(IngestQueueFullException.class, () -> movieIngestService.enqueue(movie("Movie 4")));
+        assertEquals(1.0, meterRegistry.get("movies.ingest.rejected").counter().count());
+        release.countDown();
+    }
+
+    @Test
+    void testUnknownTicket() {
+        movieIngestService.start();
+
+        assertThrows(IngestTicketNotFoundException.class, () -> movieIngestService.getStatus("unknown"));
+    }
+
+    private static BatchInsertResult created(long firstId, int count) {
+        List<BatchItemResult> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(BatchItemResult.builder()
+                    .index(i)
+                    .id(firstId + i)
+                    .status(BatchItemResult.Status.CREATED)
+                    .build());
+        }
+        return BatchInsertResult.builder()
+                .total(count)
+                .created(count)
+                .items(items)
+                .build();
+    }
+
+    private static void awaitTrue(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static MovieEntity movie(String name) {
+        return MovieEntity.builder()
+                .name(name)
+                .build();
+    }
+}
@@ -0,0 +1,138 @@
+package com.madeeasy.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.repository.MovieRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MovieReplicaTest {
+
+    private static final List<MovieSummary> CATALOG = List.of(
+            new MovieSummary(1L, "Metropolis", LocalDate.of(1927, 1, 10), 0L, Instant.parse("2023-05-17T10:15:30Z")),
+            new MovieSummary(2L, "\"Quoted\" été 🎬", LocalDate.of(2023, 5, 17), 3L,
+                    Instant.parse("2023-05-17T00:00:00.120Z")),
+            new MovieSummary(3L, null, null, 1L, null),
+            new MovieSummary(4L, "Before 1970", LocalDate.of(1895, 12, 28), 0L,
+                    Instant.parse("1969-12-31T23:59:59.999Z")));
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    // configured like the one Spring Boot provides
+    @Spy
+    private ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private MovieReplica movieReplica;
+
+    public MovieReplicaTest() throws InterruptedException {
+        MockitoAnnotations.openMocks(this);
+        when(movieRepository.streamAllOrderById()).thenAnswer(invocation -> CATALOG.stream());
+        movieReplica.start();
+        while (!movieReplica.isReady()) {
+            Thread.sleep(10);
+        }
+    }
+
+    @AfterEach
+    void stopReplica() {
+        movieReplica.stop();
+    }
+
+    @Test
+    void testWriteCatalogMatchesProjectionJson() throws Exception {
+        ByteArrayOutputStream catalog = new ByteArrayOutputStream();
+
+        movieReplica.writeCatalog(catalog);
+
+        assertEquals(objectMapper.writeValueAsString(CATALOG), catalog.toString(StandardCharsets.UTF_8));
+        assertEquals(objectMapper.writeValueAsString(CATALOG.get(1)),
+                objectMapper.writeValueAsString(MovieSummary.of(movieReplica.findById(2L))));
+    }
+
+    @Test
+    void testWriteCatalogInBinaryFormats() throws Exception {
+        for (JsonFactory factory : List.of(new CBORFactory(), new SmileFactory())) {
+            ObjectMapper binaryMapper = Jackson2ObjectMapperBuilder.json()
+                    .factory(factory)
+                    .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .build();
+            ByteArrayOutputStream catalog = new ByteArrayOutputStream();
+
+            movieReplica.writeCatalog(catalog, binaryMapper.getFactory());
+
+            // equal up to framing: the replica cannot know the row count up front and writes an open-ended CBOR array
+            assertEquals(binaryMapper.readTree(binaryMapper.writeValueAsBytes(CATALOG)),
+                    binaryMapper.readTree(catalog.toByteArray()));
+        }
+    }
+
+    @Test
+    void testCommittedChangesAreApplied() {
+        MovieSummary metropolis = CATALOG.get(0);
+        MovieSummary renamed = new MovieSummary(1L, "Metropolis (restored)", metropolis.releaseDate(), 1L,
+                Instant.parse("2023-05-18T08:00:00Z"));
+        MovieSummary created = new MovieSummary(10L, "New", LocalDate.of(2023, 5, 18), 0L, null);
+
+        movieReplica.onMoviesChanged(new MoviesChangedEvent(List.of(
+                new MoviesChangedEvent.Change(metropolis, renamed),
+                new MoviesChangedEvent.Change(null, created),
+                new MoviesChangedEvent.Change(CATALOG.get(2), null))));
+
+        MovieEntity movie = movieReplica.findById(1L);
+        assertEquals("Metropolis (restored)", movie.getName());
+        assertEquals(1L, movie.getVersion());
+        assertEquals("New", movieReplica.findById(10L).getName());
+        assertNull(movieReplica.findById(3L));
+        assertEquals("\"catalog-4-" + Long.toHexString(1 + 2 + 4 + 10) + "-" + Long.toHexString(1 + 3 + 0 + 0) + "\"",
+                movieReplica.getCatalogFingerprint().etag());
+    }
+
+    @Test
+    void testNotReadyWhenTableRunsFull() throws InterruptedException {
+        movieReplica.stop();
+        ReflectionTestUtils.setField(movieReplica, "maxRows", 4);
+        movieReplica.start();
+        while (!movieReplica.isReady()) {
+            Thread.sleep(10);
+        }
+
+        movieReplica.onMoviesChanged(MoviesChangedEvent.of(null,
+                new MovieSummary(5L, "One too many", null, 0L, null)));
+
+        assertFalse(movieReplica.isReady());
+        assertNull(movieReplica.findById(1L));
+    }
+}
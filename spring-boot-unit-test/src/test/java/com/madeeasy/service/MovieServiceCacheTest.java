@@ -0,0 +1,181 @@
+package com.madeeasy.service;
+
+import com.madeeasy.config.CacheConfig;
+import com.madeeasy.dto.MoviePatch;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.repository.MovieRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs MovieService behind its real Spring proxies so the cache annotations and commit-time puts are in effect, with the repository
+ * mocked to count how often the database would have been hit.
+ */
+@SpringBootTest
+class MovieServiceCacheTest {
+
+    @Autowired
+    private MovieService movieService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @MockBean
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private double coalescedBefore;
+
+    @BeforeEach
+    void clearCache() {
+        cacheManager.getCache(CacheConfig.MOVIES_CACHE).clear();
+        coalescedBefore = coalescedCalls();
+    }
+
+    @Test
+    void testFindByIdIsReadThrough() {
+        when(movieRepository.findById(1L)).thenReturn(Optional.of(movie(1L, "Test Movie")));
+
+        movieService.findById(1L);
+        MovieEntity cached = movieService.findById(1L);
+
+        assertEquals("Test Movie", cached.getName());
+        verify(movieRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void testConcurrentMissesShareOneQuery() throws Exception {
+        int callers = 32;
+        // the query only returns once every other caller is waiting for it
+        when(movieRepository.findById(5L)).thenAnswer(invocation -> {
+            awaitCoalesced(coalescedBefore + callers - 1);
+            return Optional.of(movie(5L, "Trending Movie"));
+        });
+
+        List<Future<MovieEntity>> results;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            results = executor.invokeAll(Collections.nCopies(callers, () -> movieService.findById(5L)));
+        } finally {
+            executor.shutdown();
+        }
+
+        for (Future<MovieEntity> result : results) {
+            assertEquals("Trending Movie", result.get().getName());
+        }
+        verify(movieRepository, times(1)).findById(5L);
+        assertEquals(coalescedBefore + callers - 1, coalescedCalls());
+    }
+
+    @Test
+    void testSaveRefreshesCachedEntry() {
+        when(movieRepository.save(any(MovieEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        movieService.save(movie(2L, "Saved Movie"));
+        MovieEntity found = movieService.findById(2L);
+
+        assertEquals("Saved Movie", found.getName());
+        verify(movieRepository, never()).findById(2L);
+    }
+
+    @Test
+    void testUpdateEvictsCachedEntry() {
+        MovieEntity existing = movie(3L, "Existing Movie");
+        when(movieRepository.findById(3L)).thenReturn(Optional.of(existing));
+        when(movieRepository.patchById(eq(3L), any(MoviePatch.class), any(Instant.class))).thenReturn(Optional.of(movie(3L, "Existing Movie")));
+
+        movieService.findById(3L);
+        movieService.updateMovie(3L, movie(3L, "Updated Movie"));
+
+        assertNull(cacheManager.getCache(CacheConfig.MOVIES_CACHE).get(3L));
+        movieService.findById(3L);
+        verify(movieRepository, times(2)).findById(3L);
+    }
+
+    @Test
+    void testDeleteEvictsCachedEntry() {
+        when(movieRepository.findById(4L)).thenReturn(Optional.of(movie(4L, "Doomed Movie")));
+        when(movieRepository.deleteByIdReturning(4L)).thenReturn(Optional.of(movie(4L, "Doomed Movie")));
+
+        movieService.findById(4L);
+        movieService.deleteMovie(4L);
+
+        assertNull(cacheManager.getCache(CacheConfig.MOVIES_CACHE).get(4L));
+    }
+
+    @Test
+    void testRowReadBeforeAnEvictIsNotCached() {
+        // the update commits and evicts while the miss is still reading the row it replaced
+        when(movieRepository.findById(6L)).thenAnswer(invocation -> {
+            cacheManager.getCache(CacheConfig.MOVIES_CACHE).evict(6L);
+            return Optional.of(movie(6L, "Old Movie"));
+        });
+
+        assertEquals("Old Movie", movieService.findById(6L).getName());
+
+        assertNull(cacheManager.getCache(CacheConfig.MOVIES_CACHE).get(6L));
+    }
+
+    @Test
+    void testLateReadDoesNotReplaceNewerVersion() {
+        when(movieRepository.save(any(MovieEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        // a save of version 1 is cached while the miss is still reading version 0
+        when(movieRepository.findById(7L)).thenAnswer(invocation -> {
+            MovieEntity saved = movie(7L, "New Movie");
+            saved.setVersion(1L);
+            movieService.save(saved);
+            return Optional.of(movie(7L, "Old Movie"));
+        });
+
+        movieService.findById(7L);
+
+        assertEquals("New Movie", movieService.findById(7L).getName());
+        verify(movieRepository, times(1)).findById(7L);
+    }
+
+    private double coalescedCalls() {
+        return meterRegistry.get("movies.singleflight.calls")
+                .tag("name", "findById")
+                .tag("outcome", "coalesced")
+                .functionCounter()
+                .count();
+    }
+
+    private void awaitCoalesced(double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (coalescedCalls() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static MovieEntity movie(Long id, String name) {
+        return MovieEntity.builder()
+                .id(id)
+                .name(name)
+                .releaseDate(LocalDate.of(2023, 5, 17))
+                .version(0L)
+                .build();
+    }
+}
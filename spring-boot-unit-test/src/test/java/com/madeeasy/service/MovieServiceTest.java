@@ -2,18 +2,39 @@ package com.madeeasy.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.madeeasy.config.CacheConfig;
+import com.madeeasy.dto.MoviePage;
+import com.madeeasy.dto.MoviePatch;
+import com.madeeasy.dto.MovieSearchCriteria;
+import com.madeeasy.dto.MovieSummary;
 import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.error.InvalidCursorException;
+import com.madeeasy.error.InvalidMoviePatchException;
+import com.madeeasy.error.InvalidSearchRequestException;
 import com.madeeasy.error.MovieNotFoundException;
+import com.madeeasy.error.MovieVersionConflictException;
 import com.madeeasy.repository.MovieRepository;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -23,11 +44,18 @@ class MovieServiceTest {
     @Mock
     private MovieRepository movieRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private CatalogWriteGate writeGate = new CatalogWriteGate();
+
     @InjectMocks
     private MovieService movieService;
 
     public MovieServiceTest() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(movieService, "cacheManager", new CacheConfig().cacheManager("maximumSize=100"));
     }
 
     @Test
@@ -79,37 +107,116 @@ class MovieServiceTest {
         verify(movieRepository, times(1)).findById(id);
     }
 
+    @Test
+    void testConcurrentLookupsOfMissingMovieShareOneQuery() throws Exception {
+        SingleFlight<?, ?> flights = (SingleFlight<?, ?>) ReflectionTestUtils.getField(movieService, "findByIdFlights");
+        int callers = 16;
+        when(movieRepository.findById(1L)).thenAnswer(invocation -> {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (flights.coalescedCalls() < callers - 1 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            return Optional.empty();
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        List<Future<MovieEntity>> results;
+        try {
+            results = executor.invokeAll(Collections.nCopies(callers, () -> movieService.findById(1L)));
+        } finally {
+            executor.shutdown();
+        }
+
+        // every caller gets the not-found of the one query
+        for (Future<MovieEntity> result : results) {
+            ExecutionException failure = assertThrows(ExecutionException.class, result::get);
+            assertInstanceOf(MovieNotFoundException.class, failure.getCause());
+        }
+        verify(movieRepository, times(1)).findById(1L);
+        assertEquals(1, flights.executedCalls());
+        assertEquals(callers - 1, flights.coalescedCalls());
+
+        // nothing is remembered once the query has finished
+        assertThrows(MovieNotFoundException.class, () -> movieService.findById(1L));
+        verify(movieRepository, times(2)).findById(1L);
+    }
+
     @Test
     void testDeleteMovie() {
         Long id = 1L;
 
+        when(movieRepository.deleteByIdReturning(id)).thenReturn(Optional.of(new MovieEntity()));
+
         movieService.deleteMovie(id);
 
-        verify(movieRepository, times(1)).deleteById(id);
+        verify(movieRepository, times(1)).deleteByIdReturning(id);
+        verifyNoMoreInteractions(movieRepository);
+    }
+
+    @Test
+    void testDeleteMovieNotFound() {
+        when(movieRepository.deleteByIdReturning(1L)).thenReturn(Optional.empty());
+
+        assertThrows(MovieNotFoundException.class, () -> movieService.deleteMovie(1L));
     }
 
     @Test
     void testGetAllMovies() {
-        List<MovieEntity> movies = new ArrayList<>();
-        MovieEntity movie1 = new MovieEntity();
-        movie1.setId(1L);
-        movie1.setName("Movie 1");
-        movie1.setReleaseDate(LocalDate.of(2023, Month.MAY, 17));
-        MovieEntity movie2 = new MovieEntity();
-        movie2.setId(2L);
-        movie2.setName("Movie 2");
-        movie2.setReleaseDate(LocalDate.of(2023, Month.MAY, 17));
-        movies.add(movie1);
-        movies.add(movie2);
-
-        when(movieRepository.findAll()).thenReturn(movies);
-
-        List<MovieEntity> allMovies = movieService.getAllMovies();
+        List<MovieSummary> movies = List.of(
+                new MovieSummary(1L, "Movie 1", LocalDate.of(2023, Month.MAY, 17), 0L, null),
+                new MovieSummary(2L, "Movie 2", LocalDate.of(2023, Month.MAY, 17), 0L, null));
+
+        when(movieRepository.findAllSummaries()).thenReturn(movies);
+
+        List<MovieSummary> allMovies = movieService.getAllMovies();
 
         assertNotNull(allMovies);
         assertEquals(2, allMovies.size());
 
-        verify(movieRepository, times(1)).findAll();
+        verify(movieRepository, times(1)).findAllSummaries();
+        verify(movieRepository, never()).findAll();
+    }
+
+    @Test
+    void testGetMoviesPage() {
+        List<MovieSummary> movies = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            movies.add(new MovieSummary(id, "Movie " + id, null, 0L, null));
+        }
+
+        // page size 2 asks for 3 rows, the third one only tells us there is a next page
+        when(movieRepository.findPageAfter(eq(Long.MIN_VALUE), any(Pageable.class))).thenReturn(movies);
+
+        MoviePage firstPage = movieService.getMoviesPage(null, 2);
+
+        assertEquals(2, firstPage.getMovies().size());
+        assertNotNull(firstPage.getNextCursor());
+
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(movieRepository).findPageAfter(eq(Long.MIN_VALUE), pageable.capture());
+        assertEquals(3, pageable.getValue().getPageSize());
+
+        // the cursor seeks past the last id of the previous page
+        when(movieRepository.findPageAfter(eq(2L), any(Pageable.class))).thenReturn(movies.subList(2, 3));
+
+        MoviePage lastPage = movieService.getMoviesPage(firstPage.getNextCursor(), 2);
+
+        assertEquals(1, lastPage.getMovies().size());
+        assertNull(lastPage.getNextCursor());
+    }
+
+    @Test
+    void testGetMoviesPageInvalidCursor() {
+        assertThrows(InvalidCursorException.class, () -> movieService.getMoviesPage("not a cursor", 10));
+    }
+
+    @Test
+    void testSearchMoviesRejectsUnknownSortProperty() {
+        MovieSearchCriteria criteria = MovieSearchCriteria.builder().namePrefix("Star").build();
+
+        assertThrows(InvalidSearchRequestException.class, () -> movieService.searchMovies(criteria,
+                PageRequest.of(0, 20, Sort.by("name", "budget"))));
+        verify(movieRepository, never()).search(any(), any());
     }
 
     @Test
@@ -119,14 +226,14 @@ class MovieServiceTest {
         existingMovie.setId(id);
         existingMovie.setName("Existing Movie");
         existingMovie.setReleaseDate(LocalDate.of(2023, Month.MAY, 17));
+        existingMovie.setVersion(3L);
 
         MovieEntity updatedMovie = new MovieEntity();
         updatedMovie.setId(1L);
         updatedMovie.setName("Updated Movie");
         updatedMovie.setReleaseDate(LocalDate.of(2023, Month.MAY, 17));
 
-        when(movieRepository.findById(id)).thenReturn(Optional.of(existingMovie));
-        when(movieRepository.save(existingMovie)).thenReturn(existingMovie);
+        when(movieRepository.patchById(eq(id), any(MoviePatch.class), any(Instant.class))).thenReturn(Optional.of(existingMovie));
 
         MovieEntity result = movieService.updateMovie(id, updatedMovie);
 
@@ -134,10 +241,49 @@ class MovieServiceTest {
         assertEquals(id, result.getId());
         assertEquals("Updated Movie", result.getName());
         assertEquals(LocalDate.parse("2023-05-17"), result.getReleaseDate());
+        assertEquals(4L, result.getVersion());
+
+        // a single UPDATE, no read before and no merge after
+        ArgumentCaptor<MoviePatch> patch = ArgumentCaptor.forClass(MoviePatch.class);
+        verify(movieRepository, times(1)).patchById(eq(id), patch.capture(), any(Instant.class));
+        assertFalse(patch.getValue().has(MoviePatch.Field.VERSION));
+        verifyNoMoreInteractions(movieRepository);
+
+        // listeners get the row as it was and as it is now
+        ArgumentCaptor<MoviesChangedEvent> event = ArgumentCaptor.forClass(MoviesChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        MoviesChangedEvent.Change change = event.getValue().changes().get(0);
+        assertEquals("Existing Movie", change.before().name());
+        assertEquals(3L, change.before().version());
+        assertEquals("Updated Movie", change.after().name());
+        assertEquals(4L, change.after().version());
+    }
 
-        verify(movieRepository, times(1)).findById(id);
-        verify(movieRepository, times(1)).save(existingMovie);
+    @Test
+    void testUpdateMovieNotFound() {
+        when(movieRepository.patchById(eq(1L), any(MoviePatch.class), any(Instant.class))).thenReturn(Optional.empty());
+
+        assertThrows(MovieNotFoundException.class, () -> movieService.updateMovie(1L, new MovieEntity()));
+
+        verify(movieRepository, never()).existsById(any());
+    }
+
+    @Test
+    void testUpdateMovieWithStaleVersion() {
+        MovieEntity updatedMovie = new MovieEntity();
+        updatedMovie.setName("Updated Movie");
+        updatedMovie.setVersion(2L);
+
+        when(movieRepository.patchById(eq(1L), any(MoviePatch.class), any(Instant.class))).thenReturn(Optional.empty());
+        when(movieRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(MovieVersionConflictException.class, () -> movieService.updateMovie(1L, updatedMovie));
+
+        ArgumentCaptor<MoviePatch> patch = ArgumentCaptor.forClass(MoviePatch.class);
+        verify(movieRepository).patchById(eq(1L), patch.capture(), any(Instant.class));
+        assertEquals(2L, patch.getValue().getVersion());
     }
+
     @Test
     void testPartialUpdateMovie() {
         Long id = 1L;
@@ -145,22 +291,50 @@ class MovieServiceTest {
         existingMovie.setId(id);
         existingMovie.setName("Existing Movie");
         existingMovie.setReleaseDate(LocalDate.parse("2023-05-17"));
+        existingMovie.setVersion(0L);
 
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("name", "Updated Movie");
-        updates.put("releaseDate", "2023-05-18");
+        MoviePatch patch = new MoviePatch()
+                .name("Updated Movie")
+                .releaseDate(LocalDate.parse("2023-05-18"));
 
-        when(movieRepository.findById(id)).thenReturn(Optional.of(existingMovie));
-        when(movieRepository.save(existingMovie)).thenReturn(existingMovie);
+        when(movieRepository.patchById(eq(id), eq(patch), any(Instant.class))).thenReturn(Optional.of(existingMovie));
 
-        MovieEntity result = movieService.partialUpdateMovie(id, updates);
+        MovieEntity result = movieService.partialUpdateMovie(id, patch);
 
         assertNotNull(result);
         assertEquals(id, result.getId());
         assertEquals("Updated Movie", result.getName());
         assertEquals(LocalDate.parse("2023-05-18"), result.getReleaseDate());
+        assertEquals(1L, result.getVersion());
 
-        verify(movieRepository, times(1)).findById(id);
-        verify(movieRepository, times(1)).save(existingMovie);
+        verify(movieRepository, times(1)).patchById(eq(id), eq(patch), any(Instant.class));
+        verifyNoMoreInteractions(movieRepository);
+    }
+
+    @Test
+    void testPartialUpdateMovieOnlyTouchesPresentFields() {
+        Long id = 1L;
+        MovieEntity existingMovie = MovieEntity.builder()
+                .id(id)
+                .name("Existing Movie")
+                .releaseDate(LocalDate.parse("2023-05-17"))
+                .version(0L)
+                .build();
+        MoviePatch patch = new MoviePatch().releaseDate(null);
+
+        when(movieRepository.patchById(eq(id), eq(patch), any(Instant.class))).thenReturn(Optional.of(existingMovie));
+
+        MovieEntity result = movieService.partialUpdateMovie(id, patch);
+
+        assertEquals("Existing Movie", result.getName());
+        assertNull(result.getReleaseDate());
+    }
+
+    @Test
+    void testPartialUpdateMovieRejectsIdChange() {
+        assertThrows(InvalidMoviePatchException.class,
+                () -> movieService.partialUpdateMovie(1L, new MoviePatch().id(2L)));
+
+        verifyNoInteractions(movieRepository);
     }
 }
@@ -0,0 +1,180 @@
+package com.madeeasy.service;
+
+import com.madeeasy.dto.MovieReleaseDate;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.dto.ReleaseBucket;
+import com.madeeasy.dto.ReleaseCount;
+import com.madeeasy.dto.ReleaseHistogram;
+import com.madeeasy.dto.ReleaseStats;
+import com.madeeasy.error.InvalidStatsRequestException;
+import com.madeeasy.repository.MovieRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MovieStatsServiceTest {
+
+    private static final MovieSummary ALIEN = movie(1L, LocalDate.of(1979, 5, 25));
+    private static final MovieSummary APOCALYPSE_NOW = movie(2L, LocalDate.of(1979, 8, 15));
+    private static final MovieSummary THE_SHINING = movie(3L, LocalDate.of(1980, 5, 23));
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private MovieStatsService movieStatsService;
+
+    public MovieStatsServiceTest() {
+        MockitoAnnotations.openMocks(this);
+        when(movieRepository.streamReleaseDatesOrderById()).thenAnswer(invocation -> Stream.of(
+                new MovieReleaseDate(1L, ALIEN.releaseDate()),
+                new MovieReleaseDate(2L, APOCALYPSE_NOW.releaseDate()),
+                new MovieReleaseDate(3L, THE_SHINING.releaseDate()),
+                new MovieReleaseDate(5L, null),
+                new MovieReleaseDate(6L, null)));
+    }
+
+    @AfterEach
+    void stopCounters() {
+        movieStatsService.stop();
+    }
+
+    @Test
+    void testCountsAreServedFromMemoryOnceLoaded() {
+        movieStatsService.rebuild();
+
+        ReleaseStats years = movieStatsService.countByYear();
+        assertEquals(List.of(new ReleaseCount("1979", 2), new ReleaseCount("1980", 1)), years.getCounts());
+        assertEquals(3, years.getTotal());
+        assertEquals(2, years.getUndated());
+        assertEquals(List.of(new ReleaseCount("1980-05", 1)), movieStatsService.countByMonth(1980).getCounts());
+        verify(movieRepository, times(1)).streamReleaseDatesOrderById();
+        verify(movieRepository, never()).countByReleaseYear();
+    }
+
+    @Test
+    void testCommittedChangesMoveTheCounters() {
+        movieStatsService.rebuild();
+
+        // re-dated, deleted, created; a rename keeps its date
+        movieStatsService.onMoviesChanged(new MoviesChangedEvent(List.of(
+                new MoviesChangedEvent.Change(ALIEN, movie(1L, LocalDate.of(1986, 7, 18))),
+                new MoviesChangedEvent.Change(APOCALYPSE_NOW, null),
+                new MoviesChangedEvent.Change(null, movie(4L, null)),
+                new MoviesChangedEvent.Change(THE_SHINING, movie(3L, THE_SHINING.releaseDate())))));
+
+        ReleaseStats years = movieStatsService.countByYear();
+        assertEquals(List.of(new ReleaseCount("1980", 1), new ReleaseCount("1986", 1)), years.getCounts());
+        assertEquals(3, years.getUndated());
+    }
+
+    @Test
+    void testChangesCommittedDuringTheLoadAreCountedOnce() {
+        // the load reads the table as of after the first two changes and before the last two
+        when(movieRepository.streamReleaseDatesOrderById()).thenAnswer(invocation -> {
+            movieStatsService.onMoviesChanged(MoviesChangedEvent.of(ALIEN, movie(1L, LocalDate.of(1986, 7, 18), 1L)));
+            movieStatsService.onMoviesChanged(MoviesChangedEvent.of(APOCALYPSE_NOW, null));
+            Stream<MovieReleaseDate> read = Stream.of(
+                    new MovieReleaseDate(1L, LocalDate.of(1986, 7, 18)),
+                    new MovieReleaseDate(3L, THE_SHINING.releaseDate()));
+            movieStatsService.onMoviesChanged(MoviesChangedEvent.of(null, movie(4L, LocalDate.of(1992, 5, 22), 0L)));
+            movieStatsService.onMoviesChanged(MoviesChangedEvent.of(movie(1L, LocalDate.of(1986, 7, 18), 1L),
+                    movie(1L, LocalDate.of(1979, 5, 25), 2L)));
+            return read;
+        });
+
+        movieStatsService.rebuild();
+
+        assertEquals(List.of(new ReleaseCount("1979", 1), new ReleaseCount("1980", 1), new ReleaseCount("1992", 1)),
+                movieStatsService.countByYear().getCounts());
+        // later changes move the loaded counters
+        movieStatsService.onMoviesChanged(MoviesChangedEvent.of(THE_SHINING, null));
+        assertEquals(2, movieStatsService.countByYear().getTotal());
+    }
+
+    @Test
+    void testRolledBackChangesAreNotCounted() {
+        movieStatsService.rebuild();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            movieStatsService.onMoviesChanged(MoviesChangedEvent.of(ALIEN, null));
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationUtils.triggerBeforeCommit(false);
+            // the commit failed after the counters were locked for it
+            TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations,
+                    TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(2, movieStatsService.countByYear().getCounts().get(0).count());
+        // the lock was released: a load can still take it
+        movieStatsService.rebuild();
+    }
+
+    @Test
+    void testHistogram() {
+        movieStatsService.rebuild();
+
+        ReleaseHistogram histogram = movieStatsService.histogram(LocalDate.of(1979, 1, 1), LocalDate.of(1981, 1, 1), 3);
+
+        // 731 days in buckets of 244, the last one shorter
+        assertEquals(List.of(
+                new ReleaseBucket(LocalDate.of(1979, 1, 1), LocalDate.of(1979, 9, 2), 2),
+                new ReleaseBucket(LocalDate.of(1979, 9, 2), LocalDate.of(1980, 5, 3), 0),
+                new ReleaseBucket(LocalDate.of(1980, 5, 3), LocalDate.of(1981, 1, 1), 1)), histogram.getBuckets());
+        assertEquals(3, histogram.getTotal());
+        ReleaseHistogram all = movieStatsService.histogram(null, null, 1);
+        assertEquals(List.of(new ReleaseBucket(ALIEN.releaseDate(), THE_SHINING.releaseDate().plusDays(1), 3)),
+                all.getBuckets());
+        assertThrows(InvalidStatsRequestException.class, () -> movieStatsService.histogram(null, null, 0));
+        assertThrows(InvalidStatsRequestException.class,
+                () -> movieStatsService.histogram(LocalDate.of(1980, 1, 1), LocalDate.of(1980, 1, 1), 10));
+    }
+
+    @Test
+    void testGroupsInTheDatabaseUntilLoaded() {
+        when(movieRepository.countByReleaseMonthBetween(LocalDate.of(1979, 1, 1), LocalDate.of(1979, 12, 31)))
+                .thenReturn(List.of(new ReleaseCount("1979-05", 1), new ReleaseCount("1979-08", 1)));
+        when(movieRepository.countByReleaseDateIsNull()).thenReturn(2L);
+
+        ReleaseStats months = movieStatsService.countByMonth(1979);
+
+        assertFalse(movieStatsService.isReady());
+        assertEquals(2, months.getTotal());
+        assertEquals(2, months.getUndated());
+        // nothing to move before the load
+        movieStatsService.onMoviesChanged(MoviesChangedEvent.of(null, movie(4L, LocalDate.of(1979, 5, 25))));
+        assertFalse(movieStatsService.isReady());
+    }
+
+    private static MovieSummary movie(Long id, LocalDate releaseDate) {
+        return movie(id, releaseDate, 0L);
+    }
+
+    private static MovieSummary movie(Long id, LocalDate releaseDate, Long version) {
+        return new MovieSummary(id, "Movie " + id, releaseDate, version, null);
+    }
+}
@@ -0,0 +1,109 @@
+package com.madeeasy.service;
+
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.dto.MovieTitleHit;
+import com.madeeasy.dto.MovieTitleSearchPage;
+import com.madeeasy.repository.MovieRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MovieTitleSearchServiceTest {
+
+    private static final List<MovieSummary> CATALOG = List.of(
+            movie(1L, "The Godfather"),
+            movie(2L, "The Godfather Part II"),
+            movie(3L, "Goodfellas"));
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private MovieTitleSearchService movieTitleSearchService;
+
+    public MovieTitleSearchServiceTest() throws InterruptedException {
+        MockitoAnnotations.openMocks(this);
+        when(movieRepository.streamAllOrderById()).thenAnswer(invocation -> CATALOG.stream());
+        when(movieRepository.findSummariesByIdIn(anyCollection())).thenAnswer(invocation ->
+                CATALOG.stream().filter(movie -> invocation.<Collection<Long>>getArgument(0).contains(movie.id()))
+                        .toList());
+        movieTitleSearchService.start();
+        while (!movieTitleSearchService.isReady()) {
+            Thread.sleep(10);
+        }
+    }
+
+    @AfterEach
+    void stopIndex() {
+        movieTitleSearchService.stop();
+    }
+
+    @Test
+    void testSearchRanksAndPages() {
+        MovieTitleSearchPage page = movieTitleSearchService.search("godfater", 0, 1);
+
+        assertEquals(2L, page.getTotal());
+        assertTrue(page.isHasNext());
+        MovieTitleHit hit = page.getHits().get(0);
+        assertEquals("The Godfather", hit.movie().name());
+        assertTrue(hit.score() > 0);
+        assertEquals("The Godfather Part II",
+                movieTitleSearchService.search("godfater", 1, 1).getHits().get(0).movie().name());
+        assertEquals(3.0, meterRegistry.get("movies.title.index.titles").gauge().value());
+    }
+
+    @Test
+    void testCommittedChangesAreSearchable() {
+        movieTitleSearchService.onMoviesChanged(new MoviesChangedEvent(List.of(
+                new MoviesChangedEvent.Change(CATALOG.get(2), movie(3L, "Goodfellas (Director's Cut)")),
+                new MoviesChangedEvent.Change(CATALOG.get(1), null))));
+
+        assertEquals(List.of(3L), ids(movieTitleSearchService.search("director", 0, 10)));
+        assertEquals(List.of(1L), ids(movieTitleSearchService.search("godfather", 0, 10)));
+    }
+
+    @Test
+    void testFallsBackToLikeUntilLoaded() {
+        movieTitleSearchService.stop();
+        when(movieRepository.findByNameLike(eq("%100\\%%"), any()))
+                .thenReturn(new SliceImpl<>(List.of(movie(4L, "100% Wolf")), PageRequest.of(0, 20), false));
+
+        MovieTitleSearchPage page = movieTitleSearchService.search(" 100% ", 0, 20);
+
+        assertNull(page.getTotal());
+        assertEquals(List.of(4L), ids(page));
+        verify(movieRepository).findByNameLike(eq("%100\\%%"), eq(PageRequest.of(0, 20)));
+    }
+
+    private static List<Long> ids(MovieTitleSearchPage page) {
+        return page.getHits().stream().map(hit -> hit.movie().id()).toList();
+    }
+
+    private static MovieSummary movie(Long id, String name) {
+        return new MovieSummary(id, name, LocalDate.of(1972, 3, 24), 0L, null);
+    }
+}
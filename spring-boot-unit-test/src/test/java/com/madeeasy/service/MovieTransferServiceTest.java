@@ -0,0 +1,199 @@
+package com.madeeasy.service;
+
+import com.madeeasy.dto.CatalogImportResult;
+import com.madeeasy.dto.MovieSummary;
+import com.madeeasy.entity.MovieEntity;
+import com.madeeasy.error.CatalogImportRunningException;
+import com.madeeasy.error.InvalidCatalogFileException;
+import com.madeeasy.repository.MovieColumnFile;
+import com.madeeasy.repository.MovieRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exports and imports through JDBC against a private in-memory database, with the whole application around it so
+ * the in-memory copies of the catalog react to the import.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:transfer;DB_CLOSE_DELAY=-1",
+        "movies.transfer.batch-size=2"
+})
+class MovieTransferServiceTest {
+
+    @Autowired
+    private MovieTransferService movieTransferService;
+
+    @Autowired
+    private MovieService movieService;
+
+    @Autowired
+    private MovieStatsService movieStatsService;
+
+    @Autowired
+    private MovieRepository movieRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void emptyCatalog() {
+        jdbcTemplate.update("delete from tbl_user");
+    }
+
+    @Test
+    void testExportedCatalogImportsIntoAnEmptyTable() {
+        movieService.save(movie("Alien", LocalDate.of(1979, 5, 25)));
+        movieService.save(movie("Aliens", LocalDate.of(1986, 7, 18)));
+        movieService.save(movie("Untitled Sequel", null));
+        List<MovieSummary> exported = movieRepository.findAllSummaries();
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        assertEquals(3, movieTransferService.exportCatalog(file));
+        jdbcTemplate.update("delete from tbl_user");
+        CatalogImportResult result = movieTransferService.importCatalog(new ByteArrayInputStream(file.toByteArray()));
+
+        assertEquals(3, result.getRows());
+        assertEquals(2, result.getBatches());
+        assertTrue(result.getRowsPerSecond() > 0);
+        // ids, versions and modification times are kept
+        assertEquals(exported, movieRepository.findAllSummaries());
+        // the stats were loaded again from the imported table
+        assertEquals(1, movieStatsService.countByYear().getUndated());
+        // new movies get ids after the imported ones
+        long maxId = exported.stream().mapToLong(MovieSummary::id).max().orElseThrow();
+        assertTrue(movieService.save(movie("Alien 3", LocalDate.of(1992, 5, 22))).getId() > maxId);
+    }
+
+    @Test
+    void testImportReplacesMoviesWithTheSameId() {
+        MovieEntity alien = movieService.save(movie("Alien", LocalDate.of(1979, 5, 25)));
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        movieTransferService.exportCatalog(file);
+        movieService.updateMovie(alien.getId(), movie("Alien: Director's Cut", LocalDate.of(2003, 10, 31)));
+        // cached from here on
+        movieService.findById(alien.getId());
+
+        movieTransferService.importCatalog(new ByteArrayInputStream(file.toByteArray()));
+
+        MovieSummary imported = movieRepository.findSummaryById(alien.getId()).orElseThrow();
+        assertEquals("Alien", imported.name());
+        // above both the local version 1 and the imported 0, so the old ETags do not match the imported row
+        assertEquals(2L, imported.version());
+        assertEquals("Alien", movieService.findById(alien.getId()).getName());
+    }
+
+    @Test
+    void testIdsDrawnBeforeTheImportAreNotHandedOut() throws Exception {
+        movieService.save(movie("Alien", LocalDate.of(1979, 5, 25)));
+        long lastId = movieService.save(movie("Alien 3", LocalDate.of(1992, 5, 22))).getId();
+        // the next ids of the block Hibernate holds, taken by movies of another environment
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        try (MovieColumnFile.Writer writer = new MovieColumnFile.Writer(file, 100, 1)) {
+            writer.write(new MovieSummary(lastId + 1, "Aliens", LocalDate.of(1986, 7, 18), 3L, null));
+            writer.write(new MovieSummary(lastId + 2, "Prometheus", LocalDate.of(2012, 6, 8), 1L, null));
+            writer.finish();
+        }
+
+        movieTransferService.importCatalog(new ByteArrayInputStream(file.toByteArray()));
+
+        assertTrue(movieService.save(movie("Alien Resurrection", LocalDate.of(1997, 11, 26))).getId() > lastId + 2);
+        assertEquals(3L, movieRepository.findSummaryById(lastId + 1).orElseThrow().version());
+    }
+
+    @Test
+    void testWritesAreRefusedWhileAnImportRuns() throws Exception {
+        long lastId = movieService.save(movie("Alien", LocalDate.of(1979, 5, 25))).getId();
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        movieTransferService.exportCatalog(file);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        // holds the import at its first read of the file
+        FilterInputStream stalled = new FilterInputStream(new ByteArrayInputStream(file.toByteArray())) {
+            @Override
+            public int read() throws IOException {
+                stall();
+                return super.read();
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                stall();
+                return super.read(bytes, offset, length);
+            }
+
+            private void stall() throws InterruptedIOException {
+                reading.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+        };
+        CompletableFuture<CatalogImportResult> running =
+                CompletableFuture.supplyAsync(() -> movieTransferService.importCatalog(stalled));
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+
+        assertThrows(CatalogImportRunningException.class,
+                () -> movieService.save(movie("Aliens", LocalDate.of(1986, 7, 18))));
+        assertThrows(CatalogImportRunningException.class,
+                () -> movieService.deleteMovie(lastId));
+        assertThrows(CatalogImportRunningException.class,
+                () -> movieTransferService.importCatalog(new ByteArrayInputStream(file.toByteArray())));
+
+        resume.countDown();
+        assertEquals(1, running.get(10, TimeUnit.SECONDS).getRows());
+        assertTrue(movieService.save(movie("Aliens", LocalDate.of(1986, 7, 18))).getId() > lastId);
+    }
+
+    @Test
+    void testInvalidFileImportsNothing() {
+        assertThrows(InvalidCatalogFileException.class,
+                () -> movieTransferService.importCatalog(new ByteArrayInputStream("name,release_date".getBytes())));
+
+        assertEquals(0, movieRepository.count());
+    }
+
+    @Test
+    void testTruncatedFileAnnouncesTheBatchesItCommitted() {
+        movieService.save(movie("Alien", LocalDate.of(1979, 5, 25)));
+        movieService.save(movie("Aliens", LocalDate.of(1986, 7, 18)));
+        movieService.save(movie("Alien 3", LocalDate.of(1992, 5, 22)));
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        movieTransferService.exportCatalog(file);
+        jdbcTemplate.update("delete from tbl_user");
+        movieStatsService.rebuild();
+        byte[] truncated = Arrays.copyOf(file.toByteArray(), file.size() - 4);
+
+        assertThrows(InvalidCatalogFileException.class,
+                () -> movieTransferService.importCatalog(new ByteArrayInputStream(truncated)));
+
+        // the first batch of two committed before the end of the file was found missing
+        assertEquals(2, movieRepository.count());
+        assertEquals(2, movieStatsService.countByYear().getTotal());
+    }
+
+    private static MovieEntity movie(String name, LocalDate releaseDate) {
+        MovieEntity movie = new MovieEntity();
+        movie.setName(name);
+        movie.setReleaseDate(releaseDate);
+        return movie;
+    }
+}